@@ -0,0 +1,94 @@
+package code_metier;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A flag checked periodically by long-running loops (loading, cleaning, decomposing),
+ * so that abandoned work stops quickly and never publishes partial results
+ * @author Rémi BARDON
+ */
+public final class CancellationToken {
+
+	/**
+	 * A token which is never cancelled
+	 * @author Rémi BARDON
+	 */
+	public static final CancellationToken NONE = new CancellationToken(false);
+
+	/**
+	 * Whether {@link #cancel()} has any effect
+	 * @author Rémi BARDON
+	 */
+	private final boolean isCancellable;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private volatile boolean isCancelled;
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	public CancellationToken() {
+		this(true);
+	}
+
+	/**
+	 *
+	 * @param isCancellable Whether {@link #cancel()} has any effect
+	 * @author Rémi BARDON
+	 */
+	private CancellationToken(final boolean isCancellable) {
+		this.isCancellable = isCancellable;
+		this.isCancelled = false;
+	}
+
+	/**
+	 * Asks work checking this token to stop
+	 * @author Rémi BARDON
+	 */
+	public void cancel() {
+		if (this.isCancellable) {
+			this.isCancelled = true;
+		}
+	}
+
+	/**
+	 *
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public boolean isCancelled() {
+		return this.isCancelled;
+	}
+
+	/**
+	 *
+	 * @throws CancellationException If this token was cancelled
+	 * @author Rémi BARDON
+	 */
+	public void throwIfCancelled() throws CancellationException {
+		if (this.isCancelled) {
+			throw new CancellationException();
+		}
+	}
+
+	/**
+	 * Cancels this token when a {@link CompletableFuture} is cancelled, as cancelling it doesn't stop running work
+	 * @param <T>
+	 * @param future
+	 * @return {@code future}
+	 * @author Rémi BARDON
+	 */
+	public <T> CompletableFuture<T> cancelWith(final CompletableFuture<T> future) {
+		future.whenComplete((value, error) -> {
+			if (future.isCancelled()) {
+				this.cancel();
+			}
+		});
+		return future;
+	}
+
+}
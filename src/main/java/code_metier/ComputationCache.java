@@ -0,0 +1,622 @@
+package code_metier;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A concurrent cache of asynchronous computations, with single-flight semantics:
+ * concurrent requests for the same key share one computation, and finished ones are returned immediately.
+ * Failed or cancelled computations are forgotten, so that they can be started again.<br>
+ * Finished values are weighed (in approximate bytes), and least recently used ones are evicted when
+ * the total weight exceeds a {@link Budget}, which several caches can share. Evicted values can be kept in a soft-reference tier,
+ * from which they are restored if the garbage collector didn't reclaim them yet.
+ * @param <K> The type of keys
+ * @param <V> The type of computed values
+ * @author Rémi BARDON
+ */
+public final class ComputationCache<K, V> {
+
+	/**
+	 * Running and finished computations
+	 * @author Rémi BARDON
+	 */
+	private final ConcurrentHashMap<K, CompletableFuture<V>> entries;
+	/**
+	 * Values evicted from {@link #entries}, if the soft-reference tier is enabled
+	 * @author Rémi BARDON
+	 */
+	private final ConcurrentHashMap<K, SoftReference<V>> softValues;
+	/**
+	 * Gives the approximate number of bytes retained by a value
+	 * @author Rémi BARDON
+	 */
+	private final ToLongFunction<V> weigher;
+	/**
+	 * Tracks finished entries of this cache (and of caches sharing it) from least to most recently used
+	 * @author Rémi BARDON
+	 */
+	private final Budget budget;
+
+	/**
+	 * The total weight of finished entries of this cache. Guarded by the lock of {@link #budget}.
+	 * @author Rémi BARDON
+	 */
+	private long weight;
+	/**
+	 * Selects keys of entries which are never evicted
+	 * @author Rémi BARDON
+	 */
+	private volatile Predicate<K> isPinned;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private volatile boolean isSoftTierEnabled;
+
+	/**
+	 * Requests answered by a running or finished computation
+	 * @author Rémi BARDON
+	 */
+	private final AtomicLong hitCount;
+	/**
+	 * Requests which started a computation
+	 * @author Rémi BARDON
+	 */
+	private final AtomicLong missCount;
+	/**
+	 * Entries evicted to stay within {@link #maximumWeight}
+	 * @author Rémi BARDON
+	 */
+	private final AtomicLong evictionCount;
+
+	/**
+	 * An unbounded cache
+	 * @author Rémi BARDON
+	 */
+	public ComputationCache() {
+		this((value) -> 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 *
+	 * @param weigher Gives the approximate number of bytes retained by a value
+	 * @param maximumWeight The total weight above which least recently used entries are evicted
+	 * @author Rémi BARDON
+	 */
+	public ComputationCache(final ToLongFunction<V> weigher, final long maximumWeight) {
+		this(weigher, new Budget(maximumWeight));
+	}
+
+	/**
+	 *
+	 * @param weigher Gives the approximate number of bytes retained by a value
+	 * @param budget The budget of this cache, which can be shared with other caches
+	 *               so that least recently used entries of all of them are evicted first
+	 * @author Rémi BARDON
+	 */
+	public ComputationCache(final ToLongFunction<V> weigher, final Budget budget) {
+		this.entries = new ConcurrentHashMap<K, CompletableFuture<V>>();
+		this.softValues = new ConcurrentHashMap<K, SoftReference<V>>();
+		this.weigher = weigher;
+		this.budget = budget;
+		this.weight = 0;
+		this.isPinned = (key) -> false;
+		this.isSoftTierEnabled = false;
+		this.hitCount = new AtomicLong();
+		this.missCount = new AtomicLong();
+		this.evictionCount = new AtomicLong();
+	}
+
+	/**
+	 * Returns the running or finished computation for a key, or starts it
+	 * @param key
+	 * @param computation Starts the computation. Only called if there is none for {@code key}.
+	 * @return A {@link CompletableFuture} shared by all callers asking for {@code key}.
+	 *         Cancelling it cancels the computation for all of them.
+	 * @author Rémi BARDON
+	 */
+	public CompletableFuture<V> get(final K key, final Supplier<CompletableFuture<V>> computation) {
+		final CompletableFuture<V> existing = this.entries.get(key);
+		if (existing != null) {
+			this.hitCount.incrementAndGet();
+			this.touch(key);
+			return existing;
+		}
+
+		// Restore a value evicted to the soft-reference tier, if it is still reachable
+		final V softValue = this.restore(key);
+		if (softValue != null) {
+			this.hitCount.incrementAndGet();
+			final CompletableFuture<V> restored = this.entries.get(key);
+			return restored == null ? CompletableFuture.completedFuture(softValue) : restored;
+		}
+
+		// Publish a placeholder first, so that the computation is started at most once
+		final var entry = new CompletableFuture<V>();
+		final CompletableFuture<V> previous = this.entries.putIfAbsent(key, entry);
+		if (previous != null) {
+			this.hitCount.incrementAndGet();
+			return previous;
+		}
+		this.missCount.incrementAndGet();
+
+		final CompletableFuture<V> task;
+		try {
+			task = computation.get();
+		} catch (RuntimeException e) {
+			this.entries.remove(key, entry);
+			entry.completeExceptionally(e);
+			return entry;
+		}
+
+		task.whenComplete((value, error) -> {
+			if (error != null) {
+				entry.completeExceptionally(error);
+			} else {
+				entry.complete(value);
+			}
+		});
+		entry.whenComplete((value, error) -> {
+			if (error != null) {
+				this.entries.remove(key, entry);
+				// Skips stages which didn't start yet
+				task.cancel(false);
+			} else {
+				this.admit(key, entry, value);
+			}
+		});
+
+		return entry;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return The computed value for {@code key}, if its computation succeeded, marked as most recently used
+	 * @author Rémi BARDON
+	 */
+	public Optional<V> getIfPresent(final K key) {
+		final CompletableFuture<V> entry = this.entries.get(key);
+		if (entry == null) {
+			return Optional.ofNullable(this.restore(key));
+		}
+		if (!entry.isDone() || entry.isCompletedExceptionally()) {
+			return Optional.empty();
+		}
+		this.touch(key);
+		return Optional.of(entry.join());
+	}
+
+	/**
+	 * Forgets some entries, cancelling their computations if they are still running
+	 * @param filter Selects keys to forget
+	 * @author Rémi BARDON
+	 */
+	public void invalidate(final Predicate<K> filter) {
+		for (final K key : this.entries.keySet()) {
+			if (filter.test(key)) {
+				final CompletableFuture<V> entry = this.entries.remove(key);
+				if (entry != null) {
+					entry.cancel(false);
+				}
+				synchronized (this.budget.recency) {
+					final Long entryWeight = this.budget.recency.remove(new Slot(key));
+					if (entryWeight != null) {
+						this.weight -= entryWeight;
+						this.budget.weight -= entryWeight;
+					}
+				}
+			}
+		}
+		this.softValues.keySet().removeIf(filter);
+	}
+
+	/**
+	 * Cancels all running computations, keeping finished ones
+	 * @author Rémi BARDON
+	 */
+	public void cancelRunning() {
+		this.cancelRunning((key) -> true);
+	}
+
+	/**
+	 * Cancels some running computations, keeping finished ones
+	 * @param filter Selects keys of computations to cancel
+	 * @author Rémi BARDON
+	 */
+	public void cancelRunning(final Predicate<K> filter) {
+		for (final var entry : this.entries.entrySet()) {
+			if (filter.test(entry.getKey())) {
+				entry.getValue().cancel(false);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of running and finished computations
+	 * @author Rémi BARDON
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Sets the total weight above which least recently used entries are evicted, evicting some if needed.
+	 * Applies to all caches sharing the {@link Budget} of this one.
+	 * @param maximumWeight
+	 * @author Rémi BARDON
+	 */
+	public void setMaximumWeight(final long maximumWeight) {
+		this.budget.setMaximumWeight(maximumWeight);
+	}
+
+	/**
+	 *
+	 * @return The total weight above which least recently used entries are evicted
+	 * @author Rémi BARDON
+	 */
+	public long getMaximumWeight() {
+		return this.budget.getMaximumWeight();
+	}
+
+	/**
+	 * Pins some entries, which still count towards the {@link Budget} but are never evicted.
+	 * Meant for values also held elsewhere, as evicting them would free nothing. Default is none.
+	 * @param isPinned Selects keys of entries to pin, tested on every eviction
+	 * @author Rémi BARDON
+	 */
+	public void setPinned(final Predicate<K> isPinned) {
+		this.isPinned = isPinned;
+	}
+
+	/**
+	 * Enables/disables the soft-reference tier, keeping evicted values until the garbage collector needs memory. Default is {@code false}
+	 * @param enabled
+	 * @author Rémi BARDON
+	 */
+	public void setSoftTierEnabled(final boolean enabled) {
+		this.isSoftTierEnabled = enabled;
+		if (!enabled) {
+			this.softValues.clear();
+		}
+	}
+
+	/**
+	 *
+	 * @return A snapshot of counters of this cache
+	 * @author Rémi BARDON
+	 */
+	public Statistics getStatistics() {
+		final long weight;
+		synchronized (this.budget.recency) {
+			weight = this.weight;
+		}
+		return new Statistics(this.hitCount.get(), this.missCount.get(), this.evictionCount.get(), this.entries.size(), weight);
+	}
+
+	/**
+	 * Moves a value evicted to the soft-reference tier back to the cache, if it is still reachable
+	 * @param key
+	 * @return The restored value, or {@code null} if there is none
+	 * @author Rémi BARDON
+	 */
+	private V restore(final K key) {
+		final SoftReference<V> reference = this.softValues.remove(key);
+		final V softValue = reference == null ? null : reference.get();
+		if (softValue == null) {
+			return null;
+		}
+
+		final var entry = CompletableFuture.completedFuture(softValue);
+		if (this.entries.putIfAbsent(key, entry) == null) {
+			this.admit(key, entry, softValue);
+		}
+		return softValue;
+	}
+
+	/**
+	 * Marks a finished entry as most recently used
+	 * @param key
+	 * @author Rémi BARDON
+	 */
+	private void touch(final K key) {
+		synchronized (this.budget.recency) {
+			this.budget.recency.get(new Slot(key));
+		}
+	}
+
+	/**
+	 * Starts weighing a finished entry, then evicts entries if needed
+	 * @param key
+	 * @param entry
+	 * @param value
+	 * @author Rémi BARDON
+	 */
+	private void admit(final K key, final CompletableFuture<V> entry, final V value) {
+		final long entryWeight = Math.max(0, this.weigher.applyAsLong(value));
+		final var slot = new Slot(key);
+		synchronized (this.budget.recency) {
+			// Skip entries invalidated in the meantime
+			if (this.entries.get(key) != entry || this.budget.recency.containsKey(slot)) {
+				return;
+			}
+			this.budget.recency.put(slot, entryWeight);
+			this.weight += entryWeight;
+			this.budget.weight += entryWeight;
+		}
+		this.budget.evict();
+	}
+
+	/**
+	 * Identifies an entry of this cache in its {@link Budget}
+	 * @author Rémi BARDON
+	 */
+	private final class Slot {
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final K key;
+
+		/**
+		 *
+		 * @param key
+		 * @author Rémi BARDON
+		 */
+		private Slot(final K key) {
+			this.key = key;
+		}
+
+		/**
+		 * Removes the entry from its cache, unless it is pinned. Must be called with the lock of the {@link Budget}.
+		 * @param entryWeight The weight of the entry
+		 * @return Keeps the evicted value in the soft-reference tier if enabled (to run without the lock),
+		 *         or {@code null} if the entry is pinned
+		 * @author Rémi BARDON
+		 */
+		private Runnable evict(final long entryWeight) {
+			final ComputationCache<K, V> cache = ComputationCache.this;
+			if (cache.isPinned.test(this.key)) {
+				return null;
+			}
+
+			cache.weight -= entryWeight;
+			final CompletableFuture<V> entry = cache.entries.remove(this.key);
+			return () -> {
+				if (entry == null) { return; }
+				cache.evictionCount.incrementAndGet();
+				if (cache.isSoftTierEnabled) {
+					cache.softValues.put(this.key, new SoftReference<V>(entry.join()));
+				}
+			};
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof ComputationCache.Slot)) {
+				return false;
+			}
+			final var other = (ComputationCache<?, ?>.Slot) obj;
+			return other.cache() == ComputationCache.this && Objects.equals(other.key, this.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(ComputationCache.this) * 31 + Objects.hashCode(this.key);
+		}
+
+		/**
+		 *
+		 * @return The cache of this entry
+		 * @author Rémi BARDON
+		 */
+		private ComputationCache<K, V> cache() {
+			return ComputationCache.this;
+		}
+
+	}
+
+	/**
+	 * A memory budget, which can be shared by several {@link ComputationCache}s:
+	 * least recently used entries of all of them are evicted when their total weight exceeds it
+	 * @author Rémi BARDON
+	 */
+	public static final class Budget {
+
+		/**
+		 * Weights of finished entries, from least to most recently used. Also guards weights.
+		 * @author Rémi BARDON
+		 */
+		private final LinkedHashMap<ComputationCache<?, ?>.Slot, Long> recency;
+		/**
+		 * The total weight of finished entries
+		 * @author Rémi BARDON
+		 */
+		private long weight;
+		/**
+		 * The total weight above which least recently used entries are evicted
+		 * @author Rémi BARDON
+		 */
+		private volatile long maximumWeight;
+
+		/**
+		 *
+		 * @param maximumWeight The total weight above which least recently used entries are evicted
+		 * @author Rémi BARDON
+		 */
+		public Budget(final long maximumWeight) {
+			this.recency = new LinkedHashMap<ComputationCache<?, ?>.Slot, Long>(16, 0.75f, true);
+			this.weight = 0;
+			this.maximumWeight = maximumWeight;
+		}
+
+		/**
+		 * Sets the total weight above which least recently used entries are evicted, evicting some if needed
+		 * @param maximumWeight
+		 * @author Rémi BARDON
+		 */
+		public void setMaximumWeight(final long maximumWeight) {
+			this.maximumWeight = maximumWeight;
+			this.evict();
+		}
+
+		/**
+		 *
+		 * @return The total weight above which least recently used entries are evicted
+		 * @author Rémi BARDON
+		 */
+		public long getMaximumWeight() {
+			return this.maximumWeight;
+		}
+
+		/**
+		 *
+		 * @return The total weight of finished entries of all caches sharing this budget, in approximate bytes
+		 * @author Rémi BARDON
+		 */
+		public long getWeight() {
+			synchronized (this.recency) {
+				return this.weight;
+			}
+		}
+
+		/**
+		 * Evicts least recently used (and not pinned) entries until the total weight fits in {@link #maximumWeight}
+		 * @author Rémi BARDON
+		 */
+		private void evict() {
+			final var evicted = new ArrayList<Runnable>();
+			synchronized (this.recency) {
+				final var iterator = this.recency.entrySet().iterator();
+				while (this.weight > this.maximumWeight && iterator.hasNext()) {
+					final Map.Entry<ComputationCache<?, ?>.Slot, Long> eldest = iterator.next();
+					final Runnable onEvicted = eldest.getKey().evict(eldest.getValue());
+					if (onEvicted != null) {
+						iterator.remove();
+						this.weight -= eldest.getValue();
+						evicted.add(onEvicted);
+					}
+				}
+			}
+
+			for (final Runnable onEvicted : evicted) {
+				onEvicted.run();
+			}
+		}
+
+	}
+
+	/**
+	 * A snapshot of {@link ComputationCache} counters
+	 * @author Rémi BARDON
+	 */
+	public static final class Statistics {
+
+		/**
+		 * Requests answered by a running or finished computation
+		 * @author Rémi BARDON
+		 */
+		private final long hitCount;
+		/**
+		 * Requests which started a computation
+		 * @author Rémi BARDON
+		 */
+		private final long missCount;
+		/**
+		 * Entries evicted to stay within the weight budget
+		 * @author Rémi BARDON
+		 */
+		private final long evictionCount;
+		/**
+		 * The number of running and finished computations
+		 * @author Rémi BARDON
+		 */
+		private final int size;
+		/**
+		 * The total weight of finished entries
+		 * @author Rémi BARDON
+		 */
+		private final long weight;
+
+		/**
+		 *
+		 * @param hitCount
+		 * @param missCount
+		 * @param evictionCount
+		 * @param size
+		 * @param weight
+		 * @author Rémi BARDON
+		 */
+		Statistics(final long hitCount, final long missCount, final long evictionCount, final int size, final long weight) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+			this.size = size;
+			this.weight = weight;
+		}
+
+		/**
+		 *
+		 * @return Requests answered by a running or finished computation
+		 * @author Rémi BARDON
+		 */
+		public long getHitCount() {
+			return this.hitCount;
+		}
+
+		/**
+		 *
+		 * @return Requests which started a computation
+		 * @author Rémi BARDON
+		 */
+		public long getMissCount() {
+			return this.missCount;
+		}
+
+		/**
+		 *
+		 * @return Entries evicted to stay within the weight budget
+		 * @author Rémi BARDON
+		 */
+		public long getEvictionCount() {
+			return this.evictionCount;
+		}
+
+		/**
+		 *
+		 * @return The number of running and finished computations
+		 * @author Rémi BARDON
+		 */
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 *
+		 * @return The total weight of finished entries, in approximate bytes
+		 * @author Rémi BARDON
+		 */
+		public long getWeight() {
+			return this.weight;
+		}
+
+		@Override
+		public String toString() {
+			return "{ hits: " + this.hitCount + ", misses: " + this.missCount + ", evictions: " + this.evictionCount + ", size: " + this.size + ", weight: " + this.weight + " }";
+		}
+
+	}
+
+}
@@ -0,0 +1,259 @@
+package code_metier;
+
+import java.nio.FloatBuffer;
+import java.util.Objects;
+
+/**
+ * The normalized cross-correlation of two series, computed with a {@link FastFourierTransform} in {@code O(n log n)}
+ * after resampling both series on a common regular grid.
+ * A positive lag means that the second series follows the first one (it's delayed by the lag).
+ * @author Rémi BARDON
+ */
+public final class CrossCorrelation {
+
+	/**
+	 * The duration between two consecutive lags
+	 * @author Rémi BARDON
+	 */
+	private final float step;
+	/**
+	 * The lag of the first coefficient, in steps (negative)
+	 * @author Rémi BARDON
+	 */
+	private final int firstLag;
+	/**
+	 * The correlation coefficients, in {@code [-1, 1]}, from {@link #firstLag} to {@code -firstLag}
+	 * @author Rémi BARDON
+	 */
+	private final float[] coefficients;
+	/**
+	 * The index of the biggest coefficient
+	 * @author Rémi BARDON
+	 */
+	private final int bestIndex;
+
+	/**
+	 *
+	 * @param step The duration between two consecutive lags
+	 * @param firstLag The lag of the first coefficient, in steps
+	 * @param coefficients The correlation coefficients
+	 * @author Rémi BARDON
+	 */
+	private CrossCorrelation(final float step, final int firstLag, final float[] coefficients) {
+		this.step = step;
+		this.firstLag = firstLag;
+		this.coefficients = coefficients;
+
+		int bestIndex = -1;
+		for (int i = 0; i < coefficients.length; i++) {
+			if (!Float.isNaN(coefficients[i]) && (bestIndex < 0 || coefficients[i] > coefficients[bestIndex])) {
+				bestIndex = i;
+			}
+		}
+		this.bestIndex = bestIndex;
+	}
+
+	/**
+	 * Cross-correlates two series sharing one time axis (see {@link ExperimentFrame})
+	 * @param timestamps The shared time axis, in increasing order
+	 * @param first
+	 * @param second
+	 * @param maximumLag The biggest lag to compute, in both directions
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public static CrossCorrelation compute(
+		final FloatBuffer timestamps,
+		final FloatBuffer first,
+		final FloatBuffer second,
+		final float maximumLag
+	) {
+		return compute(timestamps, first, timestamps, second, maximumLag);
+	}
+
+	/**
+	 * Cross-correlates two series, resampled on a common grid covering the time range of both series.
+	 * The grid step is the average duration between points of the densest series.
+	 * @param firstTimestamps The timestamps of {@code first}, in increasing order
+	 * @param first
+	 * @param secondTimestamps The timestamps of {@code second}, in increasing order
+	 * @param second
+	 * @param maximumLag The biggest lag to compute, in both directions
+	 * @return An empty {@link CrossCorrelation} if a series has less than 2 points
+	 * @author Rémi BARDON
+	 */
+	public static CrossCorrelation compute(
+		final FloatBuffer firstTimestamps,
+		final FloatBuffer first,
+		final FloatBuffer secondTimestamps,
+		final FloatBuffer second,
+		final float maximumLag
+	) {
+		final int firstCount = firstTimestamps.remaining();
+		final int secondCount = secondTimestamps.remaining();
+		if (firstCount < 2 || secondCount < 2) {
+			return new CrossCorrelation(0, 0, new float[0]);
+		}
+
+		// Common grid
+		final double firstStart = firstTimestamps.get(firstTimestamps.position());
+		final double firstEnd = firstTimestamps.get(firstTimestamps.limit() - 1);
+		final double secondStart = secondTimestamps.get(secondTimestamps.position());
+		final double secondEnd = secondTimestamps.get(secondTimestamps.limit() - 1);
+		final double start = Math.min(firstStart, secondStart);
+		final double end = Math.max(firstEnd, secondEnd);
+		final double step = Math.min((firstEnd - firstStart) / (firstCount - 1), (secondEnd - secondStart) / (secondCount - 1));
+		if (!(step > 0)) {
+			return new CrossCorrelation(0, 0, new float[0]);
+		}
+		final int count = (int) Math.floor((end - start) / step) + 1;
+
+		final double[] firstValues = new double[count];
+		final double[] secondValues = new double[count];
+		if (
+			!Resampler.resample(firstTimestamps, first, start, step, firstValues)
+				|| !Resampler.resample(secondTimestamps, second, start, step, secondValues)
+		) {
+			return new CrossCorrelation((float) step, 0, new float[0]);
+		}
+
+		final int maximumSteps = (int) Math.min(count - 1, Math.floor(maximumLag / step));
+		return compute(firstValues, secondValues, count, maximumSteps, (float) step);
+	}
+
+	/**
+	 * Cross-correlates two regular series of the same length
+	 * @param first
+	 * @param second
+	 * @param count The number of values in both series
+	 * @param maximumSteps The biggest lag to compute, in steps
+	 * @param step The duration between two values
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	static CrossCorrelation compute(
+		final double[] first,
+		final double[] second,
+		final int count,
+		final int maximumSteps,
+		final float step
+	) {
+		// Zero-padding to at least twice the length avoids circular wrap-around
+		final var transform = new FastFourierTransform(FastFourierTransform.nextPowerOfTwo(2 * count));
+		final int size = transform.size();
+
+		final double[] firstReal = new double[size];
+		final double[] firstImaginary = new double[size];
+		final double[] secondReal = new double[size];
+		final double[] secondImaginary = new double[size];
+		final double firstNorm = normalize(first, count, firstReal);
+		final double secondNorm = normalize(second, count, secondReal);
+
+		transform.forward(firstReal, firstImaginary);
+		transform.forward(secondReal, secondImaginary);
+
+		// conj(first) * second
+		for (int i = 0; i < size; i++) {
+			final double real = firstReal[i] * secondReal[i] + firstImaginary[i] * secondImaginary[i];
+			final double imaginary = firstReal[i] * secondImaginary[i] - firstImaginary[i] * secondReal[i];
+			firstReal[i] = real;
+			firstImaginary[i] = imaginary;
+		}
+		transform.inverse(firstReal, firstImaginary);
+
+		final float[] coefficients = new float[2 * maximumSteps + 1];
+		final double norm = firstNorm * secondNorm;
+		for (int lag = -maximumSteps; lag <= maximumSteps; lag++) {
+			final double value = firstReal[lag >= 0 ? lag : size + lag];
+			coefficients[lag + maximumSteps] = norm > 0 ? (float) (value / norm) : Float.NaN;
+		}
+
+		return new CrossCorrelation(step, -maximumSteps, coefficients);
+	}
+
+	/**
+	 * Centers values (subtracts their mean) into {@code destination}
+	 * @param values
+	 * @param count
+	 * @param destination
+	 * @return The Euclidean norm of centered values
+	 * @author Rémi BARDON
+	 */
+	private static double normalize(final double[] values, final int count, final double[] destination) {
+		double sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += values[i];
+		}
+		final double mean = sum / count;
+
+		double squares = 0;
+		for (int i = 0; i < count; i++) {
+			destination[i] = values[i] - mean;
+			squares += destination[i] * destination[i];
+		}
+		return Math.sqrt(squares);
+	}
+
+	/**
+	 *
+	 * @return The number of computed lags
+	 * @author Rémi BARDON
+	 */
+	public int size() {
+		return this.coefficients.length;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return The lag at {@code index}, in time units
+	 * @author Rémi BARDON
+	 */
+	public float getLag(final int index) {
+		Objects.checkIndex(index, this.coefficients.length);
+		return (this.firstLag + index) * this.step;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return The correlation coefficient at {@code index}, in {@code [-1, 1]}
+	 * @author Rémi BARDON
+	 */
+	public float getCoefficient(final int index) {
+		return this.coefficients[index];
+	}
+
+	/**
+	 *
+	 * @return The correlation curve, one coefficient per lag
+	 * @author Rémi BARDON
+	 */
+	public float[] getCoefficients() {
+		return this.coefficients;
+	}
+
+	/**
+	 *
+	 * @return The lag with the biggest coefficient, or {@code NaN} if nothing was computed
+	 * @author Rémi BARDON
+	 */
+	public float getBestLag() {
+		return this.bestIndex < 0 ? Float.NaN : this.getLag(this.bestIndex);
+	}
+
+	/**
+	 *
+	 * @return The biggest coefficient, or {@code NaN} if nothing was computed
+	 * @author Rémi BARDON
+	 */
+	public float getBestCoefficient() {
+		return this.bestIndex < 0 ? Float.NaN : this.coefficients[this.bestIndex];
+	}
+
+	@Override
+	public String toString() {
+		return "{ bestLag: " + this.getBestLag() + ", bestCoefficient: " + this.getBestCoefficient() + ", lags: " + this.size() + " }";
+	}
+
+}
@@ -29,6 +29,18 @@ public enum DataType {
 	 * {@link DataType#NOISE} = {@link DataType#RAW} - {@link DataType#TREND} - {@link DataType#SEASONNALITY}
 	 * @author Rémi BARDON
 	 */
-	NOISE
+	NOISE,
+
+	/**
+	 * {@link DataType#DETRENDED} = {@link DataType#RAW} - {@link DataType#TREND}
+	 * @author Rémi BARDON
+	 */
+	DETRENDED,
+
+	/**
+	 * {@link DataType#DESEASONNALIZED} = {@link DataType#RAW} - {@link DataType#SEASONNALITY}
+	 * @author Rémi BARDON
+	 */
+	DESEASONNALIZED
 
 }
@@ -0,0 +1,505 @@
+package code_metier;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The result of decomposing a {@link DataPoint} series into {@link DataType}s.
+ * Only {@link DataType#TREND} and the seasonal patterns are stored, other {@link DataType}s are computed on access.
+ * @author Rémi BARDON
+ */
+public final class Decomposition {
+
+	/**
+	 * The decomposed points ({@link DataType#RAW}). Never modified while {@link #ownsPoints} is {@code false}.
+	 * @author Rémi BARDON
+	 */
+	private List<DataPoint> points;
+
+	/**
+	 * Whether or not {@link #points} were copied to append points to them, instead of being the caller's
+	 * @author Rémi BARDON
+	 */
+	private boolean ownsPoints;
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final PeriodicSeasonnality seasonnality;
+
+	/**
+	 * The trend values. Can be longer than {@link #size} to leave room for appended points.
+	 * @author Rémi BARDON
+	 */
+	private float[] trend;
+
+	/**
+	 * The {@code STL} robustness weights. Can be longer than {@link #size} to leave room for appended points.
+	 * @author Rémi BARDON
+	 */
+	private float[] weights;
+
+	/**
+	 * The number of decomposed points
+	 * @author Rémi BARDON
+	 */
+	private int size;
+
+	/**
+	 * The {@link List} views of every {@link DataType}
+	 * @author Rémi BARDON
+	 */
+	private final Map<DataType, List<DataPoint>> views;
+
+	/**
+	 * The {@link SummaryIndex} of every {@link DataType} already indexed
+	 * @author Rémi BARDON
+	 */
+	private final Map<DataType, SummaryIndex> summaryIndexes;
+
+	/**
+	 * The {@link MinMaxPyramid} of every {@link DataType} already indexed
+	 * @author Rémi BARDON
+	 */
+	private final Map<DataType, MinMaxPyramid> pyramids;
+
+	/**
+	 *
+	 * @param points The decomposed points ({@link DataType#RAW}), shared but never modified (see {@link #appendPoints(List)})
+	 * @param period
+	 * @author Rémi BARDON
+	 */
+	Decomposition(final List<DataPoint> points, final int period) {
+		this.points = points;
+		this.ownsPoints = false;
+		this.seasonnality = new PeriodicSeasonnality(period);
+		this.trend = new float[0];
+		this.weights = new float[0];
+		this.size = 0;
+
+		final var views = new EnumMap<DataType, List<DataPoint>>(DataType.class);
+		for (final DataType type : DataType.values()) {
+			views.put(type, new DataTypePoints(type));
+		}
+		this.views = Collections.unmodifiableMap(views);
+		this.summaryIndexes = new EnumMap<DataType, SummaryIndex>(DataType.class);
+		this.pyramids = new EnumMap<DataType, MinMaxPyramid>(DataType.class);
+	}
+
+	/**
+	 *
+	 * @return The number of decomposed points
+	 * @author Rémi BARDON
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public int getPeriod() {
+		return this.seasonnality.getPeriod();
+	}
+
+	/**
+	 *
+	 * @return The seasonnality, without {@link DataPoint} allocations
+	 * @author Rémi BARDON
+	 */
+	public PeriodicSeasonnality getSeasonnality() {
+		return this.seasonnality;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return The timestamp of the point at {@code index}
+	 * @author Rémi BARDON
+	 */
+	public float getTimestamp(final int index) {
+		return this.points.get(index).getTimestamp();
+	}
+
+	/**
+	 * Copies the timestamps of consecutive points, in bulk
+	 * @param from The index of the first point (inclusive)
+	 * @param to The index of the last point (exclusive)
+	 * @param destination An array of at least {@code to - from} values
+	 * @author Rémi BARDON
+	 */
+	public void getTimestamps(final int from, final int to, final float[] destination) {
+		final var iterator = this.points.listIterator(from);
+		for (int i = 0; i < to - from; i++) {
+			destination[i] = iterator.next().getTimestamp();
+		}
+	}
+
+	/**
+	 * Computes the value of a {@link DataType} for one point
+	 * @param type
+	 * @param index
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public float getValue(final DataType type, final int index) {
+		Objects.checkIndex(index, type == DataType.RAW ? this.points.size() : this.size);
+
+		switch (type) {
+		case RAW:
+			return this.points.get(index).getValue();
+		case TREND:
+			return this.trend[index];
+		case SEASONNALITY:
+			return this.seasonnality.get(index);
+		case NOISE:
+			return this.points.get(index).getValue() - (this.trend[index] + this.seasonnality.get(index));
+		case DETRENDED:
+			return this.points.get(index).getValue() - this.trend[index];
+		case DESEASONNALIZED:
+			return this.points.get(index).getValue() - this.seasonnality.get(index);
+		default:
+			throw new IllegalArgumentException(type.toString());
+		}
+	}
+
+	/**
+	 * Computes the values of a {@link DataType} for consecutive points, in bulk
+	 * @param type
+	 * @param from The index of the first point (inclusive)
+	 * @param to The index of the last point (exclusive)
+	 * @param destination An array of at least {@code to - from} values
+	 * @author Rémi BARDON
+	 */
+	public void getValues(final DataType type, final int from, final int to, final float[] destination) {
+		Objects.checkFromToIndex(from, to, type == DataType.RAW ? this.points.size() : this.size);
+		final int count = to - from;
+
+		switch (type) {
+		case RAW:
+			this.rawValues(from, to, destination);
+			break;
+		case TREND:
+			System.arraycopy(this.trend, from, destination, 0, count);
+			break;
+		case SEASONNALITY:
+			this.seasonnality.get(from, to, destination);
+			break;
+		case NOISE:
+			this.seasonnality.get(from, to, destination);
+			this.rawValues(from, to, destination, (raw, i, seasonnality) -> raw - (this.trend[from + i] + seasonnality));
+			break;
+		case DETRENDED:
+			this.rawValues(from, to, destination, (raw, i, unused) -> raw - this.trend[from + i]);
+			break;
+		case DESEASONNALIZED:
+			this.seasonnality.get(from, to, destination);
+			this.rawValues(from, to, destination, (raw, i, seasonnality) -> raw - seasonnality);
+			break;
+		default:
+			throw new IllegalArgumentException(type.toString());
+		}
+	}
+
+	/**
+	 * Computes the values of a {@link DataType} in a time window, in bulk
+	 * @param type
+	 * @param range A time window
+	 * @return The values of points which timestamp is in {@code range}
+	 * @author Rémi BARDON
+	 */
+	public float[] getValues(final DataType type, final Range<Float> range) {
+		final int count = type == DataType.RAW ? this.points.size() : this.size;
+		final int from = Math.min(this.indexAfter(range.getMinimum(), false), count);
+		final int to = Math.max(from, Math.min(this.indexAfter(range.getMaximum(), true), count));
+
+		final float[] values = new float[to - from];
+		this.getValues(type, from, to, values);
+		return values;
+	}
+
+	/**
+	 *
+	 * @param type
+	 * @return A {@link List} view of the given {@link DataType}, creating {@link DataPoint}s on access
+	 * @author Rémi BARDON
+	 */
+	public List<DataPoint> getPoints(final DataType type) {
+		return this.views.get(type);
+	}
+
+	/**
+	 *
+	 * @return {@link List} views of all {@link DataType}s
+	 * @author Rémi BARDON
+	 */
+	public Map<DataType, List<DataPoint>> getAllPoints() {
+		return this.views;
+	}
+
+	/**
+	 * Builds the {@link SummaryIndex} of some {@link DataType}s, with precomputed {@link Summary}s for the given phases
+	 * @param types
+	 * @param phases
+	 * @author Rémi BARDON
+	 */
+	public void updateSummaryIndexes(final List<DataType> types, final Map<Tag, Range<Float>> phases) {
+		for (final DataType type : types) {
+			final var index = new SummaryIndex(
+				type == DataType.RAW ? this.points.size() : this.size,
+				this::getTimestamp,
+				(from, to, destination) -> this.getValues(type, from, to, destination),
+				phases
+			);
+			synchronized (this.summaryIndexes) {
+				this.summaryIndexes.put(type, index);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param type
+	 * @return The {@link SummaryIndex} of {@code type}, built without phases if {@link #updateSummaryIndexes(List, Map)} wasn't called for {@code type}
+	 * @author Rémi BARDON
+	 */
+	public SummaryIndex getSummaryIndex(final DataType type) {
+		synchronized (this.summaryIndexes) {
+			if (!this.summaryIndexes.containsKey(type)) {
+				this.updateSummaryIndexes(List.of(type), Collections.emptyMap());
+			}
+			return this.summaryIndexes.get(type);
+		}
+	}
+
+	/**
+	 * Builds the {@link MinMaxPyramid} of some {@link DataType}s
+	 * @param types
+	 * @author Rémi BARDON
+	 */
+	public void updatePyramids(final List<DataType> types) {
+		for (final DataType type : types) {
+			final var pyramid = new MinMaxPyramid(
+				type == DataType.RAW ? this.points.size() : this.size,
+				this::getTimestamp,
+				(from, to, destination) -> this.getValues(type, from, to, destination)
+			);
+			synchronized (this.pyramids) {
+				this.pyramids.put(type, pyramid);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param type
+	 * @return The {@link MinMaxPyramid} of {@code type}, built now if {@link #updatePyramids(List)} wasn't called for {@code type}
+	 * @author Rémi BARDON
+	 */
+	public MinMaxPyramid getPyramid(final DataType type) {
+		synchronized (this.pyramids) {
+			if (!this.pyramids.containsKey(type)) {
+				this.updatePyramids(List.of(type));
+			}
+			return this.pyramids.get(type);
+		}
+	}
+
+	/**
+	 * Binary searches the first point after a timestamp
+	 * @param timestamp
+	 * @param inclusive Whether or not points at {@code timestamp} should be skipped
+	 * @return The index of the first point which timestamp is greater than (or equal to, if not {@code inclusive}) {@code timestamp}
+	 * @author Rémi BARDON
+	 */
+	private int indexAfter(final float timestamp, final boolean inclusive) {
+		int low = 0;
+		int high = this.points.size();
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			final float middleTimestamp = this.points.get(middle).getTimestamp();
+			if (middleTimestamp < timestamp || (inclusive && middleTimestamp == timestamp)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Copies {@link DataType#RAW} values
+	 * @param from
+	 * @param to
+	 * @param destination
+	 * @author Rémi BARDON
+	 */
+	private void rawValues(final int from, final int to, final float[] destination) {
+		this.rawValues(from, to, destination, (raw, i, unused) -> raw);
+	}
+
+	/**
+	 * Combines {@link DataType#RAW} values with values already in {@code destination}
+	 * @param from
+	 * @param to
+	 * @param destination
+	 * @param operator
+	 * @author Rémi BARDON
+	 */
+	private void rawValues(final int from, final int to, final float[] destination, final RawOperator operator) {
+		final var iterator = this.points.listIterator(from);
+		for (int i = 0; i < to - from; i++) {
+			destination[i] = operator.apply(iterator.next().getValue(), i, destination[i]);
+		}
+	}
+
+	/**
+	 *
+	 * @return The trend values, with room for appended points
+	 * @author Rémi BARDON
+	 */
+	float[] getTrendValues() {
+		return this.trend;
+	}
+
+	/**
+	 *
+	 * @return The {@code STL} robustness weights, with room for appended points
+	 * @author Rémi BARDON
+	 */
+	float[] getWeights() {
+		return this.weights;
+	}
+
+	/**
+	 * Grows {@link #trend} and {@link #weights} so that they can store {@code capacity} values
+	 * @param capacity
+	 * @author Rémi BARDON
+	 */
+	void ensureCapacity(final int capacity) {
+		if (this.trend.length < capacity) {
+			final int newCapacity = Math.max(capacity, this.trend.length + this.trend.length / 2);
+			this.trend = Arrays.copyOf(this.trend, newCapacity);
+			this.weights = Arrays.copyOf(this.weights, newCapacity);
+		}
+	}
+
+	/**
+	 *
+	 * @param size The number of decomposed points
+	 * @author Rémi BARDON
+	 */
+	void setSize(final int size) {
+		this.size = size;
+
+		// Indexes are now outdated
+		synchronized (this.summaryIndexes) {
+			this.summaryIndexes.clear();
+		}
+		synchronized (this.pyramids) {
+			this.pyramids.clear();
+		}
+	}
+
+	/**
+	 * Appends {@link DataType#RAW} points, to decompose them afterwards.
+	 * Shared points are copied first, so that the {@link List} given to the constructor (the one of an {@link ExperimentDataStore}) never changes.
+	 * @param newPoints
+	 * @author Rémi BARDON
+	 */
+	void appendPoints(final List<DataPoint> newPoints) {
+		if (!this.ownsPoints) {
+			this.points = new ArrayList<DataPoint>(this.points);
+			this.ownsPoints = true;
+		}
+		this.points.addAll(newPoints);
+	}
+
+	/**
+	 *
+	 * @return The approximate number of bytes used by components, indexes and pyramids of this {@link Decomposition},
+	 *         excluding {@link DataType#RAW} points (owned by their {@link ExperimentDataStore}, unless points were appended)
+	 * @author Rémi BARDON
+	 */
+	long getRetainedSize() {
+		long size = (long) Float.BYTES * (this.trend.length + this.weights.length) + this.seasonnality.getRetainedSize();
+		synchronized (this.summaryIndexes) {
+			for (final SummaryIndex index : this.summaryIndexes.values()) {
+				size += index.getRetainedSize();
+			}
+		}
+		synchronized (this.pyramids) {
+			for (final MinMaxPyramid pyramid : this.pyramids.values()) {
+				size += pyramid.getRetainedSize();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * An operation applied on {@link DataType#RAW} values in bulk
+	 * @author Rémi BARDON
+	 */
+	@FunctionalInterface
+	private interface RawOperator {
+
+		/**
+		 *
+		 * @param raw The {@link DataType#RAW} value
+		 * @param i The offset from the first point
+		 * @param current The value currently in the destination
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		float apply(float raw, int i, float current);
+
+	}
+
+	/**
+	 * A read-only {@link List} view of a {@link DataType}, creating {@link DataPoint}s on access (except {@link DataType#RAW} ones)
+	 * @author Rémi BARDON
+	 */
+	private final class DataTypePoints extends AbstractList<DataPoint> implements RandomAccess {
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final DataType type;
+
+		/**
+		 *
+		 * @param type
+		 * @author Rémi BARDON
+		 */
+		DataTypePoints(final DataType type) {
+			this.type = type;
+		}
+
+		@Override
+		public DataPoint get(final int index) {
+			if (this.type == DataType.RAW) {
+				return Decomposition.this.points.get(index);
+			}
+			Objects.checkIndex(index, this.size());
+			return new DataPoint(Decomposition.this.getTimestamp(index), Decomposition.this.getValue(this.type, index));
+		}
+
+		@Override
+		public int size() {
+			return this.type == DataType.RAW ? Decomposition.this.points.size() : Decomposition.this.size;
+		}
+
+	}
+
+}
@@ -0,0 +1,480 @@
+package code_metier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of {@link Decomposition}s, surviving restarts.
+ * Entries are keyed by the content of the decomposed {@link File}, the {@link Measure}, the {@link Tag}, the period
+ * and the decomposition parameters, stored in a compact binary format and memory-mapped on read.
+ * The least recently used entries are deleted when the cache grows bigger than its size limit.
+ * @author Rémi BARDON
+ */
+public final class DecompositionCache {
+
+	/**
+	 * The file name extension of cache entries
+	 * @author Rémi BARDON
+	 */
+	private static final String EXTENSION = ".stl";
+	/**
+	 * The first bytes of every cache entry
+	 * @author Rémi BARDON
+	 */
+	private static final int MAGIC = 0x4C52_4443;
+	/**
+	 * The version of the binary format, to change whenever it changes
+	 * @author Rémi BARDON
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * The size of an entry header, in bytes ({@code magic, version, period, size, windowCount})
+	 * @author Rémi BARDON
+	 */
+	private static final int HEADER_BYTES = 5 * Integer.BYTES;
+	/**
+	 * The size of a window description, in bytes ({@code start, end, overlap, flags})
+	 * @author Rémi BARDON
+	 */
+	private static final int WINDOW_BYTES = 4 * Integer.BYTES;
+
+	/**
+	 * The directory storing cache entries
+	 * @author Rémi BARDON
+	 */
+	private final Path directory;
+	/**
+	 * The maximum total size of cache entries, in bytes
+	 * @author Rémi BARDON
+	 */
+	private final long maximumBytes;
+	/**
+	 * Content hashes of already hashed {@link File}s, to avoid reading them again while they don't change
+	 * @author Rémi BARDON
+	 */
+	private final Map<Path, FileHash> fileHashes;
+
+	/**
+	 *
+	 * @param directory The directory storing cache entries, created if needed
+	 * @param maximumBytes The maximum total size of cache entries, in bytes
+	 * @throws IOException If {@code directory} cannot be created
+	 * @author Rémi BARDON
+	 */
+	public DecompositionCache(final Path directory, final long maximumBytes) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.maximumBytes = maximumBytes;
+		this.fileHashes = new ConcurrentHashMap<Path, FileHash>();
+	}
+
+	/**
+	 * Reads a cached {@link Decomposition}. Corrupt or truncated entries are deleted, so that they are written again.
+	 * @param key
+	 * @param points The cleaned points which were decomposed
+	 * @return An empty {@link Optional} if nothing valid was cached for {@code key} or if cached data doesn't match {@code points}
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	public Optional<Decomposition> get(final Key key, final List<DataPoint> points) throws IOException {
+		final Path path = this.entryPath(key);
+
+		final Optional<Decomposition> decomposition;
+		try {
+			try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				decomposition = this.read(channel, key, points);
+			}
+		} catch (NoSuchFileException e) {
+			return Optional.empty();
+		} catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+			// The channel is closed first, as some platforms can't delete open files
+			Files.deleteIfExists(path);
+			return Optional.empty();
+		}
+
+		// Mark entry as recently used
+		if (decomposition.isPresent()) {
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		}
+
+		return decomposition;
+	}
+
+	/**
+	 * Decodes a cache entry, checking its size against the one its header implies before mapping it
+	 * @param channel
+	 * @param key
+	 * @param points The cleaned points which were decomposed
+	 * @return An empty {@link Optional} if cached data doesn't match {@code key} or {@code points}
+	 * @throws IOException
+	 * @throws IllegalArgumentException If the entry is corrupt, truncated or of another version
+	 * @throws IndexOutOfBoundsException If the entry is corrupt
+	 * @throws BufferUnderflowException If the entry is truncated
+	 * @author Rémi BARDON
+	 */
+	private Optional<Decomposition> read(final FileChannel channel, final Key key, final List<DataPoint> points) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining() && channel.read(header) >= 0) {}
+		if (header.hasRemaining()) {
+			throw new BufferUnderflowException();
+		}
+		header.flip();
+
+		if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			throw new IllegalArgumentException("Not a cache entry of version " + VERSION);
+		}
+		final int period = header.getInt();
+		final int size = header.getInt();
+		final int windowCount = header.getInt();
+		if (period < 1 || size < 0 || windowCount < 0) {
+			throw new IllegalArgumentException("Invalid cache entry header");
+		}
+		final long byteCount = HEADER_BYTES + windowCount * (WINDOW_BYTES + period * (long) Float.BYTES) + 2 * size * (long) Float.BYTES;
+		if (channel.size() != byteCount) {
+			throw new IllegalArgumentException("Cache entry of " + channel.size() + " bytes instead of " + byteCount);
+		}
+
+		if (period != key.period || size != points.size()) {
+			return Optional.empty();
+		}
+
+		final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, byteCount - HEADER_BYTES);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		final var decomposition = new Decomposition(points, period);
+		final PeriodicSeasonnality seasonnality = decomposition.getSeasonnality();
+		for (int i = 0; i < windowCount; i++) {
+			final int start = buffer.getInt();
+			final int end = buffer.getInt();
+			final int overlap = buffer.getInt();
+			final int flags = buffer.getInt();
+			if (start < 0 || end <= start || end > size || overlap < 0) {
+				throw new IllegalArgumentException("Invalid window [" + start + ", " + end + ") in cache entry");
+			}
+			final var window = new ExperimentDataDecomposer.Window(start, end, overlap, (flags & 1) != 0, (flags & 2) != 0);
+			final float[] pattern = new float[period];
+			buffer.asFloatBuffer().get(pattern);
+			buffer.position(buffer.position() + period * Float.BYTES);
+			seasonnality.setPattern(i, window, pattern);
+		}
+
+		decomposition.ensureCapacity(size);
+		buffer.asFloatBuffer().get(decomposition.getTrendValues(), 0, size);
+		buffer.position(buffer.position() + size * Float.BYTES);
+		buffer.asFloatBuffer().get(decomposition.getWeights(), 0, size);
+		decomposition.setSize(size);
+
+		return Optional.of(decomposition);
+	}
+
+	/**
+	 * Writes a {@link Decomposition} in the cache, then evicts least recently used entries if needed
+	 * @param key
+	 * @param decomposition
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	public void put(final Key key, final Decomposition decomposition) throws IOException {
+		final PeriodicSeasonnality seasonnality = decomposition.getSeasonnality();
+		final int period = decomposition.getPeriod();
+		final int size = decomposition.size();
+		final int windowCount = seasonnality.getWindowCount();
+
+		final int byteCount = HEADER_BYTES + windowCount * (WINDOW_BYTES + period * Float.BYTES) + 2 * size * Float.BYTES;
+		final ByteBuffer buffer = ByteBuffer.allocate(byteCount).order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(period).putInt(size).putInt(windowCount);
+		for (int i = 0; i < windowCount; i++) {
+			final var window = seasonnality.getWindow(i);
+			final int flags = (window.hasPrevious ? 1 : 0) | (window.hasNext ? 2 : 0);
+			buffer.putInt(window.start).putInt(window.end).putInt(window.overlap).putInt(flags);
+			buffer.asFloatBuffer().put(seasonnality.getWindowPattern(i));
+			buffer.position(buffer.position() + period * Float.BYTES);
+		}
+		buffer.asFloatBuffer().put(decomposition.getTrendValues(), 0, size);
+		buffer.position(buffer.position() + size * Float.BYTES);
+		buffer.asFloatBuffer().put(decomposition.getWeights(), 0, size);
+		buffer.position(buffer.position() + size * Float.BYTES);
+		buffer.flip();
+
+		// Write to a temporary file first so that readers never see partially written entries
+		final Path path = this.entryPath(key);
+		final Path temporaryPath = Files.createTempFile(this.directory, "entry", ".tmp");
+		try (final var channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		this.evict();
+	}
+
+	/**
+	 * Deletes least recently used entries until the cache fits in {@link #maximumBytes}
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	public void evict() throws IOException {
+		final List<Path> entries;
+		try (final Stream<Path> paths = Files.list(this.directory)) {
+			entries = paths.filter((path) -> path.toString().endsWith(EXTENSION)).collect(Collectors.toList());
+		}
+
+		final var entriesByAge = new ArrayList<Entry>();
+		long totalBytes = 0;
+		for (final Path path : entries) {
+			try {
+				final var entry = new Entry(path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+				entriesByAge.add(entry);
+				totalBytes += entry.bytes;
+			} catch (NoSuchFileException e) {
+				// Entry was evicted concurrently
+			}
+		}
+
+		if (totalBytes <= this.maximumBytes) {
+			return;
+		}
+
+		entriesByAge.sort(Comparator.comparingLong((entry) -> entry.lastUsed));
+		for (final Entry entry : entriesByAge) {
+			if (totalBytes <= this.maximumBytes) {
+				break;
+			}
+			Files.deleteIfExists(entry.path);
+			totalBytes -= entry.bytes;
+		}
+	}
+
+	/**
+	 * Creates the cache key of a decomposition
+	 * @param file The decomposed {@link File}, which content is hashed
+	 * @param measure
+	 * @param tag An {@link Optional} {@link Tag} if only a part of the {@link File} was decomposed
+	 * @param period
+	 * @param parameters A description of the decomposition parameters
+	 * @return
+	 * @throws IOException If {@code file} cannot be read
+	 * @see ExperimentDataDecomposer#getParametersDescription()
+	 * @author Rémi BARDON
+	 */
+	public Key key(
+		final File file,
+		final Measure measure,
+		final Optional<Tag> tag,
+		final int period,
+		final String parameters
+	) throws IOException {
+		final String contentHash = this.contentHash(file.toPath());
+		final String description = String.join("\n",
+			contentHash, measure.getName(), tag.map(Tag::toString).orElse(""), Integer.toString(period), parameters
+		);
+		return new Key(hex(sha256(description.getBytes(StandardCharsets.UTF_8))), period);
+	}
+
+	/**
+	 * Hashes the content of a {@link File}, reusing the last hash if its size and modification time didn't change
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	private String contentHash(final Path path) throws IOException {
+		final long size = Files.size(path);
+		final long lastModified = Files.getLastModifiedTime(path).toMillis();
+
+		final FileHash known = this.fileHashes.get(path);
+		if (known != null && known.size == size && known.lastModified == lastModified) {
+			return known.hash;
+		}
+
+		final MessageDigest digest = digest();
+		try (final InputStream stream = Files.newInputStream(path)) {
+			final byte[] buffer = new byte[1 << 16];
+			int read;
+			while ((read = stream.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		final String hash = hex(digest.digest());
+		this.fileHashes.put(path, new FileHash(size, lastModified, hash));
+
+		return hash;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return The path of the {@link File} storing the entry for {@code key}
+	 * @author Rémi BARDON
+	 */
+	private Path entryPath(final Key key) {
+		return this.directory.resolve(key.hash + EXTENSION);
+	}
+
+	/**
+	 *
+	 * @param bytes
+	 * @return The {@code SHA-256} hash of {@code bytes}
+	 * @author Rémi BARDON
+	 */
+	private static byte[] sha256(final byte[] bytes) {
+		return digest().digest(bytes);
+	}
+
+	/**
+	 *
+	 * @return A new {@code SHA-256} {@link MessageDigest}
+	 * @author Rémi BARDON
+	 */
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param bytes
+	 * @return The lowercase hexadecimal representation of {@code bytes}
+	 * @author Rémi BARDON
+	 */
+	private static String hex(final byte[] bytes) {
+		final var builder = new StringBuilder(2 * bytes.length);
+		for (final byte b : bytes) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * The key of a cached {@link Decomposition}
+	 * @author Rémi BARDON
+	 */
+	public static final class Key {
+
+		/**
+		 * The hash of everything identifying a {@link Decomposition}
+		 * @author Rémi BARDON
+		 */
+		private final String hash;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final int period;
+
+		/**
+		 *
+		 * @param hash The hash of everything identifying a {@link Decomposition}
+		 * @param period
+		 * @author Rémi BARDON
+		 */
+		private Key(final String hash, final int period) {
+			this.hash = hash;
+			this.period = period;
+		}
+
+		@Override
+		public String toString() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+
+			if (obj instanceof Key) {
+				Key otherKey = (Key) obj;
+				return otherKey.hash.equals(this.hash);
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash.hashCode();
+		}
+
+	}
+
+	/**
+	 * A content hash, valid while the {@link File} keeps the same size and modification time
+	 * @author Rémi BARDON
+	 */
+	private static final class FileHash {
+
+		final long size;
+		final long lastModified;
+		final String hash;
+
+		/**
+		 *
+		 * @param size
+		 * @param lastModified
+		 * @param hash
+		 * @author Rémi BARDON
+		 */
+		FileHash(final long size, final long lastModified, final String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+
+	}
+
+	/**
+	 * A cache entry on disk
+	 * @author Rémi BARDON
+	 */
+	private static final class Entry {
+
+		final Path path;
+		final long bytes;
+		final long lastUsed;
+
+		/**
+		 *
+		 * @param path
+		 * @param bytes
+		 * @param lastUsed
+		 * @author Rémi BARDON
+		 */
+		Entry(final Path path, final long bytes, final long lastUsed) {
+			this.path = path;
+			this.bytes = bytes;
+			this.lastUsed = lastUsed;
+		}
+
+	}
+
+}
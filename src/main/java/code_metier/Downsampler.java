@@ -0,0 +1,125 @@
+package code_metier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Downsamples series for chart rendering while preserving their visual shape,
+ * using the <a href="https://skemman.is/bitstream/1946/15343/3/SS_MSc_thesis.pdf">Largest-Triangle-Three-Buckets</a> algorithm.
+ * @author Rémi BARDON
+ */
+public final class Downsampler {
+
+	/**
+	 * A utility class, not meant to be instantiated
+	 * @author Rémi BARDON
+	 */
+	private Downsampler() {}
+
+	/**
+	 * Selects the points to keep in one linear pass.
+	 * The first and last points are always kept, then one point per bucket: the one forming the largest triangle
+	 * with the last selected point and the average of the next bucket. {@code NaN} values are never selected.
+	 * @param timestamps The timestamps of points, in increasing order
+	 * @param values The values of points
+	 * @param count The number of points to keep
+	 * @return The sorted indices of selected points. All indices if there are less than {@code count} points.
+	 * @author Rémi BARDON
+	 */
+	public static int[] largestTriangleThreeBuckets(final float[] timestamps, final float[] values, final int count) {
+		final int size = Math.min(timestamps.length, values.length);
+		if (count >= size) {
+			final int[] all = new int[size];
+			Arrays.setAll(all, (i) -> i);
+			return all;
+		}
+		if (count < 3) {
+			// Not enough points for one bucket, keep bounds only
+			return count <= 0 ? new int[0] : count == 1 ? new int[] { 0 } : new int[] { 0, size - 1 };
+		}
+
+		final int[] selected = new int[count];
+		int selectedCount = 0;
+		selected[selectedCount++] = 0;
+
+		// Buckets exclude first and last points
+		final double bucketSize = (double) (size - 2) / (count - 2);
+		int previous = 0;
+
+		for (int bucket = 0; bucket < count - 2; bucket++) {
+			// Average of next bucket (last point for last bucket)
+			final int nextFrom = (int) ((bucket + 1) * bucketSize) + 1;
+			final int nextTo = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+			double averageTimestamp = 0;
+			double averageValue = 0;
+			int averageCount = 0;
+			for (int i = nextFrom; i < nextTo; i++) {
+				if (!Float.isNaN(values[i])) {
+					averageTimestamp += timestamps[i];
+					averageValue += values[i];
+					averageCount++;
+				}
+			}
+			if (averageCount == 0) {
+				averageTimestamp = timestamps[size - 1];
+				averageValue = values[size - 1];
+			} else {
+				averageTimestamp /= averageCount;
+				averageValue /= averageCount;
+			}
+
+			// Point of current bucket making the largest triangle
+			final int from = (int) (bucket * bucketSize) + 1;
+			final int to = (int) ((bucket + 1) * bucketSize) + 1;
+			final double previousTimestamp = timestamps[previous];
+			final double previousValue = values[previous];
+			double largestArea = -1;
+			int largest = -1;
+			for (int i = from; i < to; i++) {
+				if (Float.isNaN(values[i])) {
+					continue;
+				}
+				// Twice the triangle area, no need to divide to compare
+				final double area = Math.abs(
+					(previousTimestamp - averageTimestamp) * (values[i] - previousValue)
+						- (previousTimestamp - timestamps[i]) * (averageValue - previousValue)
+				);
+				if (area > largestArea) {
+					largestArea = area;
+					largest = i;
+				}
+			}
+
+			if (largest >= 0) {
+				selected[selectedCount++] = largest;
+				previous = largest;
+			}
+		}
+
+		selected[selectedCount++] = size - 1;
+
+		return selectedCount == count ? selected : Arrays.copyOf(selected, selectedCount);
+	}
+
+	/**
+	 * Downsamples a series into {@link DataPoint}s
+	 * @param timestamps The timestamps of points, in increasing order
+	 * @param values The values of points
+	 * @param count The number of points to keep
+	 * @return At most {@code count} {@link DataPoint}s
+	 * @see #largestTriangleThreeBuckets(float[], float[], int)
+	 * @author Rémi BARDON
+	 */
+	public static List<DataPoint> downsample(final float[] timestamps, final float[] values, final int count) {
+		final int[] selected = largestTriangleThreeBuckets(timestamps, values, count);
+
+		final var result = new ArrayList<DataPoint>(selected.length);
+		for (final int index : selected) {
+			result.add(new DataPoint(timestamps[index], values[index]));
+		}
+
+		return result;
+	}
+
+}
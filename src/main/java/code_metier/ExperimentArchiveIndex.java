@@ -0,0 +1,544 @@
+package code_metier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.InvalidKeyException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * A persistent index of session files, recording their {@link Measure}s, {@link Tag}s, phase bounds, row counts and {@link Summary}s,
+ * with an inverted index from {@link Tag}s to sessions.
+ * Files are only loaded again when their size or modification time changes,
+ * so that sessions can be searched without loading them.
+ * @author Rémi BARDON
+ */
+public final class ExperimentArchiveIndex {
+
+	/**
+	 * The first bytes of an index file
+	 * @author Rémi BARDON
+	 */
+	private static final int MAGIC = 0x4C52_4149;
+	/**
+	 * The version of the binary format, to change whenever it changes
+	 * @author Rémi BARDON
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The file storing the index
+	 * @author Rémi BARDON
+	 */
+	private final Path path;
+	/**
+	 * Indexed sessions, by absolute file path
+	 * @author Rémi BARDON
+	 */
+	private final Map<String, Session> sessions;
+	/**
+	 * Absolute file paths of sessions, by {@link Tag}
+	 * @author Rémi BARDON
+	 */
+	private final Map<Tag, Set<String>> sessionsByTag;
+	/**
+	 * Files which could not be indexed by the last {@link #update(List)}, with the reason
+	 * @author Rémi BARDON
+	 */
+	private final Map<File, Exception> failures;
+
+	/**
+	 * Opens an index, reading it if it exists. An index in an unknown format, or truncated, is ignored so that everything is indexed again.
+	 * @param path The file storing the index
+	 * @throws IOException If the index exists but cannot be read
+	 * @author Rémi BARDON
+	 */
+	public ExperimentArchiveIndex(final Path path) throws IOException {
+		this.path = path;
+		this.sessions = new LinkedHashMap<String, Session>();
+		this.sessionsByTag = new LinkedHashMap<Tag, Set<String>>();
+		this.failures = new LinkedHashMap<File, Exception>();
+
+		if (Files.exists(path)) {
+			this.read();
+		}
+	}
+
+	/**
+	 * Indexes session files, loading only new or modified ones. Sessions which file doesn't exist anymore are removed.
+	 * Files which cannot be loaded are skipped (and their previous session removed), see {@link #getFailures()}.
+	 * @param files
+	 * @return The number of loaded files
+	 * @author Rémi BARDON
+	 */
+	public synchronized int update(final List<File> files) {
+		this.failures.clear();
+
+		// Forget deleted files
+		final var deleted = new ArrayList<String>();
+		for (final String sessionPath : this.sessions.keySet()) {
+			if (!new File(sessionPath).exists()) {
+				deleted.add(sessionPath);
+			}
+		}
+		for (final String sessionPath : deleted) {
+			this.remove(sessionPath);
+		}
+
+		int loadedCount = 0;
+		for (final File file : files) {
+			final String sessionPath = file.getAbsolutePath();
+			final long size = file.length();
+			final long lastModified = file.lastModified();
+
+			final Session existing = this.sessions.get(sessionPath);
+			if (existing != null && existing.size == size && existing.lastModified == lastModified) {
+				continue;
+			}
+
+			this.remove(sessionPath);
+
+			final var loader = new ExperimentDataLoader();
+			try {
+				loader.load(file);
+			} catch (IOException | CsvValidationException | ParseException | RuntimeException e) {
+				// Malformed files can also fail with runtime exceptions (missing header, bad number…)
+				// Keep indexing other files, this one will be loaded again on next update
+				this.failures.put(file, e);
+				continue;
+			}
+
+			this.add(Session.of(sessionPath, size, lastModified, loader));
+			loadedCount++;
+		}
+
+		return loadedCount;
+	}
+
+	/**
+	 * Writes the index to its file, atomically
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	public synchronized void save() throws IOException {
+		final Path directory = this.path.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		final Path temporaryPath = Files.createTempFile(directory, this.path.getFileName().toString(), ".tmp");
+
+		try (final var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(this.sessions.size());
+			for (final Session session : this.sessions.values()) {
+				session.write(output);
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(temporaryPath);
+			throw e;
+		}
+
+		Files.move(temporaryPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 *
+	 * @return Files which could not be indexed by the last {@link #update(List)}, with the reason
+	 * @author Rémi BARDON
+	 */
+	public synchronized Map<File, Exception> getFailures() {
+		return new LinkedHashMap<File, Exception>(this.failures);
+	}
+
+	/**
+	 *
+	 * @return All indexed sessions
+	 * @author Rémi BARDON
+	 */
+	public synchronized List<Session> getSessions() {
+		return new ArrayList<Session>(this.sessions.values());
+	}
+
+	/**
+	 *
+	 * @param tag
+	 * @return The sessions having a phase for {@code tag}
+	 * @author Rémi BARDON
+	 */
+	public synchronized List<Session> getSessions(final Tag tag) {
+		final var result = new ArrayList<Session>();
+		for (final String sessionPath : this.sessionsByTag.getOrDefault(tag, Collections.emptySet())) {
+			result.add(this.sessions.get(sessionPath));
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return The indexed session of {@code file}, if any
+	 * @author Rémi BARDON
+	 */
+	public synchronized Optional<Session> getSession(final File file) {
+		return Optional.ofNullable(this.sessions.get(file.getAbsolutePath()));
+	}
+
+	/**
+	 *
+	 * @return All {@link Tag}s of indexed sessions
+	 * @author Rémi BARDON
+	 */
+	public synchronized List<Tag> getTags() {
+		return new ArrayList<Tag>(this.sessionsByTag.keySet());
+	}
+
+	/**
+	 * Reads the index file, leaving the index empty if it is in an unknown format or truncated
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	private void read() throws IOException {
+		try (final var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.path)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				// Unknown format, index everything again
+				return;
+			}
+
+			final int sessionCount = input.readInt();
+			for (int i = 0; i < sessionCount; i++) {
+				this.add(Session.read(input));
+			}
+		} catch (EOFException | UTFDataFormatException e) {
+			// Truncated or corrupted, index everything again
+			this.sessions.clear();
+			this.sessionsByTag.clear();
+		}
+	}
+
+	/**
+	 *
+	 * @param session
+	 * @author Rémi BARDON
+	 */
+	private void add(final Session session) {
+		this.sessions.put(session.path, session);
+		for (final Tag tag : session.phases.keySet()) {
+			this.sessionsByTag.computeIfAbsent(tag, (key) -> new LinkedHashSet<String>()).add(session.path);
+		}
+	}
+
+	/**
+	 *
+	 * @param sessionPath
+	 * @author Rémi BARDON
+	 */
+	private void remove(final String sessionPath) {
+		final Session session = this.sessions.remove(sessionPath);
+		if (session == null) {
+			return;
+		}
+
+		for (final Tag tag : session.phases.keySet()) {
+			final Set<String> paths = this.sessionsByTag.get(tag);
+			paths.remove(sessionPath);
+			if (paths.isEmpty()) {
+				this.sessionsByTag.remove(tag);
+			}
+		}
+	}
+
+	/**
+	 * What the index knows about one session file
+	 * @author Rémi BARDON
+	 */
+	public static final class Session {
+
+		/**
+		 * The absolute path of the session file
+		 * @author Rémi BARDON
+		 */
+		private final String path;
+		/**
+		 * The size of the file when it was indexed, in bytes
+		 * @author Rémi BARDON
+		 */
+		private final long size;
+		/**
+		 * The modification time of the file when it was indexed
+		 * @author Rémi BARDON
+		 */
+		private final long lastModified;
+		/**
+		 * The number of points of each {@link Measure}
+		 * @author Rémi BARDON
+		 */
+		private final int rowCount;
+		/**
+		 * The {@link Summary} of every {@link Measure}
+		 * @author Rémi BARDON
+		 */
+		private final Map<Measure, Summary> summaries;
+		/**
+		 * The {@link Summary} of every {@link Measure} in every phase
+		 * @author Rémi BARDON
+		 */
+		private final Map<Measure, Map<Tag, Summary>> tagSummaries;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final Map<Tag, Range<Float>> phases;
+
+		/**
+		 *
+		 * @param path The absolute path of the session file
+		 * @param size The size of the file when it was indexed, in bytes
+		 * @param lastModified The modification time of the file when it was indexed
+		 * @param rowCount The number of points of each {@link Measure}
+		 * @param summaries The {@link Summary} of every {@link Measure}
+		 * @param tagSummaries The {@link Summary} of every {@link Measure} in every phase
+		 * @param phases
+		 * @author Rémi BARDON
+		 */
+		private Session(
+			final String path,
+			final long size,
+			final long lastModified,
+			final int rowCount,
+			final Map<Measure, Summary> summaries,
+			final Map<Measure, Map<Tag, Summary>> tagSummaries,
+			final Map<Tag, Range<Float>> phases
+		) {
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.rowCount = rowCount;
+			this.summaries = summaries;
+			this.tagSummaries = tagSummaries;
+			this.phases = phases;
+		}
+
+		/**
+		 * Describes a loaded session
+		 * @param path
+		 * @param size
+		 * @param lastModified
+		 * @param loader An {@link ExperimentDataLoader} which just loaded the session
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		static Session of(final String path, final long size, final long lastModified, final ExperimentDataLoader loader) {
+			final var summaries = new LinkedHashMap<Measure, Summary>();
+			final var tagSummaries = new LinkedHashMap<Measure, Map<Tag, Summary>>();
+			final var phases = new LinkedHashMap<Tag, Range<Float>>();
+			int rowCount = 0;
+
+			for (final Measure measure : loader.getMeasures()) {
+				final ExperimentDataStore store = loader.getStores().get(measure);
+				final SummaryIndex index = store.getSummaryIndex();
+				rowCount = store.getDataPoints().size();
+				summaries.put(measure, index.summarize(Optional.empty()));
+
+				final var measureTagSummaries = new LinkedHashMap<Tag, Summary>();
+				for (final Map.Entry<Tag, Range<Float>> phase : store.getPhases().entrySet()) {
+					measureTagSummaries.put(phase.getKey(), index.summarize(Optional.of(phase.getKey())));
+					phases.putIfAbsent(phase.getKey(), new Range<Float>(phase.getValue().getMinimum(), phase.getValue().getMaximum()));
+				}
+				tagSummaries.put(measure, measureTagSummaries);
+			}
+
+			return new Session(path, size, lastModified, rowCount, summaries, tagSummaries, phases);
+		}
+
+		/**
+		 *
+		 * @param input
+		 * @return
+		 * @throws IOException
+		 * @author Rémi BARDON
+		 */
+		static Session read(final DataInputStream input) throws IOException {
+			final String path = input.readUTF();
+			final long size = input.readLong();
+			final long lastModified = input.readLong();
+			final int rowCount = input.readInt();
+
+			final int phaseCount = input.readInt();
+			final var phases = new LinkedHashMap<Tag, Range<Float>>();
+			final var tags = new ArrayList<Tag>();
+			for (int i = 0; i < phaseCount; i++) {
+				final Tag tag = new Tag(input.readUTF());
+				tags.add(tag);
+				phases.put(tag, new Range<Float>(input.readFloat(), input.readFloat()));
+			}
+
+			final int measureCount = input.readInt();
+			final var summaries = new LinkedHashMap<Measure, Summary>();
+			final var tagSummaries = new LinkedHashMap<Measure, Map<Tag, Summary>>();
+			for (int i = 0; i < measureCount; i++) {
+				final Measure measure = new Measure(input.readUTF());
+				summaries.put(measure, readSummary(input));
+
+				final var measureTagSummaries = new LinkedHashMap<Tag, Summary>();
+				for (final Tag tag : tags) {
+					measureTagSummaries.put(tag, readSummary(input));
+				}
+				tagSummaries.put(measure, measureTagSummaries);
+			}
+
+			return new Session(path, size, lastModified, rowCount, summaries, tagSummaries, phases);
+		}
+
+		/**
+		 *
+		 * @param output
+		 * @throws IOException
+		 * @author Rémi BARDON
+		 */
+		void write(final DataOutputStream output) throws IOException {
+			output.writeUTF(this.path);
+			output.writeLong(this.size);
+			output.writeLong(this.lastModified);
+			output.writeInt(this.rowCount);
+
+			output.writeInt(this.phases.size());
+			for (final Map.Entry<Tag, Range<Float>> phase : this.phases.entrySet()) {
+				output.writeUTF(phase.getKey().toString());
+				output.writeFloat(phase.getValue().getMinimum());
+				output.writeFloat(phase.getValue().getMaximum());
+			}
+
+			output.writeInt(this.summaries.size());
+			for (final Map.Entry<Measure, Summary> summary : this.summaries.entrySet()) {
+				output.writeUTF(summary.getKey().getName());
+				writeSummary(output, summary.getValue());
+				for (final Tag tag : this.phases.keySet()) {
+					writeSummary(output, this.tagSummaries.get(summary.getKey()).getOrDefault(tag, Summary.EMPTY));
+				}
+			}
+		}
+
+		/**
+		 *
+		 * @param input
+		 * @return
+		 * @throws IOException
+		 * @author Rémi BARDON
+		 */
+		private static Summary readSummary(final DataInputStream input) throws IOException {
+			return new Summary(input.readFloat(), input.readFloat(), input.readDouble(), input.readInt());
+		}
+
+		/**
+		 *
+		 * @param output
+		 * @param summary
+		 * @throws IOException
+		 * @author Rémi BARDON
+		 */
+		private static void writeSummary(final DataOutputStream output, final Summary summary) throws IOException {
+			output.writeFloat(summary.getMinimum());
+			output.writeFloat(summary.getMaximum());
+			output.writeDouble(summary.getSum());
+			output.writeInt(summary.getCount());
+		}
+
+		/**
+		 *
+		 * @return The session file
+		 * @author Rémi BARDON
+		 */
+		public File getFile() {
+			return new File(this.path);
+		}
+
+		/**
+		 *
+		 * @return The number of points of each {@link Measure}
+		 * @author Rémi BARDON
+		 */
+		public int getRowCount() {
+			return this.rowCount;
+		}
+
+		/**
+		 *
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		public List<Measure> getMeasures() {
+			return new ArrayList<Measure>(this.summaries.keySet());
+		}
+
+		/**
+		 *
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		public List<Tag> getTags() {
+			return new ArrayList<Tag>(this.phases.keySet());
+		}
+
+		/**
+		 *
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		public Map<Tag, Range<Float>> getPhases() {
+			return Collections.unmodifiableMap(this.phases);
+		}
+
+		/**
+		 *
+		 * @param tag
+		 * @return The duration of the phase of {@code tag}, or {@code NaN} if there is none
+		 * @author Rémi BARDON
+		 */
+		public float getPhaseDuration(final Tag tag) {
+			final Range<Float> range = this.phases.get(tag);
+			return range == null ? Float.NaN : range.getMaximum() - range.getMinimum();
+		}
+
+		/**
+		 *
+		 * @param measure
+		 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+		 * @return The {@link Summary} of {@code measure}, in the given phase if any ({@link Summary#EMPTY} if it doesn't exist)
+		 * @throws InvalidKeyException If the given {@link Measure} doesn't exist in this session
+		 * @author Rémi BARDON
+		 */
+		public Summary getSummary(final Measure measure, final Optional<Tag> optionalTag) throws InvalidKeyException {
+			if (!this.summaries.containsKey(measure)) {
+				throw new InvalidKeyException();
+			}
+			if (optionalTag.isEmpty()) {
+				return this.summaries.get(measure);
+			}
+			return this.tagSummaries.get(measure).getOrDefault(optionalTag.get(), Summary.EMPTY);
+		}
+
+		@Override
+		public String toString() {
+			return "{ file: " + this.path + ", rows: " + this.rowCount + ", tags: " + this.phases.keySet() + " }";
+		}
+
+	}
+
+}
@@ -4,9 +4,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 /**
  * 
@@ -14,6 +16,12 @@ import java.util.Map;
  */
 public class ExperimentDataCleaner {
 
+	/**
+	 * The number of points read between two checks of the {@link CancellationToken}, and two progress reports
+	 * @author Rémi BARDON
+	 */
+	private static final int CANCELLATION_CHECK_INTERVAL = 4_096;
+
 	/**
 	 * 
 	 * @author Rémi BARDON
@@ -35,12 +43,94 @@ public class ExperimentDataCleaner {
 	 * @author Rémi BARDON
 	 */
 	public void clean(final List<DataPoint> points, final Map<Tag, Range<Float>> phases) {
-		this.omittedPoints.clear();
+		this.clean(points, phases, CancellationToken.NONE);
+	}
+
+	/**
+	 * Computes all changes first, checking {@code token} periodically, then applies them at once:
+	 * if cleaning is cancelled, {@code points} and {@code phases} are left untouched
+	 * @param points
+	 * @param phases
+	 * @param token Checked every {@link #CANCELLATION_CHECK_INTERVAL} points
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @author Rémi BARDON
+	 */
+	public void clean(final List<DataPoint> points, final Map<Tag, Range<Float>> phases, final CancellationToken token) {
+		this.clean(points, phases, token, new ProgressReporter());
+	}
+
+	/**
+	 * 
+	 * @param points
+	 * @param phases
+	 * @param token Checked every {@link #CANCELLATION_CHECK_INTERVAL} points
+	 * @param progress Receives the number of points read and the number of {@code points}, every {@link #CANCELLATION_CHECK_INTERVAL} points
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @see #clean(List, Map, CancellationToken)
+	 * @author Rémi BARDON
+	 */
+	public void clean(final List<DataPoint> points, final Map<Tag, Range<Float>> phases, final CancellationToken token, final ProgressReporter progress) {
+		this.clean(points, phases, token, progress, PipelineEvents.Subject.UNKNOWN);
+	}
+
+	/**
+	 * 
+	 * @param points
+	 * @param phases
+	 * @param token
+	 * @param progress
+	 * @param subject Identifies the {@link PipelineEvents.Clean} event
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @see #clean(List, Map, CancellationToken, ProgressReporter)
+	 * @author Rémi BARDON
+	 */
+	public void clean(
+		final List<DataPoint> points,
+		final Map<Tag, Range<Float>> phases,
+		final CancellationToken token,
+		final ProgressReporter progress,
+		final PipelineEvents.Subject subject
+	) {
+		final var event = new PipelineEvents.Clean();
+		event.begin();
+		event.pointCount = points.size();
+		try {
+			this.cleanPoints(points, phases, token, progress);
+			event.omittedRangeCount = this.omittedPoints.size();
+			event.completed = true;
+		} finally {
+			if (event.shouldCommit()) {
+				event.setSubject(subject);
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param points
+	 * @param phases
+	 * @param token
+	 * @param progress
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @see #clean(List, Map, CancellationToken, ProgressReporter, PipelineEvents.Subject)
+	 * @author Rémi BARDON
+	 */
+	private void cleanPoints(final List<DataPoint> points, final Map<Tag, Range<Float>> phases, final CancellationToken token, final ProgressReporter progress) {
+		final Map<Range<Float>, List<DataPoint>> omittedPoints = new HashMap<Range<Float>, List<DataPoint>>();
+
+		// Work on copies of phases, applied at the end
+		final Map<Tag, Range<Float>> newPhases = new LinkedHashMap<Tag, Range<Float>>();
+		for (final Map.Entry<Tag, Range<Float>> entry : phases.entrySet()) {
+			newPhases.put(entry.getKey(), new Range<Float>(entry.getValue().getMinimum(), entry.getValue().getMaximum()));
+		}
+		// New timestamps of kept points, applied at the end
+		final float[] newTimestamps = new float[points.size()];
 
 		final Map<Range<Float>, Tag> tagsByRanges = new HashMap<Range<Float>, Tag>();
 		final Map<Float, Range<Float>> rangesByStart = new HashMap<Float, Range<Float>>();
 		final Map<Float, Range<Float>> rangesByEnd = new HashMap<Float, Range<Float>>();
-		for (final Map.Entry<Tag, Range<Float>> entry : phases.entrySet()) {
+		for (final Map.Entry<Tag, Range<Float>> entry : newPhases.entrySet()) {
 			final Range<Float> range = entry.getValue();
 			final Tag tag = entry.getKey();
 			tagsByRanges.put(range, tag);
@@ -54,9 +144,16 @@ public class ExperimentDataCleaner {
 
 		// Store NaN values and offset timestamps
 		Iterator<DataPoint> iterator = points.iterator();
+		int index = -1;
 		while (iterator.hasNext()) {
 			final DataPoint point = iterator.next();
 			final float actualTimestamp = point.getTimestamp();
+			index++;
+
+			if (index % CANCELLATION_CHECK_INTERVAL == 0) {
+				token.throwIfCancelled();
+				progress.report(index, points.size());
+			}
 
 			if (shouldRemovePoint(point)) {
 				// Store omitted point
@@ -69,7 +166,7 @@ public class ExperimentDataCleaner {
 				}
 
 				// Offset point timestamp
-				point.setTimestamp(point.getTimestamp() + overallOffset);
+				newTimestamps[index] = actualTimestamp + overallOffset;
 			}
 
 			if (!shouldRemovePoint(point) || !iterator.hasNext()) {
@@ -80,7 +177,7 @@ public class ExperimentDataCleaner {
 					float start = omitted.getFirst().getTimestamp();
 					float end = iterator.hasNext() ? lastTimestamp : actualTimestamp;
 
-					this.omittedPoints.put(new Range<Float>(start, end), new ArrayList<DataPoint>(omitted));
+					omittedPoints.put(new Range<Float>(start, end), new ArrayList<DataPoint>(omitted));
 
 					omitted.clear();
 				}
@@ -93,7 +190,7 @@ public class ExperimentDataCleaner {
 				// If some phase is empty, remove it
 				if (overallOffset != 0 && rangesByStart.containsKey(actualTimestamp + overallOffset)) {
 					final Range<Float> emptyRange = rangesByStart.get(actualTimestamp + overallOffset);
-					phases.remove(tagsByRanges.get(emptyRange));
+					newPhases.remove(tagsByRanges.get(emptyRange));
 					rangesByStart.remove(emptyRange.getMinimum());
 					rangesByEnd.remove(emptyRange.getMaximum());
 
@@ -125,9 +222,28 @@ public class ExperimentDataCleaner {
 			}
 
 			// Update last timestamp for next read
-			lastTimestamp = point.getTimestamp();
+			lastTimestamp = shouldRemovePoint(point) ? actualTimestamp : newTimestamps[index];
 		}
 
+		token.throwIfCancelled();
+
+		// Apply changes
+		final Iterator<DataPoint> applyIterator = points.iterator();
+		for (int i = 0; applyIterator.hasNext(); i++) {
+			final DataPoint point = applyIterator.next();
+			if (!shouldRemovePoint(point)) {
+				point.setTimestamp(newTimestamps[i]);
+			}
+		}
+		phases.keySet().retainAll(newPhases.keySet());
+		for (final Map.Entry<Tag, Range<Float>> entry : newPhases.entrySet()) {
+			final Range<Float> range = phases.get(entry.getKey());
+			range.setMinimum(entry.getValue().getMinimum());
+			range.setMaximum(entry.getValue().getMaximum());
+		}
+		this.omittedPoints.clear();
+		this.omittedPoints.putAll(omittedPoints);
+
 		// Remove NaN values
 		points.removeIf(ExperimentDataCleaner::shouldRemovePoint);
 	}
@@ -1,58 +1,296 @@
 package code_metier;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 import com.github.servicenow.ds.stats.stl.SeasonalTrendLoess;
 
 /**
- * 
+ * Decomposes series with {@link SeasonalTrendLoess}. Only parameters are kept between calls,
+ * so that one decomposer can decompose several series concurrently.
  * @author Rémi BARDON
  */
 public class ExperimentDataDecomposer {
 
 	/**
-	 * 
+	 * The default number of periods shared by two consecutive windows in chunked mode
+	 * @author Rémi BARDON
+	 */
+	public static final int DEFAULT_OVERLAP_PERIODS = 3;
+
+	/**
+	 * The number of periods at the end of a decomposition which can still change when points are appended,
+	 * because {@code LOESS} neighbourhoods of the last points extend past them
+	 * @author Rémi BARDON
+	 */
+	private static final int UNSTABLE_PERIODS = 3;
+
+	/**
+	 * The maximum number of points decomposed in one shot. {@code 0} disables chunked mode.
+	 * @author Rémi BARDON
+	 */
+	private int windowLength;
+
+	/**
+	 * The number of periods shared by two consecutive windows in chunked mode
 	 * @author Rémi BARDON
 	 */
-	private Map<DataType, List<DataPoint>> points;
+	private int overlapPeriods;
+
+	/**
+	 * Decomposes {@link Window}s in parallel in chunked mode. If empty, they are decomposed on the calling thread.
+	 * @author Rémi BARDON
+	 */
+	private Optional<TaskScheduler> scheduler;
 
 	/**
 	 * A class responsible for decomposing data points into the different {@link DataType}s
 	 * @author Rémi BARDON
 	 */
 	public ExperimentDataDecomposer() {
-		this.points = new HashMap<DataType, List<DataPoint>>();
+		this.windowLength = 0;
+		this.overlapPeriods = DEFAULT_OVERLAP_PERIODS;
+		this.scheduler = Optional.empty();
+	}
+
+	/**
+	 * 
+	 * @param points
+	 * @param period
+	 * @return The {@link Decomposition}, with no decomposed point if {@code points} are not long enough
+	 * @author Rémi BARDON
+	 */
+	public Decomposition decompose(final List<DataPoint> points, final int period) {
+		return this.decompose(points, period, CancellationToken.NONE);
+	}
+
+	/**
+	 * Decomposes a series, checking {@code token} before each {@link Window}.
+	 * A {@link SeasonalTrendLoess} run cannot be interrupted, so cancellation latency is bounded by the time
+	 * needed to decompose one {@link Window} (see {@link #setWindowLength(int)}).
+	 * @param points
+	 * @param period
+	 * @param token
+	 * @return The {@link Decomposition}, with no decomposed point if {@code points} are not long enough
+	 * @throws CancellationException If {@code token} was cancelled. The partial {@link Decomposition} is discarded.
+	 * @author Rémi BARDON
+	 */
+	public Decomposition decompose(final List<DataPoint> points, final int period, final CancellationToken token) {
+		return this.decompose(points, period, token, new ProgressReporter());
 	}
 
 	/**
 	 * 
 	 * @param points
 	 * @param period
+	 * @param token
+	 * @param progress Receives the number of decomposed {@link Window}s and the number of {@link Window}s.
+	 *                 A {@link SeasonalTrendLoess} run doesn't report its own progress, so a single {@link Window}
+	 *                 (see {@link #setWindowLength(int)}) is reported only when done.
+	 *                 Chunked mode is disabled by default, so progress then only goes from {@code 0/1} to {@code 1/1}.
+	 * @return The {@link Decomposition}, with no decomposed point if {@code points} are not long enough
+	 * @throws CancellationException If {@code token} was cancelled. The partial {@link Decomposition} is discarded.
+	 * @see #decompose(List, int, CancellationToken)
 	 * @author Rémi BARDON
 	 */
-	public void decompose(final List<DataPoint> points, final int period) {
-		this.points.clear();
+	public Decomposition decompose(final List<DataPoint> points, final int period, final CancellationToken token, final ProgressReporter progress) {
+		return this.decompose(points, period, token, progress, TaskScheduler.Priority.FOREGROUND, PipelineEvents.Subject.UNKNOWN);
+	}
 
-		final var seasonnality = new ArrayList<DataPoint>();
-		final var trend = new ArrayList<DataPoint>();
-		final var noise = new ArrayList<DataPoint>();
+	/**
+	 * 
+	 * @param points
+	 * @param period
+	 * @param token
+	 * @param progress
+	 * @param priority The {@link TaskScheduler.Priority} of {@link Window}s decomposed by other threads (see {@link #setScheduler(Optional)})
+	 * @param subject Identifies the {@link PipelineEvents.Decompose} event
+	 * @return The {@link Decomposition}, with no decomposed point if {@code points} are not long enough
+	 * @throws CancellationException If {@code token} was cancelled. The partial {@link Decomposition} is discarded.
+	 * @see #decompose(List, int, CancellationToken, ProgressReporter)
+	 * @author Rémi BARDON
+	 */
+	public Decomposition decompose(
+		final List<DataPoint> points,
+		final int period,
+		final CancellationToken token,
+		final ProgressReporter progress,
+		final TaskScheduler.Priority priority,
+		final PipelineEvents.Subject subject
+	) {
+		final var event = new PipelineEvents.Decompose();
+		event.begin();
+		event.pointCount = points.size();
+		event.period = period;
+		event.windowLength = this.windowLength;
+		try {
+			final Decomposition decomposition = this.decomposePoints(points, period, token, progress, priority);
+			event.completed = true;
+			return decomposition;
+		} finally {
+			if (event.shouldCommit()) {
+				event.setSubject(subject);
+				event.commit();
+			}
+		}
+	}
 
-		this.points.put(DataType.RAW, points);
-		this.points.put(DataType.SEASONNALITY, seasonnality);
-		this.points.put(DataType.TREND, trend);
-		this.points.put(DataType.NOISE, noise);
+	/**
+	 * 
+	 * @param points
+	 * @param period
+	 * @param token
+	 * @param progress
+	 * @param priority
+	 * @return
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @see #decompose(List, int, CancellationToken, ProgressReporter, TaskScheduler.Priority, PipelineEvents.Subject)
+	 * @author Rémi BARDON
+	 */
+	private Decomposition decomposePoints(
+		final List<DataPoint> points,
+		final int period,
+		final CancellationToken token,
+		final ProgressReporter progress,
+		final TaskScheduler.Priority priority
+	) {
+		final var decomposition = new Decomposition(points, period);
 
 		// Data series must be at least 2 * periodicity in length
 		// https://github.com/ServiceNow/stl-decomp-4j/blob/62937cb089e13d8194f2b13fe28b86ce43315ee8/stl-decomp-4j/src/main/java/com/github/servicenow/ds/stats/stl/SeasonalTrendLoess.java#L351
 		if (points.size() < 2 * period) {
-			return;
+			return decomposition;
+		}
+
+		final int valueCount = points.size();
+		final Window[] windows = windows(valueCount, period, this.windowLength, this.overlapPeriods);
+
+		decomposition.ensureCapacity(valueCount);
+
+		if (windows.length == 1) {
+			token.throwIfCancelled();
+			progress.report(0, 1);
+			decomposition.getSeasonnality().setPattern(0, windows[0], decomposeWindow(decomposition, windows[0], 0));
+		} else {
+			final var decomposedWindows = new AtomicInteger();
+			// Windows only overlap their direct neighbours, so decomposing even and odd windows
+			// in two passes lets each pass run in parallel without concurrent writes on seams
+			for (int parity = 0; parity < 2; parity++) {
+				final int firstWindow = parity;
+				final int windowCount = (windows.length - firstWindow + 1) / 2;
+				final IntConsumer decomposeWindow = (i) -> {
+					token.throwIfCancelled();
+					final int windowIndex = firstWindow + 2 * i;
+					final float[] pattern = decomposeWindow(decomposition, windows[windowIndex], 0);
+					decomposition.getSeasonnality().setPattern(windowIndex, windows[windowIndex], pattern);
+					progress.report(decomposedWindows.incrementAndGet(), windows.length);
+				};
+
+				// Windows share the pool (and priority) of other tasks, instead of oversubscribing processors
+				if (this.scheduler.isPresent()) {
+					this.scheduler.get().parallelFor(priority, windowCount, decomposeWindow);
+				} else {
+					for (int i = 0; i < windowCount; i++) {
+						decomposeWindow.accept(i);
+					}
+				}
+			}
 		}
 
-		final double[] values = dataPointsValues(points);
+		token.throwIfCancelled();
+		progress.report(windows.length, windows.length);
+		decomposition.setSize(valueCount);
+
+		return decomposition;
+	}
+
+	/**
+	 * Appends points to a decomposed series and updates its decomposition in place.
+	 * Only the trailing region affected by {@code LOESS} windows is decomposed again, and blended with the previous result,
+	 * so that the cost is proportional to the number of new points, not to the length of the series.
+	 * @param decomposition A {@link Decomposition} returned by this decomposer, not read by other threads while appending
+	 * @param newPoints The points to append, after the last decomposed point
+	 * @return The updated {@link Decomposition}, or a new one if {@code decomposition} had no decomposed point
+	 * @author Rémi BARDON
+	 */
+	public Decomposition append(final Decomposition decomposition, final List<DataPoint> newPoints) {
+		// The decomposition copies points shared with their store before appending
+		decomposition.appendPoints(newPoints);
+		final List<DataPoint> points = decomposition.getPoints(DataType.RAW);
+
+		final int decomposedCount = decomposition.size();
+		final int period = decomposition.getPeriod();
+
+		if (decomposedCount == 0) {
+			// If series was too short to decompose, try again with new points
+			return this.decompose(points, period);
+		}
+
+		final int valueCount = points.size();
+
+		// Keep the stable prefix and blend the new tail over its last periods.
+		// Seams already hold a blend of two windows, which cannot be blended again with a new one:
+		// the new seam must only cover points decomposed by one window, going back through windows if needed.
+		final PeriodicSeasonnality seasonnality = decomposition.getSeasonnality();
+		int start = Math.max(0, ((decomposedCount - UNSTABLE_PERIODS * period - this.overlapPeriods * period) / period) * period);
+		int windowIndex = seasonnality.getWindowCount() - 1;
+		Window window = null;
+		while (window == null) {
+			final Window previous = seasonnality.getWindow(windowIndex);
+			// Keep the overlap of chunked windows, so that both ramps of the new seam sum up to 1
+			final int overlap = previous.hasPrevious ? previous.overlap : this.overlapPeriods * period;
+			final int coveredStart = previous.start + (previous.hasPrevious ? previous.overlap : 0);
+			final int coveredEnd = previous.hasNext ? previous.end - previous.overlap : decomposedCount;
+			start = Math.min(start, Math.floorDiv(coveredEnd - overlap, period) * period);
+
+			if (start >= coveredStart) {
+				window = new Window(start, valueCount, overlap, true, false);
+			} else if (!previous.hasPrevious) {
+				// First window, decompose everything again
+				window = new Window(previous.start, valueCount, overlap, false, false);
+			} else {
+				windowIndex--;
+			}
+		}
+
+		decomposition.ensureCapacity(valueCount);
+
+		final float[] pattern = decomposeWindow(decomposition, window, decomposedCount);
+		seasonnality.replaceTail(window, pattern);
+
+		decomposition.setSize(valueCount);
+
+		return decomposition;
+	}
+
+	/**
+	 * Runs {@link SeasonalTrendLoess} on one {@link Window} and blends its results into the {@link Decomposition}'s trend and weights.
+	 * Only copies the {@link Window}'s values, so that the working set stays bounded by the window length.
+	 * @param decomposition The {@link Decomposition} of the whole series
+	 * @param window The part of the series to decompose
+	 * @param existingCount The number of points already decomposed, which results are reused.
+	 *                      Existing values are weighted down on seams instead of being summed up with the new ones.
+	 * @return The {@link Window}'s seasonal pattern, indexed by {@code index % period}
+	 * @author Rémi BARDON
+	 */
+	private static float[] decomposeWindow(final Decomposition decomposition, final Window window, final int existingCount) {
+		final List<DataPoint> points = decomposition.getPoints(DataType.RAW);
+		final double[] values = dataPointsValues(points.subList(window.start, window.end));
+		final float[] trend = decomposition.getTrendValues();
+		final float[] weights = decomposition.getWeights();
+		final int period = decomposition.getPeriod();
+
+		// Reuse robustness weights of already decomposed points:
+		// outliers found by previous runs are replaced by their fitted value
+		for (int i = 0; window.start + i < existingCount; i++) {
+			final int index = window.start + i;
+			final float weight = weights[index];
+			values[i] = weight * values[i] + (1 - weight) * (trend[index] + decomposition.getSeasonnality().get(index));
+		}
 
 		final var builder = new SeasonalTrendLoess.Builder();
 		final var smoother = builder.setPeriodLength(period).setPeriodic().setRobust() // Expecting outliers
@@ -63,17 +301,64 @@ public class ExperimentDataDecomposer {
 		// Get stl decomposed values
 		final double[] stlSeasonal = stl.getSeasonal();
 		final double[] stlTrend = stl.getTrend();
-		final double[] stlResidual = stl.getResidual();
+		final double[] stlWeights = stl.getWeights();
 
-		final int valueCount = points.size();
-		final Iterator<DataPoint> iterator = points.iterator();
+		final double[] patternSums = new double[period];
+		final int[] patternCounts = new int[period];
+
+		for (int i = 0; i < values.length; i++) {
+			final int index = window.start + i;
+			final float weight = window.weight(index);
+			if (index < existingCount) {
+				trend[index] *= 1 - weight;
+				weights[index] *= 1 - weight;
+			}
+			trend[index] += weight * (float) stlTrend[i];
+			weights[index] += weight * (float) stlWeights[i];
+			patternSums[index % period] += stlSeasonal[i];
+			patternCounts[index % period]++;
+		}
 
-		for (int i = 0; i < valueCount; i++) {
-			final float timestamp = iterator.next().getTimestamp();
-			seasonnality.add(new DataPoint(timestamp, (float) stlSeasonal[i]));
-			trend.add(new DataPoint(timestamp, (float) stlTrend[i]));
-			noise.add(new DataPoint(timestamp, (float) stlResidual[i]));
+		// Periodic seasonnality repeats every period, averaging only absorbs rounding errors
+		final float[] pattern = new float[period];
+		for (int phase = 0; phase < period; phase++) {
+			pattern[phase] = (float) (patternSums[phase] / patternCounts[phase]);
 		}
+
+		return pattern;
+	}
+
+	/**
+	 * Splits a series into overlapping {@link Window}s.
+	 * Window starts are aligned on {@code period} so that seasonal patterns stay in phase.
+	 * The last {@link Window} is extended to the end of the series rather than being too short to decompose.
+	 * @param valueCount The length of the series
+	 * @param period
+	 * @param windowLength The maximum length of a {@link Window}, or {@code 0} to use only one {@link Window}
+	 * @param overlapPeriods The number of periods shared by two consecutive {@link Window}s
+	 * @return The {@link Window}s covering the whole series
+	 * @author Rémi BARDON
+	 */
+	private static Window[] windows(final int valueCount, final int period, final int windowLength, final int overlapPeriods) {
+		final int overlap = overlapPeriods * period;
+		// Round up to a multiple of the period, and make sure a window never overlaps the one after its neighbour
+		final int length = Math.max(((windowLength + period - 1) / period) * period, Math.max(2 * overlap, 2 * period));
+		final int stride = length - overlap;
+
+		if (windowLength <= 0 || overlap <= 0 || valueCount <= length) {
+			return new Window[] { new Window(0, valueCount, 0, false, false) };
+		}
+
+		final int windowCount = Math.max(1, (valueCount - overlap) / stride);
+		final Window[] windows = new Window[windowCount];
+		for (int i = 0; i < windowCount; i++) {
+			final int start = i * stride;
+			final boolean isLast = i == windowCount - 1;
+			final int end = isLast ? valueCount : start + length;
+			windows[i] = new Window(start, end, overlap, i > 0, !isLast);
+		}
+
+		return windows;
 	}
 
 	/**
@@ -94,22 +379,118 @@ public class ExperimentDataDecomposer {
 	}
 
 	/**
-	 * 
+	 * A description of the decomposition parameters, changing whenever results would change for the same input
 	 * @return
 	 * @author Rémi BARDON
 	 */
-	public Map<DataType, List<DataPoint>> getAllPoints() {
-		return this.points;
+	public String getParametersDescription() {
+		return "stl-periodic-robust;window=" + this.windowLength + ";overlap=" + this.overlapPeriods;
 	}
 
 	/**
 	 * 
-	 * @param type
-	 * @return
+	 * @return The maximum number of points decomposed in one shot, or {@code 0} if chunked mode is disabled
+	 * @author Rémi BARDON
+	 */
+	public int getWindowLength() {
+		return this.windowLength;
+	}
+
+	/**
+	 * Enables chunked mode: series longer than {@code windowLength} are decomposed in overlapping windows,
+	 * in parallel (see {@link #setScheduler(Optional)}), and trend/seasonnality are blended linearly where windows overlap.
+	 * Progress is reported once per window, so without chunked mode a decomposition only reports its start and its end.
+	 * @param windowLength The maximum number of points decomposed in one shot, or {@code 0} to disable chunked mode (default)
+	 * @author Rémi BARDON
+	 */
+	public void setWindowLength(final int windowLength) {
+		this.windowLength = Math.max(0, windowLength);
+	}
+
+	/**
+	 * Sets the {@link TaskScheduler} decomposing windows in parallel in chunked mode. Default is none (calling thread only)
+	 * @param scheduler An {@link Optional} {@link TaskScheduler}
+	 * @author Rémi BARDON
+	 */
+	public void setScheduler(final Optional<TaskScheduler> scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Sets the number of periods shared by two consecutive windows in chunked mode. Default is {@link #DEFAULT_OVERLAP_PERIODS}
+	 * @param overlapPeriods
 	 * @author Rémi BARDON
 	 */
-	public List<DataPoint> getPoints(final DataType type) {
-		return this.getAllPoints().get(type);
+	public void setOverlapPeriods(final int overlapPeriods) {
+		this.overlapPeriods = Math.max(1, overlapPeriods);
+	}
+
+	/**
+	 * A part of a series decomposed in one shot
+	 * @author Rémi BARDON
+	 */
+	static final class Window {
+
+		/**
+		 * The index of the first point (inclusive)
+		 * @author Rémi BARDON
+		 */
+		final int start;
+		/**
+		 * The index of the last point (exclusive)
+		 * @author Rémi BARDON
+		 */
+		final int end;
+		/**
+		 * The number of points shared with each neighbour
+		 * @author Rémi BARDON
+		 */
+		final int overlap;
+		/**
+		 * Whether or not the first {@link #overlap} points are shared with a previous {@link Window}
+		 * @author Rémi BARDON
+		 */
+		final boolean hasPrevious;
+		/**
+		 * Whether or not the last {@link #overlap} points are shared with a next {@link Window}
+		 * @author Rémi BARDON
+		 */
+		final boolean hasNext;
+
+		/**
+		 * 
+		 * @param start
+		 * @param end
+		 * @param overlap
+		 * @param hasPrevious
+		 * @param hasNext
+		 * @author Rémi BARDON
+		 */
+		Window(final int start, final int end, final int overlap, final boolean hasPrevious, final boolean hasNext) {
+			this.start = start;
+			this.end = end;
+			this.overlap = overlap;
+			this.hasPrevious = hasPrevious;
+			this.hasNext = hasNext;
+		}
+
+		/**
+		 * The blending weight of this {@link Window}'s result at a given index.
+		 * Ramps linearly on seams, so that the weights of two neighbours always sum up to {@code 1}.
+		 * @param index An index in the whole series
+		 * @return A weight between {@code 0} and {@code 1}
+		 * @author Rémi BARDON
+		 */
+		float weight(final int index) {
+			if (this.hasPrevious && index < this.start + this.overlap) {
+				return (index - this.start + 0.5f) / this.overlap;
+			}
+			if (this.hasNext && index >= this.end - this.overlap) {
+				return (this.end - index - 0.5f) / this.overlap;
+			}
+			return 1f;
+		}
+
 	}
 
 }
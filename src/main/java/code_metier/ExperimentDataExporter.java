@@ -0,0 +1,403 @@
+package code_metier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class responsible for writing series to files, as text (same format as {@link ExperimentDataLoader} reads)
+ * or as compact little-endian binary.
+ * Files are written through a direct buffer and a {@link FileChannel}, numbers are formatted without allocations.
+ * @author Rémi BARDON
+ */
+public final class ExperimentDataExporter {
+
+	/**
+	 * The magic number at the start of binary files ({@code "LRDX"})
+	 * @author Rémi BARDON
+	 */
+	static final int MAGIC = 0x4C524458;
+	/**
+	 * The version of the binary format
+	 * @author Rémi BARDON
+	 */
+	static final int VERSION = 1;
+	/**
+	 * The default size of the write buffer
+	 * @author Rémi BARDON
+	 */
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+	/**
+	 * The longest formatted number (sign, 19 digits, comma and 18 decimals, or {@link Float#toString(float)})
+	 * @author Rémi BARDON
+	 */
+	private static final int MAX_NUMBER_LENGTH = 48;
+	/**
+	 * Powers of ten, as {@code long}s
+	 * @author Rémi BARDON
+	 */
+	private static final long[] POWERS_OF_TEN = new long[19];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/**
+	 * The supported file formats
+	 * @author Rémi BARDON
+	 */
+	public enum Format {
+
+		/**
+		 * Tab separated values with French decimal commas, readable by {@link ExperimentDataLoader}
+		 * @author Rémi BARDON
+		 */
+		TEXT,
+
+		/**
+		 * Little-endian binary: a header ({@link ExperimentDataExporter#MAGIC}, version, row count, column count, phase count,
+		 * column names, phases as name, start and end), then the timestamps and every column as {@code float}s
+		 * @author Rémi BARDON
+		 */
+		BINARY
+
+	}
+
+	/**
+	 * The size of the write buffer
+	 * @author Rémi BARDON
+	 */
+	private final int bufferSize;
+
+	/**
+	 * A class responsible for writing series to files
+	 * @author Rémi BARDON
+	 */
+	public ExperimentDataExporter() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * A class responsible for writing series to files
+	 * @param bufferSize The size of the write buffer, in bytes
+	 * @author Rémi BARDON
+	 */
+	public ExperimentDataExporter(final int bufferSize) {
+		this.bufferSize = Math.max(bufferSize, 1_024);
+	}
+
+	/**
+	 * Writes columns aligned on one time axis
+	 * @param path The file to create (or overwrite)
+	 * @param format
+	 * @param timestamps The time axis
+	 * @param columns The values of every column, by name, aligned on {@code timestamps}
+	 * @param phases The phases to mark
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	public void write(
+		final Path path,
+		final Format format,
+		final FloatBuffer timestamps,
+		final Map<String, FloatBuffer> columns,
+		final Map<Tag, Range<Float>> phases
+	) throws IOException {
+		switch (format) {
+		case TEXT:
+			this.writeText(path, timestamps, columns, phases);
+			break;
+		case BINARY:
+			this.writeBinary(path, timestamps, columns, phases);
+			break;
+		default:
+			throw new IllegalArgumentException(format.toString());
+		}
+	}
+
+	/**
+	 * Writes columns as tab separated values with French decimal commas. A {@link Tag} is written on the first row of its phase.
+	 * @param path The file to create (or overwrite)
+	 * @param timestamps The time axis
+	 * @param columns The values of every column, by name, aligned on {@code timestamps}
+	 * @param phases The phases to mark
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	public void writeText(
+		final Path path,
+		final FloatBuffer timestamps,
+		final Map<String, FloatBuffer> columns,
+		final Map<Tag, Range<Float>> phases
+	) throws IOException {
+		final int rowCount = timestamps.remaining();
+		final List<FloatBuffer> values = new ArrayList<FloatBuffer>(columns.values());
+
+		// Phases by start, to mark them in one pass
+		final var sortedPhases = new ArrayList<Map.Entry<Tag, Range<Float>>>(phases.entrySet());
+		sortedPhases.sort(Comparator.comparing((phase) -> phase.getValue().getMinimum()));
+
+		try (final FileChannel channel = open(path)) {
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(this.bufferSize);
+
+			// Header
+			final var header = new StringBuilder("Temps");
+			for (final String name : columns.keySet()) {
+				header.append('\t').append(name);
+			}
+			header.append("\tTag\n");
+			putBytes(channel, buffer, header.toString().getBytes(StandardCharsets.UTF_8));
+
+			int phaseIndex = 0;
+			for (int row = 0; row < rowCount; row++) {
+				final float timestamp = timestamps.get(timestamps.position() + row);
+				ensureRemaining(channel, buffer, MAX_NUMBER_LENGTH * (values.size() + 1) + 2);
+
+				putNumber(buffer, timestamp);
+				for (final FloatBuffer column : values) {
+					buffer.put((byte) '\t');
+					putNumber(buffer, column.get(column.position() + row));
+				}
+				buffer.put((byte) '\t');
+
+				// Skip phases ending before this row, then mark the phase starting here
+				while (phaseIndex < sortedPhases.size() && sortedPhases.get(phaseIndex).getValue().getMaximum() < timestamp) {
+					phaseIndex++;
+				}
+				if (phaseIndex < sortedPhases.size() && sortedPhases.get(phaseIndex).getValue().getMinimum() <= timestamp) {
+					putBytes(channel, buffer, ("#* " + sortedPhases.get(phaseIndex).getKey()).getBytes(StandardCharsets.UTF_8));
+					phaseIndex++;
+				}
+
+				ensureRemaining(channel, buffer, 1);
+				buffer.put((byte) '\n');
+			}
+
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Writes columns as little-endian binary
+	 * @param path The file to create (or overwrite)
+	 * @param timestamps The time axis
+	 * @param columns The values of every column, by name, aligned on {@code timestamps}
+	 * @param phases The phases to store
+	 * @throws IOException
+	 * @see Format#BINARY
+	 * @author Rémi BARDON
+	 */
+	public void writeBinary(
+		final Path path,
+		final FloatBuffer timestamps,
+		final Map<String, FloatBuffer> columns,
+		final Map<Tag, Range<Float>> phases
+	) throws IOException {
+		try (final FileChannel channel = open(path)) {
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(this.bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(timestamps.remaining());
+			buffer.putInt(columns.size());
+			buffer.putInt(phases.size());
+			for (final String name : columns.keySet()) {
+				putString(channel, buffer, name);
+			}
+			for (final Map.Entry<Tag, Range<Float>> phase : phases.entrySet()) {
+				putString(channel, buffer, phase.getKey().toString());
+				ensureRemaining(channel, buffer, 2 * Float.BYTES);
+				buffer.putFloat(phase.getValue().getMinimum());
+				buffer.putFloat(phase.getValue().getMaximum());
+			}
+
+			putFloats(channel, buffer, timestamps);
+			for (final FloatBuffer column : columns.values()) {
+				putFloats(channel, buffer, column);
+			}
+
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @return A {@link FileChannel} writing {@code path} from the start
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	private static FileChannel open(final Path path) throws IOException {
+		return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Writes buffered bytes to the channel, then clears the buffer
+	 * @param channel
+	 * @param buffer
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Flushes the buffer if it can't hold {@code count} more bytes
+	 * @param channel
+	 * @param buffer
+	 * @param count
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	private static void ensureRemaining(final FileChannel channel, final ByteBuffer buffer, final int count) throws IOException {
+		if (buffer.remaining() < count) {
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Writes bytes, flushing as many times as needed
+	 * @param channel
+	 * @param buffer
+	 * @param bytes
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	private static void putBytes(final FileChannel channel, final ByteBuffer buffer, final byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining()) {
+				flush(channel, buffer);
+			}
+			final int count = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * Writes a length-prefixed {@code UTF-8} string
+	 * @param channel
+	 * @param buffer
+	 * @param string
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	private static void putString(final FileChannel channel, final ByteBuffer buffer, final String string) throws IOException {
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		ensureRemaining(channel, buffer, Integer.BYTES);
+		buffer.putInt(bytes.length);
+		putBytes(channel, buffer, bytes);
+	}
+
+	/**
+	 * Writes the remaining {@code float}s of a buffer in bulk, without moving its position
+	 * @param channel
+	 * @param buffer
+	 * @param floats
+	 * @throws IOException
+	 * @author Rémi BARDON
+	 */
+	private static void putFloats(final FileChannel channel, final ByteBuffer buffer, final FloatBuffer floats) throws IOException {
+		final FloatBuffer source = floats.duplicate();
+		while (source.hasRemaining()) {
+			ensureRemaining(channel, buffer, Float.BYTES);
+			final int count = Math.min(buffer.remaining() / Float.BYTES, source.remaining());
+			final FloatBuffer chunk = source.duplicate();
+			chunk.limit(chunk.position() + count);
+			buffer.asFloatBuffer().put(chunk);
+			buffer.position(buffer.position() + count * Float.BYTES);
+			source.position(source.position() + count);
+		}
+	}
+
+	/**
+	 * Formats a number with a French decimal comma, using the fewest significant digits (6 to 9)
+	 * which are parsed back to the same {@code float}
+	 * @param buffer A buffer with at least {@link #MAX_NUMBER_LENGTH} bytes remaining
+	 * @param value
+	 * @author Rémi BARDON
+	 */
+	static void putNumber(final ByteBuffer buffer, final float value) {
+		if (Float.isNaN(value)) {
+			buffer.put((byte) 'N').put((byte) 'a').put((byte) 'N');
+			return;
+		}
+		if (value == 0) {
+			buffer.put((byte) '0');
+			return;
+		}
+
+		final double absolute = Math.abs((double) value);
+		if (Float.isInfinite(value) || absolute >= 1e18 || absolute < 1e-9) {
+			// Rare values, not worth hand-rolling
+			for (final byte b : Float.toString(value).replace('.', ',').getBytes(StandardCharsets.US_ASCII)) {
+				buffer.put(b);
+			}
+			return;
+		}
+
+		if (value < 0) {
+			buffer.put((byte) '-');
+		}
+
+		final int exponent = (int) Math.floor(Math.log10(absolute));
+		int decimals = 0;
+		long scaled = 0;
+		for (int digits = 6; digits <= 9; digits++) {
+			decimals = Math.max(0, Math.min(digits - 1 - exponent, 18));
+			scaled = Math.round(absolute * POWERS_OF_TEN[decimals]);
+			if ((float) (scaled / (double) POWERS_OF_TEN[decimals]) == (float) absolute) {
+				break;
+			}
+		}
+
+		// Trim trailing zeros
+		while (decimals > 0 && scaled % 10 == 0) {
+			scaled /= 10;
+			decimals--;
+		}
+
+		putDigits(buffer, scaled / POWERS_OF_TEN[decimals], 1);
+		if (decimals > 0) {
+			buffer.put((byte) ',');
+			putDigits(buffer, scaled % POWERS_OF_TEN[decimals], decimals);
+		}
+	}
+
+	/**
+	 * Writes the decimal digits of a positive number
+	 * @param buffer
+	 * @param number
+	 * @param minimumDigits The number of digits to write at least, padding with leading zeros
+	 * @author Rémi BARDON
+	 */
+	private static void putDigits(final ByteBuffer buffer, final long number, final int minimumDigits) {
+		int digits = 1;
+		while (digits < POWERS_OF_TEN.length && number >= POWERS_OF_TEN[digits]) {
+			digits++;
+		}
+		digits = Math.max(digits, minimumDigits);
+
+		for (int i = digits - 1; i >= 0; i--) {
+			buffer.put((byte) ('0' + (number / POWERS_OF_TEN[i]) % 10));
+		}
+	}
+
+}
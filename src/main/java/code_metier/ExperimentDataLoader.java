@@ -1,20 +1,23 @@
 package code_metier;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.security.InvalidKeyException;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import com.opencsv.CSVParser;
@@ -49,6 +52,11 @@ public final class ExperimentDataLoader {
 	 * @author Rémi BARDON
 	 */
 	private static Pattern TAG_PREFIX = Pattern.compile("^#\\* ");
+	/**
+	 * The number of rows read between two checks of the {@link CancellationToken}, and two progress reports
+	 * @author Rémi BARDON
+	 */
+	private static int CANCELLATION_CHECK_INTERVAL = 1_024;
 
 	/**
 	 * 
@@ -61,10 +69,20 @@ public final class ExperimentDataLoader {
 	 */
 	private List<Measure> measures;
 	/**
-	 * 
+	 * The {@link ExperimentDataStore} of every {@link Measure}. A cleaned copy replaces the loaded one (see {@link #setCleanedStore(Measure, ExperimentDataStore)}).
 	 * @author Rémi BARDON
 	 */
 	private Map<Measure, ExperimentDataStore> stores;
+	/**
+	 * The number of data rows loaded
+	 * @author Rémi BARDON
+	 */
+	private int rowCount;
+	/**
+	 * Records parsing times. Disabled by default.
+	 * @author Rémi BARDON
+	 */
+	private PipelineMetrics metrics;
 
 	/**
 	 * A class responsible for loading data points from a {@code CSV} file
@@ -73,7 +91,9 @@ public final class ExperimentDataLoader {
 	public ExperimentDataLoader() {
 		this.headingComment = "";
 		this.measures = new ArrayList<Measure>();
-		this.stores = new HashMap<Measure, ExperimentDataStore>();
+		this.stores = new ConcurrentHashMap<Measure, ExperimentDataStore>();
+		this.rowCount = 0;
+		this.metrics = new PipelineMetrics();
 	}
 
 	/**
@@ -85,21 +105,115 @@ public final class ExperimentDataLoader {
 	 * @author Rémi BARDON
 	 */
 	public void load(final File file) throws IOException, CsvValidationException, ParseException {
+		this.load(file, CancellationToken.NONE);
+	}
+
+	/**
+	 * Loads a file into a new state, which replaces the current one at once when loading succeeds.
+	 * If loading fails or is cancelled, the current state is kept.
+	 * @param file The {@link File} to load and parse
+	 * @param token Checked every {@link #CANCELLATION_CHECK_INTERVAL} rows
+	 * @throws IOException
+	 * @throws CsvValidationException
+	 * @throws ParseException
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @author Rémi BARDON
+	 */
+	public void load(final File file, final CancellationToken token) throws IOException, CsvValidationException, ParseException {
+		this.load(file, token, new ProgressReporter());
+	}
+
+	/**
+	 * 
+	 * @param file The {@link File} to load and parse
+	 * @param token Checked every {@link #CANCELLATION_CHECK_INTERVAL} rows
+	 * @param progress Receives the number of bytes read and the size of {@code file}, every {@link #CANCELLATION_CHECK_INTERVAL} rows
+	 * @throws IOException
+	 * @throws CsvValidationException
+	 * @throws ParseException
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @see #load(File, CancellationToken)
+	 * @author Rémi BARDON
+	 */
+	public void load(final File file, final CancellationToken token, final ProgressReporter progress) throws IOException, CsvValidationException, ParseException {
+		final var event = new PipelineEvents.Load();
+		event.begin();
+		try {
+			final var loaded = this.read(file, token, progress);
+			event.rowCount = loaded.rowCount;
+			event.measureCount = loaded.measures.size();
+			event.completed = true;
+		} finally {
+			if (event.shouldCommit()) {
+				event.file = file.getAbsolutePath();
+				event.size = file.length();
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param file
+	 * @param token
+	 * @param progress
+	 * @return The loader holding the new state, now shared by this loader
+	 * @throws IOException
+	 * @throws CsvValidationException
+	 * @throws ParseException
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @see #load(File, CancellationToken, ProgressReporter)
+	 * @author Rémi BARDON
+	 */
+	private ExperimentDataLoader read(final File file, final CancellationToken token, final ProgressReporter progress) throws IOException, CsvValidationException, ParseException {
+		final var loaded = new ExperimentDataLoader();
 		CSVReader csvReader = null;
 
 		try {
 			// Create CSV Reader
-			final FileReader fileReader = new FileReader(file, Charset.forName("UTF-8"));
+			final FileInputStream fileStream = new FileInputStream(file);
+			final InputStreamReader fileReader = new InputStreamReader(fileStream, Charset.forName("UTF-8"));
 			final CSVParser parser = new CSVParserBuilder().withSeparator(DELIMITER).build();
 			csvReader = new CSVReaderBuilder(fileReader).withCSVParser(parser).build();
 
-			this.readHeader(file, csvReader);
-			this.readDataPoints(file, csvReader);
+			loaded.readHeader(file, csvReader);
+			// The channel position is ahead of parsed rows by the reader buffer at most
+			final long fileSize = file.length();
+			final var sample = this.metrics.start(PipelineMetrics.Stage.PARSE);
+			loaded.readDataPoints(file, csvReader, token, () -> {
+				try {
+					progress.report(fileStream.getChannel().position(), fileSize);
+				} catch (IOException e) {
+					// Progress is informative only
+				}
+			});
+			sample.stop(loaded.rowCount);
+			progress.report(fileSize, fileSize);
 		} finally {
 			if (csvReader != null) {
 				csvReader.close();
 			}
 		}
+
+		this.replaceState(loaded, token);
+		return loaded;
+	}
+
+	/**
+	 * Replaces the state of this loader by the one of another loader, unless loading was cancelled in the meantime.
+	 * Both loaders then share the same {@link ExperimentDataStore}s.
+	 * @param loaded
+	 * @param token
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @author Rémi BARDON
+	 */
+	synchronized void replaceState(final ExperimentDataLoader loaded, final CancellationToken token) throws CancellationException {
+		token.throwIfCancelled();
+
+		this.headingComment = loaded.headingComment;
+		this.measures = loaded.measures;
+		this.stores = loaded.stores;
+		this.rowCount = loaded.rowCount;
 	}
 
 	/**
@@ -116,10 +230,11 @@ public final class ExperimentDataLoader {
 
 		String[] split;
 
-		// Loop until we meet a line starting with `"0\t"` for the first time
+		// Loop until we meet a line starting with a timestamp for the first time,
+		// which isn't always 0 (in exports of a phase for example)
 		// Note: We use `.peek()` in the condition to avoid moving cursor after first
 		// line of data
-		while (((split = csvReader.peek()) != null) && !split[0].equals("0")) {
+		while (((split = csvReader.peek()) != null) && !isTimestamp(split[0])) {
 			// Read line again running validations and moving cursor in file
 			split = csvReader.readNext();
 
@@ -149,25 +264,52 @@ public final class ExperimentDataLoader {
 		}
 	}
 
+	/**
+	 * 
+	 * @param cell The first cell of a line
+	 * @return {@code true} if {@code cell} is a number, so that the line holds data points
+	 * @author Rémi BARDON
+	 */
+	private static boolean isTimestamp(final String cell) {
+		final var position = new ParsePosition(0);
+		FORMAT.parse(cell, position);
+		return !cell.isEmpty() && position.getIndex() == cell.length();
+	}
+
 	/**
 	 * 
 	 * @param file
 	 * @param csvReader
+	 * @param token Checked every {@link #CANCELLATION_CHECK_INTERVAL} rows
+	 * @param reportProgress Called every {@link #CANCELLATION_CHECK_INTERVAL} rows
 	 * @throws CsvValidationException
 	 * @throws IOException
 	 * @throws ParseException
+	 * @throws CancellationException If {@code token} was cancelled
 	 * @author Rémi BARDON
 	 */
-	private void readDataPoints(final File file, final CSVReader csvReader) throws CsvValidationException, IOException, ParseException {
+	private void readDataPoints(final File file, final CSVReader csvReader, final CancellationToken token, final Runnable reportProgress) throws CsvValidationException, IOException, ParseException {
 		this.stores.clear();
 		Tag actualTag = Tag.PREPARATION;
 		for (final Measure measure : this.measures) {
 			final var store = new ExperimentDataStore();
 			store.getPhases().put(actualTag, new Range<Float>(0f, 0f));
+			store.getTagQuantileSketches().put(actualTag, new QuantileSketch());
 			this.stores.put(measure, store);
 		}
 
+		// Sketches of the current phase, by measure index, to avoid map lookups for every value
+		final QuantileSketch[] measureSketches = new QuantileSketch[this.measures.size()];
+		final QuantileSketch[] tagSketches = new QuantileSketch[this.measures.size()];
+		for (int i = 0; i < this.measures.size(); i++) {
+			final var store = this.stores.get(this.measures.get(i));
+			measureSketches[i] = store.getQuantileSketch(Optional.empty());
+			tagSketches[i] = store.getTagQuantileSketches().get(actualTag);
+		}
+
 		final int measureCount = this.measures.size();
+		this.rowCount = 0;
+
 		final int measuresIndex = 1;
 		final int tagIndex = measuresIndex + measureCount;
 
@@ -175,6 +317,11 @@ public final class ExperimentDataLoader {
 
 		String[] split = null;
 		while ((split = csvReader.readNext()) != null) {
+			if (this.rowCount % CANCELLATION_CHECK_INTERVAL == 0) {
+				token.throwIfCancelled();
+				reportProgress.run();
+			}
+
 			// Skip line if empty
 			if (split[0].isEmpty()) {
 				continue;
@@ -189,19 +336,24 @@ public final class ExperimentDataLoader {
 					// If first line has a tag, remove default preparation tag
 					this.stores.values().forEach((store) -> {
 						store.getPhases().clear();
+						store.getTagQuantileSketches().clear();
 					});
 				}
 
-				actualTag = new Tag(TAG_PREFIX.matcher(split[6]).replaceFirst(""));
+				actualTag = new Tag(TAG_PREFIX.matcher(split[tagIndex]).replaceFirst(""));
 
-				for (final var store: this.stores.values()) {
+				for (int i = 0; i < measureCount; i++) {
+					final var store = this.stores.get(this.measures.get(i));
 					store.getPhases().put(actualTag, new Range<Float>(timestamp, timestamp));
+					tagSketches[i] = store.getTagQuantileSketches().computeIfAbsent(actualTag, (tag) -> new QuantileSketch());
 				}
 			}
 
 			// Parse measures data and store it
 			for (int i = 0; i < measureCount; i++) {
 				final Float value = FORMAT.parse(split[i + measuresIndex]).floatValue();
+				measureSketches[i].add(value);
+				tagSketches[i].add(value);
 				final DataPoint newPoint = new DataPoint(timestamp, value);
 				final Measure measure = this.measures.get(i);
 
@@ -218,6 +370,18 @@ public final class ExperimentDataLoader {
 			}
 
 			validLinesRead++;
+			this.rowCount++;
+		}
+
+		for (final var store: this.stores.values()) {
+			store.updateSummaryIndex();
+			store.updatePyramid();
+
+			// Compress sketches once, so that reading them doesn't need to
+			store.getQuantileSketch(Optional.empty()).compress();
+			for (final QuantileSketch sketch : store.getTagQuantileSketches().values()) {
+				sketch.compress();
+			}
 		}
 	}
 
@@ -230,6 +394,24 @@ public final class ExperimentDataLoader {
 		return this.headingComment;
 	}
 
+	/**
+	 * 
+	 * @return The number of data rows loaded
+	 * @author Rémi BARDON
+	 */
+	public int getRowCount() {
+		return this.rowCount;
+	}
+
+	/**
+	 * Sets where parsing times are recorded
+	 * @param metrics
+	 * @author Rémi BARDON
+	 */
+	public void setMetrics(final PipelineMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	/**
 	 * 
 	 * @return
@@ -308,6 +490,83 @@ public final class ExperimentDataLoader {
 		return this.stores.get(measure);
 	}
 
+	/**
+	 * 
+	 * @param measures
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+	 * @return <ul>
+	 *     <li>All rows if given {@link Optional}<{@link Tag}> is {@code empty}</li>
+	 *     <li>No rows if the first {@link Measure} doesn't have the given {@link Tag}</li>
+	 *     <li>Otherwise, the rows corresponding to given {@link Tag} (in cleaned phases for cleaned {@link Measure}s)</li>
+	 * </ul>
+	 * @throws InvalidKeyException If one of the given {@link Measure}s doesn't exist
+	 * @see ExperimentFrame
+	 * @author Rémi BARDON
+	 */
+	public ExperimentFrame getFrame(final List<Measure> measures, final Optional<Tag> optionalTag) throws InvalidKeyException {
+		final var points = new ArrayList<List<DataPoint>>(measures.size());
+		for (final Measure measure : measures) {
+			final var store = this.getStore(measure);
+			if (optionalTag.isEmpty()) {
+				points.add(store.getDataPoints());
+			} else if (!store.getPhases().containsKey(optionalTag.get())) {
+				points.add(new ArrayList<DataPoint>());
+			} else {
+				points.add(pointsIn(store, store.getPhases().get(optionalTag.get())));
+			}
+		}
+
+		return ExperimentFrame.of(measures, points);
+	}
+
+	/**
+	 * 
+	 * @param measures
+	 * @param range A time window (inclusive), on the time axis of every {@link Measure} (shifted by cleaning for cleaned ones)
+	 * @return The rows which timestamp is in {@code range}
+	 * @throws InvalidKeyException If one of the given {@link Measure}s doesn't exist
+	 * @see ExperimentFrame
+	 * @author Rémi BARDON
+	 */
+	public ExperimentFrame getFrame(final List<Measure> measures, final Range<Float> range) throws InvalidKeyException {
+		final var points = new ArrayList<List<DataPoint>>(measures.size());
+		for (final Measure measure : measures) {
+			points.add(pointsIn(this.getStore(measure), range));
+		}
+
+		return ExperimentFrame.of(measures, points);
+	}
+
+	/**
+	 * Publishes the cleaned copy of the {@link ExperimentDataStore} of a {@link Measure} in place of the loaded one.
+	 * The loaded store is released once no one uses it.
+	 * @param measure
+	 * @param store A cleaned copy of the loaded {@link ExperimentDataStore}, see {@link ExperimentDataStore#copy()}
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @author Rémi BARDON
+	 */
+	void setCleanedStore(final Measure measure, final ExperimentDataStore store) throws InvalidKeyException {
+		if (!this.stores.containsKey(measure)) {
+			throw new InvalidKeyException();
+		}
+
+		this.stores.put(measure, store);
+	}
+
+	/**
+	 * 
+	 * @param store
+	 * @param range A time window (inclusive)
+	 * @return A view of the {@link DataPoint}s of {@code store} which timestamp is in {@code range}
+	 * @author Rémi BARDON
+	 */
+	private static List<DataPoint> pointsIn(final ExperimentDataStore store, final Range<Float> range) {
+		final var index = store.getSummaryIndex();
+		final int from = index.indexAfter(range.getMinimum(), false);
+		final int to = Math.max(from, index.indexAfter(range.getMaximum(), true));
+		return store.getDataPoints().subList(from, to);
+	}
+
 	/**
 	 * 
 	 * @param measure
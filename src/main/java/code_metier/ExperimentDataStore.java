@@ -1,6 +1,7 @@
 package code_metier;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +23,43 @@ public class ExperimentDataStore {
 	 * @author Rémi BARDON
 	 */
 	private Map<Tag, Range<Float>> phases;
+	/**
+	 * The {@link SummaryIndex} of {@link #dataPoints}, built by {@link #updateSummaryIndex()}
+	 * @author Rémi BARDON
+	 */
+	private SummaryIndex summaryIndex;
+	/**
+	 * The {@link MinMaxPyramid} of {@link #dataPoints}, built by {@link #updatePyramid()}
+	 * @author Rémi BARDON
+	 */
+	private MinMaxPyramid pyramid;
+	/**
+	 * The {@link QuantileSketch} of all {@link DataPoint}s, built while loading
+	 * @author Rémi BARDON
+	 */
+	private QuantileSketch quantileSketch;
+	/**
+	 * The {@link QuantileSketch} of {@link DataPoint}s in every phase, built while loading
+	 * @author Rémi BARDON
+	 */
+	private Map<Tag, QuantileSketch> tagQuantileSketches;
+	/**
+	 * Whether {@link #dataPoints} were cleaned, so that they are never cleaned twice
+	 * @author Rémi BARDON
+	 */
+	private boolean isCleaned;
+	/**
+	 * The points removed by cleaning, by omitted time range
+	 * @author Rémi BARDON
+	 */
+	private Map<Range<Float>, List<DataPoint>> omittedPoints;
+
+	/**
+	 * The approximate number of bytes used by a {@link DataPoint} in a {@link List}:
+	 * the object, its boxed value and the reference to it
+	 * @author Rémi BARDON
+	 */
+	static final long DATA_POINT_SIZE = 48;
 
 	/**
 	 * 
@@ -30,6 +68,34 @@ public class ExperimentDataStore {
 	public ExperimentDataStore() {
 		this.dataPoints = new ArrayList<DataPoint>();
 		this.phases = new LinkedHashMap<Tag, Range<Float>>();
+		this.summaryIndex = SummaryIndex.of(this.dataPoints, this.phases);
+		this.pyramid = MinMaxPyramid.of(this.dataPoints);
+		this.quantileSketch = new QuantileSketch();
+		this.tagQuantileSketches = new LinkedHashMap<Tag, QuantileSketch>();
+		this.isCleaned = false;
+		this.omittedPoints = new LinkedHashMap<Range<Float>, List<DataPoint>>();
+	}
+
+	/**
+	 * A copy to clean, so that {@link DataPoint}s and phases handed out by this store never change.
+	 * {@link QuantileSketch}es describe loaded values, so they are shared.
+	 * Indexes must be built again with {@link #updateSummaryIndex()} and {@link #updatePyramid()}.
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	ExperimentDataStore copy() {
+		final var copy = new ExperimentDataStore();
+		final var points = new ArrayList<DataPoint>(this.dataPoints.size());
+		for (final DataPoint point : this.dataPoints) {
+			points.add(new DataPoint(point.getTimestamp(), point.getValue()));
+		}
+		copy.dataPoints = points;
+		for (final var phase : this.phases.entrySet()) {
+			copy.phases.put(phase.getKey(), new Range<Float>(phase.getValue().getMinimum(), phase.getValue().getMaximum()));
+		}
+		copy.quantileSketch = this.quantileSketch;
+		copy.tagQuantileSketches = this.tagQuantileSketches;
+		return copy;
 	}
 
 	/**
@@ -92,4 +158,138 @@ public class ExperimentDataStore {
 		return this.phases;
 	}
 
+	/**
+	 * Builds the {@link SummaryIndex} of {@link DataPoint}s again.
+	 * Must be called after modifying {@link #getDataPoints()} or {@link #getPhases()} (after loading or cleaning for example).
+	 * @author Rémi BARDON
+	 */
+	public void updateSummaryIndex() {
+		this.summaryIndex = SummaryIndex.of(this.dataPoints, this.phases);
+	}
+
+	/**
+	 * 
+	 * @return The {@link SummaryIndex} built by the last call to {@link #updateSummaryIndex()}
+	 * @author Rémi BARDON
+	 */
+	public SummaryIndex getSummaryIndex() {
+		return this.summaryIndex;
+	}
+
+	/**
+	 * 
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+	 * @return <ul>
+	 *     <li>The {@link QuantileSketch} of all points if given {@link Optional}<{@link Tag}> is {@code empty}</li>
+	 *     <li>An empty {@link QuantileSketch} if the given {@link Tag} doesn't exist</li>
+	 *     <li>Otherwise, the {@link QuantileSketch} of points in the given {@link Tag}</li>
+	 * </ul>
+	 * @author Rémi BARDON
+	 */
+	public QuantileSketch getQuantileSketch(final Optional<Tag> optionalTag) {
+		if (optionalTag.isEmpty()) {
+			return this.quantileSketch;
+		}
+		return this.tagQuantileSketches.getOrDefault(optionalTag.get(), new QuantileSketch());
+	}
+
+	/**
+	 * 
+	 * @return The {@link QuantileSketch} of {@link DataPoint}s in every phase, to fill while loading
+	 * @author Rémi BARDON
+	 */
+	Map<Tag, QuantileSketch> getTagQuantileSketches() {
+		return this.tagQuantileSketches;
+	}
+
+	/**
+	 * 
+	 * @return Whether {@link DataPoint}s were cleaned
+	 * @author Rémi BARDON
+	 */
+	boolean isCleaned() {
+		return this.isCleaned;
+	}
+
+	/**
+	 * Marks {@link DataPoint}s as cleaned
+	 * @param cleaner The {@link ExperimentDataCleaner} which cleaned them, to keep the points it omitted
+	 * @author Rémi BARDON
+	 */
+	void setCleaned(final ExperimentDataCleaner cleaner) {
+		final var omittedPoints = new LinkedHashMap<Range<Float>, List<DataPoint>>();
+		for (final Range<Float> range : cleaner.getOmittedRanges()) {
+			omittedPoints.put(range, cleaner.getOmittedPoints(range));
+		}
+		this.omittedPoints = omittedPoints;
+		this.isCleaned = true;
+	}
+
+	/**
+	 * The ranges omitted while cleaning
+	 * @return The sorted omitted ranges, empty if {@link DataPoint}s were not cleaned
+	 * @author Rémi BARDON
+	 */
+	public List<Range<Float>> getOmittedRanges() {
+		return new ArrayList<Range<Float>>(this.omittedPoints.keySet());
+	}
+
+	/**
+	 * The omitted points in a certain {@link Range}
+	 * @param range
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public List<DataPoint> getOmittedPoints(final Range<Float> range) {
+		return Collections.unmodifiableList(this.omittedPoints.getOrDefault(range, Collections.emptyList()));
+	}
+
+	/**
+	 * 
+	 * @return The approximate number of bytes used by points, indexes and sketches of this store
+	 * @author Rémi BARDON
+	 */
+	long getRetainedSize() {
+		long size = this.dataPoints.size() * DATA_POINT_SIZE;
+		for (final List<DataPoint> points : this.omittedPoints.values()) {
+			size += points.size() * DATA_POINT_SIZE;
+		}
+		size += this.summaryIndex.getRetainedSize() + this.pyramid.getRetainedSize();
+		size += this.quantileSketch.getRetainedSize();
+		for (final QuantileSketch sketch : this.tagQuantileSketches.values()) {
+			size += sketch.getRetainedSize();
+		}
+		return size;
+	}
+
+	/**
+	 * Computes rolling statistics of {@link DataPoint}s, for the window ending at each point
+	 * @param windowDuration The duration of the window
+	 * @param quantile The quantile to compute, in {@code [0, 1]} ({@code 0.5} for the median)
+	 * @return
+	 * @see RollingStatistics
+	 * @author Rémi BARDON
+	 */
+	public RollingStatistics.Columns getRollingStatistics(final float windowDuration, final double quantile) {
+		return RollingStatistics.compute(this.dataPoints, windowDuration, quantile);
+	}
+
+	/**
+	 * Builds the {@link MinMaxPyramid} of {@link DataPoint}s again.
+	 * Must be called after modifying {@link #getDataPoints()} (after loading or cleaning for example).
+	 * @author Rémi BARDON
+	 */
+	public void updatePyramid() {
+		this.pyramid = MinMaxPyramid.of(this.dataPoints);
+	}
+
+	/**
+	 * 
+	 * @return The {@link MinMaxPyramid} built by the last call to {@link #updatePyramid()}
+	 * @author Rémi BARDON
+	 */
+	public MinMaxPyramid getPyramid() {
+		return this.pyramid;
+	}
+
 }
@@ -0,0 +1,145 @@
+package code_metier;
+
+import java.nio.FloatBuffer;
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several {@link Measure}s as read-only columns over one shared time axis.
+ * Values are copied once from {@link DataPoint}s,
+ * so that multi-channel charts and cross-channel computations can run in one pass over primitive values.<br>
+ * The time axis is the one of the first {@link Measure}. Cleaning removes missing values of one {@link Measure}
+ * and shifts its following timestamps, so other {@link Measure}s can have another time axis:
+ * they are then linearly interpolated on the shared one, and {@code NaN} outside of their own time range.
+ * @author Rémi BARDON
+ */
+public final class ExperimentFrame {
+
+	/**
+	 * The shared time axis
+	 * @author Rémi BARDON
+	 */
+	private final FloatBuffer timestamps;
+	/**
+	 * The values of every {@link Measure}, aligned on {@link #timestamps}
+	 * @author Rémi BARDON
+	 */
+	private final Map<Measure, FloatBuffer> columns;
+
+	/**
+	 *
+	 * @param timestamps The shared time axis
+	 * @param columns The values of every {@link Measure}, aligned on {@code timestamps}
+	 * @author Rémi BARDON
+	 */
+	ExperimentFrame(final FloatBuffer timestamps, final Map<Measure, FloatBuffer> columns) {
+		this.timestamps = timestamps;
+		this.columns = Collections.unmodifiableMap(columns);
+	}
+
+	/**
+	 * Copies {@link DataPoint}s of several {@link Measure}s on the time axis of the first one
+	 * @param measures
+	 * @param points The {@link DataPoint}s of every {@link Measure}, in increasing timestamp order
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	static ExperimentFrame of(final List<Measure> measures, final List<List<DataPoint>> points) {
+		final List<DataPoint> axis = points.isEmpty() ? Collections.emptyList() : points.get(0);
+		final float[] timestamps = new float[axis.size()];
+		int index = 0;
+		for (final DataPoint point : axis) {
+			timestamps[index++] = point.getTimestamp();
+		}
+
+		final var columns = new LinkedHashMap<Measure, FloatBuffer>();
+		for (int i = 0; i < measures.size(); i++) {
+			final float[] values = interpolate(points.get(i), timestamps);
+			columns.put(measures.get(i), FloatBuffer.wrap(values).asReadOnlyBuffer());
+		}
+
+		return new ExperimentFrame(FloatBuffer.wrap(timestamps).asReadOnlyBuffer(), columns);
+	}
+
+	/**
+	 * Linearly interpolates {@link DataPoint}s on a time axis, in one pass.
+	 * Points exactly on the time axis (as for {@link Measure}s sharing it) are copied as they are.
+	 * @param points The {@link DataPoint}s to interpolate, in increasing timestamp order
+	 * @param timestamps The time axis, in increasing order
+	 * @return One value per timestamp, {@code NaN} before the first and after the last {@link DataPoint}
+	 * @author Rémi BARDON
+	 */
+	private static float[] interpolate(final List<DataPoint> points, final float[] timestamps) {
+		final float[] values = new float[timestamps.length];
+		final var iterator = points.iterator();
+		DataPoint previous = null;
+		DataPoint next = iterator.hasNext() ? iterator.next() : null;
+
+		for (int i = 0; i < timestamps.length; i++) {
+			final float timestamp = timestamps[i];
+			// First point at or after the timestamp
+			while (next != null && next.getTimestamp() < timestamp) {
+				previous = next;
+				next = iterator.hasNext() ? iterator.next() : null;
+			}
+
+			if (next != null && next.getTimestamp() == timestamp) {
+				values[i] = next.getValue();
+			} else if (previous == null || next == null) {
+				values[i] = Float.NaN;
+			} else {
+				final float ratio = (timestamp - previous.getTimestamp()) / (next.getTimestamp() - previous.getTimestamp());
+				values[i] = previous.getValue() + (next.getValue() - previous.getValue()) * ratio;
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 *
+	 * @return The number of rows (values per {@link Measure})
+	 * @author Rémi BARDON
+	 */
+	public int getRowCount() {
+		return this.timestamps.limit();
+	}
+
+	/**
+	 *
+	 * @return The {@link Measure}s in this frame, in column order
+	 * @author Rémi BARDON
+	 */
+	public List<Measure> getMeasures() {
+		return new ArrayList<Measure>(this.columns.keySet());
+	}
+
+	/**
+	 *
+	 * @return A read-only view of the shared time axis, with its own position
+	 * @author Rémi BARDON
+	 */
+	public FloatBuffer getTimestamps() {
+		return this.timestamps.duplicate();
+	}
+
+	/**
+	 *
+	 * @param measure
+	 * @return A read-only view of the values of {@code measure}, with its own position
+	 * @throws InvalidKeyException If the given {@link Measure} isn't in this frame
+	 * @author Rémi BARDON
+	 */
+	public FloatBuffer getColumn(final Measure measure) throws InvalidKeyException {
+		if (!this.columns.containsKey(measure)) {
+			throw new InvalidKeyException();
+		}
+
+		return this.columns.get(measure).duplicate();
+	}
+
+}
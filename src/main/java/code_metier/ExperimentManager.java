@@ -2,15 +2,24 @@ package code_metier;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
 import java.security.InvalidKeyException;
 import java.text.ParseException;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import com.opencsv.exceptions.CsvValidationException;
 
@@ -21,39 +30,232 @@ import com.opencsv.exceptions.CsvValidationException;
  */
 public class ExperimentManager {
 
+	/**
+	 * The share of the cache budget that speculative decompositions can fill,
+	 * so that they never evict most results the user asked for
+	 * @author Rémi BARDON
+	 */
+	private static final double PREFETCH_BUDGET_SHARE = 0.5;
+
 	private boolean isLoggingEnabled = false;
 	private boolean isPreComputingEnabled = true;
 
 	private ExperimentDataLoader loader;
-	private ExperimentDataCleaner cleaner;
 	private ExperimentDataDecomposer decomposer;
+	private ExperimentDataExporter exporter;
+
+	private final TaskScheduler scheduler;
 
 	private String currentFilePath;
 	private String currentFileName;
-	private Optional<Thread> loadingThread;
-	private Optional<Thread> cleaningThread;
-	private Map<String, Thread> preCleaningThreads;
-	private Map<String, Map<Measure, ExperimentDataStore>> cleanedPointsCache;
-	private Map<String, Thread> decomposingThreads;
-	private Map<String, Map<Measure, Map<DataType, List<DataPoint>>>> decomposedPointsCache;
+	private Optional<CompletableFuture<ExperimentDataLoader>> loadingTask;
+	private Map<String, CompletableFuture<ExperimentDataLoader>> detachedLoadingTasks;
+	private Map<String, List<CompletableFuture<ExperimentDataStore>>> preCleaningTasks;
+	private ComputationCache<Map.Entry<String, Measure>, ExperimentDataStore> cleanedPointsCache;
+	private ComputationCache<Map.Entry<Map.Entry<String, Measure>, Integer>, Decomposition> decomposedPointsCache;
+	private Map<Map.Entry<String, Measure>, ProgressReporter> cleaningProgress;
+	private Map<Map.Entry<Map.Entry<String, Measure>, Integer>, ProgressReporter> decomposingProgress;
+	private Duration progressInterval;
+	private final ComputationCache.Budget cacheBudget;
+	private Map<String, CompletableFuture<ExperimentSession>> sessions;
+	private PrefetchQueue prefetchQueue;
+	private final PipelineMetrics metrics;
+	private Optional<DecompositionCache> persistentCache;
 
 	/**
-	 * 
+	 * A manager running its work on its own {@link TaskScheduler}
 	 * @author Rémi BARDON
 	 */
 	public ExperimentManager() {
+		this(new TaskScheduler());
+	}
+
+	/**
+	 * 
+	 * @param scheduler Runs loading, cleaning and decomposing tasks. Can be shared by several managers.
+	 * @author Rémi BARDON
+	 */
+	public ExperimentManager(final TaskScheduler scheduler) {
 		this.loader = new ExperimentDataLoader();
-		this.cleaner = new ExperimentDataCleaner();
 		this.decomposer = new ExperimentDataDecomposer();
+		this.decomposer.setScheduler(Optional.of(scheduler));
+		this.exporter = new ExperimentDataExporter();
+		this.scheduler = scheduler;
+
+		this.loadingTask = Optional.empty();
+		this.detachedLoadingTasks = new ConcurrentHashMap<String, CompletableFuture<ExperimentDataLoader>>();
+
+		this.preCleaningTasks = new ConcurrentHashMap<String, List<CompletableFuture<ExperimentDataStore>>>();
+		// One budget for all caches, including the ones of sessions
+		this.cacheBudget = new ComputationCache.Budget(Runtime.getRuntime().maxMemory() / 4);
+		this.cleanedPointsCache = new ComputationCache<Map.Entry<String, Measure>, ExperimentDataStore>(
+			ExperimentDataStore::getRetainedSize,
+			this.cacheBudget
+		);
+		// The loader holds stores of the current file, so evicting them would free nothing
+		this.cleanedPointsCache.setPinned((key) -> key.getKey().equals(this.currentFilePath));
+		this.decomposedPointsCache = new ComputationCache<Map.Entry<Map.Entry<String, Measure>, Integer>, Decomposition>(
+			Decomposition::getRetainedSize,
+			this.cacheBudget
+		);
+		this.cleaningProgress = new ConcurrentHashMap<Map.Entry<String, Measure>, ProgressReporter>();
+		this.decomposingProgress = new ConcurrentHashMap<Map.Entry<Map.Entry<String, Measure>, Integer>, ProgressReporter>();
+		this.progressInterval = ProgressReporter.DEFAULT_INTERVAL;
+		this.sessions = new ConcurrentHashMap<String, CompletableFuture<ExperimentSession>>();
+		// Keep a core for work the user is waiting for
+		this.prefetchQueue = new PrefetchQueue(Math.max(1, scheduler.getParallelism() - 1), () -> {
+			return this.cacheBudget.getWeight() < this.cacheBudget.getMaximumWeight() * PREFETCH_BUDGET_SHARE;
+		});
+
+		this.metrics = new PipelineMetrics();
+		this.loader.setMetrics(this.metrics);
+		this.metrics.registerCache("cleanedPoints", this.cleanedPointsCache::getStatistics);
+		this.metrics.registerCache("decomposedPoints", this.decomposedPointsCache::getStatistics);
+		this.metrics.registerQueue("compute", scheduler::getQueuedTaskCount);
+		this.metrics.registerQueue("prefetch", this.prefetchQueue::getPendingCount);
+		this.persistentCache = Optional.empty();
+	}
+
+	/**
+	 * Asynchronously opens a {@link File} in its own {@link ExperimentSession}, independent from the current {@link File}
+	 * and from other sessions. Opening a {@link File} which is already open returns the same session.
+	 * @param file The {@link File} to open
+	 * @return A {@link CompletableFuture} completed with the loaded {@link ExperimentSession},
+	 *         or exceptionally with an {@link IOException}, {@link CsvValidationException} or {@link ParseException}
+	 * @author Rémi BARDON
+	 */
+	public CompletableFuture<ExperimentSession> open(final File file) {
+		final String filePath = file.getAbsolutePath();
+
+		final var task = new CompletableFuture<ExperimentSession>();
+		final CompletableFuture<ExperimentSession> existing = this.sessions.putIfAbsent(filePath, task);
+		if (existing != null) {
+			return existing;
+		}
+
+		// Cancelling the task stops loading
+		final var token = new CancellationToken();
+		token.cancelWith(task);
+		CompletableFuture.runAsync(() -> {
+			final var loader = new ExperimentDataLoader();
+			loader.setMetrics(this.metrics);
+			try {
+				final var sample = this.metrics.start(PipelineMetrics.Stage.LOAD);
+				loader.load(file, token);
+				sample.stop(loader.getRowCount());
+			} catch (IOException | CsvValidationException | ParseException e) {
+				throw new CompletionException(e);
+			}
+
+			// Log success
+			if (this.isLoggingEnabled) { System.out.println("Opened session of '" + file.getName() + "'"); }
+
+			task.complete(new ExperimentSession(
+				file,
+				loader,
+				this.scheduler,
+				this.decomposer.getWindowLength(),
+				this.cacheBudget,
+				this.metrics,
+				() -> { this.sessions.remove(filePath, task); }
+			));
+		}, this.scheduler.getIOExecutor()).whenComplete((ignored, error) -> {
+			if (error != null) {
+				task.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+			}
+		});
+
+		// Failed or cancelled sessions can be opened again
+		task.whenComplete((session, error) -> {
+			if (error != null) {
+				this.sessions.remove(filePath, task);
+			}
+		});
+
+		return task;
+	}
+
+	/**
+	 * 
+	 * @return Sessions opened with {@link #open(File)} and not closed yet
+	 * @author Rémi BARDON
+	 */
+	public List<ExperimentSession> getOpenSessions() {
+		final var result = new ArrayList<ExperimentSession>();
+		for (final var task : this.sessions.values()) {
+			if (task.isDone() && !task.isCompletedExceptionally()) {
+				result.add(task.join());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Asynchronously loads and decodes a {@code CSV} file on the I/O executor, reading its data points.
+	 * It becomes the current {@link File}.
+	 * @param file The {@link File} to open
+	 * @return A {@link CompletableFuture} completed with the {@link Measure}s present in the {@link File},
+	 *         or exceptionally with an {@link IOException}, {@link CsvValidationException} or {@link ParseException}
+	 * @author Rémi BARDON
+	 */
+	public CompletableFuture<List<Measure>> load(final File file) {
+		return this.load(file, new ProgressReporter(this.progressInterval));
+	}
+
+	/**
+	 * 
+	 * @param file
+	 * @param progress Receives the number of bytes read and the size of {@code file}
+	 * @return
+	 * @see #load(File)
+	 * @author Rémi BARDON
+	 */
+	private CompletableFuture<List<Measure>> load(final File file, final ProgressReporter progress) {
+		// Cancel existing task and predictions
+		this.loadingTask.ifPresent((task) -> { task.cancel(true); });
+		this.prefetchQueue.cancelPending();
+
+		final String filePath = file.getAbsolutePath();
+		final String fileName = file.getName();
+
+		this.currentFilePath = filePath;
+		this.currentFileName = fileName;
+
+		// Cached results of this file hold stores of another loader, which getters wouldn't show
+		this.decomposedPointsCache.invalidate((key) -> key.getKey().getKey().equals(filePath));
+		this.cleanedPointsCache.invalidate((key) -> key.getKey().equals(filePath));
+
+		// Results of other files stay cached, but computing them would be wasted work
+		this.cancelDetachedLoadingTasks();
+		this.preCleaningTasks.clear();
+		this.decomposedPointsCache.cancelRunning((key) -> !key.getKey().getKey().equals(filePath));
+		this.cleanedPointsCache.cancelRunning((key) -> !key.getKey().equals(filePath));
+
+		// Cancelling the task stops loading, keeping previously loaded data
+		final var token = new CancellationToken();
+		final CompletableFuture<ExperimentDataLoader> task = CompletableFuture.supplyAsync(() -> {
+			// Tasks of this file keep using its data, even after another file replaced it in the shared loader
+			final var loaded = new ExperimentDataLoader();
+			loaded.setMetrics(this.metrics);
+			try {
+				final var sample = this.metrics.start(PipelineMetrics.Stage.LOAD);
+				loaded.load(file, token, progress);
+				sample.stop(loaded.getRowCount());
+			} catch (IOException | CsvValidationException | ParseException e) {
+				throw new CompletionException(e);
+			}
+			this.loader.replaceState(loaded, token);
 
-		this.loadingThread = Optional.empty();
-		this.cleaningThread = Optional.empty();
+			// Log success
+			if (this.isLoggingEnabled) { System.out.println("Loaded points in '" + fileName + "'"); }
 
-		this.preCleaningThreads = new HashMap<String, Thread>();
-		this.cleanedPointsCache = new HashMap<String, Map<Measure, ExperimentDataStore>>();
+			return loaded;
+		}, this.scheduler.getIOExecutor());
+		token.cancelWith(task);
 
-		this.decomposingThreads = new HashMap<String, Thread>();
-		this.decomposedPointsCache = new HashMap<String, Map<Measure, Map<DataType, List<DataPoint>>>>();
+		this.loadingTask = Optional.of(task);
+
+		return token.cancelWith(task.thenApply((loaded) -> new ArrayList<Measure>(loaded.getMeasures())));
 	}
 
 	/**
@@ -62,13 +264,11 @@ public class ExperimentManager {
 	 * @param progressCallback A {@link BiConsumer} callback called during loading process.
 	 *                         Will be executed multiple times with fist argument as actual progress
 	 *                         and second argument as total expected progress.
-	 *                         {@link Integer}s represent the number of lines read/to read.<br>
-	 *                         <b>Note: </b>Currently, {@link #progressCallback} sends {@code 0} and {@code 1} when loading finishes.
+	 *                         {@link Integer}s represent the number of bytes read/to read (scaled down for files over 2 GiB),
+	 *                         at most once per interval (see {@link #setProgressInterval(Duration)}).
 	 * @param completionHandler A {@link BiConsumer} callback called when loading finishes.
 	 *                          It sends the {@link Measure}s and {@link Tag}s present in the {@link File}.
-	 * @throws IOException
-	 * @throws CsvValidationException
-	 * @throws ParseException
+	 * @see #load(File)
 	 * @author Rémi BARDON
 	 */
 	public void load(
@@ -76,53 +276,101 @@ public class ExperimentManager {
 		final BiConsumer<Integer, Integer> progressCallback,
 		final BiConsumer<List<Measure>, List<Tag>> completionHandler
 	) {
-		// Interrupt existing thread
-		this.loadingThread.ifPresent((thread) -> { thread.interrupt(); });
-
 		progressCallback.accept(0, 1);
 
-		final String filePath = file.getAbsolutePath();
 		final String fileName = file.getName();
 
-		this.currentFilePath = filePath;
-		this.currentFileName = fileName;
-
-		final Thread thread = new Thread(() -> {
-			try {
-				this.loader.load(file);
-
-				// Log success
-				if (this.isLoggingEnabled) { System.out.println("Loaded points in '" + fileName + "'"); }
-
-				// Send completion
-				final var measures 	= new ArrayList<Measure>(this.loader.getMeasures());
-				final var tags 		= new ArrayList<Tag>(this.loader.getAllTags());
-				progressCallback.accept(1, 1);
-				completionHandler.accept(measures, tags);
-			} catch (Exception e) {
+		final var progress = new ProgressReporter(this.progressInterval);
+		progress.addListener(progressCallback);
+		this.load(file, progress).whenComplete((measures, error) -> {
+			if (error != null) {
 				// Log error
 				if (this.isLoggingEnabled) {
 					System.err.println("Error loading points in '" + fileName + "'");
-					e.printStackTrace();
+					error.printStackTrace();
 				}
 
 				// Send completion
 				progressCallback.accept(1, 1);
 				completionHandler.accept(null, null);
+				return;
 			}
+
+			// Send completion
+			final var tags = new ArrayList<Tag>(this.loader.getAllTags());
+			progressCallback.accept(1, 1);
+			completionHandler.accept(measures, tags);
 		});
-		thread.setName("Loading thread for '" + filePath + "'");
+	}
+
+	/**
+	 * Asynchronously cleans {@link DataPoint}s of a {@link Measure}, after loading the {@link File} if it isn't the current one
+	 * (without making it the current {@link File}). Concurrent requests share one cleaning, and cleaned {@link Measure}s are returned immediately.
+	 * @param file
+	 * @param measure
+	 * @return A {@link CompletableFuture} completed with the cleaned {@link ExperimentDataStore},
+	 *         or exceptionally with an {@link InvalidKeyException} if the given {@link Measure} doesn't exist
+	 * @author Rémi BARDON
+	 */
+	public CompletableFuture<ExperimentDataStore> clean(final File file, final Measure measure) {
+		return this.clean(file, measure, TaskScheduler.Priority.FOREGROUND);
+	}
+
+	/**
+	 * 
+	 * @param file
+	 * @param measure
+	 * @param priority The {@link TaskScheduler.Priority} of the cleaning, if it isn't running yet
+	 * @return
+	 * @see #clean(File, Measure)
+	 * @author Rémi BARDON
+	 */
+	private CompletableFuture<ExperimentDataStore> clean(final File file, final Measure measure, final TaskScheduler.Priority priority) {
+		final String filePath = file.getAbsolutePath();
+		final String fileName = file.getName();
+
+		final var key = Map.entry(filePath, measure);
+		final var event = new PipelineEvents.CacheLookup();
+		event.begin();
+		event.hit = true;
+		final CompletableFuture<ExperimentDataStore> task = this.cleanedPointsCache.get(key, () -> {
+			event.hit = false;
+
+			// Listeners can follow the task until it completes
+			final var progress = new ProgressReporter(this.progressInterval);
+			this.cleaningProgress.put(key, progress);
+
+			// Cancelling the task stops cleaning, leaving points untouched
+			final var token = new CancellationToken();
+			return token.cancelWith(this.getLoadingTask(file).thenApplyAsync((loaded) -> {
+				try {
+					final var store = this.cleanNow(file, loaded, measure, token, progress);
 
-		this.loadingThread = Optional.of(thread);
+					// Log success
+					if (this.isLoggingEnabled) { System.out.println("Cleaned '" + measure + "' points in '" + fileName + "'"); }
 
-		thread.start();
+					// Start cleaning other measures in the background
+					if (this.isPreComputingEnabled && priority == TaskScheduler.Priority.FOREGROUND) { this.cleanInBackground(file, loaded); }
+
+					return store;
+				} catch (InvalidKeyException e) {
+					throw new CompletionException(e);
+				}
+			}, this.scheduler.getExecutor(priority)).whenComplete((store, error) -> {
+				this.cleaningProgress.remove(key, progress);
+			}));
+		});
+		this.commitLookup(event, "cleanedPoints", filePath, measure, 0);
+
+		return task;
 	}
 
 	/**
 	 * 
 	 * @param measure
-	 * @param progressCallback
+	 * @param progressCallback Receives the number of points read/to read, at most once per interval (see {@link #setProgressInterval(Duration)})
 	 * @param completionHandler
+	 * @see #clean(File, Measure)
 	 * @author Rémi BARDON
 	 */
 	private void clean(
@@ -130,232 +378,1096 @@ public class ExperimentManager {
 		final BiConsumer<Integer, Integer> progressCallback,
 		final Consumer<ExperimentDataStore> completionHandler
 	) {
-		// Interrupt existing thread
-		this.cleaningThread.ifPresent((thread) -> { thread.interrupt(); });
-
 		progressCallback.accept(0, 1);
 
 		final String filePath = this.currentFilePath;
 		final String fileName = this.currentFileName;
 
-		if (
-			this.cleanedPointsCache.containsKey(filePath)
-				&& this.cleanedPointsCache.get(filePath).containsKey(measure)
-		) {
-			// If already cleaned, skip cleaning
-			progressCallback.accept(1, 1);
-			completionHandler.accept(this.cleanedPointsCache.get(filePath).get(measure));
-		}
-
-		final Thread thread = new Thread(() -> {
-			try {
-				final var points = this.loader.getDataPoints(measure);
-				final var phases = this.loader.getPhases(measure);
-				this.cleaner.clean(points, phases);
-
-				this.cleanedPointsCache.putIfAbsent(filePath, new HashMap<Measure, ExperimentDataStore>());
-				final var cleanedMeasures = this.cleanedPointsCache.get(filePath);
-				final var store = this.loader.getStore(measure);
-				cleanedMeasures.put(measure, store);
-
-				// Log success
-				if (this.isLoggingEnabled) { System.out.println("Cleaned '" + measure + "' points in '" + fileName + "'"); }
-
-				// Start cleaning other measures on a background thread
-				if (this.isPreComputingEnabled) { cleanOnBackgroundThread(this.loader, filePath); }
-
-				// Send completion
-				progressCallback.accept(1, 1);
-				completionHandler.accept(store);
-			} catch (InvalidKeyException e) {
+		// If already cleaned, completes immediately
+		final CompletableFuture<ExperimentDataStore> task = this.clean(new File(filePath), measure);
+		this.followProgress(this.cleaningProgress, Map.entry(filePath, measure), progressCallback);
+		task.whenComplete((store, error) -> {
+			if (error != null) {
 				// Log error
 				if (this.isLoggingEnabled) {
 					System.err.println("Error cleaning '" + measure + "' points in '" + fileName + "'");
-					e.printStackTrace();
+					error.printStackTrace();
 				}
 
 				// Send completion
 				progressCallback.accept(1, 1);
 				completionHandler.accept(null);
+				return;
 			}
-		});
-		thread.setName("Cleaning thread for '" + filePath + "'");
-
-		this.cleaningThread = Optional.of(thread);
 
-		thread.start();
+			// Send completion
+			progressCallback.accept(1, 1);
+			completionHandler.accept(store);
+		});
 	}
 
 	/**
-	 * Asynchronously cleans {@link DataPoint}s on a background thread and caches results
-	 * @param loader
-	 * @param filePath
+	 * 
+	 * @param file
+	 * @return The running (or finished) loading task if {@code file} is the current {@link File}, or a new one,
+	 *         completed with a loader holding the data of {@code file}
 	 * @author Rémi BARDON
 	 */
-	private void cleanOnBackgroundThread(final ExperimentDataLoader loader, final String filePath) {
-		final String fileName = new File(filePath).getName();
+	private CompletableFuture<ExperimentDataLoader> getLoadingTask(final File file) {
+		final String filePath = file.getAbsolutePath();
+		if (filePath.equals(this.currentFilePath) && this.loadingTask.isPresent()) {
+			return this.loadingTask.get();
+		}
 
-		// Avoid creating multiple threads for same task
-		if (this.preCleaningThreads.containsKey(filePath)) { return; }
+		// Other files are loaded in their own loader, so that the current file stays the same
+		final var task = new CompletableFuture<ExperimentDataLoader>();
+		final CompletableFuture<ExperimentDataLoader> existing = this.detachedLoadingTasks.putIfAbsent(filePath, task);
+		if (existing != null) {
+			return existing;
+		}
 
-		if (!this.cleanedPointsCache.containsKey(filePath)) { return; }
-		final var cleanedMeasures = this.cleanedPointsCache.get(filePath);
+		// Cancelling the task stops loading
+		final var token = new CancellationToken();
+		token.cancelWith(task);
+		CompletableFuture.runAsync(() -> {
+			final var loaded = new ExperimentDataLoader();
+			loaded.setMetrics(this.metrics);
+			try {
+				final var sample = this.metrics.start(PipelineMetrics.Stage.LOAD);
+				loaded.load(file, token);
+				sample.stop(loaded.getRowCount());
+			} catch (IOException | CsvValidationException | ParseException e) {
+				throw new CompletionException(e);
+			}
 
-		final Thread cleaningThread = new Thread(() -> {
-			for (final var measure: loader.getMeasures()) {
-				if (cleanedMeasures.containsKey(measure)) {
-					// Skip Measure if already cleaned
-					continue;
-				}
+			// Log success
+			if (this.isLoggingEnabled) { System.out.println("Loaded points in '" + file.getName() + "' (not current)"); }
 
-				// Clean next Measure
-				this.clean(measure, (_current, _total) -> {}, store -> {
-					cleanedMeasures.put(measure, store);
-				});
+			task.complete(loaded);
+		}, this.scheduler.getIOExecutor()).whenComplete((ignored, error) -> {
+			if (error != null) {
+				task.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
 			}
 		});
-		cleaningThread.setName("Pre-cleaning thread for '" + fileName + "'");
 
-		this.preCleaningThreads.put(filePath, cleaningThread);
+		// Failed or cancelled loadings can be started again
+		task.whenComplete((loaded, error) -> {
+			if (error != null) {
+				this.detachedLoadingTasks.remove(filePath, task);
+			}
+		});
 
-		cleaningThread.start();
+		return task;
 	}
 
 	/**
-	 * Asynchronously decomposes {@link DataPoint} series into {@link DataType}s after cleaning them
+	 * Cancels loadings of {@link File}s which aren't the current one, and releases loaded ones
+	 * (which stay referenced by their cached results)
+	 * @author Rémi BARDON
+	 */
+	private void cancelDetachedLoadingTasks() {
+		for (final var task : this.detachedLoadingTasks.values()) {
+			task.cancel(true);
+		}
+		this.detachedLoadingTasks.clear();
+	}
+
+	/**
+	 * Cleans {@link DataPoint}s of a {@link Measure} on the calling thread
+	 * @param file
+	 * @param loaded A loader holding the data of the {@link File} to clean, which another {@link File} can't replace
 	 * @param measure
-	 * @param period
-	 * @param progressCallback
-	 * @param completionHandler
+	 * @param token
+	 * @param progress
+	 * @return The cleaned {@link ExperimentDataStore}
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @throws CancellationException If {@code token} was cancelled
 	 * @author Rémi BARDON
 	 */
-	public void decompose(
+	private ExperimentDataStore cleanNow(
+		final File file,
+		final ExperimentDataLoader loaded,
 		final Measure measure,
-		final int period,
-		final BiConsumer<Integer, Integer> progressCallback,
-		final Consumer<Map<DataType, List<DataPoint>>> completionHandler
-	) {
-		progressCallback.accept(0, 2);
-
-		final String filePath = this.currentFilePath;
-		final String fileName = this.currentFileName;
+		final CancellationToken token,
+		final ProgressReporter progress
+	) throws InvalidKeyException {
+		final var loadedStore = loaded.getStore(measure);
+		// One cleaner per task (it keeps omitted points), and one lock per series, so that series are cleaned in parallel
+		synchronized (loadedStore) {
+			// Cleaned while waiting for the lock, or evicted from the cache but still loaded
+			final var current = loaded.getStore(measure);
+			if (current.isCleaned()) {
+				return current;
+			}
 
-		if (
-			this.decomposedPointsCache.containsKey(filePath)
-				&& this.decomposedPointsCache.get(filePath).containsKey(measure)
-				&& this.decomposedPointsCache.get(filePath).get(measure).keySet().size() == DataType.values().length
-		 ) {
-			// If already decomposed, skip cleaning
-			progressCallback.accept(2, 2);
-			completionHandler.accept(this.decomposedPointsCache.get(filePath).get(measure));
+			// Clean a copy, then publish it, so that points handed out before never change
+			final var sample = this.metrics.start(PipelineMetrics.Stage.CLEAN);
+			final var store = current.copy();
+			final var cleaner = new ExperimentDataCleaner();
+			cleaner.clean(store.getDataPoints(), store.getPhases(), token, progress, new PipelineEvents.Subject(file, measure));
+			store.updateSummaryIndex();
+			store.updatePyramid();
+			store.setCleaned(cleaner);
+			loaded.setCleanedStore(measure, store);
+			sample.stop(store.getDataPoints().size());
+			return store;
 		}
+	}
+
+	/**
+	 * Cleans other {@link Measure}s in the background and caches results,
+	 * with a lower priority than foreground tasks
+	 * @param file
+	 * @param loaded A loader holding the data of {@code file}
+	 * @author Rémi BARDON
+	 */
+	private void cleanInBackground(final File file, final ExperimentDataLoader loaded) {
+		final String filePath = file.getAbsolutePath();
+		final String fileName = file.getName();
 
-		this.clean(
-			measure,
-			(progress, total) -> {},
-			(store) -> {
-				progressCallback.accept(1, 2);
+		// Avoid scheduling the same tasks multiple times
+		if (this.preCleaningTasks.containsKey(filePath)) { return; }
 
-				this.decomposer.decompose(store.getDataPoints(), period);
+		// One task per Measure, so that foreground tasks can run in between.
+		// Measures already cleaned (or being cleaned) share the existing task.
+		final var tasks = new ArrayList<CompletableFuture<ExperimentDataStore>>();
+		for (final var measure: loaded.getMeasures()) {
+			tasks.add(this.clean(file, measure, TaskScheduler.Priority.SPECULATIVE).whenComplete((store, error) -> {
+				// Log error
+				if (error != null && this.isLoggingEnabled) {
+					System.err.println("Error pre-cleaning '" + measure + "' points in '" + fileName + "'");
+					error.printStackTrace();
+				}
+			}));
+		}
 
-				this.decomposedPointsCache.putIfAbsent(filePath, new HashMap<Measure, Map<DataType, List<DataPoint>>>());
-				this.decomposedPointsCache.get(filePath).put(measure, decomposer.getAllPoints());
-				final var decomposedTypes = this.decomposedPointsCache.get(filePath).get(measure);
+		this.preCleaningTasks.putIfAbsent(filePath, tasks);
+	}
 
-				// Log success
-				if (this.isLoggingEnabled) { System.out.println("Decomposed '" + measure + "' points in '" + fileName + "'"); }
+	/**
+	 * Decomposes likely next requests in the background, with a lower priority than foreground tasks:
+	 * other {@link Measure}s with the same period, then the same {@link Measure} with adjacent periods.
+	 * Pending ones are dropped on the next real request, or when the cache budget is half full.
+	 * @param file
+	 * @param measure The last requested {@link Measure}
+	 * @param period The last requested period
+	 * @author Rémi BARDON
+	 */
+	private void prefetchDecompositions(final File file, final Measure measure, final int period) {
+		final String fileName = file.getName();
 
-				// Send completion
-				progressCallback.accept(2, 2);
-				completionHandler.accept(decomposedTypes);
+		// Other files would replace the current one
+		if (!file.getAbsolutePath().equals(this.currentFilePath)) { return; }
+
+		final var predictions = new ArrayList<Map.Entry<Measure, Integer>>();
+		for (final var other : this.loader.getMeasures()) {
+			if (!other.equals(measure)) {
+				predictions.add(Map.entry(other, period));
 			}
-		);
+		}
+		// STL needs a period of at least 2
+		if (period > 2) {
+			predictions.add(Map.entry(measure, period - 1));
+		}
+		predictions.add(Map.entry(measure, period + 1));
+
+		final var computations = new ArrayList<Supplier<CompletableFuture<?>>>();
+		for (final var prediction : predictions) {
+			computations.add(() -> {
+				// Skip predictions for a file which isn't the current one anymore
+				if (!file.getAbsolutePath().equals(this.currentFilePath)) {
+					return CompletableFuture.completedFuture(null);
+				}
+				return this.decompose(file, prediction.getKey(), prediction.getValue(), TaskScheduler.Priority.SPECULATIVE).whenComplete((decomposition, error) -> {
+					// Log error
+					if (error != null && this.isLoggingEnabled) {
+						System.err.println("Error pre-decomposing '" + prediction.getKey() + "' points in '" + fileName + "'");
+						error.printStackTrace();
+					}
+				});
+			});
+		}
+
+		this.prefetchQueue.replace(computations);
 	}
 
 	/**
-	 * Cleans cached data for a specific {@link File}
-	 * @param filePath A {@link File} path
+	 * Asynchronously decomposes {@link DataPoint} series into {@link DataType}s after cleaning them,
+	 * after loading the {@link File} if it isn't the current one (without making it the current {@link File}).
+	 * Concurrent requests share one decomposition, and decomposed {@link Measure}s are returned immediately.
+	 * @param file
+	 * @param measure
+	 * @param period
+	 * @return A {@link CompletableFuture} completed with the {@link Decomposition},
+	 *         or exceptionally with an {@link InvalidKeyException} if the given {@link Measure} doesn't exist
 	 * @author Rémi BARDON
 	 */
-	public void emptyCache(final String filePath) {
-		if (this.decomposingThreads.containsKey(filePath)) {
-			this.decomposingThreads.get(filePath).interrupt();
-		}
-		this.decomposedPointsCache.remove(filePath);
+	public CompletableFuture<Decomposition> decompose(final File file, final Measure measure, final int period) {
+		// Real requests go before predictions
+		this.prefetchQueue.cancelPending();
 
-		if (this.preCleaningThreads.containsKey(filePath)) {
-			this.preCleaningThreads.get(filePath).interrupt();
+		final CompletableFuture<Decomposition> task = this.decompose(file, measure, period, TaskScheduler.Priority.FOREGROUND);
+		if (this.isPreComputingEnabled) {
+			task.thenRun(() -> { this.prefetchDecompositions(file, measure, period); });
 		}
-		this.cleanedPointsCache.remove(filePath);
+		return task;
 	}
 
 	/**
-	 * Stops all background {@link Thread}s
+	 * 
+	 * @param file
+	 * @param measure
+	 * @param period
+	 * @param priority The {@link TaskScheduler.Priority} of the cleaning and decomposition, if they aren't running yet
+	 * @return
+	 * @see #decompose(File, Measure, int)
 	 * @author Rémi BARDON
 	 */
-	public void stopBackgroundThreads() {
-		final Consumer<Thread> interrupt = (thread) -> { thread.interrupt(); };
+	private CompletableFuture<Decomposition> decompose(final File file, final Measure measure, final int period, final TaskScheduler.Priority priority) {
+		final String filePath = file.getAbsolutePath();
+		final String fileName = file.getName();
 
-		this.cleaningThread.ifPresent(interrupt) ;
-		this.decomposingThreads.values().forEach(interrupt);
-		this.preCleaningThreads.values().forEach(interrupt);
+		final var key = Map.entry(Map.entry(filePath, measure), period);
+		final var event = new PipelineEvents.CacheLookup();
+		event.begin();
+		event.hit = true;
+		final CompletableFuture<Decomposition> task = this.decomposedPointsCache.get(key, () -> {
+			event.hit = false;
 
-		if (this.isLoggingEnabled) { System.out.println("Stopped all background threads"); }
+			// Listeners can follow the task until it completes
+			final var progress = new ProgressReporter(this.progressInterval);
+			this.decomposingProgress.put(key, progress);
+
+			// Cancelling the task stops decomposing, discarding partial results
+			final var token = new CancellationToken();
+			return token.cancelWith(this.clean(file, measure, priority).thenApplyAsync((store) -> {
+				final var points = store.getDataPoints();
+				final Decomposition decomposition = this.readPersistentCache(filePath, measure, period, points).orElseGet(() -> {
+					final var sample = this.metrics.start(PipelineMetrics.Stage.DECOMPOSE);
+					final var newDecomposition = this.decomposer.decompose(points, period, token, progress, priority, new PipelineEvents.Subject(file, measure));
+					sample.stop(points.size());
+					this.writePersistentCache(filePath, measure, period, newDecomposition);
+					return newDecomposition;
+				});
+
+				decomposition.updateSummaryIndexes(
+					List.of(DataType.RAW, DataType.TREND, DataType.SEASONNALITY, DataType.NOISE),
+					store.getPhases()
+				);
+				decomposition.updatePyramids(List.of(DataType.TREND, DataType.SEASONNALITY, DataType.NOISE));
+
+				// Log success
+				if (this.isLoggingEnabled) { System.out.println("Decomposed '" + measure + "' points in '" + fileName + "'"); }
+
+				return decomposition;
+			}, this.scheduler.getExecutor(priority)).whenComplete((decomposition, error) -> {
+				this.decomposingProgress.remove(key, progress);
+			}));
+		});
+		this.commitLookup(event, "decomposedPoints", filePath, measure, period);
+
+		return task;
 	}
 
 	/**
-	 * Returns the {@code CSV} {@link File} header (lines starting with {@code "# "})
-	 * @return
+	 * Asynchronously decomposes several {@link Measure}s in parallel, after loading the {@link File} if it isn't the current one
+	 * @param file
+	 * @param measures
+	 * @param period
+	 * @return A {@link CompletableFuture} completed with all {@link Decomposition}s by {@link Measure} when they are all done,
+	 *         or exceptionally as soon as one fails
 	 * @author Rémi BARDON
 	 */
-	public String getHeadingComment() {
-		return this.loader.getHeadingComment();
+	public CompletableFuture<Map<Measure, Decomposition>> decompose(final File file, final List<Measure> measures, final int period) {
+		final var tasks = new LinkedHashMap<Measure, CompletableFuture<Decomposition>>();
+		for (final Measure measure : measures) {
+			tasks.put(measure, this.decompose(file, measure, period));
+		}
+
+		return CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).thenApply((ignored) -> {
+			final var result = new LinkedHashMap<Measure, Decomposition>();
+			for (final var task : tasks.entrySet()) {
+				result.put(task.getKey(), task.getValue().join());
+			}
+			return result;
+		});
 	}
 
 	/**
-	 * 
+	 * Asynchronously decomposes {@link DataPoint} series into {@link DataType}s after cleaning them
 	 * @param measure
-	 * @return
-	 * @throws InvalidKeyException
+	 * @param period
+	 * @param progressCallback Receives cleaning progress, then decomposition progress, each weighing {@link ProgressReporter#STAGE_RESOLUTION},
+	 *                         at most once per interval (see {@link #setProgressInterval(Duration)})
+	 * @param completionHandler
+	 * @see #decompose(File, Measure, int)
 	 * @author Rémi BARDON
 	 */
-	public List<DataPoint> getDataPoints(final Measure measure) throws InvalidKeyException {
-		return this.loader.getDataPoints(measure);
+	public void decompose(
+		final Measure measure,
+		final int period,
+		final BiConsumer<Integer, Integer> progressCallback,
+		final Consumer<Map<DataType, List<DataPoint>>> completionHandler
+	) {
+		final int total = 2 * ProgressReporter.STAGE_RESOLUTION;
+		progressCallback.accept(0, total);
+
+		final var file = new File(this.currentFilePath);
+		final String filePath = this.currentFilePath;
+		final String fileName = this.currentFileName;
+
+		// If already decomposed, completes immediately
+		final CompletableFuture<Decomposition> task = this.decompose(file, measure, period);
+		this.followProgress(this.cleaningProgress, Map.entry(filePath, measure), ProgressReporter.stage(progressCallback, 0, 2));
+		this.clean(file, measure).thenRun(() -> { progressCallback.accept(ProgressReporter.STAGE_RESOLUTION, total); });
+		this.followProgress(this.decomposingProgress, Map.entry(Map.entry(filePath, measure), period), ProgressReporter.stage(progressCallback, 1, 2));
+		task.whenComplete((decomposition, error) -> {
+			if (error != null) {
+				// Log error
+				if (this.isLoggingEnabled) {
+					System.err.println("Error decomposing '" + measure + "' points in '" + fileName + "'");
+					error.printStackTrace();
+				}
+
+				// Send completion
+				progressCallback.accept(total, total);
+				completionHandler.accept(null);
+				return;
+			}
+
+			// Send completion
+			progressCallback.accept(total, total);
+			completionHandler.accept(decomposition.getAllPoints());
+		});
 	}
 
 	/**
-	 * 
+	 * Commits a {@link PipelineEvents.CacheLookup}, if it is recorded
+	 * @param event
+	 * @param cache The name of the cache
+	 * @param filePath
 	 * @param measure
-	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
-	 * @return <ul>
-	 *     <li>All points for given {@link Measure} if given {@link Optional}<{@link Tag}> is {@code empty}</li>
-	 *     <li>An empty {@link List} if the given {@link Tag} doesn't exist (for given {@link Measure})</li>
-	 *     <li>Otherwise, the {@link DataPoint}s corresponding to given {@link Measure} and {@link Tag}</li>
-	 * </ul>
-	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @param period {@code 0} for cleaned points
 	 * @author Rémi BARDON
 	 */
-	public List<DataPoint> getDataPoints(final Measure measure, final Optional<Tag> optionalTag) throws InvalidKeyException {
-		return this.loader.getDataPoints(measure, optionalTag);
+	private void commitLookup(final PipelineEvents.CacheLookup event, final String cache, final String filePath, final Measure measure, final int period) {
+		if (event.shouldCommit()) {
+			event.cache = cache;
+			event.file = filePath;
+			event.measure = measure.toString();
+			event.period = period;
+			event.commit();
+		}
 	}
 
 	/**
-	 * 
-	 * @return
+	 * Forwards progress of a running task to a listener, if the task is still running
+	 * @param <K>
+	 * @param reporters Reporters of running tasks
+	 * @param key The key of the task
+	 * @param listener
 	 * @author Rémi BARDON
 	 */
-	public List<Range<Float>> getOmittedRanges() {
-		return this.cleaner.getOmittedRanges();
+	private <K> void followProgress(final Map<K, ProgressReporter> reporters, final K key, final BiConsumer<Integer, Integer> listener) {
+		final ProgressReporter progress = reporters.get(key);
+		if (progress != null) {
+			progress.addListener(listener);
+		}
+	}
+
+	/**
+	 * Reads a {@link Decomposition} from {@link #persistentCache}, if any
+	 * @param filePath
+	 * @param measure
+	 * @param period
+	 * @param points The cleaned points to decompose
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	private Optional<Decomposition> readPersistentCache(
+		final String filePath,
+		final Measure measure,
+		final int period,
+		final List<DataPoint> points
+	) {
+		if (this.persistentCache.isEmpty()) { return Optional.empty(); }
+		final DecompositionCache cache = this.persistentCache.get();
+
+		try {
+			final var key = cache.key(new File(filePath), measure, Optional.empty(), period, this.decomposer.getParametersDescription());
+			final var decomposition = cache.get(key, points);
+
+			// Log success
+			if (this.isLoggingEnabled && decomposition.isPresent()) { System.out.println("Read '" + measure + "' decomposition from persistent cache"); }
+
+			return decomposition;
+		} catch (IOException e) {
+			// Log error
+			if (this.isLoggingEnabled) {
+				System.err.println("Error reading '" + measure + "' decomposition from persistent cache");
+				e.printStackTrace();
+			}
+
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Writes a {@link Decomposition} in {@link #persistentCache}, if any
+	 * @param filePath
+	 * @param measure
+	 * @param period
+	 * @param decomposition
+	 * @author Rémi BARDON
+	 */
+	private void writePersistentCache(
+		final String filePath,
+		final Measure measure,
+		final int period,
+		final Decomposition decomposition
+	) {
+		if (this.persistentCache.isEmpty()) { return; }
+		final DecompositionCache cache = this.persistentCache.get();
+
+		try {
+			final var key = cache.key(new File(filePath), measure, Optional.empty(), period, this.decomposer.getParametersDescription());
+			cache.put(key, decomposition);
+		} catch (IOException e) {
+			// Log error
+			if (this.isLoggingEnabled) {
+				System.err.println("Error writing '" + measure + "' decomposition in persistent cache");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Cleans cached data for a specific {@link File}
+	 * @param filePath A {@link File} path
+	 * @author Rémi BARDON
+	 */
+	public void emptyCache(final String filePath) {
+		this.prefetchQueue.cancelPending();
+		this.decomposedPointsCache.invalidate((key) -> key.getKey().getKey().equals(filePath));
+
+		this.preCleaningTasks.remove(filePath);
+		this.cleanedPointsCache.invalidate((key) -> key.getKey().equals(filePath));
+
+		final CompletableFuture<ExperimentDataLoader> detachedTask = this.detachedLoadingTasks.remove(filePath);
+		if (detachedTask != null) {
+			detachedTask.cancel(true);
+		}
+	}
+
+	/**
+	 * Cancels all background tasks, keeping finished results
+	 * @author Rémi BARDON
+	 */
+	public void stopBackgroundThreads() {
+		this.loadingTask.ifPresent((task) -> { task.cancel(true); });
+		this.cancelDetachedLoadingTasks();
+		this.prefetchQueue.cancelPending();
+		this.decomposedPointsCache.cancelRunning();
+		this.cleanedPointsCache.cancelRunning();
+		this.preCleaningTasks.clear();
+
+		if (this.isLoggingEnabled) { System.out.println("Stopped all background threads"); }
+	}
+
+	/**
+	 * Returns the {@code CSV} {@link File} header (lines starting with {@code "# "})
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public String getHeadingComment() {
+		return this.loader.getHeadingComment();
+	}
+
+	/**
+	 * 
+	 * @param measure
+	 * @return
+	 * @throws InvalidKeyException
+	 * @author Rémi BARDON
+	 */
+	public List<DataPoint> getDataPoints(final Measure measure) throws InvalidKeyException {
+		return this.loader.getDataPoints(measure);
+	}
+
+	/**
+	 * 
+	 * @param measure
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+	 * @return <ul>
+	 *     <li>All points for given {@link Measure} if given {@link Optional}<{@link Tag}> is {@code empty}</li>
+	 *     <li>An empty {@link List} if the given {@link Tag} doesn't exist (for given {@link Measure})</li>
+	 *     <li>Otherwise, the {@link DataPoint}s corresponding to given {@link Measure} and {@link Tag}</li>
+	 * </ul>
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @author Rémi BARDON
+	 */
+	public List<DataPoint> getDataPoints(final Measure measure, final Optional<Tag> optionalTag) throws InvalidKeyException {
+		return this.loader.getDataPoints(measure, optionalTag);
+	}
+
+	/**
+	 * 
+	 * @param measure
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+	 * @return The {@link QuantileSketch} built while loading, answering any quantile in constant time
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @see ExperimentDataStore#getQuantileSketch(Optional)
+	 * @author Rémi BARDON
+	 */
+	public QuantileSketch getQuantileSketch(final Measure measure, final Optional<Tag> optionalTag) throws InvalidKeyException {
+		return this.loader.getStore(measure).getQuantileSketch(optionalTag);
+	}
+
+	/**
+	 * Computes rolling statistics of a {@link Measure} (cleaned if it was), for the window ending at each point
+	 * @param measure
+	 * @param windowDuration The duration of the window
+	 * @param quantile The quantile to compute, in {@code [0, 1]} ({@code 0.5} for the median)
+	 * @return
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @author Rémi BARDON
+	 */
+	public RollingStatistics.Columns getRollingStatistics(final Measure measure, final float windowDuration, final double quantile) throws InvalidKeyException {
+		return this.loader.getStore(measure).getRollingStatistics(windowDuration, quantile);
+	}
+
+	/**
+	 * Cross-correlates two {@link Measure}s (cleaned if they were) with a {@link FastFourierTransform}
+	 * @param first
+	 * @param second
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter points
+	 * @param maximumLag The biggest lag to compute, in both directions
+	 * @return
+	 * @throws InvalidKeyException If one of the given {@link Measure}s doesn't exist
+	 * @see CrossCorrelation
+	 * @author Rémi BARDON
+	 */
+	public CrossCorrelation getCrossCorrelation(
+		final Measure first,
+		final Measure second,
+		final Optional<Tag> optionalTag,
+		final float maximumLag
+	) throws InvalidKeyException {
+		return this.getCrossCorrelations(List.of(Map.entry(first, second)), optionalTag, maximumLag).get(0);
+	}
+
+	/**
+	 * Cross-correlates two {@link Measure}s (cleaned if they were) in a time window
+	 * @param first
+	 * @param second
+	 * @param range A time window
+	 * @param maximumLag The biggest lag to compute, in both directions
+	 * @return
+	 * @throws InvalidKeyException If one of the given {@link Measure}s doesn't exist
+	 * @see #getCrossCorrelation(Measure, Measure, Optional, float)
+	 * @author Rémi BARDON
+	 */
+	public CrossCorrelation getCrossCorrelation(
+		final Measure first,
+		final Measure second,
+		final Range<Float> range,
+		final float maximumLag
+	) throws InvalidKeyException {
+		return this.getCrossCorrelations(List.of(Map.entry(first, second)), range, maximumLag).get(0);
+	}
+
+	/**
+	 * Cross-correlates several pairs of {@link Measure}s (cleaned if they were) in parallel
+	 * @param pairs
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter points
+	 * @param maximumLag The biggest lag to compute, in both directions
+	 * @return One {@link CrossCorrelation} per pair, in the same order
+	 * @throws InvalidKeyException If one of the given {@link Measure}s doesn't exist
+	 * @see CrossCorrelation
+	 * @author Rémi BARDON
+	 */
+	public List<CrossCorrelation> getCrossCorrelations(
+		final List<Map.Entry<Measure, Measure>> pairs,
+		final Optional<Tag> optionalTag,
+		final float maximumLag
+	) throws InvalidKeyException {
+		final var frames = new ArrayList<ExperimentFrame>(pairs.size());
+		for (final var pair : pairs) {
+			frames.add(this.loader.getFrame(List.of(pair.getKey(), pair.getValue()), optionalTag));
+		}
+		return this.crossCorrelate(pairs, frames, maximumLag);
+	}
+
+	/**
+	 * Cross-correlates several pairs of {@link Measure}s (cleaned if they were) in a time window, in parallel
+	 * @param pairs
+	 * @param range A time window
+	 * @param maximumLag The biggest lag to compute, in both directions
+	 * @return One {@link CrossCorrelation} per pair, in the same order
+	 * @throws InvalidKeyException If one of the given {@link Measure}s doesn't exist
+	 * @see CrossCorrelation
+	 * @author Rémi BARDON
+	 */
+	public List<CrossCorrelation> getCrossCorrelations(
+		final List<Map.Entry<Measure, Measure>> pairs,
+		final Range<Float> range,
+		final float maximumLag
+	) throws InvalidKeyException {
+		final var frames = new ArrayList<ExperimentFrame>(pairs.size());
+		for (final var pair : pairs) {
+			frames.add(this.loader.getFrame(List.of(pair.getKey(), pair.getValue()), range));
+		}
+		return this.crossCorrelate(pairs, frames, maximumLag);
+	}
+
+	/**
+	 * Cross-correlates pairs of columns on the compute pool, with {@link TaskScheduler.Priority#FOREGROUND} priority
+	 * @param pairs
+	 * @param frames One {@link ExperimentFrame} per pair, aligned on the first {@link Measure} of the pair
+	 * @param maximumLag The biggest lag to compute, in both directions
+	 * @return One {@link CrossCorrelation} per pair, in the same order
+	 * @throws InvalidKeyException If a {@link Measure} isn't in the {@link ExperimentFrame} of its pair
+	 * @author Rémi BARDON
+	 */
+	private List<CrossCorrelation> crossCorrelate(
+		final List<Map.Entry<Measure, Measure>> pairs,
+		final List<ExperimentFrame> frames,
+		final float maximumLag
+	) throws InvalidKeyException {
+		// Timestamps, first and second columns of every pair
+		final var columns = new FloatBuffer[pairs.size()][];
+		for (int i = 0; i < pairs.size(); i++) {
+			final var frame = frames.get(i);
+			final var pair = pairs.get(i);
+			columns[i] = new FloatBuffer[] { frame.getTimestamps(), frame.getColumn(pair.getKey()), frame.getColumn(pair.getValue()) };
+		}
+
+		final var results = new CrossCorrelation[pairs.size()];
+		this.scheduler.parallelFor(TaskScheduler.Priority.FOREGROUND, pairs.size(), (i) -> {
+			results[i] = CrossCorrelation.compute(columns[i][0], columns[i][1], columns[i][2], maximumLag);
+		});
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Estimates the power spectrum of a {@link Measure} (cleaned if it was)
+	 * @param measure
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter points
+	 * @param segmentLength The number of samples per segment, a power of two
+	 * @return
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @see SpectrumAnalyzer
+	 * @author Rémi BARDON
+	 */
+	public PowerSpectrum getPowerSpectrum(final Measure measure, final Optional<Tag> optionalTag, final int segmentLength) throws InvalidKeyException {
+		final FloatBuffer[] columns = this.getColumns(this.loader.getStore(measure), optionalTag);
+		return new SpectrumAnalyzer(segmentLength).analyze(columns[0], columns[1]);
+	}
+
+	/**
+	 * Estimates the power spectrum of every phase of some {@link Measure}s (cleaned if they were), in parallel
+	 * @param measures
+	 * @param segmentLength The number of samples per segment, a power of two
+	 * @return The {@link PowerSpectrum} of every phase, by {@link Measure} and {@link Tag}
+	 * @throws InvalidKeyException If one of the given {@link Measure}s doesn't exist
+	 * @see SpectrumAnalyzer
+	 * @author Rémi BARDON
+	 */
+	public Map<Measure, Map<Tag, PowerSpectrum>> getPowerSpectra(final List<Measure> measures, final int segmentLength) throws InvalidKeyException {
+		// Extract columns first, as it can throw
+		final var tasks = new ArrayList<Map.Entry<Map.Entry<Measure, Tag>, FloatBuffer[]>>();
+		for (final Measure measure : measures) {
+			final var store = this.loader.getStore(measure);
+			for (final Tag tag : store.getTags()) {
+				tasks.add(Map.entry(Map.entry(measure, tag), this.getColumns(store, Optional.of(tag))));
+			}
+		}
+
+		// One plan for all tasks, with buffers reused by each compute thread
+		final var analyzer = new SpectrumAnalyzer(segmentLength);
+		final var spectra = new PowerSpectrum[tasks.size()];
+		this.scheduler.parallelFor(TaskScheduler.Priority.FOREGROUND, tasks.size(), (i) -> {
+			final FloatBuffer[] columns = tasks.get(i).getValue();
+			spectra[i] = analyzer.analyze(columns[0], columns[1]);
+		});
+
+		final var result = new LinkedHashMap<Measure, Map<Tag, PowerSpectrum>>();
+		for (int i = 0; i < spectra.length; i++) {
+			final var key = tasks.get(i).getKey();
+			result.computeIfAbsent(key.getKey(), (measure) -> new LinkedHashMap<Tag, PowerSpectrum>())
+				.put(key.getValue(), spectra[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Copies timestamps and values of a store into primitive columns
+	 * @param store
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter points
+	 * @return Timestamps and values
+	 * @author Rémi BARDON
+	 */
+	private FloatBuffer[] getColumns(final ExperimentDataStore store, final Optional<Tag> optionalTag) {
+		final var points = store.getDataPoints();
+		final int[] rows = this.getRowRange(store, optionalTag);
+		final int from = rows[0];
+		final int to = rows[1];
+
+		final float[] timestamps = new float[to - from];
+		final float[] values = new float[to - from];
+		final var iterator = points.listIterator(from);
+		for (int i = 0; i < timestamps.length; i++) {
+			final DataPoint point = iterator.next();
+			timestamps[i] = point.getTimestamp();
+			values[i] = point.getValue();
+		}
+
+		return new FloatBuffer[] { FloatBuffer.wrap(timestamps), FloatBuffer.wrap(values) };
+	}
+
+	/**
+	 * 
+	 * @param store
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter points
+	 * @return The indices of the first (inclusive) and last (exclusive) points in the given {@link Tag}, or of all points
+	 * @author Rémi BARDON
+	 */
+	private int[] getRowRange(final ExperimentDataStore store, final Optional<Tag> optionalTag) {
+		if (optionalTag.isEmpty()) {
+			return new int[] { 0, store.getDataPoints().size() };
+		}
+		if (!store.getPhases().containsKey(optionalTag.get())) {
+			return new int[] { 0, 0 };
+		}
+
+		final var index = store.getSummaryIndex();
+		final Range<Float> range = store.getPhases().get(optionalTag.get());
+		final int from = index.indexAfter(range.getMinimum(), false);
+		return new int[] { from, Math.max(from, index.indexAfter(range.getMaximum(), true)) };
+	}
+
+	/**
+	 * Columns of several {@link Measure}s (cleaned if they were), on the time axis of the first one
+	 * @param measures
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+	 * @return
+	 * @throws InvalidKeyException If one of the given {@link Measure}s doesn't exist
+	 * @see ExperimentDataLoader#getFrame(List, Optional)
+	 * @author Rémi BARDON
+	 */
+	public ExperimentFrame getFrame(final List<Measure> measures, final Optional<Tag> optionalTag) throws InvalidKeyException {
+		return this.loader.getFrame(measures, optionalTag);
+	}
+
+	/**
+	 * Summarizes a {@link DataType} in a time window, in logarithmic time
+	 * @param measure
+	 * @param period The period used to decompose {@code measure} (ignored for {@link DataType#RAW})
+	 * @param type
+	 * @param range A time window
+	 * @return
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist, or its {@link Decomposition} with the given period isn't cached (never computed, or evicted since)
+	 * @author Rémi BARDON
+	 */
+	public Summary getSummary(final Measure measure, final int period, final DataType type, final Range<Float> range) throws InvalidKeyException {
+		final var sample = this.metrics.start(PipelineMetrics.Stage.QUERY);
+		try {
+			return this.getSummaryIndex(measure, period, type).summarize(range);
+		} finally {
+			sample.stop(0);
+		}
+	}
+
+	/**
+	 * Summarizes a {@link DataType} for a phase, from precomputed {@link Summary}s
+	 * @param measure
+	 * @param period The period used to decompose {@code measure} (ignored for {@link DataType#RAW})
+	 * @param type
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+	 * @return
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist, or its {@link Decomposition} with the given period isn't cached (never computed, or evicted since)
+	 * @see SummaryIndex#summarize(Optional)
+	 * @author Rémi BARDON
+	 */
+	public Summary getSummary(final Measure measure, final int period, final DataType type, final Optional<Tag> optionalTag) throws InvalidKeyException {
+		final var sample = this.metrics.start(PipelineMetrics.Stage.QUERY);
+		try {
+			return this.getSummaryIndex(measure, period, type).summarize(optionalTag);
+		} finally {
+			sample.stop(0);
+		}
+	}
+
+	/**
+	 * Downsamples a {@link DataType} for chart rendering, preserving its visual shape
+	 * @param measure
+	 * @param period The period used to decompose {@code measure} (ignored for {@link DataType#RAW})
+	 * @param type
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+	 * @param count The maximum number of points to return, typically the chart width in pixels
+	 * @return At most {@code count} {@link DataPoint}s, or an empty {@link List} if the given {@link Tag} doesn't exist
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist, or its {@link Decomposition} with the given period isn't cached (never computed, or evicted since)
+	 * @see Downsampler#largestTriangleThreeBuckets(float[], float[], int)
+	 * @author Rémi BARDON
+	 */
+	public List<DataPoint> getDownsampledPoints(
+		final Measure measure,
+		final int period,
+		final DataType type,
+		final Optional<Tag> optionalTag,
+		final int count
+	) throws InvalidKeyException {
+		if (optionalTag.isEmpty()) {
+			return this.getDownsampledPoints(measure, period, type, new Range<Float>(Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY), count);
+		}
+
+		final var phases = this.loader.getPhases(measure);
+		if (!phases.containsKey(optionalTag.get())) {
+			return new ArrayList<DataPoint>();
+		}
+
+		return this.getDownsampledPoints(measure, period, type, phases.get(optionalTag.get()), count);
+	}
+
+	/**
+	 * Downsamples a {@link DataType} in a time window for chart rendering, preserving its visual shape
+	 * @param measure
+	 * @param period The period used to decompose {@code measure} (ignored for {@link DataType#RAW})
+	 * @param type
+	 * @param range A time window
+	 * @param count The maximum number of points to return, typically the chart width in pixels
+	 * @return At most {@code count} {@link DataPoint}s
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist, or its {@link Decomposition} with the given period isn't cached (never computed, or evicted since)
+	 * @see Downsampler#largestTriangleThreeBuckets(float[], float[], int)
+	 * @author Rémi BARDON
+	 */
+	public List<DataPoint> getDownsampledPoints(
+		final Measure measure,
+		final int period,
+		final DataType type,
+		final Range<Float> range,
+		final int count
+	) throws InvalidKeyException {
+		final var sample = this.metrics.start(PipelineMetrics.Stage.QUERY);
+		try {
+			return this.downsample(measure, period, type, range, count);
+		} finally {
+			sample.stop(0);
+		}
 	}
 
 	/**
 	 * 
+	 * @param measure
+	 * @param period
+	 * @param type
 	 * @param range
+	 * @param count
+	 * @return
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist, or its {@link Decomposition} with the given period isn't cached (never computed, or evicted since)
+	 * @see #getDownsampledPoints(Measure, int, DataType, Range, int)
+	 * @author Rémi BARDON
+	 */
+	private List<DataPoint> downsample(
+		final Measure measure,
+		final int period,
+		final DataType type,
+		final Range<Float> range,
+		final int count
+	) throws InvalidKeyException {
+		final var store = this.loader.getStore(measure);
+		final var index = store.getSummaryIndex();
+		final int from = index.indexAfter(range.getMinimum(), false);
+		int to = Math.max(from, index.indexAfter(range.getMaximum(), true));
+
+		final float[] timestamps;
+		final float[] values;
+
+		if (type == DataType.RAW) {
+			timestamps = new float[to - from];
+			values = new float[to - from];
+			final var iterator = store.getDataPoints().listIterator(from);
+			for (int i = 0; i < timestamps.length; i++) {
+				final DataPoint point = iterator.next();
+				timestamps[i] = point.getTimestamp();
+				values[i] = point.getValue();
+			}
+		} else {
+			final Decomposition decomposition = this.getDecomposition(measure, period);
+			to = Math.max(from, Math.min(to, decomposition.size()));
+			timestamps = new float[to - from];
+			values = new float[to - from];
+			decomposition.getTimestamps(from, to, timestamps);
+			decomposition.getValues(type, from, to, values);
+		}
+
+		return Downsampler.downsample(timestamps, values, count);
+	}
+
+	/**
+	 * Reads the min/max buckets needed to draw a time window, whatever its length
+	 * @param measure
+	 * @param period The period used to decompose {@code measure} (ignored for {@link DataType#RAW})
+	 * @param type
+	 * @param range A time window
+	 * @param pixelWidth The width of the chart, in pixels
 	 * @return
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist, or its {@link Decomposition} with the given period isn't cached (never computed, or evicted since)
+	 * @see MinMaxPyramid#query(Range, int)
+	 * @author Rémi BARDON
+	 */
+	public MinMaxPyramid.Buckets getPyramidBuckets(
+		final Measure measure,
+		final int period,
+		final DataType type,
+		final Range<Float> range,
+		final int pixelWidth
+	) throws InvalidKeyException {
+		final var sample = this.metrics.start(PipelineMetrics.Stage.QUERY);
+		try {
+			final MinMaxPyramid pyramid;
+			if (type == DataType.RAW) {
+				pyramid = this.loader.getStore(measure).getPyramid();
+			} else {
+				pyramid = this.getDecomposition(measure, period).getPyramid(type);
+			}
+			return pyramid.query(range, pixelWidth);
+		} finally {
+			sample.stop(0);
+		}
+	}
+
+	/**
+	 * 
+	 * @param measure
+	 * @param period The period used to decompose {@code measure} (ignored for {@link DataType#RAW})
+	 * @param type
+	 * @return
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist, or its {@link Decomposition} with the given period isn't cached (never computed, or evicted since)
+	 * @author Rémi BARDON
+	 */
+	private SummaryIndex getSummaryIndex(final Measure measure, final int period, final DataType type) throws InvalidKeyException {
+		if (type == DataType.RAW) {
+			return this.loader.getStore(measure).getSummaryIndex();
+		}
+
+		return this.getDecomposition(measure, period).getSummaryIndex(type);
+	}
+
+	/**
+	 * Exports {@link DataType}s of a {@link Measure} (cleaned if it was) to a file, one column per {@link DataType}.
+	 * {@link DataType#RAW} columns are named after the {@link Measure}, so that a {@link ExperimentDataExporter.Format#TEXT}
+	 * export of {@link DataType#RAW} values can be loaded again, even if it doesn't start at {@code t=0} (exports of a phase).
+	 * @param path The file to create (or overwrite)
+	 * @param format
+	 * @param measure
+	 * @param types
+	 * @param period The period used to decompose {@code measure} (ignored if {@code types} only contains {@link DataType#RAW})
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter exported points
+	 * @throws IOException
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist, or its {@link Decomposition} with the given period isn't cached (never computed, or evicted since)
+	 * @author Rémi BARDON
+	 */
+	public void export(
+		final Path path,
+		final ExperimentDataExporter.Format format,
+		final Measure measure,
+		final List<DataType> types,
+		final int period,
+		final Optional<Tag> optionalTag
+	) throws IOException, InvalidKeyException {
+		final var store = this.loader.getStore(measure);
+		final var points = store.getDataPoints();
+
+		// Exported rows
+		final int[] rows = this.getRowRange(store, optionalTag);
+		final int from = rows[0];
+		final int to = rows[1];
+		final Map<Tag, Range<Float>> phases = new LinkedHashMap<Tag, Range<Float>>(store.getPhases());
+		if (optionalTag.isPresent()) {
+			phases.keySet().retainAll(List.of(optionalTag.get()));
+		}
+
+		final float[] timestamps = new float[to - from];
+		final var iterator = points.listIterator(from);
+		for (int i = 0; i < timestamps.length; i++) {
+			timestamps[i] = iterator.next().getTimestamp();
+		}
+
+		final var columns = new LinkedHashMap<String, FloatBuffer>();
+		for (final DataType type : types) {
+			final float[] values = new float[to - from];
+			if (type == DataType.RAW) {
+				final var rawIterator = points.listIterator(from);
+				for (int i = 0; i < values.length; i++) {
+					values[i] = rawIterator.next().getValue();
+				}
+			} else {
+				// Points after the decomposed ones (if any) are exported as NaN
+				final Decomposition decomposition = this.getDecomposition(measure, period);
+				final int decomposedTo = Math.max(from, Math.min(to, decomposition.size()));
+				if (decomposedTo > from) {
+					decomposition.getValues(type, from, decomposedTo, values);
+				}
+				Arrays.fill(values, decomposedTo - from, values.length, Float.NaN);
+			}
+			columns.put(type == DataType.RAW ? measure.getName() : measure.getName() + " (" + type + ")", FloatBuffer.wrap(values));
+		}
+
+		this.exporter.write(path, format, FloatBuffer.wrap(timestamps), columns, phases);
+
+		// Log success
+		if (this.isLoggingEnabled) { System.out.println("Exported '" + measure + "' points to '" + path + "'"); }
+	}
+
+	/**
+	 * 
+	 * @param measure
+	 * @param period
+	 * @return The cached {@link Decomposition} of {@code measure} in the current {@link File}, marked as recently used
+	 *         so that the one being viewed is evicted last. If it isn't cached (it was evicted for example),
+	 *         waits until it is computed again or read from the persistent cache.
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
 	 * @author Rémi BARDON
 	 */
-	public List<DataPoint> getOmittedPoints(final Range<Float> range) {
-		return this.cleaner.getOmittedPoints(range);
+	private Decomposition getDecomposition(final Measure measure, final int period) throws InvalidKeyException {
+		final var key = Map.entry(Map.entry(this.currentFilePath, measure), period);
+		final Optional<Decomposition> cached = this.decomposedPointsCache.getIfPresent(key);
+		if (cached.isPresent()) {
+			return cached.get();
+		}
+
+		try {
+			return this.decompose(new File(this.currentFilePath), measure, period).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof InvalidKeyException) {
+				throw (InvalidKeyException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 
+	 * @param measure
+	 * @return The ranges omitted while cleaning {@code measure}, empty if it wasn't cleaned
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @author Rémi BARDON
+	 */
+	public List<Range<Float>> getOmittedRanges(final Measure measure) throws InvalidKeyException {
+		return this.loader.getStore(measure).getOmittedRanges();
+	}
+
+	/**
+	 * 
+	 * @param measure
+	 * @param range
+	 * @return The points of {@code measure} omitted while cleaning in {@code range}
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @author Rémi BARDON
+	 */
+	public List<DataPoint> getOmittedPoints(final Measure measure, final Range<Float> range) throws InvalidKeyException {
+		return this.loader.getStore(measure).getOmittedPoints(range);
 	}
 
 	/**
@@ -368,7 +1480,8 @@ public class ExperimentManager {
 	}
 
 	/**
-	 * Enables/disables background pre-loading and computing of {@link File}s data. Default is {@code true}
+	 * Enables/disables background pre-loading and computing of {@link File}s data:
+	 * cleaning other {@link Measure}s, and decomposing likely next requests. Default is {@code true}
 	 * @param enabled
 	 * @author Rémi BARDON
 	 */
@@ -376,6 +1489,92 @@ public class ExperimentManager {
 		this.isPreComputingEnabled = enabled;
 	}
 
+	/**
+	 * Sets the minimum time between two calls of progress callbacks, for tasks started afterwards. Default is {@link ProgressReporter#DEFAULT_INTERVAL}
+	 * @param interval
+	 * @author Rémi BARDON
+	 */
+	public void setProgressInterval(final Duration interval) {
+		this.progressInterval = interval;
+	}
+
+	/**
+	 * Enables/disables chunked decomposition of long series. Default is {@code 0} (disabled).
+	 * Decomposition progress is reported once per window, so it only goes from {@code 0/1} to {@code 1/1} when disabled.
+	 * Decompositions computed with other parameters are forgotten (persisted ones are keyed by parameters).
+	 * @param windowLength The maximum number of points decomposed in one shot, or {@code 0} to disable chunked mode
+	 * @see ExperimentDataDecomposer#setWindowLength(int)
+	 * @author Rémi BARDON
+	 */
+	public void setDecompositionWindowLength(final int windowLength) {
+		final String parameters = this.decomposer.getParametersDescription();
+		this.decomposer.setWindowLength(windowLength);
+
+		if (!parameters.equals(this.decomposer.getParametersDescription())) {
+			this.decomposedPointsCache.invalidate((key) -> true);
+		}
+	}
+
+	/**
+	 * Sets the memory budget shared by all in-memory caches (cleaned points and decompositions, also of each {@link ExperimentSession}),
+	 * above which least recently used entries are evicted. Default is a quarter of the maximum heap size.
+	 * Cleaned points of the current {@link File} and of open sessions count towards it, but are never evicted.
+	 * @param bytes The maximum approximate number of bytes retained by all caches
+	 * @author Rémi BARDON
+	 */
+	public void setCacheMemoryBudget(final long bytes) {
+		this.cacheBudget.setMaximumWeight(bytes);
+	}
+
+	/**
+	 * Enables/disables keeping evicted cache entries behind soft references,
+	 * so that they can be reused until the garbage collector needs memory. Default is {@code false}
+	 * @param enabled
+	 * @author Rémi BARDON
+	 */
+	public void setSoftCacheEnabled(final boolean enabled) {
+		this.cleanedPointsCache.setSoftTierEnabled(enabled);
+		this.decomposedPointsCache.setSoftTierEnabled(enabled);
+	}
+
+	/**
+	 * 
+	 * @return Counters of the cleaned points cache
+	 * @author Rémi BARDON
+	 */
+	public ComputationCache.Statistics getCleanedPointsCacheStatistics() {
+		return this.cleanedPointsCache.getStatistics();
+	}
+
+	/**
+	 * 
+	 * @return Counters of the decompositions cache
+	 * @author Rémi BARDON
+	 */
+	public ComputationCache.Statistics getDecomposedPointsCacheStatistics() {
+		return this.decomposedPointsCache.getStatistics();
+	}
+
+	/**
+	 * 
+	 * @return Metrics of this manager's pipeline and of its {@link ExperimentSession}s. Disabled by default.
+	 * @see PipelineMetrics#setEnabled(boolean)
+	 * @see PipelineMetrics#registerMBean(String)
+	 * @author Rémi BARDON
+	 */
+	public PipelineMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Sets the persistent cache used to store decompositions across restarts. Default is none
+	 * @param cache An {@link Optional} {@link DecompositionCache}
+	 * @author Rémi BARDON
+	 */
+	public void setPersistentCache(final Optional<DecompositionCache> cache) {
+		this.persistentCache = cache;
+	}
+
 	@Override
 	public void finalize() {
 		this.stopBackgroundThreads();
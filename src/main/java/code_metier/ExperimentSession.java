@@ -0,0 +1,332 @@
+package code_metier;
+
+import java.io.File;
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * One opened {@link File}, with its own data and pipeline (decomposer and caches),
+ * so that several {@link File}s can be loaded, cleaned and decomposed concurrently and compared side by side.<br>
+ * Loaded {@link DataPoint}s are never modified: cleaning a {@link Measure} works on a copy of its {@link ExperimentDataStore},
+ * which then replaces the loaded one, once per {@link Measure}. Lists handed out before cleaning keep loaded points,
+ * and other sessions never see cleaned ones.
+ * @see ExperimentManager#open(File)
+ * @author Rémi BARDON
+ */
+public final class ExperimentSession {
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final File file;
+	/**
+	 * Holds the data of {@link #file}, loaded before the session is published
+	 * @author Rémi BARDON
+	 */
+	private final ExperimentDataLoader loader;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final ExperimentDataDecomposer decomposer;
+	/**
+	 * Runs cleaning and decomposing tasks. Shared with the {@link ExperimentManager} and other sessions.
+	 * @author Rémi BARDON
+	 */
+	private final TaskScheduler scheduler;
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final ComputationCache<Measure, ExperimentDataStore> cleanedPointsCache;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final ComputationCache<Map.Entry<Measure, Integer>, Decomposition> decomposedPointsCache;
+	/**
+	 * Records cleaning and decomposing times. Shared with the {@link ExperimentManager}.
+	 * @author Rémi BARDON
+	 */
+	private final PipelineMetrics metrics;
+	/**
+	 * Called once when the session is closed
+	 * @author Rémi BARDON
+	 */
+	private final Runnable closeHandler;
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private volatile boolean isClosed;
+
+	/**
+	 *
+	 * @param file The loaded {@link File}
+	 * @param loader A loader which loaded {@code file}, and won't load anything else
+	 * @param scheduler
+	 * @param windowLength See {@link ExperimentDataDecomposer#setWindowLength(int)}
+	 * @param cacheBudget The memory budget shared by all caches
+	 * @param metrics Records cleaning and decomposing times
+	 * @param closeHandler Called once when the session is closed
+	 * @author Rémi BARDON
+	 */
+	ExperimentSession(
+		final File file,
+		final ExperimentDataLoader loader,
+		final TaskScheduler scheduler,
+		final int windowLength,
+		final ComputationCache.Budget cacheBudget,
+		final PipelineMetrics metrics,
+		final Runnable closeHandler
+	) {
+		this.file = file;
+		this.loader = loader;
+		this.decomposer = new ExperimentDataDecomposer();
+		this.decomposer.setWindowLength(windowLength);
+		this.decomposer.setScheduler(Optional.of(scheduler));
+		this.scheduler = scheduler;
+		this.cleanedPointsCache = new ComputationCache<Measure, ExperimentDataStore>(
+			ExperimentDataStore::getRetainedSize,
+			cacheBudget
+		);
+		// The loader holds cleaned stores until the session is closed, so evicting them would free nothing
+		this.cleanedPointsCache.setPinned((measure) -> true);
+		this.decomposedPointsCache = new ComputationCache<Map.Entry<Measure, Integer>, Decomposition>(
+			Decomposition::getRetainedSize,
+			cacheBudget
+		);
+		this.metrics = metrics;
+		this.closeHandler = closeHandler;
+		this.isClosed = false;
+	}
+
+	/**
+	 *
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 *
+	 * @return The {@code CSV} {@link File} header (lines starting with {@code "# "})
+	 * @author Rémi BARDON
+	 */
+	public String getHeadingComment() {
+		return this.loader.getHeadingComment();
+	}
+
+	/**
+	 *
+	 * @return The {@link Measure}s present in the {@link File}
+	 * @author Rémi BARDON
+	 */
+	public List<Measure> getMeasures() {
+		return new ArrayList<Measure>(this.loader.getMeasures());
+	}
+
+	/**
+	 *
+	 * @return The {@link Tag}s present in the {@link File}
+	 * @author Rémi BARDON
+	 */
+	public List<Tag> getTags() {
+		return new ArrayList<Tag>(this.loader.getAllTags());
+	}
+
+	/**
+	 *
+	 * @param measure
+	 * @param optionalTag
+	 * @return {@link DataPoint}s of {@code measure}, cleaned if {@link #clean(Measure)} completed
+	 * @throws InvalidKeyException If the given {@link Measure} or {@link Tag} doesn't exist
+	 * @author Rémi BARDON
+	 */
+	public List<DataPoint> getDataPoints(final Measure measure, final Optional<Tag> optionalTag) throws InvalidKeyException {
+		return this.loader.getDataPoints(measure, optionalTag);
+	}
+
+	/**
+	 *
+	 * @param measures
+	 * @param optionalTag
+	 * @return Columns of {@code measures}, cleaned if they were
+	 * @throws InvalidKeyException If a {@link Measure} or the {@link Tag} doesn't exist
+	 * @author Rémi BARDON
+	 */
+	public ExperimentFrame getFrame(final List<Measure> measures, final Optional<Tag> optionalTag) throws InvalidKeyException {
+		return this.loader.getFrame(measures, optionalTag);
+	}
+
+	/**
+	 * Asynchronously cleans {@link DataPoint}s of a {@link Measure}.
+	 * Concurrent requests share one cleaning, and cleaned {@link Measure}s are returned immediately.
+	 * @param measure
+	 * @return A {@link CompletableFuture} completed with the cleaned {@link ExperimentDataStore},
+	 *         or exceptionally with an {@link InvalidKeyException} if the given {@link Measure} doesn't exist
+	 * @throws IllegalStateException If the session is closed
+	 * @author Rémi BARDON
+	 */
+	public CompletableFuture<ExperimentDataStore> clean(final Measure measure) {
+		this.checkOpen();
+
+		return this.cleanedPointsCache.get(measure, () -> {
+			// Cancelling the task stops cleaning, leaving points untouched
+			final var token = new CancellationToken();
+			return token.cancelWith(CompletableFuture.supplyAsync(() -> {
+				try {
+					return this.cleanNow(measure, token);
+				} catch (InvalidKeyException e) {
+					throw new CompletionException(e);
+				}
+			}, this.scheduler.getExecutor(TaskScheduler.Priority.FOREGROUND)));
+		});
+	}
+
+	/**
+	 * Asynchronously decomposes {@link DataPoint} series into {@link DataType}s after cleaning them.
+	 * Concurrent requests share one decomposition, and decomposed {@link Measure}s are returned immediately.
+	 * @param measure
+	 * @param period
+	 * @return A {@link CompletableFuture} completed with the {@link Decomposition},
+	 *         or exceptionally with an {@link InvalidKeyException} if the given {@link Measure} doesn't exist
+	 * @throws IllegalStateException If the session is closed
+	 * @author Rémi BARDON
+	 */
+	public CompletableFuture<Decomposition> decompose(final Measure measure, final int period) {
+		this.checkOpen();
+
+		return this.decomposedPointsCache.get(Map.entry(measure, period), () -> {
+			// Cancelling the task stops decomposing, discarding partial results
+			final var token = new CancellationToken();
+			return token.cancelWith(this.clean(measure).thenApplyAsync((store) -> {
+				final var sample = this.metrics.start(PipelineMetrics.Stage.DECOMPOSE);
+				final Decomposition decomposition = this.decomposer.decompose(
+					store.getDataPoints(),
+					period,
+					token,
+					new ProgressReporter(),
+					TaskScheduler.Priority.FOREGROUND,
+					new PipelineEvents.Subject(this.file, measure)
+				);
+				sample.stop(store.getDataPoints().size());
+
+				decomposition.updateSummaryIndexes(
+					List.of(DataType.RAW, DataType.TREND, DataType.SEASONNALITY, DataType.NOISE),
+					store.getPhases()
+				);
+				decomposition.updatePyramids(List.of(DataType.TREND, DataType.SEASONNALITY, DataType.NOISE));
+
+				return decomposition;
+			}, this.scheduler.getExecutor(TaskScheduler.Priority.FOREGROUND)));
+		});
+	}
+
+	/**
+	 * Asynchronously decomposes several {@link Measure}s in parallel
+	 * @param measures
+	 * @param period
+	 * @return A {@link CompletableFuture} completed with all {@link Decomposition}s by {@link Measure} when they are all done,
+	 *         or exceptionally as soon as one fails
+	 * @throws IllegalStateException If the session is closed
+	 * @author Rémi BARDON
+	 */
+	public CompletableFuture<Map<Measure, Decomposition>> decompose(final List<Measure> measures, final int period) {
+		final var tasks = new LinkedHashMap<Measure, CompletableFuture<Decomposition>>();
+		for (final Measure measure : measures) {
+			tasks.put(measure, this.decompose(measure, period));
+		}
+
+		return CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).thenApply((ignored) -> {
+			final var result = new LinkedHashMap<Measure, Decomposition>();
+			for (final var task : tasks.entrySet()) {
+				result.put(task.getKey(), task.getValue().join());
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Cancels running tasks and releases cached results. The session can't be used anymore.
+	 * @author Rémi BARDON
+	 */
+	public void close() {
+		if (this.isClosed) { return; }
+		this.isClosed = true;
+
+		this.decomposedPointsCache.invalidate((key) -> true);
+		this.cleanedPointsCache.invalidate((key) -> true);
+		this.closeHandler.run();
+	}
+
+	/**
+	 *
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public boolean isClosed() {
+		return this.isClosed;
+	}
+
+	/**
+	 * Cleans {@link DataPoint}s of a {@link Measure} on the calling thread
+	 * @param measure
+	 * @param token
+	 * @return The cleaned {@link ExperimentDataStore}
+	 * @throws InvalidKeyException If the given {@link Measure} doesn't exist
+	 * @throws CancellationException If {@code token} was cancelled
+	 * @author Rémi BARDON
+	 */
+	private ExperimentDataStore cleanNow(final Measure measure, final CancellationToken token) throws InvalidKeyException {
+		final var loadedStore = this.loader.getStore(measure);
+		// As in ExperimentManager, a cleaner per task and a lock per series, cleaning a copy of the loaded store
+		synchronized (loadedStore) {
+			// Cleaned while waiting for the lock, or evicted from the cache but still loaded
+			final var current = this.loader.getStore(measure);
+			if (current.isCleaned()) {
+				return current;
+			}
+
+			final var sample = this.metrics.start(PipelineMetrics.Stage.CLEAN);
+			final var store = current.copy();
+			final var cleaner = new ExperimentDataCleaner();
+			cleaner.clean(store.getDataPoints(), store.getPhases(), token, new ProgressReporter(), new PipelineEvents.Subject(this.file, measure));
+			store.updateSummaryIndex();
+			store.updatePyramid();
+			store.setCleaned(cleaner);
+			this.loader.setCleanedStore(measure, store);
+			sample.stop(store.getDataPoints().size());
+			return store;
+		}
+	}
+
+	/**
+	 *
+	 * @throws IllegalStateException If the session is closed
+	 * @author Rémi BARDON
+	 */
+	private void checkOpen() throws IllegalStateException {
+		if (this.isClosed) {
+			throw new IllegalStateException("Session of '" + this.file.getName() + "' is closed");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ExperimentSession(" + this.file.getName() + ")";
+	}
+
+}
@@ -0,0 +1,145 @@
+package code_metier;
+
+/**
+ * A plan for in-place radix-2 Fast Fourier Transforms of one size.
+ * Twiddle factors and the bit-reversal permutation are computed once, so a plan should be reused for many transforms.
+ * A plan is immutable, and can be shared between threads.
+ * @author Rémi BARDON
+ */
+public final class FastFourierTransform {
+
+	/**
+	 * The number of complex values transformed, a power of two
+	 * @author Rémi BARDON
+	 */
+	private final int size;
+	/**
+	 * {@code cos(2πk / size)} for {@code k} in {@code [0, size / 2)}
+	 * @author Rémi BARDON
+	 */
+	private final double[] cosines;
+	/**
+	 * {@code sin(2πk / size)} for {@code k} in {@code [0, size / 2)}
+	 * @author Rémi BARDON
+	 */
+	private final double[] sines;
+	/**
+	 * The index each value is swapped with before transforming
+	 * @author Rémi BARDON
+	 */
+	private final int[] reversedIndices;
+
+	/**
+	 *
+	 * @param size The number of complex values to transform, must be a power of two
+	 * @author Rémi BARDON
+	 */
+	public FastFourierTransform(final int size) {
+		if (size < 1 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("Size must be a power of two: " + size);
+		}
+
+		this.size = size;
+		this.cosines = new double[size / 2];
+		this.sines = new double[size / 2];
+		for (int k = 0; k < size / 2; k++) {
+			final double angle = 2 * Math.PI * k / size;
+			this.cosines[k] = Math.cos(angle);
+			this.sines[k] = Math.sin(angle);
+		}
+
+		this.reversedIndices = new int[size];
+		final int bits = Integer.numberOfTrailingZeros(size);
+		for (int i = 0; i < size; i++) {
+			this.reversedIndices[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+		}
+	}
+
+	/**
+	 *
+	 * @param minimumSize
+	 * @return The smallest power of two greater than or equal to {@code minimumSize}
+	 * @author Rémi BARDON
+	 */
+	public static int nextPowerOfTwo(final int minimumSize) {
+		return minimumSize <= 1 ? 1 : Integer.highestOneBit(minimumSize - 1) << 1;
+	}
+
+	/**
+	 *
+	 * @return The number of complex values transformed
+	 * @author Rémi BARDON
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Computes the forward transform in place
+	 * @param real Real parts, at least {@link #size()} values
+	 * @param imaginary Imaginary parts, at least {@link #size()} values
+	 * @author Rémi BARDON
+	 */
+	public void forward(final double[] real, final double[] imaginary) {
+		this.transform(real, imaginary, -1);
+	}
+
+	/**
+	 * Computes the inverse transform in place, scaled by {@code 1 / size} so that it reverses {@link #forward(double[], double[])}
+	 * @param real Real parts, at least {@link #size()} values
+	 * @param imaginary Imaginary parts, at least {@link #size()} values
+	 * @author Rémi BARDON
+	 */
+	public void inverse(final double[] real, final double[] imaginary) {
+		this.transform(real, imaginary, 1);
+
+		final double scale = 1.0 / this.size;
+		for (int i = 0; i < this.size; i++) {
+			real[i] *= scale;
+			imaginary[i] *= scale;
+		}
+	}
+
+	/**
+	 * Iterative Cooley-Tukey transform
+	 * @param real
+	 * @param imaginary
+	 * @param sign {@code -1} for forward, {@code 1} for inverse
+	 * @author Rémi BARDON
+	 */
+	private void transform(final double[] real, final double[] imaginary, final int sign) {
+		// Bit-reversal permutation
+		for (int i = 0; i < this.size; i++) {
+			final int j = this.reversedIndices[i];
+			if (i < j) {
+				double swap = real[i];
+				real[i] = real[j];
+				real[j] = swap;
+				swap = imaginary[i];
+				imaginary[i] = imaginary[j];
+				imaginary[j] = swap;
+			}
+		}
+
+		// Butterflies
+		for (int length = 2; length <= this.size; length <<= 1) {
+			final int half = length >> 1;
+			final int stride = this.size / length;
+			for (int start = 0; start < this.size; start += length) {
+				for (int k = 0; k < half; k++) {
+					final double cosine = this.cosines[k * stride];
+					final double sine = sign * this.sines[k * stride];
+					final int even = start + k;
+					final int odd = even + half;
+					final double oddReal = real[odd] * cosine - imaginary[odd] * sine;
+					final double oddImaginary = real[odd] * sine + imaginary[odd] * cosine;
+					real[odd] = real[even] - oddReal;
+					imaginary[odd] = imaginary[even] - oddImaginary;
+					real[even] += oddReal;
+					imaginary[even] += oddImaginary;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,507 @@
+package code_metier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A multi-resolution index of a series, for smooth zooming and panning.
+ * Level {@code k} stores the minimum, maximum, first and last value of every bucket of {@code 2^k} consecutive points,
+ * so that any time window can be drawn by reading {@code O(pixels)} values, whatever the length of the series.
+ * {@code NaN} values are ignored.
+ * @author Rémi BARDON
+ */
+public final class MinMaxPyramid {
+
+	/**
+	 * The number of points read at once when building the first level
+	 * @author Rémi BARDON
+	 */
+	private static final int CHUNK_SIZE = 4_096;
+
+	/**
+	 * The timestamps of indexed points
+	 * @author Rémi BARDON
+	 */
+	private final SummaryIndex.TimestampSource timestamps;
+	/**
+	 * The values of indexed points
+	 * @author Rémi BARDON
+	 */
+	private final SummaryIndex.ValueSource values;
+	/**
+	 * The number of indexed points
+	 * @author Rémi BARDON
+	 */
+	private final int size;
+	/**
+	 * The levels of the pyramid, starting with buckets of {@code 2} points ({@code levels.get(k - 1)} is level {@code k})
+	 * @author Rémi BARDON
+	 */
+	private final List<Level> levels;
+
+	/**
+	 * Builds a pyramid in one pass over the series, then one pass per level over the previous level
+	 * @param size The number of points to index
+	 * @param timestamps The timestamps of points, in increasing order
+	 * @param values The values of points
+	 * @author Rémi BARDON
+	 */
+	MinMaxPyramid(final int size, final SummaryIndex.TimestampSource timestamps, final SummaryIndex.ValueSource values) {
+		this.size = size;
+		this.timestamps = timestamps;
+		this.values = values;
+		this.levels = new ArrayList<Level>();
+
+		if (size < 2) {
+			return;
+		}
+
+		// First level, from raw values
+		Level level = new Level((size + 1) / 2);
+		final float[] chunk = new float[CHUNK_SIZE];
+		for (int from = 0; from < size; from += CHUNK_SIZE) {
+			final int to = Math.min(from + CHUNK_SIZE, size);
+			values.getValues(from, to, chunk);
+			for (int i = 0; i < to - from; i++) {
+				final int bucket = (from + i) >> 1;
+				final float value = chunk[i];
+				if ((i & 1) == 0) {
+					level.set(bucket, value, value, value, value);
+				} else {
+					level.set(
+						bucket,
+						minimum(level.minimums[bucket], value),
+						maximum(level.maximums[bucket], value),
+						first(level.firsts[bucket], value),
+						last(level.lasts[bucket], value)
+					);
+				}
+			}
+		}
+		this.levels.add(level);
+
+		// Next levels, from previous level
+		while (level.size > 1) {
+			final Level previous = level;
+			level = new Level((previous.size + 1) / 2);
+			for (int bucket = 0; bucket < level.size; bucket++) {
+				final int left = 2 * bucket;
+				final int right = left + 1;
+				if (right < previous.size) {
+					level.set(
+						bucket,
+						minimum(previous.minimums[left], previous.minimums[right]),
+						maximum(previous.maximums[left], previous.maximums[right]),
+						first(previous.firsts[left], previous.firsts[right]),
+						last(previous.lasts[left], previous.lasts[right])
+					);
+				} else {
+					level.set(bucket, previous.minimums[left], previous.maximums[left], previous.firsts[left], previous.lasts[left]);
+				}
+			}
+			this.levels.add(level);
+		}
+	}
+
+	/**
+	 * Builds a pyramid of {@link DataPoint}s
+	 * @param points {@link DataPoint}s, sorted by timestamp
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	static MinMaxPyramid of(final List<DataPoint> points) {
+		return new MinMaxPyramid(
+			points.size(),
+			(index) -> points.get(index).getTimestamp(),
+			(from, to, destination) -> {
+				final var iterator = points.listIterator(from);
+				for (int i = 0; i < to - from; i++) {
+					destination[i] = iterator.next().getValue();
+				}
+			}
+		);
+	}
+
+	/**
+	 * Reads the buckets needed to draw a time window.
+	 * The chosen level is the coarsest one keeping at least {@code pixelWidth} buckets in the window,
+	 * so that at most {@code 2 * pixelWidth + 2} buckets are read.
+	 * Buckets on the edges of the window are read entirely, and can contain a few points outside of it.
+	 * @param range A time window (inclusive)
+	 * @param pixelWidth The width of the chart, in pixels
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	public Buckets query(final Range<Float> range, final int pixelWidth) {
+		final int from = this.indexAfter(range.getMinimum(), false);
+		final int to = this.indexAfter(range.getMaximum(), true);
+		if (from >= to) {
+			return new Buckets(0, 0);
+		}
+
+		// Coarsest level with at least one bucket per pixel
+		final int pointsPerPixel = (to - from) / Math.max(1, pixelWidth);
+		final int levelIndex = Math.min(
+			pointsPerPixel <= 1 ? 0 : 31 - Integer.numberOfLeadingZeros(pointsPerPixel),
+			this.levels.size()
+		);
+
+		if (levelIndex == 0) {
+			// Raw points, one bucket per point
+			final var result = new Buckets(0, to - from);
+			final float[] values = new float[to - from];
+			this.values.getValues(from, to, values);
+			for (int i = 0; i < values.length; i++) {
+				final float timestamp = this.timestamps.getTimestamp(from + i);
+				result.set(i, timestamp, timestamp, values[i], values[i], values[i], values[i]);
+			}
+			return result;
+		}
+
+		final Level level = this.levels.get(levelIndex - 1);
+		final int firstBucket = from >> levelIndex;
+		final int lastBucket = (to - 1) >> levelIndex;
+		final var result = new Buckets(levelIndex, lastBucket - firstBucket + 1);
+		for (int bucket = firstBucket; bucket <= lastBucket; bucket++) {
+			final int start = bucket << levelIndex;
+			final int end = Math.min(start + (1 << levelIndex), this.size) - 1;
+			result.set(
+				bucket - firstBucket,
+				this.timestamps.getTimestamp(start),
+				this.timestamps.getTimestamp(end),
+				level.minimums[bucket],
+				level.maximums[bucket],
+				level.firsts[bucket],
+				level.lasts[bucket]
+			);
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return The number of indexed points
+	 * @author Rémi BARDON
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @return The approximate number of bytes used by this pyramid, excluding indexed points
+	 * @author Rémi BARDON
+	 */
+	long getRetainedSize() {
+		long size = 0;
+		for (final Level level : this.levels) {
+			size += 4L * Float.BYTES * level.size;
+		}
+		return size;
+	}
+
+	/**
+	 *
+	 * @return The number of levels, excluding raw points
+	 * @author Rémi BARDON
+	 */
+	public int getLevelCount() {
+		return this.levels.size();
+	}
+
+	/**
+	 * Binary searches the first point after a timestamp
+	 * @param timestamp
+	 * @param inclusive Whether or not points at {@code timestamp} should be skipped
+	 * @return The index of the first point which timestamp is greater than (or equal to, if not {@code inclusive}) {@code timestamp}
+	 * @author Rémi BARDON
+	 */
+	private int indexAfter(final float timestamp, final boolean inclusive) {
+		int low = 0;
+		int high = this.size;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			final float middleTimestamp = this.timestamps.getTimestamp(middle);
+			if (middleTimestamp < timestamp || (inclusive && middleTimestamp == timestamp)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 *
+	 * @param a
+	 * @param b
+	 * @return The minimum of {@code a} and {@code b}, ignoring {@code NaN}s
+	 * @author Rémi BARDON
+	 */
+	private static float minimum(final float a, final float b) {
+		return Float.isNaN(a) ? b : Float.isNaN(b) ? a : Math.min(a, b);
+	}
+
+	/**
+	 *
+	 * @param a
+	 * @param b
+	 * @return The maximum of {@code a} and {@code b}, ignoring {@code NaN}s
+	 * @author Rémi BARDON
+	 */
+	private static float maximum(final float a, final float b) {
+		return Float.isNaN(a) ? b : Float.isNaN(b) ? a : Math.max(a, b);
+	}
+
+	/**
+	 *
+	 * @param a The first value of the left bucket
+	 * @param b The first value of the right bucket
+	 * @return The first value of both buckets, ignoring {@code NaN}s
+	 * @author Rémi BARDON
+	 */
+	private static float first(final float a, final float b) {
+		return Float.isNaN(a) ? b : a;
+	}
+
+	/**
+	 *
+	 * @param a The last value of the left bucket
+	 * @param b The last value of the right bucket
+	 * @return The last value of both buckets, ignoring {@code NaN}s
+	 * @author Rémi BARDON
+	 */
+	private static float last(final float a, final float b) {
+		return Float.isNaN(b) ? a : b;
+	}
+
+	/**
+	 * One level of the pyramid, stored as primitive columns
+	 * @author Rémi BARDON
+	 */
+	private static final class Level {
+
+		/**
+		 * The number of buckets
+		 * @author Rémi BARDON
+		 */
+		final int size;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		final float[] minimums;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		final float[] maximums;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		final float[] firsts;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		final float[] lasts;
+
+		/**
+		 *
+		 * @param size The number of buckets
+		 * @author Rémi BARDON
+		 */
+		Level(final int size) {
+			this.size = size;
+			this.minimums = new float[size];
+			this.maximums = new float[size];
+			this.firsts = new float[size];
+			this.lasts = new float[size];
+		}
+
+		/**
+		 *
+		 * @param bucket
+		 * @param minimum
+		 * @param maximum
+		 * @param first
+		 * @param last
+		 * @author Rémi BARDON
+		 */
+		void set(final int bucket, final float minimum, final float maximum, final float first, final float last) {
+			this.minimums[bucket] = minimum;
+			this.maximums[bucket] = maximum;
+			this.firsts[bucket] = first;
+			this.lasts[bucket] = last;
+		}
+
+	}
+
+	/**
+	 * The buckets read to draw a time window, stored as primitive columns
+	 * @author Rémi BARDON
+	 */
+	public static final class Buckets {
+
+		/**
+		 * The level of buckets ({@code 0} for raw points)
+		 * @author Rémi BARDON
+		 */
+		private final int level;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] startTimestamps;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] endTimestamps;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] minimums;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] maximums;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] firsts;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] lasts;
+
+		/**
+		 *
+		 * @param level The level of buckets ({@code 0} for raw points)
+		 * @param size The number of buckets
+		 * @author Rémi BARDON
+		 */
+		Buckets(final int level, final int size) {
+			this.level = level;
+			this.startTimestamps = new float[size];
+			this.endTimestamps = new float[size];
+			this.minimums = new float[size];
+			this.maximums = new float[size];
+			this.firsts = new float[size];
+			this.lasts = new float[size];
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @param startTimestamp
+		 * @param endTimestamp
+		 * @param minimum
+		 * @param maximum
+		 * @param first
+		 * @param last
+		 * @author Rémi BARDON
+		 */
+		void set(
+			final int index,
+			final float startTimestamp,
+			final float endTimestamp,
+			final float minimum,
+			final float maximum,
+			final float first,
+			final float last
+		) {
+			this.startTimestamps[index] = startTimestamp;
+			this.endTimestamps[index] = endTimestamp;
+			this.minimums[index] = minimum;
+			this.maximums[index] = maximum;
+			this.firsts[index] = first;
+			this.lasts[index] = last;
+		}
+
+		/**
+		 *
+		 * @return The level of buckets ({@code 0} for raw points, otherwise buckets of {@code 2^level} points)
+		 * @author Rémi BARDON
+		 */
+		public int getLevel() {
+			return this.level;
+		}
+
+		/**
+		 *
+		 * @return The number of buckets
+		 * @author Rémi BARDON
+		 */
+		public int size() {
+			return this.minimums.length;
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @return The timestamp of the first point in the bucket
+		 * @author Rémi BARDON
+		 */
+		public float getStartTimestamp(final int index) {
+			return this.startTimestamps[index];
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @return The timestamp of the last point in the bucket
+		 * @author Rémi BARDON
+		 */
+		public float getEndTimestamp(final int index) {
+			return this.endTimestamps[index];
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @return The smallest value in the bucket, or {@code NaN} if there is none
+		 * @author Rémi BARDON
+		 */
+		public float getMinimum(final int index) {
+			return this.minimums[index];
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @return The biggest value in the bucket, or {@code NaN} if there is none
+		 * @author Rémi BARDON
+		 */
+		public float getMaximum(final int index) {
+			return this.maximums[index];
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @return The first value in the bucket, or {@code NaN} if there is none
+		 * @author Rémi BARDON
+		 */
+		public float getFirst(final int index) {
+			return this.firsts[index];
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @return The last value in the bucket, or {@code NaN} if there is none
+		 * @author Rémi BARDON
+		 */
+		public float getLast(final int index) {
+			return this.lasts[index];
+		}
+
+	}
+
+}
@@ -0,0 +1,227 @@
+package code_metier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A periodic seasonnality, stored as one period-length pattern instead of one value per point.
+ * Chunked and incremental decompositions produce one pattern per decomposed window, blended where windows overlap.
+ * @author Rémi BARDON
+ */
+public final class PeriodicSeasonnality {
+
+	/**
+	 * The length of a pattern
+	 * @author Rémi BARDON
+	 */
+	private final int period;
+
+	/**
+	 * The decomposed windows, sorted by start index
+	 * @author Rémi BARDON
+	 */
+	private final List<ExperimentDataDecomposer.Window> windows;
+
+	/**
+	 * The pattern of each window, indexed by {@code index % period}
+	 * @author Rémi BARDON
+	 */
+	private final List<float[]> patterns;
+
+	/**
+	 *
+	 * @param period The length of a pattern
+	 * @author Rémi BARDON
+	 */
+	PeriodicSeasonnality(final int period) {
+		this.period = period;
+		this.windows = new ArrayList<ExperimentDataDecomposer.Window>();
+		this.patterns = new ArrayList<float[]>();
+	}
+
+	/**
+	 *
+	 * @return The length of a pattern
+	 * @author Rémi BARDON
+	 */
+	public int getPeriod() {
+		return this.period;
+	}
+
+	/**
+	 *
+	 * @return The approximate number of bytes used by patterns
+	 * @author Rémi BARDON
+	 */
+	long getRetainedSize() {
+		return (long) this.patterns.size() * this.period * Float.BYTES;
+	}
+
+	/**
+	 *
+	 * @return The number of points covered by the decomposed windows
+	 * @author Rémi BARDON
+	 */
+	public int size() {
+		return this.windows.isEmpty() ? 0 : this.getLastWindow().end;
+	}
+
+	/**
+	 * The seasonal pattern in effect at a given index
+	 * @param index A point index
+	 * @return A {@code period}-length pattern, indexed by {@code index % period}
+	 * @author Rémi BARDON
+	 */
+	public float[] getPattern(final int index) {
+		return this.patterns.get(this.windowIndex(index));
+	}
+
+	/**
+	 * The seasonnality of a point
+	 * @param index A point index
+	 * @return {@code pattern[index % period]}, blended with the neighbour pattern if {@code index} is on a seam
+	 * @author Rémi BARDON
+	 */
+	public float get(final int index) {
+		return this.get(this.windowIndex(index), index);
+	}
+
+	/**
+	 * Bulk version of {@link #get(int)}, walking windows sequentially instead of looking them up for every point
+	 * @param from The index of the first point (inclusive)
+	 * @param to The index of the last point (exclusive)
+	 * @param destination An array of at least {@code to - from} values
+	 * @author Rémi BARDON
+	 */
+	public void get(final int from, final int to, final float[] destination) {
+		if (from >= to) {
+			return;
+		}
+
+		int windowIndex = this.windowIndex(from);
+		for (int i = from; i < to; i++) {
+			while (windowIndex + 1 < this.windows.size() && this.windows.get(windowIndex + 1).start <= i) {
+				windowIndex++;
+			}
+			destination[i - from] = this.get(windowIndex, i);
+		}
+	}
+
+	/**
+	 *
+	 * @param windowIndex The index of the last window starting before {@code index}
+	 * @param index A point index
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	private float get(final int windowIndex, final int index) {
+		final int phase = index % this.period;
+		final var window = this.windows.get(windowIndex);
+		float value = window.weight(index) * this.patterns.get(windowIndex)[phase];
+
+		if (window.hasPrevious && index < window.start + window.overlap) {
+			value += this.windows.get(windowIndex - 1).weight(index) * this.patterns.get(windowIndex - 1)[phase];
+		}
+
+		return value;
+	}
+
+	/**
+	 * Binary searches the last window starting before a given index
+	 * @param index A point index
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	private int windowIndex(final int index) {
+		int low = 0;
+		int high = this.windows.size() - 1;
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			if (this.windows.get(middle).start <= index) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 *
+	 * @return The number of decomposed windows
+	 * @author Rémi BARDON
+	 */
+	int getWindowCount() {
+		return this.windows.size();
+	}
+
+	/**
+	 *
+	 * @param windowIndex
+	 * @return The decomposed window at {@code windowIndex}
+	 * @author Rémi BARDON
+	 */
+	ExperimentDataDecomposer.Window getWindow(final int windowIndex) {
+		return this.windows.get(windowIndex);
+	}
+
+	/**
+	 *
+	 * @param windowIndex
+	 * @return The pattern of the window at {@code windowIndex}
+	 * @author Rémi BARDON
+	 */
+	float[] getWindowPattern(final int windowIndex) {
+		return this.patterns.get(windowIndex);
+	}
+
+	/**
+	 *
+	 * @return The last decomposed window
+	 * @author Rémi BARDON
+	 */
+	ExperimentDataDecomposer.Window getLastWindow() {
+		return this.windows.get(this.windows.size() - 1);
+	}
+
+	/**
+	 * Sets the pattern of a window, adding the window if needed. Windows must be added in order.
+	 * @param windowIndex
+	 * @param window
+	 * @param pattern
+	 * @author Rémi BARDON
+	 */
+	synchronized void setPattern(final int windowIndex, final ExperimentDataDecomposer.Window window, final float[] pattern) {
+		while (this.windows.size() <= windowIndex) {
+			this.windows.add(null);
+			this.patterns.add(null);
+		}
+		this.windows.set(windowIndex, window);
+		this.patterns.set(windowIndex, pattern);
+	}
+
+	/**
+	 * Replaces the end of the seasonnality by a new window.
+	 * Windows starting in the new window are removed, and the window before it is clipped to end on the new window's seam.
+	 * @param window The new last window, which seam (if it has a previous window) only covers one existing window
+	 * @param pattern The new window's pattern
+	 * @author Rémi BARDON
+	 */
+	void replaceTail(final ExperimentDataDecomposer.Window window, final float[] pattern) {
+		while (!this.windows.isEmpty() && this.getLastWindow().start >= window.start) {
+			this.windows.remove(this.windows.size() - 1);
+			this.patterns.remove(this.patterns.size() - 1);
+		}
+
+		if (!this.windows.isEmpty()) {
+			final int lastIndex = this.windows.size() - 1;
+			final var last = this.windows.get(lastIndex);
+			final int end = window.start + window.overlap;
+			this.windows.set(lastIndex, new ExperimentDataDecomposer.Window(last.start, end, window.overlap, last.hasPrevious, true));
+		}
+
+		this.windows.add(window);
+		this.patterns.add(pattern);
+	}
+
+}
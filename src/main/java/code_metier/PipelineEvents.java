@@ -0,0 +1,216 @@
+package code_metier;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events emitted by pipeline stages, so that a recording shows stage timings
+ * next to GC and allocation profiles. Events cost almost nothing when they are not recorded.<br>
+ * Enable them with {@code -XX:StartFlightRecording} or {@code jcmd <pid> JFR.start}.
+ * @author Rémi BARDON
+ */
+public final class PipelineEvents {
+
+	/**
+	 * The category of all pipeline events in recordings
+	 * @author Rémi BARDON
+	 */
+	private static final String CATEGORY = "Experiment Pipeline";
+
+	/**
+	 * Not instantiable
+	 * @author Rémi BARDON
+	 */
+	private PipelineEvents() {}
+
+	/**
+	 * The {@link File} and {@link Measure} a stage works on, which only its caller knows, to identify its events
+	 * @author Rémi BARDON
+	 */
+	public static final class Subject {
+
+		/**
+		 * For stages called without a {@link File} or {@link Measure}
+		 * @author Rémi BARDON
+		 */
+		public static final Subject UNKNOWN = new Subject("", "");
+
+		/**
+		 * The absolute path of the {@link File}
+		 * @author Rémi BARDON
+		 */
+		private final String file;
+		/**
+		 * The name of the {@link Measure}
+		 * @author Rémi BARDON
+		 */
+		private final String measure;
+
+		/**
+		 *
+		 * @param file
+		 * @param measure
+		 * @author Rémi BARDON
+		 */
+		public Subject(final File file, final Measure measure) {
+			this(file.getAbsolutePath(), measure.toString());
+		}
+
+		/**
+		 *
+		 * @param file
+		 * @param measure
+		 * @author Rémi BARDON
+		 */
+		private Subject(final String file, final String measure) {
+			this.file = file;
+			this.measure = measure;
+		}
+
+	}
+
+	/**
+	 * Emitted by {@link ExperimentDataLoader#load(java.io.File, CancellationToken, ProgressReporter)}
+	 * @author Rémi BARDON
+	 */
+	@Name("code_metier.Load")
+	@Label("Load")
+	@Category(CATEGORY)
+	@Description("Loading and parsing a CSV file")
+	public static final class Load extends Event {
+
+		@Label("File")
+		String file;
+
+		@Label("Size")
+		@DataAmount
+		long size;
+
+		@Label("Row Count")
+		int rowCount;
+
+		@Label("Measure Count")
+		int measureCount;
+
+		@Label("Completed")
+		@Description("False if loading failed or was cancelled")
+		boolean completed;
+
+	}
+
+	/**
+	 * Emitted by {@link ExperimentDataCleaner#clean(java.util.List, java.util.Map, CancellationToken, ProgressReporter, Subject)}
+	 * @author Rémi BARDON
+	 */
+	@Name("code_metier.Clean")
+	@Label("Clean")
+	@Category(CATEGORY)
+	@Description("Cleaning a series")
+	public static final class Clean extends Event {
+
+		@Label("File")
+		String file;
+
+		@Label("Measure")
+		String measure;
+
+		@Label("Point Count")
+		int pointCount;
+
+		@Label("Omitted Range Count")
+		int omittedRangeCount;
+
+		@Label("Completed")
+		@Description("False if cleaning failed or was cancelled")
+		boolean completed;
+
+		/**
+		 *
+		 * @param subject
+		 * @author Rémi BARDON
+		 */
+		void setSubject(final Subject subject) {
+			this.file = subject.file;
+			this.measure = subject.measure;
+		}
+
+	}
+
+	/**
+	 * Emitted by {@link ExperimentDataDecomposer#decompose(java.util.List, int, CancellationToken, ProgressReporter, TaskScheduler.Priority, Subject)}
+	 * @author Rémi BARDON
+	 */
+	@Name("code_metier.Decompose")
+	@Label("Decompose")
+	@Category(CATEGORY)
+	@Description("Decomposing a series with STL")
+	public static final class Decompose extends Event {
+
+		@Label("File")
+		String file;
+
+		@Label("Measure")
+		String measure;
+
+		@Label("Point Count")
+		int pointCount;
+
+		@Label("Period")
+		int period;
+
+		@Label("Window Length")
+		@Description("The maximum number of points decomposed in one shot, 0 if chunked mode is disabled")
+		int windowLength;
+
+		@Label("Completed")
+		@Description("False if decomposing failed or was cancelled")
+		boolean completed;
+
+		/**
+		 *
+		 * @param subject
+		 * @author Rémi BARDON
+		 */
+		void setSubject(final Subject subject) {
+			this.file = subject.file;
+			this.measure = subject.measure;
+		}
+
+	}
+
+	/**
+	 * Emitted by {@link ExperimentManager} when looking up cleaned points or decompositions in its caches
+	 * @author Rémi BARDON
+	 */
+	@Name("code_metier.CacheLookup")
+	@Label("Cache Lookup")
+	@Category(CATEGORY)
+	@Description("Looking up a cleaning or decomposition, starting it on a miss")
+	public static final class CacheLookup extends Event {
+
+		@Label("Cache")
+		String cache;
+
+		@Label("File")
+		String file;
+
+		@Label("Measure")
+		String measure;
+
+		@Label("Period")
+		@Description("0 for cleaned points")
+		int period;
+
+		@Label("Hit")
+		@Description("True if a running or finished computation was reused")
+		boolean hit;
+
+	}
+
+}
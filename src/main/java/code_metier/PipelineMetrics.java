@@ -0,0 +1,641 @@
+package code_metier;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records where time goes in the pipeline: latency histograms, rows processed and bytes allocated per {@link Stage},
+ * next to cache statistics and queue depths.<br>
+ * When disabled (the default), timing a stage costs a single volatile read.
+ * Metrics can be read with {@link #getSnapshot()}, or through JMX after {@link #registerMBean(String)}.
+ * @author Rémi BARDON
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+
+	/**
+	 * Timed parts of the pipeline
+	 * @author Rémi BARDON
+	 */
+	public enum Stage {
+		/**
+		 * Opening and reading a whole {@code CSV} file, parsing included
+		 * @author Rémi BARDON
+		 */
+		LOAD,
+		/**
+		 * Parsing data rows of a {@code CSV} file
+		 * @author Rémi BARDON
+		 */
+		PARSE,
+		/**
+		 * Cleaning a series
+		 * @author Rémi BARDON
+		 */
+		CLEAN,
+		/**
+		 * Decomposing a series
+		 * @author Rémi BARDON
+		 */
+		DECOMPOSE,
+		/**
+		 * Answering a chart or summary query
+		 * @author Rémi BARDON
+		 */
+		QUERY,
+	}
+
+	/**
+	 * The number of latency histogram buckets: bucket {@code i} counts durations in {@code [2^(i-1), 2^i)} nanoseconds
+	 * @author Rémi BARDON
+	 */
+	private static final int BUCKET_COUNT = Long.SIZE + 1;
+
+	/**
+	 * Measures bytes allocated by threads, if supported by the JVM
+	 * @author Rémi BARDON
+	 */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private volatile boolean isEnabled;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final EnumMap<Stage, Recorder> recorders;
+	/**
+	 * Statistics of registered caches, by name
+	 * @author Rémi BARDON
+	 */
+	private final Map<String, Supplier<ComputationCache.Statistics>> caches;
+	/**
+	 * Depths of registered queues, by name
+	 * @author Rémi BARDON
+	 */
+	private final Map<String, IntSupplier> queues;
+
+	/**
+	 * Disabled metrics, with no registered cache or queue
+	 * @author Rémi BARDON
+	 */
+	public PipelineMetrics() {
+		this.isEnabled = false;
+		this.recorders = new EnumMap<Stage, Recorder>(Stage.class);
+		for (final Stage stage : Stage.values()) {
+			this.recorders.put(stage, new Recorder());
+		}
+		this.caches = new ConcurrentHashMap<String, Supplier<ComputationCache.Statistics>>();
+		this.queues = new ConcurrentHashMap<String, IntSupplier>();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return this.isEnabled;
+	}
+
+	@Override
+	public void setEnabled(final boolean enabled) {
+		this.isEnabled = enabled;
+	}
+
+	/**
+	 * Starts timing a stage on the calling thread
+	 * @param stage
+	 * @return A {@link Sample} to stop on the same thread, doing nothing if metrics are disabled
+	 * @author Rémi BARDON
+	 */
+	public Sample start(final Stage stage) {
+		if (!this.isEnabled) {
+			return Sample.NONE;
+		}
+		return new Sample(this.recorders.get(stage), System.nanoTime(), currentThreadAllocatedBytes());
+	}
+
+	/**
+	 * Includes the statistics of a cache in snapshots
+	 * @param name
+	 * @param statistics
+	 * @author Rémi BARDON
+	 */
+	public void registerCache(final String name, final Supplier<ComputationCache.Statistics> statistics) {
+		this.caches.put(name, statistics);
+	}
+
+	/**
+	 * Includes the depth of a queue in snapshots
+	 * @param name
+	 * @param depth
+	 * @author Rémi BARDON
+	 */
+	public void registerQueue(final String name, final IntSupplier depth) {
+		this.queues.put(name, depth);
+	}
+
+	@Override
+	public Snapshot getSnapshot() {
+		final var stages = new ArrayList<StageStatistics>();
+		for (final var recorder : this.recorders.entrySet()) {
+			stages.add(recorder.getValue().snapshot(recorder.getKey()));
+		}
+
+		final var cacheStatistics = new LinkedHashMap<String, ComputationCache.Statistics>();
+		for (final var cache : this.caches.entrySet()) {
+			cacheStatistics.put(cache.getKey(), cache.getValue().get());
+		}
+
+		final var queueDepths = new LinkedHashMap<String, Integer>();
+		for (final var queue : this.queues.entrySet()) {
+			queueDepths.put(queue.getKey(), queue.getValue().getAsInt());
+		}
+
+		return new Snapshot(stages, cacheStatistics, queueDepths);
+	}
+
+	@Override
+	public void reset() {
+		for (final var recorder : this.recorders.values()) {
+			recorder.reset();
+		}
+	}
+
+	/**
+	 * Registers these metrics in the platform {@link javax.management.MBeanServer}
+	 * @param name Distinguishes several pipelines in the same JVM
+	 * @return The name of the registered MBean
+	 * @throws JMException If the name is invalid or already registered
+	 * @author Rémi BARDON
+	 */
+	public ObjectName registerMBean(final String name) throws JMException {
+		final var objectName = new ObjectName("code_metier:type=PipelineMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 *
+	 * @param objectName A name returned by {@link #registerMBean(String)}
+	 * @throws JMException If the name isn't registered
+	 * @author Rémi BARDON
+	 */
+	public static void unregisterMBean(final ObjectName objectName) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+
+	/**
+	 *
+	 * @return The number of bytes allocated by the calling thread since it started, or {@code -1} if not supported
+	 * @author Rémi BARDON
+	 */
+	private static long currentThreadAllocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+		}
+		return -1;
+	}
+
+	/**
+	 * A running measure of a {@link Stage}
+	 * @author Rémi BARDON
+	 */
+	public static final class Sample {
+
+		/**
+		 * A sample recording nothing, used when metrics are disabled
+		 * @author Rémi BARDON
+		 */
+		private static final Sample NONE = new Sample(null, 0, 0);
+
+		/**
+		 * {@code null} for {@link #NONE}
+		 * @author Rémi BARDON
+		 */
+		private final Recorder recorder;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final long startTime;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final long startAllocatedBytes;
+
+		/**
+		 *
+		 * @param recorder
+		 * @param startTime
+		 * @param startAllocatedBytes
+		 * @author Rémi BARDON
+		 */
+		private Sample(final Recorder recorder, final long startTime, final long startAllocatedBytes) {
+			this.recorder = recorder;
+			this.startTime = startTime;
+			this.startAllocatedBytes = startAllocatedBytes;
+		}
+
+		/**
+		 * Records the stage, on the thread which started it.
+		 * Bytes allocated by other threads (e.g. parallel streams) are not counted.
+		 * @param rows The number of rows (or points) processed, {@code 0} if not relevant
+		 * @author Rémi BARDON
+		 */
+		public void stop(final long rows) {
+			if (this.recorder == null) {
+				return;
+			}
+
+			final long duration = System.nanoTime() - this.startTime;
+			final long allocatedBytes = this.startAllocatedBytes < 0 ? 0 : currentThreadAllocatedBytes() - this.startAllocatedBytes;
+			this.recorder.record(duration, rows, allocatedBytes);
+		}
+
+	}
+
+	/**
+	 * Accumulates measures of one {@link Stage}, from any thread
+	 * @author Rémi BARDON
+	 */
+	private static final class Recorder {
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final LongAdder count = new LongAdder();
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final LongAdder totalTime = new LongAdder();
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final AtomicLong maximumTime = new AtomicLong();
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final LongAdder rows = new LongAdder();
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final LongAdder allocatedBytes = new LongAdder();
+		/**
+		 * Counts of durations by power of two (see {@link PipelineMetrics#BUCKET_COUNT})
+		 * @author Rémi BARDON
+		 */
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+
+		/**
+		 *
+		 * @param duration In nanoseconds
+		 * @param rows
+		 * @param allocatedBytes
+		 * @author Rémi BARDON
+		 */
+		void record(final long duration, final long rows, final long allocatedBytes) {
+			this.count.increment();
+			this.totalTime.add(duration);
+			this.maximumTime.accumulateAndGet(duration, Math::max);
+			this.rows.add(rows);
+			this.allocatedBytes.add(allocatedBytes);
+			this.histogram.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, duration)));
+		}
+
+		/**
+		 * Forgets recorded measures. Runs recorded concurrently may be partially kept.
+		 * @author Rémi BARDON
+		 */
+		void reset() {
+			this.count.reset();
+			this.totalTime.reset();
+			this.maximumTime.set(0);
+			this.rows.reset();
+			this.allocatedBytes.reset();
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				this.histogram.set(i, 0);
+			}
+		}
+
+		/**
+		 *
+		 * @param stage
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		StageStatistics snapshot(final Stage stage) {
+			final long[] buckets = new long[BUCKET_COUNT];
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				buckets[i] = this.histogram.get(i);
+			}
+			return new StageStatistics(
+				stage,
+				this.count.sum(),
+				this.totalTime.sum(),
+				this.maximumTime.get(),
+				this.rows.sum(),
+				this.allocatedBytes.sum(),
+				buckets
+			);
+		}
+
+	}
+
+	/**
+	 * Measures of one {@link Stage}
+	 * @author Rémi BARDON
+	 */
+	public static final class StageStatistics {
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final Stage stage;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final long count;
+		/**
+		 * In nanoseconds
+		 * @author Rémi BARDON
+		 */
+		private final long totalTime;
+		/**
+		 * In nanoseconds
+		 * @author Rémi BARDON
+		 */
+		private final long maximumTime;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final long rows;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final long allocatedBytes;
+		/**
+		 * Bucket {@code i} counts durations in {@code [2^(i-1), 2^i)} nanoseconds
+		 * @author Rémi BARDON
+		 */
+		private final long[] histogram;
+
+		/**
+		 *
+		 * @param stage
+		 * @param count
+		 * @param totalTime
+		 * @param maximumTime
+		 * @param rows
+		 * @param allocatedBytes
+		 * @param histogram
+		 * @author Rémi BARDON
+		 */
+		StageStatistics(
+			final Stage stage,
+			final long count,
+			final long totalTime,
+			final long maximumTime,
+			final long rows,
+			final long allocatedBytes,
+			final long[] histogram
+		) {
+			this.stage = stage;
+			this.count = count;
+			this.totalTime = totalTime;
+			this.maximumTime = maximumTime;
+			this.rows = rows;
+			this.allocatedBytes = allocatedBytes;
+			this.histogram = histogram;
+		}
+
+		/**
+		 *
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		public Stage getStage() {
+			return this.stage;
+		}
+
+		/**
+		 *
+		 * @return The number of recorded runs
+		 * @author Rémi BARDON
+		 */
+		public long getCount() {
+			return this.count;
+		}
+
+		/**
+		 *
+		 * @return The total duration of recorded runs, in nanoseconds
+		 * @author Rémi BARDON
+		 */
+		public long getTotalTime() {
+			return this.totalTime;
+		}
+
+		/**
+		 *
+		 * @return The longest run, in nanoseconds
+		 * @author Rémi BARDON
+		 */
+		public long getMaximumTime() {
+			return this.maximumTime;
+		}
+
+		/**
+		 *
+		 * @return The mean duration of runs, in nanoseconds
+		 * @author Rémi BARDON
+		 */
+		public double getMeanTime() {
+			return this.count == 0 ? 0 : (double) this.totalTime / this.count;
+		}
+
+		/**
+		 *
+		 * @return An upper bound of the median duration, in nanoseconds
+		 * @author Rémi BARDON
+		 */
+		public long getMedianTime() {
+			return this.getPercentileTime(0.5);
+		}
+
+		/**
+		 *
+		 * @return An upper bound of the 99th percentile duration, in nanoseconds
+		 * @author Rémi BARDON
+		 */
+		public long getP99Time() {
+			return this.getPercentileTime(0.99);
+		}
+
+		/**
+		 *
+		 * @param quantile In {@code [0, 1]}
+		 * @return The upper bound of the histogram bucket containing the quantile, in nanoseconds
+		 *         (at most {@link #getMaximumTime()}), or {@code 0} if nothing was recorded
+		 * @author Rémi BARDON
+		 */
+		public long getPercentileTime(final double quantile) {
+			final long rank = (long) Math.ceil(quantile * this.count);
+			long cumulated = 0;
+			for (int i = 0; i < this.histogram.length; i++) {
+				cumulated += this.histogram[i];
+				if (cumulated > 0 && cumulated >= rank) {
+					final long upperBound = i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+					return Math.min(upperBound, this.maximumTime);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 *
+		 * @return The number of rows (or points) processed
+		 * @author Rémi BARDON
+		 */
+		public long getRows() {
+			return this.rows;
+		}
+
+		/**
+		 *
+		 * @return The number of rows (or points) processed per second of recorded runs
+		 * @author Rémi BARDON
+		 */
+		public double getRowsPerSecond() {
+			return this.totalTime == 0 ? 0 : this.rows * 1e9 / this.totalTime;
+		}
+
+		/**
+		 *
+		 * @return The number of bytes allocated by the threads running the stage, {@code 0} if not supported by the JVM
+		 * @author Rémi BARDON
+		 */
+		public long getAllocatedBytes() {
+			return this.allocatedBytes;
+		}
+
+		/**
+		 *
+		 * @return Counts of durations: bucket {@code i} counts durations in {@code [2^(i-1), 2^i)} nanoseconds
+		 * @author Rémi BARDON
+		 */
+		public long[] getHistogram() {
+			return this.histogram.clone();
+		}
+
+		@Override
+		public String toString() {
+			return this.stage + ": { count: " + this.count + ", mean: " + Math.round(this.getMeanTime()) + "ns, p99: " + this.getP99Time()
+				+ "ns, rows/s: " + Math.round(this.getRowsPerSecond()) + ", allocated: " + this.allocatedBytes + "B }";
+		}
+
+	}
+
+	/**
+	 * A snapshot of all metrics
+	 * @author Rémi BARDON
+	 */
+	public static final class Snapshot {
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final List<StageStatistics> stages;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final Map<String, ComputationCache.Statistics> caches;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final Map<String, Integer> queueDepths;
+
+		/**
+		 *
+		 * @param stages
+		 * @param caches
+		 * @param queueDepths
+		 * @author Rémi BARDON
+		 */
+		Snapshot(final List<StageStatistics> stages, final Map<String, ComputationCache.Statistics> caches, final Map<String, Integer> queueDepths) {
+			this.stages = stages;
+			this.caches = caches;
+			this.queueDepths = queueDepths;
+		}
+
+		/**
+		 *
+		 * @return Measures of every {@link Stage}, in declaration order
+		 * @author Rémi BARDON
+		 */
+		public List<StageStatistics> getStages() {
+			return this.stages;
+		}
+
+		/**
+		 *
+		 * @param stage
+		 * @return Measures of {@code stage}
+		 * @author Rémi BARDON
+		 */
+		public StageStatistics getStage(final Stage stage) {
+			return this.stages.get(stage.ordinal());
+		}
+
+		/**
+		 *
+		 * @return Statistics of registered caches, by name
+		 * @author Rémi BARDON
+		 */
+		public Map<String, ComputationCache.Statistics> getCaches() {
+			return this.caches;
+		}
+
+		/**
+		 *
+		 * @return Depths of registered queues, by name
+		 * @author Rémi BARDON
+		 */
+		public Map<String, Integer> getQueueDepths() {
+			return this.queueDepths;
+		}
+
+		@Override
+		public String toString() {
+			return "{ stages: " + this.stages + ", caches: " + this.caches + ", queues: " + this.queueDepths + " }";
+		}
+
+	}
+
+}
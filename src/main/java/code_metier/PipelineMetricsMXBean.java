@@ -0,0 +1,36 @@
+package code_metier;
+
+/**
+ * The management interface of {@link PipelineMetrics}, readable with any JMX client (e.g. JConsole)
+ * @author Rémi BARDON
+ */
+public interface PipelineMetricsMXBean {
+
+	/**
+	 *
+	 * @return Whether stages are timed
+	 * @author Rémi BARDON
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Enables/disables timing stages. Cache statistics and queue depths are always available.
+	 * @param enabled
+	 * @author Rémi BARDON
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 *
+	 * @return A snapshot of all metrics
+	 * @author Rémi BARDON
+	 */
+	PipelineMetrics.Snapshot getSnapshot();
+
+	/**
+	 * Clears recorded stage timings
+	 * @author Rémi BARDON
+	 */
+	void reset();
+
+}
@@ -0,0 +1,145 @@
+package code_metier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A one-sided power spectral density, as estimated by a {@link SpectrumAnalyzer}
+ * @author Rémi BARDON
+ */
+public final class PowerSpectrum {
+
+	/**
+	 * The number of samples per time unit
+	 * @author Rémi BARDON
+	 */
+	private final float sampleRate;
+	/**
+	 * The number of samples per segment
+	 * @author Rémi BARDON
+	 */
+	private final int segmentLength;
+	/**
+	 * The number of averaged segments
+	 * @author Rémi BARDON
+	 */
+	private final int segmentCount;
+	/**
+	 * The power density of each frequency bin
+	 * @author Rémi BARDON
+	 */
+	private final float[] densities;
+
+	/**
+	 *
+	 * @param sampleRate The number of samples per time unit
+	 * @param segmentLength The number of samples per segment
+	 * @param segmentCount The number of averaged segments
+	 * @param densities The power density of each frequency bin
+	 * @author Rémi BARDON
+	 */
+	PowerSpectrum(final float sampleRate, final int segmentLength, final int segmentCount, final float[] densities) {
+		this.sampleRate = sampleRate;
+		this.segmentLength = segmentLength;
+		this.segmentCount = segmentCount;
+		this.densities = densities;
+	}
+
+	/**
+	 *
+	 * @return The number of frequency bins
+	 * @author Rémi BARDON
+	 */
+	public int size() {
+		return this.densities.length;
+	}
+
+	/**
+	 *
+	 * @return The number of samples per time unit
+	 * @author Rémi BARDON
+	 */
+	public float getSampleRate() {
+		return this.sampleRate;
+	}
+
+	/**
+	 *
+	 * @return The number of averaged segments
+	 * @author Rémi BARDON
+	 */
+	public int getSegmentCount() {
+		return this.segmentCount;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return The frequency of a bin, in cycles per time unit
+	 * @author Rémi BARDON
+	 */
+	public float getFrequency(final int index) {
+		Objects.checkIndex(index, this.densities.length);
+		return index * this.sampleRate / this.segmentLength;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return The power density of a bin
+	 * @author Rémi BARDON
+	 */
+	public float getDensity(final int index) {
+		return this.densities[index];
+	}
+
+	/**
+	 *
+	 * @return The power density of each frequency bin
+	 * @author Rémi BARDON
+	 */
+	public float[] getDensities() {
+		return this.densities;
+	}
+
+	/**
+	 * Finds the strongest peaks (local maxima) of the spectrum, ignoring the constant component
+	 * @param count The maximum number of frequencies to return
+	 * @return Frequencies of peaks, by decreasing power
+	 * @author Rémi BARDON
+	 */
+	public float[] getDominantFrequencies(final int count) {
+		final var peaks = new ArrayList<Integer>();
+		for (int k = 1; k < this.densities.length; k++) {
+			final boolean aboveLeft = this.densities[k] > this.densities[k - 1];
+			final boolean aboveRight = k == this.densities.length - 1 || this.densities[k] >= this.densities[k + 1];
+			if (aboveLeft && aboveRight) {
+				peaks.add(k);
+			}
+		}
+		peaks.sort((a, b) -> Float.compare(this.densities[b], this.densities[a]));
+
+		final float[] frequencies = new float[Math.min(count, peaks.size())];
+		for (int i = 0; i < frequencies.length; i++) {
+			frequencies[i] = this.getFrequency(peaks.get(i));
+		}
+		return frequencies;
+	}
+
+	/**
+	 *
+	 * @return The frequency of the strongest peak, or {@code NaN} if there is none
+	 * @author Rémi BARDON
+	 */
+	public float getDominantFrequency() {
+		final float[] frequencies = this.getDominantFrequencies(1);
+		return frequencies.length == 0 ? Float.NaN : frequencies[0];
+	}
+
+	@Override
+	public String toString() {
+		return "{ sampleRate: " + this.sampleRate + ", segments: " + this.segmentCount + ", dominantFrequencies: " + Arrays.toString(this.getDominantFrequencies(3)) + " }";
+	}
+
+}
@@ -0,0 +1,131 @@
+package code_metier;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs speculative pre-computations one after the other, with a bounded number running at the same time,
+ * so that some cores stay available for work the user is waiting for.<br>
+ * Pending pre-computations are replaced by new predictions, and dropped when they can't be afforded anymore.
+ * @author Rémi BARDON
+ */
+public final class PrefetchQueue {
+
+	/**
+	 * The maximum number of pre-computations running at the same time
+	 * @author Rémi BARDON
+	 */
+	private final int maximumRunning;
+	/**
+	 * Tells if a new pre-computation can be afforded (e.g. memory budget), checked before starting each one
+	 * @author Rémi BARDON
+	 */
+	private final BooleanSupplier canStart;
+
+	/**
+	 * Pre-computations not started yet, in order of likelihood. Guarded by {@code this}.
+	 * @author Rémi BARDON
+	 */
+	private final ArrayDeque<Supplier<CompletableFuture<?>>> pending;
+	/**
+	 * The number of running pre-computations. Guarded by {@code this}.
+	 * @author Rémi BARDON
+	 */
+	private int running;
+
+	/**
+	 *
+	 * @param maximumRunning The maximum number of pre-computations running at the same time
+	 * @param canStart Tells if a new pre-computation can be afforded, checked before starting each one
+	 * @author Rémi BARDON
+	 */
+	public PrefetchQueue(final int maximumRunning, final BooleanSupplier canStart) {
+		if (maximumRunning < 1) {
+			throw new IllegalArgumentException("Maximum running count must be at least 1: " + maximumRunning);
+		}
+
+		this.maximumRunning = maximumRunning;
+		this.canStart = canStart;
+		this.pending = new ArrayDeque<Supplier<CompletableFuture<?>>>();
+		this.running = 0;
+	}
+
+	/**
+	 * Replaces pending pre-computations, and starts some if possible. Running ones are kept.
+	 * @param computations Start pre-computations, in order of likelihood
+	 * @author Rémi BARDON
+	 */
+	public void replace(final List<Supplier<CompletableFuture<?>>> computations) {
+		synchronized (this) {
+			this.pending.clear();
+			this.pending.addAll(computations);
+		}
+		this.startNext();
+	}
+
+	/**
+	 * Drops pending pre-computations, letting running ones finish
+	 * @author Rémi BARDON
+	 */
+	public synchronized void cancelPending() {
+		this.pending.clear();
+	}
+
+	/**
+	 *
+	 * @return The number of pre-computations not started yet
+	 * @author Rémi BARDON
+	 */
+	public synchronized int getPendingCount() {
+		return this.pending.size();
+	}
+
+	/**
+	 *
+	 * @return The number of running pre-computations
+	 * @author Rémi BARDON
+	 */
+	public synchronized int getRunningCount() {
+		return this.running;
+	}
+
+	/**
+	 * Starts pending pre-computations while there are free slots
+	 * @author Rémi BARDON
+	 */
+	private void startNext() {
+		while (true) {
+			final Supplier<CompletableFuture<?>> computation;
+			synchronized (this) {
+				if (this.running >= this.maximumRunning || this.pending.isEmpty()) {
+					return;
+				}
+				if (!this.canStart.getAsBoolean()) {
+					this.pending.clear();
+					return;
+				}
+				computation = this.pending.poll();
+				this.running++;
+			}
+
+			CompletableFuture<?> task;
+			try {
+				task = computation.get();
+			} catch (RuntimeException e) {
+				task = CompletableFuture.failedFuture(e);
+			}
+
+			// Failures are ignored, as the result may never be needed
+			task.whenComplete((result, error) -> {
+				synchronized (this) {
+					this.running--;
+				}
+				this.startNext();
+			});
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package code_metier;
+
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Forwards progress of a long-running task (loading, cleaning, decomposing) to listeners,
+ * at most once per interval, so that hot loops can report often without flooding listeners.<br>
+ * Listeners receive the actual progress as first argument and the total expected progress as second argument.
+ * @author Rémi BARDON
+ */
+public final class ProgressReporter {
+
+	/**
+	 * The default minimum time between two reports
+	 * @author Rémi BARDON
+	 */
+	public static final Duration DEFAULT_INTERVAL = Duration.ofMillis(100);
+
+	/**
+	 * The total progress of one stage, when a listener follows several stages (see {@link #stage(BiConsumer, int, int)})
+	 * @author Rémi BARDON
+	 */
+	public static final int STAGE_RESOLUTION = 1_000;
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final CopyOnWriteArrayList<BiConsumer<Integer, Integer>> listeners;
+	/**
+	 * The minimum time between two reports, in nanoseconds
+	 * @author Rémi BARDON
+	 */
+	private final long interval;
+
+	/**
+	 * The {@link System#nanoTime()} of the last report. Guarded by {@code this}.
+	 * @author Rémi BARDON
+	 */
+	private long lastReportTime;
+	/**
+	 * The last reported progress, sent to new listeners
+	 * @author Rémi BARDON
+	 */
+	private volatile long lastProgress;
+	/**
+	 * The last reported total, sent to new listeners. {@code 0} if nothing was reported yet.
+	 * @author Rémi BARDON
+	 */
+	private volatile long lastTotal;
+
+	/**
+	 * A reporter using {@link #DEFAULT_INTERVAL}
+	 * @author Rémi BARDON
+	 */
+	public ProgressReporter() {
+		this(DEFAULT_INTERVAL);
+	}
+
+	/**
+	 *
+	 * @param interval The minimum time between two reports
+	 * @author Rémi BARDON
+	 */
+	public ProgressReporter(final Duration interval) {
+		this.listeners = new CopyOnWriteArrayList<BiConsumer<Integer, Integer>>();
+		this.interval = interval.toNanos();
+		// Let the first report through
+		this.lastReportTime = System.nanoTime() - this.interval;
+		this.lastProgress = 0;
+		this.lastTotal = 0;
+	}
+
+	/**
+	 * Adds a listener, immediately sending it the last reported progress if any
+	 * @param listener
+	 * @author Rémi BARDON
+	 */
+	public void addListener(final BiConsumer<Integer, Integer> listener) {
+		this.listeners.add(listener);
+
+		final long total = this.lastTotal;
+		if (total > 0) {
+			send(listener, this.lastProgress, total);
+		}
+	}
+
+	/**
+	 *
+	 * @param listener
+	 * @author Rémi BARDON
+	 */
+	public void removeListener(final BiConsumer<Integer, Integer> listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Reports progress to listeners, unless the last report is more recent than the interval.
+	 * The final report ({@code progress >= total}) is never throttled, so that listeners always see the task complete.
+	 * Only costs a call to {@link System#nanoTime()} when throttled, and nothing when there is no listener.
+	 * @param progress
+	 * @param total
+	 * @author Rémi BARDON
+	 */
+	public void report(final long progress, final long total) {
+		if (this.listeners.isEmpty()) {
+			return;
+		}
+
+		final long now = System.nanoTime();
+		synchronized (this) {
+			if (progress < total && now - this.lastReportTime < this.interval) {
+				return;
+			}
+			this.lastReportTime = now;
+		}
+
+		this.lastProgress = progress;
+		this.lastTotal = total;
+		for (final var listener : this.listeners) {
+			send(listener, progress, total);
+		}
+	}
+
+	/**
+	 * Sends progress to a listener, scaling it down if it doesn't fit in an {@link Integer} (e.g. bytes of large files)
+	 * @param listener
+	 * @param progress
+	 * @param total
+	 * @author Rémi BARDON
+	 */
+	private static void send(final BiConsumer<Integer, Integer> listener, final long progress, final long total) {
+		final int shift = Math.max(0, Long.SIZE - Long.numberOfLeadingZeros(total) - (Integer.SIZE - 1));
+		listener.accept((int) (Math.min(progress, total) >> shift), (int) (total >> shift));
+	}
+
+	/**
+	 * Maps the progress of one stage of a multi-stage task into the progress of the whole task,
+	 * each stage weighing {@link #STAGE_RESOLUTION}
+	 * @param listener The listener of the whole task
+	 * @param stage The index of the stage, from {@code 0}
+	 * @param stageCount The number of stages of the whole task
+	 * @return A listener for the stage
+	 * @author Rémi BARDON
+	 */
+	public static BiConsumer<Integer, Integer> stage(final BiConsumer<Integer, Integer> listener, final int stage, final int stageCount) {
+		return (progress, total) -> {
+			final long stageProgress = total == 0 ? 0 : (long) progress * STAGE_RESOLUTION / total;
+			listener.accept(stage * STAGE_RESOLUTION + (int) stageProgress, stageCount * STAGE_RESOLUTION);
+		};
+	}
+
+}
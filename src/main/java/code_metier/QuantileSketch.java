@@ -0,0 +1,391 @@
+package code_metier;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable summary of a distribution (in the spirit of a merging {@code t-digest}), with bounded memory.
+ * Values are grouped into weighted centroids, which are kept small near both tails of the distribution
+ * so that extreme quantiles stay accurate. Minimum and maximum are exact.
+ * {@code NaN} values are ignored.<br>
+ * Reads never modify the sketch, so they can run concurrently once no more values are added or merged.
+ * @author Rémi BARDON
+ */
+public final class QuantileSketch {
+
+	/**
+	 * The default compression, giving about 1% relative accuracy around the median and better on tails
+	 * @author Rémi BARDON
+	 */
+	public static final double DEFAULT_COMPRESSION = 100;
+
+	/**
+	 * Bigger values keep more centroids (more accurate, more memory)
+	 * @author Rémi BARDON
+	 */
+	private final double compression;
+
+	/**
+	 * The means of centroids, sorted
+	 * @author Rémi BARDON
+	 */
+	private double[] means;
+	/**
+	 * The weights of centroids
+	 * @author Rémi BARDON
+	 */
+	private double[] weights;
+	/**
+	 * The cumulative weights of centroids, up to (and including) each centroid
+	 * @author Rémi BARDON
+	 */
+	private double[] cumulativeWeights;
+	/**
+	 * The number of centroids
+	 * @author Rémi BARDON
+	 */
+	private int centroidCount;
+
+	/**
+	 * Values added since last compression
+	 * @author Rémi BARDON
+	 */
+	private final float[] buffer;
+	/**
+	 * The number of values in {@link #buffer}
+	 * @author Rémi BARDON
+	 */
+	private int bufferCount;
+
+	/**
+	 * The number of (non-{@code NaN}) values
+	 * @author Rémi BARDON
+	 */
+	private long count;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private float minimum;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private float maximum;
+
+	/**
+	 * A sketch with {@link #DEFAULT_COMPRESSION}
+	 * @author Rémi BARDON
+	 */
+	public QuantileSketch() {
+		this(DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 *
+	 * @param compression Bigger values keep more centroids (more accurate, more memory). At most about {@code compression} centroids are kept.
+	 * @author Rémi BARDON
+	 */
+	public QuantileSketch(final double compression) {
+		if (!(compression >= 10)) {
+			throw new IllegalArgumentException("Compression must be at least 10: " + compression);
+		}
+
+		this.compression = compression;
+		final int capacity = (int) Math.ceil(2 * compression) + 10;
+		this.means = new double[capacity];
+		this.weights = new double[capacity];
+		this.cumulativeWeights = new double[capacity];
+		this.centroidCount = 0;
+		this.buffer = new float[5 * capacity];
+		this.bufferCount = 0;
+		this.count = 0;
+		this.minimum = Float.NaN;
+		this.maximum = Float.NaN;
+	}
+
+	/**
+	 * Adds a value, in amortised constant time
+	 * @param value
+	 * @author Rémi BARDON
+	 */
+	public void add(final float value) {
+		if (Float.isNaN(value)) {
+			return;
+		}
+
+		this.minimum = this.count == 0 ? value : Math.min(this.minimum, value);
+		this.maximum = this.count == 0 ? value : Math.max(this.maximum, value);
+		this.count++;
+
+		this.buffer[this.bufferCount++] = value;
+		if (this.bufferCount == this.buffer.length) {
+			this.compress();
+		}
+	}
+
+	/**
+	 * Adds all values summarized by another sketch (from another {@link Tag} or session for example)
+	 * @param other Left untouched
+	 * @author Rémi BARDON
+	 */
+	public void merge(final QuantileSketch other) {
+		if (other.count == 0) {
+			return;
+		}
+		final QuantileSketch compressed = other.copy();
+		compressed.compress();
+		this.compress();
+
+		this.minimum = this.count == 0 ? compressed.minimum : Math.min(this.minimum, compressed.minimum);
+		this.maximum = this.count == 0 ? compressed.maximum : Math.max(this.maximum, compressed.maximum);
+		this.count += compressed.count;
+
+		this.collapse(compressed.means, compressed.weights, compressed.centroidCount);
+	}
+
+	/**
+	 *
+	 * @return The number of (non-{@code NaN}) values
+	 * @author Rémi BARDON
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 *
+	 * @return The smallest value, or {@code NaN} if there is none
+	 * @author Rémi BARDON
+	 */
+	public float getMinimum() {
+		return this.minimum;
+	}
+
+	/**
+	 *
+	 * @return The biggest value, or {@code NaN} if there is none
+	 * @author Rémi BARDON
+	 */
+	public float getMaximum() {
+		return this.maximum;
+	}
+
+	/**
+	 * Estimates a quantile, in time independent of the number of values
+	 * @param quantile In {@code [0, 1]} ({@code 0.5} for the median)
+	 * @return The estimated quantile, or {@code NaN} if there is no value
+	 * @author Rémi BARDON
+	 */
+	public float getQuantile(final double quantile) {
+		if (!(quantile >= 0 && quantile <= 1)) {
+			throw new IllegalArgumentException("Quantile must be in [0, 1]: " + quantile);
+		}
+		if (this.count == 0) {
+			return Float.NaN;
+		}
+		// Buffered values are compressed in a copy, so that reads don't modify the sketch
+		if (this.bufferCount > 0) {
+			final QuantileSketch compressed = this.copy();
+			compressed.compress();
+			return compressed.getQuantile(quantile);
+		}
+
+		if (this.centroidCount == 1) {
+			return (float) this.means[0];
+		}
+
+		final double total = this.cumulativeWeights[this.centroidCount - 1];
+		final double target = quantile * total;
+
+		// Tails: interpolate between exact extremes and first/last centroid centers
+		final double firstCenter = this.weights[0] / 2;
+		if (target <= firstCenter) {
+			return (float) interpolate(this.minimum, this.means[0], target / firstCenter);
+		}
+		final double lastCenter = total - this.weights[this.centroidCount - 1] / 2;
+		if (target >= lastCenter) {
+			final double ratio = (target - lastCenter) / (total - lastCenter);
+			return (float) interpolate(this.means[this.centroidCount - 1], this.maximum, ratio);
+		}
+
+		// First centroid which center is after target
+		int low = 1;
+		int high = this.centroidCount - 1;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (this.center(middle) < target) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		final double leftCenter = this.center(low - 1);
+		final double rightCenter = this.center(low);
+		return (float) interpolate(this.means[low - 1], this.means[low], (target - leftCenter) / (rightCenter - leftCenter));
+	}
+
+	/**
+	 *
+	 * @return The median, or {@code NaN} if there is no value
+	 * @author Rémi BARDON
+	 */
+	public float getMedian() {
+		return this.getQuantile(0.5);
+	}
+
+	/**
+	 *
+	 * @return The approximate number of bytes used by this sketch
+	 * @author Rémi BARDON
+	 */
+	long getRetainedSize() {
+		return 3L * Double.BYTES * this.means.length + (long) Float.BYTES * this.buffer.length;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return The cumulative weight at the center of a centroid
+	 * @author Rémi BARDON
+	 */
+	private double center(final int index) {
+		return this.cumulativeWeights[index] - this.weights[index] / 2;
+	}
+
+	/**
+	 * Merges buffered values into centroids, so that reads don't need to compress them in a copy
+	 * @author Rémi BARDON
+	 */
+	void compress() {
+		if (this.bufferCount == 0) {
+			return;
+		}
+
+		Arrays.sort(this.buffer, 0, this.bufferCount);
+		final double[] means = new double[this.bufferCount];
+		final double[] weights = new double[this.bufferCount];
+		for (int i = 0; i < this.bufferCount; i++) {
+			means[i] = this.buffer[i];
+			weights[i] = 1;
+		}
+		this.bufferCount = 0;
+
+		this.collapse(means, weights, means.length);
+	}
+
+	/**
+	 *
+	 * @return A sketch summarizing the same values, which can be modified independently
+	 * @author Rémi BARDON
+	 */
+	private QuantileSketch copy() {
+		final var copy = new QuantileSketch(this.compression);
+		copy.means = this.means.clone();
+		copy.weights = this.weights.clone();
+		copy.cumulativeWeights = this.cumulativeWeights.clone();
+		copy.centroidCount = this.centroidCount;
+		System.arraycopy(this.buffer, 0, copy.buffer, 0, this.bufferCount);
+		copy.bufferCount = this.bufferCount;
+		copy.count = this.count;
+		copy.minimum = this.minimum;
+		copy.maximum = this.maximum;
+		return copy;
+	}
+
+	/**
+	 * Merges sorted centroids with current centroids, then collapses neighbours while they stay small enough
+	 * for their position in the distribution
+	 * @param otherMeans Sorted
+	 * @param otherWeights
+	 * @param otherCount
+	 * @author Rémi BARDON
+	 */
+	private void collapse(final double[] otherMeans, final double[] otherWeights, final int otherCount) {
+		double total = 0;
+		for (int i = 0; i < this.centroidCount; i++) {
+			total += this.weights[i];
+		}
+		for (int i = 0; i < otherCount; i++) {
+			total += otherWeights[i];
+		}
+
+		final int capacity = this.centroidCount + otherCount;
+		final double[] newMeans = new double[Math.max(capacity, this.means.length)];
+		final double[] newWeights = new double[newMeans.length];
+		int newCount = 0;
+		double weightSoFar = 0;
+
+		int i = 0;
+		int j = 0;
+		while (i < this.centroidCount || j < otherCount) {
+			// Next centroid by mean, from either sequence
+			final double mean;
+			final double weight;
+			if (j >= otherCount || (i < this.centroidCount && this.means[i] <= otherMeans[j])) {
+				mean = this.means[i];
+				weight = this.weights[i++];
+			} else {
+				mean = otherMeans[j];
+				weight = otherWeights[j++];
+			}
+
+			if (newCount > 0) {
+				final int last = newCount - 1;
+				final double proposed = newWeights[last] + weight;
+				final double qLeft = (weightSoFar - newWeights[last]) / total;
+				final double qRight = (weightSoFar + weight) / total;
+				if (this.scale(qRight) - this.scale(qLeft) <= 1) {
+					newMeans[last] += (mean - newMeans[last]) * weight / proposed;
+					newWeights[last] = proposed;
+					weightSoFar += weight;
+					continue;
+				}
+			}
+
+			newMeans[newCount] = mean;
+			newWeights[newCount] = weight;
+			newCount++;
+			weightSoFar += weight;
+		}
+
+		this.means = newMeans;
+		this.weights = newWeights;
+		this.centroidCount = newCount;
+		this.cumulativeWeights = new double[newMeans.length];
+		double cumulative = 0;
+		for (int k = 0; k < newCount; k++) {
+			cumulative += newWeights[k];
+			this.cumulativeWeights[k] = cumulative;
+		}
+	}
+
+	/**
+	 * The {@code t-digest} scale function: a centroid can span at most {@code 1} on this scale,
+	 * which is steeper near both tails, bounding the number of centroids to about {@link #compression}
+	 * @param quantile
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	private double scale(final double quantile) {
+		return this.compression / (2 * Math.PI) * Math.asin(2 * Math.max(0, Math.min(1, quantile)) - 1);
+	}
+
+	/**
+	 *
+	 * @param from
+	 * @param to
+	 * @param ratio In {@code [0, 1]}
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	private static double interpolate(final double from, final double to, final double ratio) {
+		return from + (to - from) * Math.max(0, Math.min(1, ratio));
+	}
+
+	@Override
+	public String toString() {
+		return "{ count: " + this.getCount() + ", min: " + this.getMinimum() + ", median: " + this.getMedian() + ", max: " + this.getMaximum() + " }";
+	}
+
+}
@@ -0,0 +1,80 @@
+package code_metier;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Resamples irregular series on a regular time grid, so that they can be compared sample by sample
+ * or transformed with a {@link FastFourierTransform}
+ * @author Rémi BARDON
+ */
+public final class Resampler {
+
+	/**
+	 * A utility class, not meant to be instantiated
+	 * @author Rémi BARDON
+	 */
+	private Resampler() {}
+
+	/**
+	 * Linearly interpolates a series on a regular grid, in one pass.
+	 * {@code NaN} values are skipped, and grid points before the first (after the last) value take the first (last) value.
+	 * @param timestamps The timestamps of points, in increasing order
+	 * @param values The values of points
+	 * @param start The timestamp of the first grid point
+	 * @param step The duration between grid points
+	 * @param destination Filled with one value per grid point
+	 * @return {@code false} if there is no (non-{@code NaN}) value to interpolate (then {@code destination} is filled with {@code NaN})
+	 * @author Rémi BARDON
+	 */
+	public static boolean resample(
+		final FloatBuffer timestamps,
+		final FloatBuffer values,
+		final double start,
+		final double step,
+		final double[] destination
+	) {
+		final int offset = timestamps.position();
+		final int valueOffset = values.position();
+		final int count = Math.min(timestamps.remaining(), values.remaining());
+
+		// Previous and next valid points around the current grid point
+		int next = 0;
+		while (next < count && Float.isNaN(values.get(valueOffset + next))) {
+			next++;
+		}
+		if (next == count) {
+			Arrays.fill(destination, Double.NaN);
+			return false;
+		}
+		int previous = next;
+
+		for (int i = 0; i < destination.length; i++) {
+			final double timestamp = start + i * step;
+			while (next < count && (Float.isNaN(values.get(valueOffset + next)) || timestamps.get(offset + next) < timestamp)) {
+				if (!Float.isNaN(values.get(valueOffset + next))) {
+					previous = next;
+				}
+				next++;
+			}
+
+			final float previousValue = values.get(valueOffset + previous);
+			if (next == count || previous == next) {
+				destination[i] = next == count ? previousValue : values.get(valueOffset + next);
+				continue;
+			}
+
+			final double previousTimestamp = timestamps.get(offset + previous);
+			final double nextTimestamp = timestamps.get(offset + next);
+			if (timestamp <= previousTimestamp || nextTimestamp == previousTimestamp) {
+				destination[i] = previousValue;
+			} else {
+				final double ratio = (timestamp - previousTimestamp) / (nextTimestamp - previousTimestamp);
+				destination[i] = previousValue + (values.get(valueOffset + next) - previousValue) * ratio;
+			}
+		}
+
+		return true;
+	}
+
+}
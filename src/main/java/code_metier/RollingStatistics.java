@@ -0,0 +1,548 @@
+package code_metier;
+
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Statistics over a sliding time window, updated in {@code O(1)} amortised time per point
+ * ({@code O(log w)} for the quantile): running sums for mean and variance, monotonic deques for minimum and maximum,
+ * and two ordered sets split at the quantile rank.
+ * Points can be appended one by one (streaming), or a whole series can be computed at once with {@link #compute(List, float, double)}.
+ * {@code NaN} values are ignored.
+ * @author Rémi BARDON
+ */
+public final class RollingStatistics {
+
+	/**
+	 * The duration of the window
+	 * @author Rémi BARDON
+	 */
+	private final float windowDuration;
+	/**
+	 * The quantile to compute, in {@code [0, 1]} ({@code 0.5} for the median)
+	 * @author Rémi BARDON
+	 */
+	private final double quantile;
+
+	/**
+	 * The timestamps of points in the window, indexed by sequence number modulo capacity
+	 * @author Rémi BARDON
+	 */
+	private float[] timestamps;
+	/**
+	 * The values of points in the window, indexed by sequence number modulo capacity
+	 * @author Rémi BARDON
+	 */
+	private float[] values;
+	/**
+	 * The sequence number of the oldest point in the window
+	 * @author Rémi BARDON
+	 */
+	private long head;
+	/**
+	 * The sequence number of the next appended point
+	 * @author Rémi BARDON
+	 */
+	private long tail;
+
+	/**
+	 * The sequence numbers of points which could become the minimum, with increasing values
+	 * @author Rémi BARDON
+	 */
+	private final SequenceDeque minimums;
+	/**
+	 * The sequence numbers of points which could become the maximum, with decreasing values
+	 * @author Rémi BARDON
+	 */
+	private final SequenceDeque maximums;
+
+	/**
+	 * Values are shifted by the first value before summing, to limit cancellation in the variance
+	 * @author Rémi BARDON
+	 */
+	private double shift;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private double sum;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private double sumOfSquares;
+
+	/**
+	 * The smallest values of the window, up to the quantile rank (see {@link #key(float, long)})
+	 * @author Rémi BARDON
+	 */
+	private final TreeSet<Long> lower;
+	/**
+	 * The other values of the window (see {@link #key(float, long)})
+	 * @author Rémi BARDON
+	 */
+	private final TreeSet<Long> upper;
+
+	/**
+	 *
+	 * @param windowDuration The duration of the window (points older than the last timestamp minus this duration are dropped)
+	 * @param quantile The quantile to compute, in {@code [0, 1]} ({@code 0.5} for the median)
+	 * @author Rémi BARDON
+	 */
+	public RollingStatistics(final float windowDuration, final double quantile) {
+		if (!(quantile >= 0 && quantile <= 1)) {
+			throw new IllegalArgumentException("Quantile must be in [0, 1]: " + quantile);
+		}
+
+		this.windowDuration = windowDuration;
+		this.quantile = quantile;
+		this.timestamps = new float[16];
+		this.values = new float[16];
+		this.head = 0;
+		this.tail = 0;
+		this.minimums = new SequenceDeque();
+		this.maximums = new SequenceDeque();
+		this.shift = Double.NaN;
+		this.sum = 0;
+		this.sumOfSquares = 0;
+		this.lower = new TreeSet<Long>();
+		this.upper = new TreeSet<Long>();
+	}
+
+	/**
+	 * Computes rolling statistics of a whole series, for the window ending at each point
+	 * @param points {@link DataPoint}s, sorted by timestamp
+	 * @param windowDuration The duration of the window
+	 * @param quantile The quantile to compute, in {@code [0, 1]} ({@code 0.5} for the median)
+	 * @return One value per point in every column
+	 * @author Rémi BARDON
+	 */
+	public static Columns compute(final List<DataPoint> points, final float windowDuration, final double quantile) {
+		final var statistics = new RollingStatistics(windowDuration, quantile);
+		final var columns = new Columns(points.size());
+
+		int index = 0;
+		for (final DataPoint point : points) {
+			statistics.append(point.getTimestamp(), point.getValue());
+			columns.set(index++, statistics);
+		}
+
+		return columns;
+	}
+
+	/**
+	 * Appends a point, dropping points which are now out of the window
+	 * @param timestamp Must not be less than the timestamp of the previous point
+	 * @param value
+	 * @author Rémi BARDON
+	 */
+	public void append(final float timestamp, final float value) {
+		// Drop old points
+		while (this.head < this.tail && this.timestamps[this.slot(this.head)] < timestamp - this.windowDuration) {
+			this.remove(this.head++);
+		}
+
+		if (Float.isNaN(value)) {
+			return;
+		}
+
+		this.grow();
+		final long sequence = this.tail++;
+		this.timestamps[this.slot(sequence)] = timestamp;
+		this.values[this.slot(sequence)] = value;
+
+		// Running sums
+		if (Double.isNaN(this.shift)) {
+			this.shift = value;
+		}
+		final double shifted = value - this.shift;
+		this.sum += shifted;
+		this.sumOfSquares += shifted * shifted;
+
+		// Monotonic deques
+		while (!this.minimums.isEmpty() && this.values[this.slot(this.minimums.peekLast())] >= value) {
+			this.minimums.pollLast();
+		}
+		this.minimums.addLast(sequence);
+		while (!this.maximums.isEmpty() && this.values[this.slot(this.maximums.peekLast())] <= value) {
+			this.maximums.pollLast();
+		}
+		this.maximums.addLast(sequence);
+
+		// Quantile sets
+		final long key = key(value, sequence);
+		if (this.lower.isEmpty() || key <= this.lower.last()) {
+			this.lower.add(key);
+		} else {
+			this.upper.add(key);
+		}
+		this.rebalance();
+	}
+
+	/**
+	 *
+	 * @return The number of (non-{@code NaN}) values in the window
+	 * @author Rémi BARDON
+	 */
+	public int getCount() {
+		return (int) (this.tail - this.head);
+	}
+
+	/**
+	 *
+	 * @return The average value in the window, or {@code NaN} if it's empty
+	 * @author Rémi BARDON
+	 */
+	public float getMean() {
+		final int count = this.getCount();
+		return count == 0 ? Float.NaN : (float) (this.shift + this.sum / count);
+	}
+
+	/**
+	 *
+	 * @return The population variance in the window, or {@code NaN} if it's empty
+	 * @author Rémi BARDON
+	 */
+	public float getVariance() {
+		final int count = this.getCount();
+		if (count == 0) {
+			return Float.NaN;
+		}
+		final double mean = this.sum / count;
+		return (float) Math.max(0, this.sumOfSquares / count - mean * mean);
+	}
+
+	/**
+	 *
+	 * @return The smallest value in the window, or {@code NaN} if it's empty
+	 * @author Rémi BARDON
+	 */
+	public float getMinimum() {
+		return this.minimums.isEmpty() ? Float.NaN : this.values[this.slot(this.minimums.peekFirst())];
+	}
+
+	/**
+	 *
+	 * @return The biggest value in the window, or {@code NaN} if it's empty
+	 * @author Rémi BARDON
+	 */
+	public float getMaximum() {
+		return this.maximums.isEmpty() ? Float.NaN : this.values[this.slot(this.maximums.peekFirst())];
+	}
+
+	/**
+	 *
+	 * @return The quantile of values in the window (nearest rank), or {@code NaN} if it's empty
+	 * @author Rémi BARDON
+	 */
+	public float getQuantile() {
+		return this.lower.isEmpty() ? Float.NaN : value(this.lower.last());
+	}
+
+	/**
+	 * Removes the oldest point from every structure, once {@link #head} was moved past it
+	 * @param sequence The sequence number of the oldest point
+	 * @author Rémi BARDON
+	 */
+	private void remove(final long sequence) {
+		final float value = this.values[this.slot(sequence)];
+
+		final double shifted = value - this.shift;
+		this.sum -= shifted;
+		this.sumOfSquares -= shifted * shifted;
+
+		if (!this.minimums.isEmpty() && this.minimums.peekFirst() == sequence) {
+			this.minimums.pollFirst();
+		}
+		if (!this.maximums.isEmpty() && this.maximums.peekFirst() == sequence) {
+			this.maximums.pollFirst();
+		}
+
+		final long key = key(value, sequence);
+		if (!this.lower.remove(key)) {
+			this.upper.remove(key);
+		}
+
+		if (this.head == this.tail) {
+			// Window is now empty, reset sums to avoid accumulating rounding errors
+			this.shift = Double.NaN;
+			this.sum = 0;
+			this.sumOfSquares = 0;
+		} else {
+			this.rebalance();
+		}
+	}
+
+	/**
+	 * Moves values between {@link #lower} and {@link #upper} so that {@link #lower} contains exactly the quantile rank
+	 * @author Rémi BARDON
+	 */
+	private void rebalance() {
+		final int count = this.lower.size() + this.upper.size();
+		final int rank = count == 0 ? 0 : Math.max(1, (int) Math.ceil(this.quantile * count));
+		while (this.lower.size() > rank) {
+			this.upper.add(this.lower.pollLast());
+		}
+		while (this.lower.size() < rank) {
+			this.lower.add(this.upper.pollFirst());
+		}
+	}
+
+	/**
+	 * Grows the ring buffers if the window is full
+	 * @author Rémi BARDON
+	 */
+	private void grow() {
+		final int count = this.getCount();
+		if (count < this.values.length) {
+			return;
+		}
+
+		final float[] timestamps = new float[2 * this.values.length];
+		final float[] values = new float[2 * this.values.length];
+		for (long sequence = this.head; sequence < this.tail; sequence++) {
+			timestamps[(int) (sequence % timestamps.length)] = this.timestamps[this.slot(sequence)];
+			values[(int) (sequence % values.length)] = this.values[this.slot(sequence)];
+		}
+		this.timestamps = timestamps;
+		this.values = values;
+	}
+
+	/**
+	 *
+	 * @param sequence
+	 * @return The index of a point in the ring buffers
+	 * @author Rémi BARDON
+	 */
+	private int slot(final long sequence) {
+		return (int) (sequence % this.values.length);
+	}
+
+	/**
+	 * Encodes a value and its sequence number into one {@code long} sorted by value, unique for each point
+	 * @param value
+	 * @param sequence
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	private static long key(final float value, final long sequence) {
+		final int bits = Float.floatToIntBits(value);
+		final int sortable = bits ^ ((bits >> 31) & 0x7FFFFFFF);
+		return ((long) sortable << 32) | (sequence & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Decodes the value of a key
+	 * @param key
+	 * @return
+	 * @see #key(float, long)
+	 * @author Rémi BARDON
+	 */
+	private static float value(final long key) {
+		final int sortable = (int) (key >> 32);
+		return Float.intBitsToFloat(sortable ^ ((sortable >> 31) & 0x7FFFFFFF));
+	}
+
+	/**
+	 * A double-ended queue of sequence numbers, without boxing
+	 * @author Rémi BARDON
+	 */
+	private static final class SequenceDeque {
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private long[] elements = new long[16];
+		/**
+		 * The index of the first element
+		 * @author Rémi BARDON
+		 */
+		private int first = 0;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private int size = 0;
+
+		/**
+		 *
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		boolean isEmpty() {
+			return this.size == 0;
+		}
+
+		/**
+		 *
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		long peekFirst() {
+			return this.elements[this.first];
+		}
+
+		/**
+		 *
+		 * @return
+		 * @author Rémi BARDON
+		 */
+		long peekLast() {
+			return this.elements[(this.first + this.size - 1) & (this.elements.length - 1)];
+		}
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		void pollFirst() {
+			this.first = (this.first + 1) & (this.elements.length - 1);
+			this.size--;
+		}
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		void pollLast() {
+			this.size--;
+		}
+
+		/**
+		 *
+		 * @param element
+		 * @author Rémi BARDON
+		 */
+		void addLast(final long element) {
+			if (this.size == this.elements.length) {
+				// Unroll then double capacity (always a power of two)
+				final long[] elements = new long[2 * this.elements.length];
+				for (int i = 0; i < this.size; i++) {
+					elements[i] = this.elements[(this.first + i) & (this.elements.length - 1)];
+				}
+				this.elements = elements;
+				this.first = 0;
+			}
+			this.elements[(this.first + this.size) & (this.elements.length - 1)] = element;
+			this.size++;
+		}
+
+	}
+
+	/**
+	 * Rolling statistics of a whole series, stored as primitive columns (one value per point)
+	 * @author Rémi BARDON
+	 */
+	public static final class Columns {
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] means;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] variances;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] minimums;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] maximums;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final float[] quantiles;
+
+		/**
+		 *
+		 * @param size The number of points
+		 * @author Rémi BARDON
+		 */
+		Columns(final int size) {
+			this.means = new float[size];
+			this.variances = new float[size];
+			this.minimums = new float[size];
+			this.maximums = new float[size];
+			this.quantiles = new float[size];
+		}
+
+		/**
+		 * Stores the current statistics of a window
+		 * @param index
+		 * @param statistics
+		 * @author Rémi BARDON
+		 */
+		void set(final int index, final RollingStatistics statistics) {
+			this.means[index] = statistics.getMean();
+			this.variances[index] = statistics.getVariance();
+			this.minimums[index] = statistics.getMinimum();
+			this.maximums[index] = statistics.getMaximum();
+			this.quantiles[index] = statistics.getQuantile();
+		}
+
+		/**
+		 *
+		 * @return The number of points
+		 * @author Rémi BARDON
+		 */
+		public int size() {
+			return this.means.length;
+		}
+
+		/**
+		 *
+		 * @return One rolling mean per point
+		 * @author Rémi BARDON
+		 */
+		public float[] getMeans() {
+			return this.means;
+		}
+
+		/**
+		 *
+		 * @return One rolling variance per point
+		 * @author Rémi BARDON
+		 */
+		public float[] getVariances() {
+			return this.variances;
+		}
+
+		/**
+		 *
+		 * @return One rolling minimum per point
+		 * @author Rémi BARDON
+		 */
+		public float[] getMinimums() {
+			return this.minimums;
+		}
+
+		/**
+		 *
+		 * @return One rolling maximum per point
+		 * @author Rémi BARDON
+		 */
+		public float[] getMaximums() {
+			return this.maximums;
+		}
+
+		/**
+		 *
+		 * @return One rolling quantile per point
+		 * @author Rémi BARDON
+		 */
+		public float[] getQuantiles() {
+			return this.quantiles;
+		}
+
+	}
+
+}
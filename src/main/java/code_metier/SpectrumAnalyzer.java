@@ -0,0 +1,171 @@
+package code_metier;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Estimates power spectra with Welch's method: the series is resampled on a regular grid, cut into half-overlapping segments,
+ * each segment is multiplied by a Hann window and transformed, and squared magnitudes are averaged.
+ * The {@link FastFourierTransform} plan and the window are computed once, and work buffers are reused by each thread,
+ * so one analyzer should be shared to analyse many series (in parallel if needed).
+ * @author Rémi BARDON
+ */
+public final class SpectrumAnalyzer {
+
+	/**
+	 * The default number of samples per segment
+	 * @author Rémi BARDON
+	 */
+	public static final int DEFAULT_SEGMENT_LENGTH = 1_024;
+
+	/**
+	 * The transform of one segment
+	 * @author Rémi BARDON
+	 */
+	private final FastFourierTransform transform;
+	/**
+	 * The Hann window applied on each segment
+	 * @author Rémi BARDON
+	 */
+	private final double[] window;
+	/**
+	 * The sum of squared window values, to normalize powers
+	 * @author Rémi BARDON
+	 */
+	private final double windowPower;
+	/**
+	 * Work buffers of each thread: real parts, imaginary parts
+	 * @author Rémi BARDON
+	 */
+	private final ThreadLocal<double[][]> buffers;
+
+	/**
+	 * An analyzer with segments of {@link #DEFAULT_SEGMENT_LENGTH} samples
+	 * @author Rémi BARDON
+	 */
+	public SpectrumAnalyzer() {
+		this(DEFAULT_SEGMENT_LENGTH);
+	}
+
+	/**
+	 *
+	 * @param segmentLength The number of samples per segment, a power of two. Longer segments give a finer frequency resolution, but less averaging.
+	 * @author Rémi BARDON
+	 */
+	public SpectrumAnalyzer(final int segmentLength) {
+		this.transform = new FastFourierTransform(segmentLength);
+
+		this.window = hann(segmentLength);
+		this.windowPower = power(this.window);
+
+		this.buffers = ThreadLocal.withInitial(() -> new double[][] { new double[segmentLength], new double[segmentLength] });
+	}
+
+	/**
+	 *
+	 * @return The number of samples per segment
+	 * @author Rémi BARDON
+	 */
+	public int getSegmentLength() {
+		return this.transform.size();
+	}
+
+	/**
+	 * Estimates the power spectrum of a series. The sample rate is the average rate of the series.
+	 * A series shorter than one segment is windowed on its own length, then zero-padded.
+	 * @param timestamps The timestamps of points, in increasing order
+	 * @param values The values of points
+	 * @return An empty {@link PowerSpectrum} if the series has less than 2 points
+	 * @author Rémi BARDON
+	 */
+	public PowerSpectrum analyze(final FloatBuffer timestamps, final FloatBuffer values) {
+		final int pointCount = timestamps.remaining();
+		final int segmentLength = this.getSegmentLength();
+		if (pointCount < 2) {
+			return new PowerSpectrum(Float.NaN, segmentLength, 0, new float[0]);
+		}
+
+		final double start = timestamps.get(timestamps.position());
+		final double end = timestamps.get(timestamps.limit() - 1);
+		final double step = (end - start) / (pointCount - 1);
+		if (!(step > 0)) {
+			return new PowerSpectrum(Float.NaN, segmentLength, 0, new float[0]);
+		}
+
+		final double[] samples = new double[pointCount];
+		if (!Resampler.resample(timestamps, values, start, step, samples)) {
+			return new PowerSpectrum((float) (1 / step), segmentLength, 0, new float[0]);
+		}
+
+		final double[][] buffers = this.buffers.get();
+		final double[] real = buffers[0];
+		final double[] imaginary = buffers[1];
+		final double[] powers = new double[segmentLength / 2 + 1];
+		final int hop = Math.max(1, segmentLength / 2);
+
+		// Only a series shorter than one segment has a shorter (single) segment
+		final double[] window = pointCount < segmentLength ? hann(pointCount) : this.window;
+		final double windowPower = pointCount < segmentLength ? power(window) : this.windowPower;
+
+		int segmentCount = 0;
+		for (int from = 0; segmentCount == 0 || from + segmentLength <= pointCount; from += hop) {
+			final int count = Math.min(segmentLength, pointCount - from);
+
+			// Remove segment mean, apply window, zero-pad
+			double mean = 0;
+			for (int i = 0; i < count; i++) {
+				mean += samples[from + i];
+			}
+			mean /= count;
+			for (int i = 0; i < segmentLength; i++) {
+				real[i] = i < count ? (samples[from + i] - mean) * window[i] : 0;
+			}
+			Arrays.fill(imaginary, 0);
+
+			this.transform.forward(real, imaginary);
+			for (int k = 0; k < powers.length; k++) {
+				powers[k] += real[k] * real[k] + imaginary[k] * imaginary[k];
+			}
+			segmentCount++;
+		}
+
+		// One-sided power spectral density
+		final double sampleRate = 1 / step;
+		final float[] density = new float[powers.length];
+		for (int k = 0; k < powers.length; k++) {
+			final double scale = (k == 0 || k == segmentLength / 2 ? 1 : 2) / (segmentCount * sampleRate * windowPower);
+			density[k] = (float) (powers[k] * scale);
+		}
+
+		return new PowerSpectrum((float) sampleRate, segmentLength, segmentCount, density);
+	}
+
+	/**
+	 *
+	 * @param length
+	 * @return A (symmetric) Hann window of {@code length} values
+	 * @author Rémi BARDON
+	 */
+	private static double[] hann(final int length) {
+		final double[] window = new double[length];
+		for (int i = 0; i < length; i++) {
+			window[i] = length == 1 ? 1 : 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (length - 1));
+		}
+		return window;
+	}
+
+	/**
+	 *
+	 * @param window
+	 * @return The sum of squared {@code window} values
+	 * @author Rémi BARDON
+	 */
+	private static double power(final double[] window) {
+		double power = 0;
+		for (final double value : window) {
+			power += value * value;
+		}
+		return power;
+	}
+
+}
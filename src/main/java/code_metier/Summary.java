@@ -0,0 +1,131 @@
+package code_metier;
+
+/**
+ * Summary statistics of a {@link DataPoint} series (or a part of it). {@code NaN} values are ignored.
+ * @author Rémi BARDON
+ */
+public final class Summary {
+
+	/**
+	 * The {@link Summary} of an empty series
+	 * @author Rémi BARDON
+	 */
+	public static final Summary EMPTY = new Summary(Float.NaN, Float.NaN, 0, 0);
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final float minimum;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final float maximum;
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	private final double sum;
+	/**
+	 * The number of summarized values, excluding {@code NaN}s
+	 * @author Rémi BARDON
+	 */
+	private final int count;
+
+	/**
+	 *
+	 * @param minimum
+	 * @param maximum
+	 * @param sum
+	 * @param count The number of summarized values, excluding {@code NaN}s
+	 * @author Rémi BARDON
+	 */
+	Summary(final float minimum, final float maximum, final double sum, final int count) {
+		this.minimum = minimum;
+		this.maximum = maximum;
+		this.sum = sum;
+		this.count = count;
+	}
+
+	/**
+	 *
+	 * @return The smallest value, or {@code NaN} if there is none
+	 * @author Rémi BARDON
+	 */
+	public float getMinimum() {
+		return this.minimum;
+	}
+
+	/**
+	 *
+	 * @return The biggest value, or {@code NaN} if there is none
+	 * @author Rémi BARDON
+	 */
+	public float getMaximum() {
+		return this.maximum;
+	}
+
+	/**
+	 *
+	 * @return The average value, or {@code NaN} if there is none
+	 * @author Rémi BARDON
+	 */
+	public float getMean() {
+		return this.count == 0 ? Float.NaN : (float) (this.sum / this.count);
+	}
+
+	/**
+	 *
+	 * @return The number of summarized values, excluding {@code NaN}s
+	 * @author Rémi BARDON
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 *
+	 * @return The {@link Range} between {@link #getMinimum()} and {@link #getMaximum()}
+	 * @author Rémi BARDON
+	 */
+	public Range<Float> getRange() {
+		return new Range<Float>(this.minimum, this.maximum);
+	}
+
+	/**
+	 *
+	 * @return The sum of summarized values
+	 * @author Rémi BARDON
+	 */
+	double getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * Combines two {@link Summary}s of disjoint series
+	 * @param other
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	Summary merge(final Summary other) {
+		if (other.count == 0) {
+			return this;
+		}
+		if (this.count == 0) {
+			return other;
+		}
+		return new Summary(
+			Math.min(this.minimum, other.minimum),
+			Math.max(this.maximum, other.maximum),
+			this.sum + other.sum,
+			this.count + other.count
+		);
+	}
+
+	@Override
+	public String toString() {
+		return "{ min: " + this.getMinimum() + ", max: " + this.getMaximum() + ", mean: " + this.getMean() + ", count: " + this.getCount() + " }";
+	}
+
+}
@@ -0,0 +1,323 @@
+package code_metier;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An index answering {@link Summary} queries on any time window of a series in logarithmic time.
+ * Values are summarized by blocks of {@link #BLOCK_SIZE} points, and blocks are stored in a segment tree.
+ * Only the (at most two) partially covered blocks of a window are read again.
+ * @author Rémi BARDON
+ */
+public final class SummaryIndex {
+
+	/**
+	 * The number of points summarized in one leaf of the segment tree
+	 * @author Rémi BARDON
+	 */
+	static final int BLOCK_SIZE = 64;
+
+	/**
+	 * The timestamps of indexed points
+	 * @author Rémi BARDON
+	 */
+	private final TimestampSource timestamps;
+	/**
+	 * The values of indexed points
+	 * @author Rémi BARDON
+	 */
+	private final ValueSource values;
+	/**
+	 * The number of indexed points
+	 * @author Rémi BARDON
+	 */
+	private final int size;
+	/**
+	 * The number of blocks (leaves of the segment tree)
+	 * @author Rémi BARDON
+	 */
+	private final int blockCount;
+	/**
+	 * Segment tree of minimums. Leaves are stored at {@code [blockCount, 2 * blockCount)}.
+	 * @author Rémi BARDON
+	 */
+	private final float[] minimums;
+	/**
+	 * Segment tree of maximums. Leaves are stored at {@code [blockCount, 2 * blockCount)}.
+	 * @author Rémi BARDON
+	 */
+	private final float[] maximums;
+	/**
+	 * Segment tree of sums. Leaves are stored at {@code [blockCount, 2 * blockCount)}.
+	 * @author Rémi BARDON
+	 */
+	private final double[] sums;
+	/**
+	 * Segment tree of non-{@code NaN} value counts. Leaves are stored at {@code [blockCount, 2 * blockCount)}.
+	 * @author Rémi BARDON
+	 */
+	private final int[] counts;
+	/**
+	 * Precomputed {@link Summary}s of every phase
+	 * @author Rémi BARDON
+	 */
+	private final Map<Tag, Summary> tagSummaries;
+
+	/**
+	 * Builds an index in one pass over the series
+	 * @param size The number of points to index
+	 * @param timestamps The timestamps of points, in increasing order
+	 * @param values The values of points
+	 * @param phases The phases to precompute {@link Summary}s for
+	 * @author Rémi BARDON
+	 */
+	SummaryIndex(final int size, final TimestampSource timestamps, final ValueSource values, final Map<Tag, Range<Float>> phases) {
+		this.size = size;
+		this.timestamps = timestamps;
+		this.values = values;
+		this.blockCount = Math.max(1, (size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+
+		this.minimums = new float[2 * this.blockCount];
+		this.maximums = new float[2 * this.blockCount];
+		this.sums = new double[2 * this.blockCount];
+		this.counts = new int[2 * this.blockCount];
+
+		// Summarize blocks
+		final float[] block = new float[BLOCK_SIZE];
+		for (int blockIndex = 0; blockIndex < this.blockCount; blockIndex++) {
+			final int from = blockIndex * BLOCK_SIZE;
+			final int to = Math.min(from + BLOCK_SIZE, size);
+			final Summary summary = summarize(values, from, to, block);
+			final int node = this.blockCount + blockIndex;
+			this.minimums[node] = summary.getMinimum();
+			this.maximums[node] = summary.getMaximum();
+			this.sums[node] = summary.getSum();
+			this.counts[node] = summary.getCount();
+		}
+
+		// Build segment tree bottom-up
+		for (int node = this.blockCount - 1; node > 0; node--) {
+			final Summary summary = this.node(2 * node).merge(this.node(2 * node + 1));
+			this.minimums[node] = summary.getMinimum();
+			this.maximums[node] = summary.getMaximum();
+			this.sums[node] = summary.getSum();
+			this.counts[node] = summary.getCount();
+		}
+
+		final var tagSummaries = new LinkedHashMap<Tag, Summary>();
+		for (final Map.Entry<Tag, Range<Float>> phase : phases.entrySet()) {
+			tagSummaries.put(phase.getKey(), this.summarize(phase.getValue()));
+		}
+		this.tagSummaries = Collections.unmodifiableMap(tagSummaries);
+	}
+
+	/**
+	 * Builds an index of {@link DataPoint}s
+	 * @param points {@link DataPoint}s, sorted by timestamp
+	 * @param phases The phases to precompute {@link Summary}s for
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	static SummaryIndex of(final List<DataPoint> points, final Map<Tag, Range<Float>> phases) {
+		return new SummaryIndex(
+			points.size(),
+			(index) -> points.get(index).getTimestamp(),
+			(from, to, destination) -> {
+				final var iterator = points.listIterator(from);
+				for (int i = 0; i < to - from; i++) {
+					destination[i] = iterator.next().getValue();
+				}
+			},
+			phases
+		);
+	}
+
+	/**
+	 *
+	 * @param range A time window (inclusive)
+	 * @return The {@link Summary} of points which timestamp is in {@code range}
+	 * @author Rémi BARDON
+	 */
+	public Summary summarize(final Range<Float> range) {
+		final int from = this.indexAfter(range.getMinimum(), false);
+		final int to = this.indexAfter(range.getMaximum(), true);
+		return this.summarize(from, to);
+	}
+
+	/**
+	 *
+	 * @param optionalTag An {@link Optional} {@link Tag} to filter results
+	 * @return <ul>
+	 *     <li>The {@link Summary} of all points if given {@link Optional}<{@link Tag}> is {@code empty}</li>
+	 *     <li>{@link Summary#EMPTY} if the given {@link Tag} doesn't exist</li>
+	 *     <li>Otherwise, the precomputed {@link Summary} of points in the given {@link Tag}</li>
+	 * </ul>
+	 * @author Rémi BARDON
+	 */
+	public Summary summarize(final Optional<Tag> optionalTag) {
+		if (optionalTag.isEmpty()) {
+			return this.node(1);
+		}
+		return this.tagSummaries.getOrDefault(optionalTag.get(), Summary.EMPTY);
+	}
+
+	/**
+	 *
+	 * @param from The index of the first point (inclusive)
+	 * @param to The index of the last point (exclusive)
+	 * @return The {@link Summary} of points in {@code [from, to)}
+	 * @author Rémi BARDON
+	 */
+	public Summary summarize(final int from, final int to) {
+		if (from >= to) {
+			return Summary.EMPTY;
+		}
+
+		final float[] block = new float[BLOCK_SIZE];
+		final int firstBlock = from / BLOCK_SIZE;
+		final int lastBlock = (to - 1) / BLOCK_SIZE;
+
+		if (firstBlock == lastBlock) {
+			return summarize(this.values, from, to, block);
+		}
+
+		// Partially covered blocks
+		Summary result = summarize(this.values, from, (firstBlock + 1) * BLOCK_SIZE, block);
+		result = result.merge(summarize(this.values, lastBlock * BLOCK_SIZE, to, block));
+
+		// Fully covered blocks, in the segment tree
+		int left = this.blockCount + firstBlock + 1;
+		int right = this.blockCount + lastBlock;
+		while (left < right) {
+			if ((left & 1) == 1) {
+				result = result.merge(this.node(left++));
+			}
+			if ((right & 1) == 1) {
+				result = result.merge(this.node(--right));
+			}
+			left >>= 1;
+			right >>= 1;
+		}
+
+		return result;
+	}
+
+	/**
+	 *
+	 * @return The number of indexed points
+	 * @author Rémi BARDON
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @return The approximate number of bytes used by this index, excluding indexed points
+	 * @author Rémi BARDON
+	 */
+	long getRetainedSize() {
+		return (long) this.minimums.length * (Float.BYTES + Float.BYTES + Double.BYTES + Integer.BYTES) + this.tagSummaries.size() * 64L;
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @return The {@link Summary} stored in a node of the segment tree
+	 * @author Rémi BARDON
+	 */
+	private Summary node(final int node) {
+		return new Summary(this.minimums[node], this.maximums[node], this.sums[node], this.counts[node]);
+	}
+
+	/**
+	 * Binary searches the first point after a timestamp
+	 * @param timestamp
+	 * @param inclusive Whether or not points at {@code timestamp} should be skipped
+	 * @return The index of the first point which timestamp is greater than (or equal to, if not {@code inclusive}) {@code timestamp}
+	 * @author Rémi BARDON
+	 */
+	int indexAfter(final float timestamp, final boolean inclusive) {
+		int low = 0;
+		int high = this.size;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			final float middleTimestamp = this.timestamps.getTimestamp(middle);
+			if (middleTimestamp < timestamp || (inclusive && middleTimestamp == timestamp)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Summarizes values by scanning them
+	 * @param values
+	 * @param from
+	 * @param to
+	 * @param buffer A buffer of at least {@code to - from} values
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	private static Summary summarize(final ValueSource values, final int from, final int to, final float[] buffer) {
+		values.getValues(from, to, buffer);
+
+		float minimum = Float.POSITIVE_INFINITY;
+		float maximum = Float.NEGATIVE_INFINITY;
+		double sum = 0;
+		int count = 0;
+		for (int i = 0; i < to - from; i++) {
+			final float value = buffer[i];
+			if (Float.isNaN(value)) {
+				continue;
+			}
+			minimum = Math.min(minimum, value);
+			maximum = Math.max(maximum, value);
+			sum += value;
+			count++;
+		}
+
+		return count == 0 ? Summary.EMPTY : new Summary(minimum, maximum, sum, count);
+	}
+
+	/**
+	 * Gives access to the timestamps of indexed points
+	 * @author Rémi BARDON
+	 */
+	@FunctionalInterface
+	interface TimestampSource {
+
+		/**
+		 *
+		 * @param index
+		 * @return The timestamp of the point at {@code index}
+		 * @author Rémi BARDON
+		 */
+		float getTimestamp(int index);
+
+	}
+
+	/**
+	 * Gives bulk access to the values of indexed points
+	 * @author Rémi BARDON
+	 */
+	@FunctionalInterface
+	interface ValueSource {
+
+		/**
+		 *
+		 * @param from The index of the first point (inclusive)
+		 * @param to The index of the last point (exclusive)
+		 * @param destination An array of at least {@code to - from} values
+		 * @author Rémi BARDON
+		 */
+		void getValues(int from, int to, float[] destination);
+
+	}
+
+}
@@ -0,0 +1,283 @@
+package code_metier;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs background work of an {@link ExperimentManager}: CPU-heavy work (cleaning, decomposing) on a bounded pool
+ * where {@link Priority#FOREGROUND} tasks are started before queued {@link Priority#SPECULATIVE} ones,
+ * and I/O (loading files) on a separate {@link ExecutorService}.
+ * Pool threads are reused, and stop after some idle time.
+ * @author Rémi BARDON
+ */
+public final class TaskScheduler {
+
+	/**
+	 *
+	 * @author Rémi BARDON
+	 */
+	public enum Priority {
+		/**
+		 * Work the user is waiting for
+		 * @author Rémi BARDON
+		 */
+		FOREGROUND,
+		/**
+		 * Pre-computation which result may never be used
+		 * @author Rémi BARDON
+		 */
+		SPECULATIVE,
+	}
+
+	/**
+	 * How long idle pool threads are kept
+	 * @author Rémi BARDON
+	 */
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	/**
+	 * The bounded pool running CPU-heavy tasks
+	 * @author Rémi BARDON
+	 */
+	private final ThreadPoolExecutor computeExecutor;
+	/**
+	 * Runs blocking I/O, so that it never holds {@link #computeExecutor} threads
+	 * @author Rémi BARDON
+	 */
+	private final ExecutorService ioExecutor;
+	/**
+	 * Orders tasks of the same {@link Priority} by submission
+	 * @author Rémi BARDON
+	 */
+	private final AtomicLong sequence;
+
+	/**
+	 * A scheduler using one compute thread per available processor, and a cached thread pool for I/O
+	 * @author Rémi BARDON
+	 */
+	public TaskScheduler() {
+		this(Runtime.getRuntime().availableProcessors(), Executors.newCachedThreadPool(daemonThreadFactory("I/O thread")));
+	}
+
+	/**
+	 *
+	 * @param parallelism The maximum number of CPU-heavy tasks running at the same time
+	 * @param ioExecutor Runs blocking I/O
+	 * @author Rémi BARDON
+	 */
+	public TaskScheduler(final int parallelism, final ExecutorService ioExecutor) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		}
+
+		this.computeExecutor = new ThreadPoolExecutor(
+			parallelism,
+			parallelism,
+			KEEP_ALIVE_SECONDS,
+			TimeUnit.SECONDS,
+			new PriorityBlockingQueue<Runnable>(),
+			daemonThreadFactory("Compute thread")
+		);
+		this.computeExecutor.allowCoreThreadTimeOut(true);
+		this.ioExecutor = ioExecutor;
+		this.sequence = new AtomicLong();
+	}
+
+	/**
+	 * Schedules CPU-heavy work
+	 * @param priority
+	 * @param task
+	 * @return A {@link Future} to wait for or cancel the task
+	 * @author Rémi BARDON
+	 */
+	public Future<?> submit(final Priority priority, final Runnable task) {
+		final var prioritizedTask = new PrioritizedTask(task, priority, this.sequence.getAndIncrement());
+		this.computeExecutor.execute(prioritizedTask);
+		return prioritizedTask;
+	}
+
+	/**
+	 * Runs CPU-heavy actions in parallel on the compute pool, and waits for them.
+	 * The calling thread runs actions too, so that a compute task can call this without holding a thread
+	 * other actions wait for, and without starting more threads than the pool has.
+	 * @param priority The {@link Priority} of actions run by pool threads
+	 * @param count The number of actions
+	 * @param action Called once with every index in {@code [0, count)}
+	 * @throws CancellationException If the calling thread is interrupted while waiting
+	 * @throws RuntimeException The first exception thrown by {@code action}, once started actions finished.
+	 *                          Actions not started yet are skipped.
+	 * @author Rémi BARDON
+	 */
+	public void parallelFor(final Priority priority, final int count, final IntConsumer action) {
+		final var nextIndex = new AtomicInteger();
+		final var remaining = new CountDownLatch(count);
+		final var failure = new AtomicReference<Throwable>();
+		final Runnable worker = () -> {
+			int index;
+			while ((index = nextIndex.getAndIncrement()) < count) {
+				try {
+					if (failure.get() == null) {
+						action.accept(index);
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					remaining.countDown();
+				}
+			}
+		};
+
+		// Helpers starting after all actions were taken return immediately
+		for (int i = 1; i < Math.min(count, this.getParallelism()); i++) {
+			this.submit(priority, worker);
+		}
+		worker.run();
+
+		try {
+			remaining.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for parallel actions");
+		}
+
+		final Throwable error = failure.get();
+		if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		} else if (error instanceof Error) {
+			throw (Error) error;
+		}
+	}
+
+	/**
+	 * Schedules blocking I/O
+	 * @param task
+	 * @return A {@link Future} to wait for or cancel the task
+	 * @author Rémi BARDON
+	 */
+	public Future<?> submitIO(final Runnable task) {
+		return this.ioExecutor.submit(task);
+	}
+
+	/**
+	 *
+	 * @param priority
+	 * @return An {@link Executor} scheduling CPU-heavy work with the given {@link Priority},
+	 *         to run {@link java.util.concurrent.CompletableFuture} stages
+	 * @author Rémi BARDON
+	 */
+	public Executor getExecutor(final Priority priority) {
+		return (task) -> { this.submit(priority, task); };
+	}
+
+	/**
+	 *
+	 * @return The {@link Executor} running blocking I/O
+	 * @author Rémi BARDON
+	 */
+	public Executor getIOExecutor() {
+		return this.ioExecutor;
+	}
+
+	/**
+	 *
+	 * @return The maximum number of CPU-heavy tasks running at the same time
+	 * @author Rémi BARDON
+	 */
+	public int getParallelism() {
+		return this.computeExecutor.getMaximumPoolSize();
+	}
+
+	/**
+	 * 
+	 * @return The number of CPU-heavy tasks waiting for a thread
+	 * @author Rémi BARDON
+	 */
+	public int getQueuedTaskCount() {
+		return this.computeExecutor.getQueue().size();
+	}
+
+	/**
+	 * 
+	 * @return The number of CPU-heavy tasks running
+	 * @author Rémi BARDON
+	 */
+	public int getActiveTaskCount() {
+		return this.computeExecutor.getActiveCount();
+	}
+
+	/**
+	 * Stops accepting tasks, and interrupts running ones
+	 * @author Rémi BARDON
+	 */
+	public void shutdown() {
+		this.computeExecutor.shutdownNow();
+		this.ioExecutor.shutdownNow();
+	}
+
+	/**
+	 *
+	 * @param prefix The prefix of thread names
+	 * @return A {@link ThreadFactory} creating daemon threads, which don't prevent the application from exiting
+	 * @author Rémi BARDON
+	 */
+	private static ThreadFactory daemonThreadFactory(final String prefix) {
+		final var count = new AtomicInteger();
+		return (runnable) -> {
+			final var thread = new Thread(runnable, prefix + " #" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * A task ordered by {@link Priority}, then by submission
+	 * @author Rémi BARDON
+	 */
+	private static final class PrioritizedTask extends FutureTask<Void> implements Comparable<PrioritizedTask> {
+
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final Priority priority;
+		/**
+		 *
+		 * @author Rémi BARDON
+		 */
+		private final long sequence;
+
+		/**
+		 *
+		 * @param task
+		 * @param priority
+		 * @param sequence
+		 * @author Rémi BARDON
+		 */
+		PrioritizedTask(final Runnable task, final Priority priority, final long sequence) {
+			super(task, null);
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(final PrioritizedTask other) {
+			final int result = this.priority.compareTo(other.priority);
+			return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+		}
+
+	}
+
+}
@@ -0,0 +1,216 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import code_metier.ComputationCache;
+
+/**
+ *
+ * @author Rémi BARDON
+ */
+@DisplayName("Computation Cache")
+public class ComputationCacheTest {
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(5)
+	@DisplayName("Single Flight")
+	public void testSingleFlight() throws Exception {
+		final var cache = new ComputationCache<String, Integer>();
+		final var computations = new AtomicInteger();
+		final var release = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		// Many concurrent requests while the computation is running
+		final var requests = new ArrayList<CompletableFuture<CompletableFuture<Integer>>>();
+		for (int i = 0; i < 64; i++) {
+			requests.add(CompletableFuture.supplyAsync(() -> cache.get("key", () -> {
+				computations.incrementAndGet();
+				return CompletableFuture.supplyAsync(() -> {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return 42;
+				});
+			}), executor));
+		}
+
+		final var results = new ArrayList<CompletableFuture<Integer>>();
+		for (final var request : requests) {
+			results.add(request.get());
+		}
+		assertEquals(Optional.empty(), cache.getIfPresent("key"));
+
+		release.countDown();
+		for (final var result : results) {
+			assertEquals(42, result.get());
+		}
+		assertEquals(1, computations.get());
+
+		// Finished computations are returned immediately
+		final CompletableFuture<Integer> hit = cache.get("key", () -> { throw new AssertionError("Computed again"); });
+		assertTrue(hit.isDone());
+		assertEquals(Optional.of(42), cache.getIfPresent("key"));
+
+		executor.shutdown();
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Failures Are Not Cached")
+	public void testFailure() throws Exception {
+		final var cache = new ComputationCache<String, Integer>();
+
+		final var failed = cache.get("key", () -> CompletableFuture.failedFuture(new IllegalStateException()));
+		final var error = assertThrows(ExecutionException.class, () -> { failed.get(); });
+		assertTrue(error.getCause() instanceof IllegalStateException);
+		assertEquals(0, cache.size());
+
+		assertEquals(1, cache.get("key", () -> CompletableFuture.completedFuture(1)).get());
+
+		// Invalidated entries are computed again
+		cache.invalidate((key) -> key.equals("key"));
+		assertEquals(2, cache.get("key", () -> CompletableFuture.completedFuture(2)).get());
+
+		// Cancelled entries are forgotten
+		final var running = cache.get("other", () -> new CompletableFuture<Integer>());
+		cache.cancelRunning();
+		assertTrue(running.isCancelled());
+		assertEquals(List.of(Optional.of(2), Optional.empty()), List.of(cache.getIfPresent("key"), cache.getIfPresent("other")));
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Least Recently Used Eviction")
+	public void testEviction() throws Exception {
+		// Values weigh their own value
+		final var cache = new ComputationCache<String, Integer>((value) -> value, 100);
+		final var computations = new AtomicInteger();
+
+		cache.get("a", () -> { computations.incrementAndGet(); return CompletableFuture.completedFuture(40); });
+		cache.get("b", () -> { computations.incrementAndGet(); return CompletableFuture.completedFuture(40); });
+		assertEquals(80, cache.getStatistics().getWeight());
+
+		// "a" becomes the most recently used, so "b" is evicted
+		cache.get("a", () -> { throw new AssertionError("Computed again"); });
+		cache.get("c", () -> { computations.incrementAndGet(); return CompletableFuture.completedFuture(40); });
+
+		assertEquals(Optional.of(40), cache.getIfPresent("a"));
+		assertEquals(Optional.empty(), cache.getIfPresent("b"));
+		assertEquals(Optional.of(40), cache.getIfPresent("c"));
+
+		final ComputationCache.Statistics statistics = cache.getStatistics();
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(3, statistics.getMissCount());
+		assertEquals(1, statistics.getEvictionCount());
+		assertEquals(80, statistics.getWeight());
+		assertEquals(2, statistics.size());
+
+		// Evicted entries are computed again
+		cache.get("b", () -> { computations.incrementAndGet(); return CompletableFuture.completedFuture(40); });
+		assertEquals(4, computations.get());
+
+		// A smaller budget evicts more
+		cache.setMaximumWeight(40);
+		assertEquals(40, cache.getStatistics().getWeight());
+		assertEquals(Optional.of(40), cache.getIfPresent("b"));
+
+		// Reading an entry marks it as the most recently used too, so "d" is evicted
+		cache.setMaximumWeight(100);
+		cache.get("d", () -> CompletableFuture.completedFuture(40));
+		assertEquals(Optional.of(40), cache.getIfPresent("b"));
+		cache.get("e", () -> CompletableFuture.completedFuture(40));
+		assertEquals(Optional.of(40), cache.getIfPresent("b"));
+		assertEquals(Optional.empty(), cache.getIfPresent("d"));
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Soft Tier")
+	public void testSoftTier() throws Exception {
+		final var cache = new ComputationCache<String, Integer>((value) -> value, 50);
+		cache.setSoftTierEnabled(true);
+
+		// Keep values strongly reachable, so that the garbage collector cannot clear soft references
+		final Integer a = cache.get("a", () -> CompletableFuture.completedFuture(40)).get();
+		cache.get("b", () -> CompletableFuture.completedFuture(40)).get();
+		assertEquals(1, cache.getStatistics().getEvictionCount());
+
+		// Restored from the soft-reference tier without computing
+		assertSame(a, cache.get("a", () -> { throw new AssertionError("Computed again"); }).get());
+		assertEquals(2, cache.getStatistics().getMissCount());
+		assertEquals(1, cache.getStatistics().getHitCount());
+		assertEquals(2, cache.getStatistics().getEvictionCount());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Shared Budget")
+	public void testSharedBudget() throws Exception {
+		final var budget = new ComputationCache.Budget(100);
+		final var first = new ComputationCache<String, Integer>((value) -> value, budget);
+		final var second = new ComputationCache<String, Integer>((value) -> value, budget);
+
+		first.get("a", () -> CompletableFuture.completedFuture(40));
+		second.get("b", () -> CompletableFuture.completedFuture(40));
+		assertEquals(80, budget.getWeight());
+		assertEquals(40, first.getStatistics().getWeight());
+
+		// "a" becomes the most recently used, so "b" of the other cache is evicted
+		first.getIfPresent("a");
+		first.get("c", () -> CompletableFuture.completedFuture(40));
+		assertEquals(Optional.empty(), second.getIfPresent("b"));
+		assertEquals(1, second.getStatistics().getEvictionCount());
+		assertEquals(80, first.getStatistics().getWeight());
+		assertEquals(0, second.getStatistics().getWeight());
+
+		// Pinned entries count towards the budget, but are never evicted
+		first.setPinned((key) -> key.equals("a"));
+		second.setMaximumWeight(40);
+		assertEquals(Optional.of(40), first.getIfPresent("a"));
+		assertEquals(Optional.empty(), first.getIfPresent("c"));
+		assertEquals(40, budget.getWeight());
+
+		// Invalidated entries leave the budget
+		first.invalidate((key) -> true);
+		assertEquals(0, budget.getWeight());
+	}
+
+}
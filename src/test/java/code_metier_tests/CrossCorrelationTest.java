@@ -0,0 +1,143 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.CrossCorrelation;
+import code_metier.FastFourierTransform;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Cross-Correlation")
+public class CrossCorrelationTest {
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Transform Like Naive DFT")
+	public void testTransform() {
+		final var random = new Random(42);
+		final int size = 64;
+		final double[] real = new double[size];
+		final double[] imaginary = new double[size];
+		for (int i = 0; i < size; i++) {
+			real[i] = random.nextGaussian();
+			imaginary[i] = random.nextGaussian();
+		}
+		final double[] originalReal = real.clone();
+		final double[] originalImaginary = imaginary.clone();
+
+		final var transform = new FastFourierTransform(size);
+		transform.forward(real, imaginary);
+
+		for (int k = 0; k < size; k++) {
+			double expectedReal = 0;
+			double expectedImaginary = 0;
+			for (int n = 0; n < size; n++) {
+				final double angle = -2 * Math.PI * k * n / size;
+				expectedReal += originalReal[n] * Math.cos(angle) - originalImaginary[n] * Math.sin(angle);
+				expectedImaginary += originalReal[n] * Math.sin(angle) + originalImaginary[n] * Math.cos(angle);
+			}
+			assertEquals(expectedReal, real[k], 1e-9);
+			assertEquals(expectedImaginary, imaginary[k], 1e-9);
+		}
+
+		transform.inverse(real, imaginary);
+		assertArrayEquals(originalReal, real, 1e-12);
+		assertArrayEquals(originalImaginary, imaginary, 1e-12);
+	}
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Find Delay Between Series")
+	public void testFindDelay() {
+		final var random = new Random(42);
+		final int size = 2_000;
+		final float step = 0.01f;
+		final int delay = 37;
+
+		final float[] timestamps = new float[size];
+		final float[] first = new float[size];
+		final float[] second = new float[size];
+		final double[] signal = new double[size + delay];
+		for (int i = 0; i < signal.length; i++) {
+			signal[i] = Math.sin(i * 0.013) + random.nextGaussian();
+		}
+		for (int i = 0; i < size; i++) {
+			timestamps[i] = i * step;
+			first[i] = (float) signal[i + delay];
+			second[i] = (float) signal[i] + (i % 100 == 0 ? Float.NaN : 0);
+		}
+
+		final var correlation = CrossCorrelation.compute(
+			FloatBuffer.wrap(timestamps),
+			FloatBuffer.wrap(first),
+			FloatBuffer.wrap(second),
+			1f
+		);
+
+		assertEquals(2 * 100 + 1, correlation.size());
+		assertEquals(delay * step, correlation.getBestLag(), step / 2);
+		assertTrue(correlation.getBestCoefficient() > 0.9, "Coefficient: " + correlation.getBestCoefficient());
+		assertTrue(correlation.getBestCoefficient() <= 1.0001f);
+
+		// Same as naive correlation
+		final int naiveSize = 300;
+		final float[] naiveFirst = new float[naiveSize];
+		final float[] naiveSecond = new float[naiveSize];
+		for (int i = 0; i < naiveSize; i++) {
+			naiveFirst[i] = (float) signal[i + delay];
+			naiveSecond[i] = (float) signal[i];
+		}
+		final var naiveCorrelation = CrossCorrelation.compute(
+			FloatBuffer.wrap(timestamps, 0, naiveSize).slice(),
+			FloatBuffer.wrap(naiveFirst),
+			FloatBuffer.wrap(naiveSecond),
+			50 * step
+		);
+
+		final double firstMean = mean(naiveFirst);
+		final double secondMean = mean(naiveSecond);
+		for (int index = 0; index < naiveCorrelation.size(); index++) {
+			final int lag = Math.round(naiveCorrelation.getLag(index) / step);
+			double sum = 0;
+			double firstSquares = 0;
+			double secondSquares = 0;
+			for (int i = 0; i < naiveSize; i++) {
+				firstSquares += (naiveFirst[i] - firstMean) * (naiveFirst[i] - firstMean);
+				secondSquares += (naiveSecond[i] - secondMean) * (naiveSecond[i] - secondMean);
+				if (i + lag >= 0 && i + lag < naiveSize) {
+					sum += (naiveFirst[i] - firstMean) * (naiveSecond[i + lag] - secondMean);
+				}
+			}
+			assertEquals(sum / Math.sqrt(firstSquares * secondSquares), naiveCorrelation.getCoefficient(index), 1e-4, "Lag " + lag);
+		}
+	}
+
+	/**
+	 * 
+	 * @param values
+	 * @return
+	 * @author Rémi BARDON
+	 */
+	private static double mean(final float[] values) {
+		double sum = 0;
+		for (final float value : values) {
+			sum += value;
+		}
+		return sum / values.length;
+	}
+
+}
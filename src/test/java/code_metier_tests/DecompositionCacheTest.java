@@ -0,0 +1,179 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import code_metier.DataPoint;
+import code_metier.DataType;
+import code_metier.DecompositionCache;
+import code_metier.ExperimentDataDecomposer;
+import code_metier.Measure;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Decomposition Cache")
+public class DecompositionCacheTest {
+
+	static Constructor<Measure> MEASURE_CONSTRUCTOR;
+	static Constructor<DataPoint> DATA_POINT_CONSTRUCTOR;
+
+	private static final File FILE = new File("src/test/resources/constant.txt");
+	private static final int PERIOD = 10;
+
+	@TempDir
+	Path directory;
+
+	private Measure measure;
+	private List<DataPoint> points;
+	private ExperimentDataDecomposer decomposer;
+
+	/**
+	 * Gets references to package-visible constructors using reflection. For more
+	 * information, see <a href="https://stackoverflow.com/a/14077876/10967642">How
+	 * to test a private constructor in Java application?</a>
+	 * 
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 * @author Rémi BARDON
+	 */
+	@BeforeAll
+	public static void getConstructors() throws Exception {
+		MEASURE_CONSTRUCTOR = Measure.class.getDeclaredConstructor(String.class);
+		MEASURE_CONSTRUCTOR.setAccessible(true);
+
+		DATA_POINT_CONSTRUCTOR = DataPoint.class.getDeclaredConstructor(float.class, Float.class);
+		DATA_POINT_CONSTRUCTOR.setAccessible(true);
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@BeforeEach
+	public void setUp() throws Exception {
+		this.measure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		this.decomposer = new ExperimentDataDecomposer();
+		this.points = new ArrayList<DataPoint>();
+		for (int i = 0; i < 1_000; i++) {
+			final float value = 0.01f * i + (float) Math.sin(2 * Math.PI * i / PERIOD);
+			this.points.add(DATA_POINT_CONSTRUCTOR.newInstance((float) i, value));
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Read Decomposition After Restart")
+	public void testReadAfterRestart() throws Exception {
+		final var parameters = this.decomposer.getParametersDescription();
+		final var decomposition = this.decomposer.decompose(this.points, PERIOD);
+
+		final var cache = new DecompositionCache(this.directory, Long.MAX_VALUE);
+		cache.put(cache.key(FILE, this.measure, Optional.empty(), PERIOD, parameters), decomposition);
+
+		final var restartedCache = new DecompositionCache(this.directory, Long.MAX_VALUE);
+		final var key = restartedCache.key(FILE, this.measure, Optional.empty(), PERIOD, parameters);
+		final var cached = restartedCache.get(key, this.points);
+
+		assertTrue(cached.isPresent());
+		for (final var type : DataType.values()) {
+			assertEquals(decomposition.getPoints(type), cached.get().getPoints(type), type.toString());
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Miss On Other Period")
+	public void testMissOnOtherPeriod() throws Exception {
+		final var parameters = this.decomposer.getParametersDescription();
+		final var cache = new DecompositionCache(this.directory, Long.MAX_VALUE);
+		cache.put(cache.key(FILE, this.measure, Optional.empty(), PERIOD, parameters), this.decomposer.decompose(this.points, PERIOD));
+
+		final var key = cache.key(FILE, this.measure, Optional.empty(), PERIOD + 1, parameters);
+		assertTrue(cache.get(key, this.points).isEmpty());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Miss On Corrupt Entry")
+	public void testMissOnCorruptEntry() throws Exception {
+		final var parameters = this.decomposer.getParametersDescription();
+		final var cache = new DecompositionCache(this.directory, Long.MAX_VALUE);
+		final var key = cache.key(FILE, this.measure, Optional.empty(), PERIOD, parameters);
+		cache.put(key, this.decomposer.decompose(this.points, PERIOD));
+
+		final Path entry;
+		try (final var entries = Files.list(this.directory)) {
+			entry = entries.findFirst().get();
+		}
+
+		// Truncated entry
+		final byte[] bytes = Files.readAllBytes(entry);
+		Files.write(entry, Arrays.copyOf(bytes, bytes.length - 1));
+		assertTrue(cache.get(key, this.points).isEmpty());
+		assertFalse(Files.exists(entry));
+
+		// Entry with a window count reading past its end
+		bytes[16] = 0x7F;
+		Files.write(entry, bytes);
+		assertTrue(cache.get(key, this.points).isEmpty());
+		assertFalse(Files.exists(entry));
+
+		// Entries are written again
+		cache.put(key, this.decomposer.decompose(this.points, PERIOD));
+		assertTrue(cache.get(key, this.points).isPresent());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Evict Least Recently Used Entries")
+	public void testEviction() throws Exception {
+		final var parameters = this.decomposer.getParametersDescription();
+		final var decomposition = this.decomposer.decompose(this.points, PERIOD);
+
+		// Only leave room for 2 entries
+		final var cache = new DecompositionCache(this.directory, 2 * 10_000);
+		for (int i = 0; i < 3; i++) {
+			cache.put(cache.key(FILE, this.measure, Optional.empty(), PERIOD + i, parameters), decomposition);
+			Thread.sleep(10);
+		}
+
+		try (final var entries = Files.list(this.directory)) {
+			assertEquals(2, entries.count());
+		}
+		assertTrue(cache.get(cache.key(FILE, this.measure, Optional.empty(), PERIOD, parameters), this.points).isEmpty());
+	}
+
+}
@@ -0,0 +1,59 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.Downsampler;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Downsampler")
+public class DownsamplerTest {
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Keep Bounds And Spikes")
+	public void testKeepBoundsAndSpikes() {
+		final int size = 100_000;
+		final float[] timestamps = new float[size];
+		final float[] values = new float[size];
+		for (int i = 0; i < size; i++) {
+			timestamps[i] = i;
+			values[i] = (float) Math.sin(i / 1_000.0);
+		}
+		values[54_321] = 10f;
+
+		final int[] selected = Downsampler.largestTriangleThreeBuckets(timestamps, values, 1_000);
+
+		assertEquals(1_000, selected.length);
+		assertEquals(0, selected[0]);
+		assertEquals(size - 1, selected[selected.length - 1]);
+		for (int i = 1; i < selected.length; i++) {
+			assertTrue(selected[i - 1] < selected[i], "Indices must be sorted");
+		}
+		assertTrue(java.util.Arrays.stream(selected).anyMatch((index) -> index == 54_321), "Spike must be kept");
+	}
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Keep Short Series Untouched")
+	public void testShortSeries() {
+		final float[] timestamps = { 0f, 1f, 2f };
+		final float[] values = { 1f, Float.NaN, 3f };
+
+		assertArrayEquals(new int[] { 0, 1, 2 }, Downsampler.largestTriangleThreeBuckets(timestamps, values, 10));
+		assertArrayEquals(new int[] { 0, 2 }, Downsampler.largestTriangleThreeBuckets(timestamps, values, 2));
+		assertEquals(3, Downsampler.downsample(timestamps, values, 3).size());
+	}
+
+}
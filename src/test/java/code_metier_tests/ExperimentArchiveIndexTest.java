@@ -0,0 +1,171 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import code_metier.ExperimentArchiveIndex;
+import code_metier.Measure;
+import code_metier.Summary;
+import code_metier.Tag;
+
+/**
+ *
+ * @author Rémi BARDON
+ */
+@DisplayName("Archive Index")
+public class ExperimentArchiveIndexTest {
+
+	static Constructor<Measure> MEASURE_CONSTRUCTOR;
+	static Constructor<Tag> TAG_CONSTRUCTOR;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Gets references to package-visible constructors using reflection. For more
+	 * information, see <a href="https://stackoverflow.com/a/14077876/10967642">How
+	 * to test a private constructor in Java application?</a>
+	 *
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 * @author Rémi BARDON
+	 */
+	@BeforeAll
+	public static void getConstructors() throws Exception {
+		MEASURE_CONSTRUCTOR = Measure.class.getDeclaredConstructor(String.class);
+		MEASURE_CONSTRUCTOR.setAccessible(true);
+
+		TAG_CONSTRUCTOR = Tag.class.getDeclaredConstructor(String.class);
+		TAG_CONSTRUCTOR.setAccessible(true);
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Query by Tag")
+	public void testQueryByTag() throws Exception {
+		final File constant = this.copy("constant.txt");
+		final File accented = this.copy("constant-accented_tags-small.txt");
+
+		final var index = new ExperimentArchiveIndex(this.directory.resolve("index.bin"));
+		assertEquals(2, index.update(List.of(constant, accented)));
+
+		assertEquals(2, index.getSessions(TAG_CONSTRUCTOR.newInstance("tag1")).size());
+		assertEquals(1, index.getSessions(TAG_CONSTRUCTOR.newInstance("adrénaline")).size());
+		assertEquals(accented, index.getSessions(TAG_CONSTRUCTOR.newInstance("adrénaline")).get(0).getFile());
+		assertTrue(index.getSessions(TAG_CONSTRUCTOR.newInstance("unknown")).isEmpty());
+
+		final var session = index.getSession(constant).orElseThrow();
+		assertEquals(30, session.getRowCount());
+		assertEquals(5, session.getMeasures().size());
+
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Spirometrie");
+		final Summary summary = session.getSummary(measure, Optional.empty());
+		assertEquals(30, summary.getCount());
+		assertEquals(48, summary.getMean(), 1e-4);
+		assertEquals(48, session.getSummary(measure, Optional.of(TAG_CONSTRUCTOR.newInstance("tag1"))).getMean(), 1e-4);
+
+		assertThrows(InvalidKeyException.class, () -> session.getSummary(MEASURE_CONSTRUCTOR.newInstance("unknown"), Optional.empty()));
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Incremental Update")
+	public void testIncrementalUpdate() throws Exception {
+		final File constant = this.copy("constant.txt");
+		final File accented = this.copy("constant-accented_tags-small.txt");
+		final Path indexPath = this.directory.resolve("index.bin");
+
+		final var index = new ExperimentArchiveIndex(indexPath);
+		index.update(List.of(constant, accented));
+		index.save();
+
+		// Reopened index knows every session already
+		final var reopened = new ExperimentArchiveIndex(indexPath);
+		assertEquals(2, reopened.getSessions().size());
+		assertEquals(index.getTags(), reopened.getTags());
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		assertEquals(
+			index.getSession(constant).orElseThrow().getSummary(measure, Optional.empty()).getMean(),
+			reopened.getSession(constant).orElseThrow().getSummary(measure, Optional.empty()).getMean()
+		);
+		assertEquals(0, reopened.update(List.of(constant, accented)));
+
+		// Only modified files are loaded again
+		Files.writeString(accented.toPath(), "", StandardOpenOption.APPEND);
+		Files.writeString(constant.toPath(), "\n", StandardOpenOption.APPEND);
+		assertTrue(constant.setLastModified(constant.lastModified() + 2_000));
+		assertEquals(1, reopened.update(List.of(constant, accented)));
+
+		// Deleted files are forgotten
+		Files.delete(accented.toPath());
+		reopened.update(List.of(constant));
+		assertEquals(1, reopened.getSessions().size());
+		assertTrue(reopened.getSessions(TAG_CONSTRUCTOR.newInstance("adrénaline")).isEmpty());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Recover From Invalid Files")
+	public void testInvalidFiles() throws Exception {
+		final File constant = this.copy("constant.txt");
+		final File invalid = this.directory.resolve("invalid.txt").toFile();
+		Files.writeString(invalid.toPath(), "Not a session\nat all\n");
+		final Path indexPath = this.directory.resolve("index.bin");
+
+		// Unparsable files are skipped
+		final var index = new ExperimentArchiveIndex(indexPath);
+		assertEquals(1, index.update(List.of(invalid, constant)));
+		assertEquals(List.of(invalid), List.copyOf(index.getFailures().keySet()));
+		assertTrue(index.getSession(constant).isPresent());
+		assertTrue(index.getSession(invalid).isEmpty());
+		index.save();
+
+		// Truncated indexes are rebuilt
+		final byte[] bytes = Files.readAllBytes(indexPath);
+		Files.write(indexPath, Arrays.copyOf(bytes, bytes.length / 2));
+		final var reopened = new ExperimentArchiveIndex(indexPath);
+		assertTrue(reopened.getSessions().isEmpty());
+		assertEquals(1, reopened.update(List.of(constant)));
+		assertTrue(reopened.getFailures().isEmpty());
+	}
+
+	/**
+	 *
+	 * @param name The name of a test resource
+	 * @return A copy of the resource in {@link #directory}
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	private File copy(final String name) throws Exception {
+		final Path destination = this.directory.resolve(name);
+		Files.copy(Path.of("src/test/resources", name), destination);
+		return destination.toFile();
+	}
+
+}
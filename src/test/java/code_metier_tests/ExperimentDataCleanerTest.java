@@ -9,12 +9,14 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import code_metier.CancellationToken;
 import code_metier.DataPoint;
 import code_metier.ExperimentDataCleaner;
 import code_metier.ExperimentDataLoader;
@@ -189,6 +191,41 @@ public class ExperimentDataCleanerTest {
 		}
 	}
 
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Cancelled Cleaning Leaves Points Untouched")
+	public void testCancel() throws Exception {
+		this.loader.load(new File("src/test/resources/test_data-with_nans_tags.txt"));
+
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		final var points = this.loader.getDataPoints(measure);
+		final var phases = this.loader.getPhases(measure);
+		final var expectedPoints = new ArrayList<DataPoint>();
+		for (final DataPoint point : points) {
+			expectedPoints.add(DATA_POINT_CONSTRUCTOR.newInstance(point.getTimestamp(), point.getValue()));
+		}
+		final var expectedPhases = new HashMap<Tag, Range<Float>>();
+		for (final var phase : phases.entrySet()) {
+			expectedPhases.put(phase.getKey(), new Range<Float>(phase.getValue().getMinimum(), phase.getValue().getMaximum()));
+		}
+
+		final var token = new CancellationToken();
+		token.cancel();
+		assertThrows(CancellationException.class, () -> { this.cleaner.clean(points, phases, token); });
+
+		assertEquals(expectedPoints, points);
+		assertEquals(expectedPhases, phases);
+
+		// Never cancelled
+		CancellationToken.NONE.cancel();
+		this.cleaner.clean(points, phases, CancellationToken.NONE);
+		assertNotEquals(expectedPoints, points);
+	}
+
 	/**
 	 * 
 	 * @throws Exception
@@ -7,6 +7,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -23,6 +24,7 @@ import code_metier.ExperimentDataCleaner;
 import code_metier.ExperimentDataDecomposer;
 import code_metier.ExperimentDataLoader;
 import code_metier.Measure;
+import code_metier.Range;
 import code_metier.Tag;
 
 /**
@@ -102,16 +104,195 @@ public class ExperimentDataDecomposerTest {
 		public void testDecomposeData() throws Exception {
 			for (final var measure : this.loader.getMeasures()) {
 				final var points = this.loader.getDataPoints(measure);
-				this.decomposer.decompose(points, 2);
+				final var decomposition = this.decomposer.decompose(points, 2);
 
 				for (final var type : DataType.values()) {
-					assertEquals(30, this.decomposer.getPoints(type).size(), measure + "/" + type);
+					assertEquals(30, decomposition.getPoints(type).size(), measure + "/" + type);
 				}
 			}
 		}
 
 	}
 
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Nested
+	public class Chunked {
+
+		private static final int PERIOD = 10;
+
+		private ExperimentDataDecomposer decomposer;
+		private List<DataPoint> points;
+
+		/**
+		 * Creates a 10 000 points series made of a linear trend and a sine wave
+		 * @throws Exception
+		 * @author Rémi BARDON
+		 */
+		@BeforeEach
+		public void setUp() throws Exception {
+			this.decomposer = new ExperimentDataDecomposer();
+			this.points = new ArrayList<DataPoint>();
+			for (int i = 0; i < 10_000; i++) {
+				final float value = 0.01f * i + (float) Math.sin(2 * Math.PI * i / PERIOD);
+				this.points.add(ExperimentDataDecomposerTest.DATA_POINT_CONSTRUCTOR.newInstance((float) i, value));
+			}
+		}
+
+		/**
+		 * 
+		 * @author Rémi BARDON
+		 */
+		@Test
+		@DisplayName("Decompose In Overlapping Windows")
+		public void testDecomposeInWindows() {
+			this.decomposer.setWindowLength(1_000);
+			final var decomposition = this.decomposer.decompose(this.points, PERIOD);
+
+			for (final var type : DataType.values()) {
+				assertEquals(this.points.size(), decomposition.getPoints(type).size(), type.toString());
+			}
+
+			final var trend = decomposition.getPoints(DataType.TREND);
+			final var seasonnality = decomposition.getPoints(DataType.SEASONNALITY);
+			final var noise = decomposition.getPoints(DataType.NOISE);
+			for (int i = 0; i < this.points.size(); i++) {
+				final var raw = this.points.get(i);
+				assertEquals(raw.getTimestamp(), trend.get(i).getTimestamp());
+				if (i >= 5 * PERIOD && i < this.points.size() - 5 * PERIOD) {
+					// Seams must not leave visible artifacts on a perfectly periodic series
+					assertEquals(raw.getValue(), trend.get(i).getValue() + seasonnality.get(i).getValue(), 0.1f, "At " + i);
+				}
+				assertEquals(raw.getValue(), trend.get(i).getValue() + seasonnality.get(i).getValue() + noise.get(i).getValue(), 1e-3f);
+			}
+		}
+
+
+		/**
+		 * 
+		 * @author Rémi BARDON
+		 */
+		@Test
+		@DisplayName("Store Seasonnality As One Period")
+		public void testPeriodicSeasonnality() {
+			final var decomposition = this.decomposer.decompose(this.points, PERIOD);
+			final var seasonnality = decomposition.getSeasonnality();
+			assertEquals(PERIOD, seasonnality.getPattern(0).length);
+			assertEquals(this.points.size(), seasonnality.size());
+
+			final var points = decomposition.getPoints(DataType.SEASONNALITY);
+			for (int i = 0; i < this.points.size(); i++) {
+				assertEquals(seasonnality.getPattern(i)[i % PERIOD], points.get(i).getValue(), "At " + i);
+				assertEquals(this.points.get(i).getTimestamp(), points.get(i).getTimestamp());
+			}
+		}
+
+		/**
+		 * 
+		 * @author Rémi BARDON
+		 */
+		@Test
+		@DisplayName("Compute Derived Data Types")
+		public void testDerivedDataTypes() {
+			final var decomposition = this.decomposer.decompose(this.points, PERIOD);
+
+			final var range = new Range<Float>(100f, 199f);
+			final var raw = decomposition.getValues(DataType.RAW, range);
+			final var trend = decomposition.getValues(DataType.TREND, range);
+			final var seasonnality = decomposition.getValues(DataType.SEASONNALITY, range);
+			final var noise = decomposition.getValues(DataType.NOISE, range);
+			final var detrended = decomposition.getValues(DataType.DETRENDED, range);
+			final var deseasonnalized = decomposition.getValues(DataType.DESEASONNALIZED, range);
+			assertEquals(100, raw.length);
+
+			for (int i = 0; i < raw.length; i++) {
+				assertEquals(raw[i] - (trend[i] + seasonnality[i]), noise[i]);
+				assertEquals(raw[i] - trend[i], detrended[i]);
+				assertEquals(raw[i] - seasonnality[i], deseasonnalized[i]);
+				assertEquals(noise[i], decomposition.getPoints(DataType.NOISE).get(100 + i).getValue());
+			}
+		}
+
+		/**
+		 * 
+		 * @author Rémi BARDON
+		 */
+		@Test
+		@DisplayName("Append Points Incrementally")
+		public void testAppendPoints() {
+			final int initialCount = 9_000;
+			final var initialPoints = new ArrayList<DataPoint>(this.points.subList(0, initialCount));
+			final var initialDecomposition = this.decomposer.decompose(initialPoints, PERIOD);
+
+			final var initialTrend = new ArrayList<DataPoint>(initialDecomposition.getPoints(DataType.TREND));
+
+			final var decomposition = this.decomposer.append(initialDecomposition, this.points.subList(initialCount, this.points.size()));
+
+			// The decomposed list (a store's one) must be left as is
+			assertEquals(initialCount, initialPoints.size());
+			assertThrows(UnsupportedOperationException.class, () -> decomposition.getPoints(DataType.RAW).clear());
+
+			for (final var type : DataType.values()) {
+				assertEquals(this.points.size(), decomposition.getPoints(type).size(), type.toString());
+			}
+
+			// Stable prefix must be reused as is
+			final var trend = decomposition.getPoints(DataType.TREND);
+			final var seasonnality = decomposition.getPoints(DataType.SEASONNALITY);
+			for (int i = 0; i < initialCount - 10 * PERIOD; i++) {
+				assertEquals(initialTrend.get(i), trend.get(i), "At " + i);
+			}
+
+			// New points must be decomposed
+			for (int i = initialCount; i < this.points.size() - 5 * PERIOD; i++) {
+				final var raw = this.points.get(i);
+				assertEquals(raw.getTimestamp(), trend.get(i).getTimestamp());
+				assertEquals(raw.getValue(), trend.get(i).getValue() + seasonnality.get(i).getValue(), 0.1f, "At " + i);
+			}
+		}
+
+
+		/**
+		 * 
+		 * @throws Exception
+		 * @author Rémi BARDON
+		 */
+		@Test
+		@DisplayName("Append Points One By One In Chunked Mode")
+		public void testAppendSmallChunks() throws Exception {
+			// A noisy series with a step, so that windows don't agree on seams
+			final var random = new Random(42);
+			final var noisyPoints = new ArrayList<DataPoint>();
+			for (int i = 0; i < 300; i++) {
+				final float value = (i < 150 ? 0 : 3) + (float) Math.sin(2 * Math.PI * i / PERIOD) + 0.3f * (float) random.nextGaussian();
+				noisyPoints.add(ExperimentDataDecomposerTest.DATA_POINT_CONSTRUCTOR.newInstance((float) i, value));
+			}
+
+			this.decomposer.setWindowLength(100);
+			var decomposition = this.decomposer.decompose(new ArrayList<DataPoint>(noisyPoints.subList(0, 240)), PERIOD);
+			for (int i = 240; i < noisyPoints.size(); i++) {
+				decomposition = this.decomposer.append(decomposition, noisyPoints.subList(i, i + 1));
+			}
+			final var trend = new ArrayList<DataPoint>(decomposition.getPoints(DataType.TREND));
+			final var seasonnality = new ArrayList<DataPoint>(decomposition.getPoints(DataType.SEASONNALITY));
+
+			final var reference = new ExperimentDataDecomposer();
+			reference.setWindowLength(100);
+			final var referenceDecomposition = reference.decompose(noisyPoints, PERIOD);
+			final var referenceTrend = referenceDecomposition.getPoints(DataType.TREND);
+			final var referenceSeasonnality = referenceDecomposition.getPoints(DataType.SEASONNALITY);
+
+			// Windows differ from a full decomposition, but seams must not blend stale windows back in
+			for (int i = 0; i < noisyPoints.size(); i++) {
+				assertEquals(referenceTrend.get(i).getValue(), trend.get(i).getValue(), 0.1f, "At " + i);
+				assertEquals(referenceSeasonnality.get(i).getValue(), seasonnality.get(i).getValue(), 0.25f, "At " + i);
+			}
+		}
+
+	}
+
 	/**
 	 * 
 	 * @author Rémi BARDON
@@ -182,17 +363,17 @@ public class ExperimentDataDecomposerTest {
 
 		final var points = this.loader.getDataPoints(measure);
 		this.cleaner.clean(points, this.loader.getPhases(measure));
-		this.decomposer.decompose(points, 4);
+		final var decomposition = this.decomposer.decompose(points, 4);
 
 		for (final var type : DataType.values()) {
-			assertEquals(817_443, this.decomposer.getPoints(type).size(), measure + "/" + type);
+			assertEquals(817_443, decomposition.getPoints(type).size(), measure + "/" + type);
 		}
 
 		// RAW = TREND + SEASONNALITY + NOISE
-		final var raw = this.decomposer.getPoints(DataType.RAW).get(1).getValue();
-		final var trend = this.decomposer.getPoints(DataType.TREND).get(1).getValue();
-		final var seasonnality = this.decomposer.getPoints(DataType.SEASONNALITY).get(1).getValue();
-		final var noise = this.decomposer.getPoints(DataType.NOISE).get(1).getValue();
+		final var raw = decomposition.getPoints(DataType.RAW).get(1).getValue();
+		final var trend = decomposition.getPoints(DataType.TREND).get(1).getValue();
+		final var seasonnality = decomposition.getPoints(DataType.SEASONNALITY).get(1).getValue();
+		final var noise = decomposition.getPoints(DataType.NOISE).get(1).getValue();
 		assertEquals(raw, trend + seasonnality + noise);
 	}
 
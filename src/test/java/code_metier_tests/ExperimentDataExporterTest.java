@@ -0,0 +1,177 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import code_metier.DataPoint;
+import code_metier.DataType;
+import code_metier.ExperimentDataExporter;
+import code_metier.ExperimentDataLoader;
+import code_metier.ExperimentManager;
+import code_metier.Measure;
+import code_metier.Range;
+import code_metier.Tag;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Exporter")
+public class ExperimentDataExporterTest {
+
+	static Constructor<Measure> MEASURE_CONSTRUCTOR;
+	static Constructor<Tag> TAG_CONSTRUCTOR;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Gets references to package-visible constructors using reflection. For more
+	 * information, see <a href="https://stackoverflow.com/a/14077876/10967642">How
+	 * to test a private constructor in Java application?</a>
+	 * 
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 * @author Rémi BARDON
+	 */
+	@BeforeAll
+	public static void getConstructors() throws Exception {
+		MEASURE_CONSTRUCTOR = Measure.class.getDeclaredConstructor(String.class);
+		MEASURE_CONSTRUCTOR.setAccessible(true);
+
+		TAG_CONSTRUCTOR = Tag.class.getDeclaredConstructor(String.class);
+		TAG_CONSTRUCTOR.setAccessible(true);
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Load Exported Text")
+	public void testTextRoundTrip() throws Exception {
+		final var random = new Random(42);
+		final int size = 5_000;
+		final float[] timestamps = new float[size];
+		final float[] values = new float[size];
+		for (int i = 0; i < size; i++) {
+			timestamps[i] = i * 0.004f;
+			values[i] = i % 97 == 0 ? Float.NaN : (random.nextFloat() - 0.5f) * (float) Math.pow(10, random.nextInt(12) - 6);
+		}
+
+		final Tag tag1 = TAG_CONSTRUCTOR.newInstance("tag1");
+		final Tag tag2 = TAG_CONSTRUCTOR.newInstance("adrénaline");
+		final Map<Tag, Range<Float>> phases = new LinkedHashMap<Tag, Range<Float>>();
+		phases.put(tag1, new Range<Float>(timestamps[0], timestamps[2_999]));
+		phases.put(tag2, new Range<Float>(timestamps[3_000], timestamps[size - 1]));
+
+		final Map<String, FloatBuffer> columns = new LinkedHashMap<String, FloatBuffer>();
+		columns.put("Frequence Cardiaque", FloatBuffer.wrap(values));
+
+		final Path path = this.directory.resolve("export.txt");
+		new ExperimentDataExporter(1_024).writeText(path, FloatBuffer.wrap(timestamps), columns, phases);
+
+		final ExperimentDataLoader loader = new ExperimentDataLoader();
+		loader.load(new File(path.toString()));
+
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Frequence Cardiaque");
+		assertEquals(List.of(measure), loader.getMeasures());
+		assertEquals(List.of(tag1, tag2), loader.getAllTags());
+		assertEquals(3_000, loader.getDataPoints(measure, Optional.of(tag1)).size());
+
+		final List<DataPoint> points = loader.getDataPoints(measure);
+		assertEquals(size, points.size());
+		for (int i = 0; i < size; i++) {
+			assertEquals(timestamps[i], points.get(i).getTimestamp(), "Timestamp at " + i);
+			assertEquals(values[i], points.get(i).getValue(), "Value at " + i);
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Load Exported Phase")
+	public void testPhaseRoundTrip() throws Exception {
+		final var manager = new ExperimentManager();
+		manager.setPreComputingEnabled(false);
+		final List<Measure> measures = manager.load(new File("src/test/resources/constant-accented_tags-small.txt")).get();
+		final Measure measure = measures.get(0);
+		final Tag tag = TAG_CONSTRUCTOR.newInstance("tag3");
+
+		// The phase doesn't start at t=0
+		final Path path = this.directory.resolve("phase.txt");
+		manager.export(path, ExperimentDataExporter.Format.TEXT, measure, List.of(DataType.RAW), 0, Optional.of(tag));
+
+		final ExperimentDataLoader loader = new ExperimentDataLoader();
+		loader.load(new File(path.toString()));
+
+		assertEquals(List.of(measure), loader.getMeasures());
+		assertEquals(List.of(tag), loader.getAllTags());
+		final List<DataPoint> expected = manager.getDataPoints(measure, Optional.of(tag));
+		final List<DataPoint> points = loader.getDataPoints(measure);
+		assertFalse(points.isEmpty());
+		assertTrue(points.get(0).getTimestamp() > 0);
+		assertEquals(expected.size(), points.size());
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(expected.get(i).getTimestamp(), points.get(i).getTimestamp(), "Timestamp at " + i);
+			assertEquals(expected.get(i).getValue(), points.get(i).getValue(), "Value at " + i);
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Write Little-Endian Binary")
+	public void testBinary() throws Exception {
+		final float[] timestamps = { 0f, 1f, 2f };
+		final Map<String, FloatBuffer> columns = new LinkedHashMap<String, FloatBuffer>();
+		columns.put("A", FloatBuffer.wrap(new float[] { 1.5f, Float.NaN, -3f }));
+		columns.put("B", FloatBuffer.wrap(new float[] { 4f, 5f, 6f }));
+
+		final Path path = this.directory.resolve("export.bin");
+		new ExperimentDataExporter().writeBinary(path, FloatBuffer.wrap(timestamps), columns, Map.of());
+
+		final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(0x4C524458, buffer.getInt());
+		assertEquals(1, buffer.getInt());
+		assertEquals(3, buffer.getInt());
+		assertEquals(2, buffer.getInt());
+		assertEquals(0, buffer.getInt());
+		for (final String name : columns.keySet()) {
+			final byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			assertEquals(name, new String(bytes, "UTF-8"));
+		}
+
+		final float[] expected = { 0f, 1f, 2f, 1.5f, Float.NaN, -3f, 4f, 5f, 6f };
+		for (final float value : expected) {
+			assertEquals(value, buffer.getFloat());
+		}
+		assertFalse(buffer.hasRemaining());
+	}
+
+}
@@ -6,11 +6,13 @@ import java.io.File;
 import java.lang.reflect.Constructor;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import code_metier.CancellationToken;
 import code_metier.DataPoint;
 import code_metier.ExperimentDataLoader;
 import code_metier.Measure;
@@ -112,6 +114,30 @@ public class ExperimentDataLoaderTest {
 		}
 	}
 
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Cancelled Loading Keeps Loaded Data")
+	public void testCancel() throws Exception {
+		final ExperimentDataLoader loader = new ExperimentDataLoader();
+		loader.load(new File("src/test/resources/constant-accented_tags-small.txt"));
+		final var measures = loader.getMeasures();
+		final var stores = loader.getStores();
+
+		final var token = new CancellationToken();
+		token.cancel();
+		assertThrows(CancellationException.class, () -> {
+			loader.load(new File("src/test/resources/constant.txt"), token);
+		});
+
+		assertSame(measures, loader.getMeasures());
+		assertSame(stores, loader.getStores());
+		assertEquals(4, loader.getDataPoints(measures.get(0)).size());
+	}
+
 	/**
 	 * 
 	 * @throws Exception
@@ -191,6 +217,39 @@ public class ExperimentDataLoaderTest {
 		assertArrayEquals(expected, loader.getDataPoints(measure, tag).toArray());
 	}
 
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Get Aligned Frame By Tag")
+	public void testFrameByTag() throws Exception {
+		final ExperimentDataLoader loader = new ExperimentDataLoader();
+		loader.load(new File("src/test/resources/constant.txt"));
+
+		final Measure pressure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		final Measure spirometry = MEASURE_CONSTRUCTOR.newInstance("Spirometrie");
+		final Optional<Tag> tag = Optional.of(TAG_CONSTRUCTOR.newInstance("tag1"));
+
+		final var frame = loader.getFrame(Arrays.asList(pressure, spirometry), tag);
+		assertEquals(5, frame.getRowCount());
+		assertEquals(Arrays.asList(pressure, spirometry), frame.getMeasures());
+
+		final var timestamps = frame.getTimestamps();
+		final var pressures = frame.getColumn(pressure);
+		final var spirometries = frame.getColumn(spirometry);
+		assertTrue(pressures.isReadOnly());
+		for (int i = 0; i < frame.getRowCount(); i++) {
+			assertEquals(10f + i, timestamps.get(i));
+			assertEquals(36f, pressures.get(i));
+			assertEquals(48f, spirometries.get(i));
+		}
+
+		assertEquals(0, loader.getFrame(Arrays.asList(pressure), Optional.of(TAG_CONSTRUCTOR.newInstance("unknown"))).getRowCount());
+		assertEquals(30, loader.getFrame(Arrays.asList(pressure), Optional.empty()).getRowCount());
+	}
+
 	/**
 	 * 
 	 * @throws Exception
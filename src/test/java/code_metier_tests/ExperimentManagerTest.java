@@ -1,11 +1,22 @@
 package code_metier_tests;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -16,11 +27,18 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 
+import code_metier.CrossCorrelation;
 import code_metier.DataPoint;
 import code_metier.DataType;
+import code_metier.ExperimentDataCleaner;
+import code_metier.ExperimentDataLoader;
+import code_metier.Decomposition;
 import code_metier.ExperimentDataStore;
 import code_metier.ExperimentManager;
+import code_metier.ExperimentSession;
 import code_metier.Measure;
+import code_metier.Range;
+import code_metier.Summary;
 
 /**
  * 
@@ -30,6 +48,7 @@ import code_metier.Measure;
 class ExperimentManagerTest {
 
 	private static Method CLEAN;
+	private static Constructor<Measure> MEASURE_CONSTRUCTOR;
 
 	private ExperimentManager manager;
 
@@ -45,6 +64,9 @@ class ExperimentManagerTest {
 	public static void getMethods() throws Exception {
 		CLEAN = ExperimentManager.class.getDeclaredMethod("clean", Measure.class, BiConsumer.class, Consumer.class);
 		CLEAN.setAccessible(true);
+
+		MEASURE_CONSTRUCTOR = Measure.class.getDeclaredConstructor(String.class);
+		MEASURE_CONSTRUCTOR.setAccessible(true);
 	}
 
 	/**
@@ -160,6 +182,318 @@ class ExperimentManagerTest {
 		assertTrue(result.getValue() != null);
 	}
 
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Slow
+	@Timeout(5)
+	@DisplayName("Future Decompose")
+	void testFutureDecompose() throws Exception {
+		final var file = new File("src/test/resources/constant.txt");
+
+		final List<Measure> measures = this.manager.load(file).get();
+		final Map<Measure, Decomposition> decompositions = this.manager.decompose(file, measures, 4).get();
+
+		assertEquals(measures, new ArrayList<Measure>(decompositions.keySet()));
+		for (final Measure measure : measures) {
+			assertEquals(this.manager.getDataPoints(measure).size(), decompositions.get(measure).size());
+		}
+
+		// Cached decompositions are reused
+		assertSame(decompositions.get(measures.get(0)), this.manager.decompose(file, measures.get(0), 4).get());
+
+		final var error = assertThrows(ExecutionException.class, () -> {
+			this.manager.decompose(file, MEASURE_CONSTRUCTOR.newInstance("unknown"), 4).get();
+		});
+		assertTrue(error.getCause() instanceof InvalidKeyException);
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Prefetch Decompositions")
+	void testPrefetch() throws Exception {
+		final var file = new File("src/test/resources/constant.txt");
+		this.manager.setPreComputingEnabled(true);
+
+		final List<Measure> measures = this.manager.load(file).get();
+		this.manager.decompose(file, measures.get(0), 4).get();
+
+		// Other measures, then adjacent periods
+		while (this.manager.getDecomposedPointsCacheStatistics().size() < measures.size() + 2) {
+			Thread.sleep(10);
+		}
+		// Running or finished predictions are shared by real requests
+		this.manager.setPreComputingEnabled(false);
+		final long missCount = this.manager.getDecomposedPointsCacheStatistics().getMissCount();
+		this.manager.decompose(file, measures.get(1), 4).get();
+		this.manager.decompose(file, measures.get(0), 5).get();
+		assertEquals(missCount, this.manager.getDecomposedPointsCacheStatistics().getMissCount());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Isolated Sessions")
+	void testSessions() throws Exception {
+		final var constantFile = new File("src/test/resources/constant.txt");
+		final var nansFile = new File("src/test/resources/test_data-with_nans_tags.txt");
+
+		final CompletableFuture<ExperimentSession> constantTask = this.manager.open(constantFile);
+		final CompletableFuture<ExperimentSession> nansTask = this.manager.open(nansFile);
+		assertSame(constantTask, this.manager.open(constantFile));
+		final ExperimentSession constant = constantTask.get();
+		final ExperimentSession nans = nansTask.get();
+
+		// Loading the current file doesn't affect sessions
+		this.manager.load(nansFile).get();
+
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		final int constantCount = constant.getDataPoints(measure, Optional.empty()).size();
+		final int nansCount = nans.getDataPoints(measure, Optional.empty()).size();
+
+		// Both sessions are cleaned and decomposed concurrently
+		final var constantDecomposition = constant.decompose(measure, 4);
+		final var nansDecomposition = nans.decompose(measure, 4);
+		assertEquals(constantCount, constantDecomposition.get().size());
+		assertTrue(nansDecomposition.get().size() < nansCount);
+		assertNotSame(constant.clean(measure).get(), nans.clean(measure).get());
+		assertEquals(constantCount, constant.getDataPoints(measure, Optional.empty()).size());
+
+		assertEquals(2, this.manager.getOpenSessions().size());
+		nans.close();
+		assertEquals(List.of(constant), this.manager.getOpenSessions());
+		assertThrows(IllegalStateException.class, () -> { nans.clean(measure); });
+		assertNotSame(nans, this.manager.open(nansFile).get());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Decompose Again With New Parameters")
+	void testDecompositionParameters() throws Exception {
+		final var file = new File("src/test/resources/constant.txt");
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		this.manager.load(file).get();
+
+		final Decomposition decomposition = this.manager.decompose(file, measure, 4).get();
+		this.manager.setDecompositionWindowLength(0);
+		assertSame(decomposition, this.manager.decompose(file, measure, 4).get());
+
+		this.manager.setDecompositionWindowLength(16);
+		assertNotSame(decomposition, this.manager.decompose(file, measure, 4).get());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Omitted Ranges By Measure")
+	void testOmittedRanges() throws Exception {
+		final var file = new File("src/test/resources/test_data-with_nans.txt");
+		final Measure pressure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		final Measure spirometry = MEASURE_CONSTRUCTOR.newInstance("Spirometrie");
+		final List<Measure> measures = this.manager.load(file).get();
+		assertTrue(this.manager.getOmittedRanges(pressure).isEmpty());
+
+		// Series are cleaned concurrently, each keeping its own omitted ranges
+		final var tasks = new ArrayList<CompletableFuture<?>>();
+		for (final Measure measure : measures) {
+			tasks.add(this.manager.clean(file, measure));
+		}
+		CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).get();
+
+		final var loader = new ExperimentDataLoader();
+		loader.load(file);
+		for (final Measure measure : List.of(pressure, spirometry)) {
+			final var cleaner = new ExperimentDataCleaner();
+			cleaner.clean(loader.getDataPoints(measure), loader.getPhases(measure));
+			assertEquals(cleaner.getOmittedRanges(), this.manager.getOmittedRanges(measure), measure.toString());
+			for (final var range : cleaner.getOmittedRanges()) {
+				assertEquals(cleaner.getOmittedPoints(range).size(), this.manager.getOmittedPoints(measure, range).size());
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Cleaned Frames")
+	void testCleanedFrames() throws Exception {
+		final var file = new File("src/test/resources/test_data-with_nans.txt");
+		final Measure pressure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		final Measure spirometry = MEASURE_CONSTRUCTOR.newInstance("Spirometrie");
+		final List<Measure> measures = List.of(pressure, spirometry);
+
+		this.manager.load(file).get();
+		final int rowCount = this.manager.getFrame(measures, Optional.empty()).getRowCount();
+		this.manager.clean(file, pressure).get();
+
+		// Frames are aligned on the first measure, cleaned or not
+		final var frame = this.manager.getFrame(measures, Optional.empty());
+		final var timestamps = frame.getTimestamps();
+		final var values = frame.getColumn(pressure);
+		final List<DataPoint> points = this.manager.getDataPoints(pressure);
+		assertTrue(points.size() < rowCount);
+		assertEquals(points.size(), frame.getRowCount());
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(points.get(i).getTimestamp(), timestamps.get(i));
+			assertEquals(points.get(i).getValue(), values.get(i));
+		}
+
+		// Other measures are interpolated on the shared time axis
+		final var spirometries = frame.getColumn(spirometry);
+		final List<DataPoint> loaded = this.manager.getDataPoints(spirometry);
+		assertEquals(points.size(), spirometries.remaining());
+		for (int i = 0; i < points.size(); i++) {
+			// One loaded point per second
+			assertEquals(loaded.get((int) timestamps.get(i)).getValue(), spirometries.get(i));
+		}
+		assertEquals(rowCount, this.manager.getFrame(List.of(spirometry, pressure), Optional.empty()).getRowCount());
+
+		assertTrue(this.manager.getCrossCorrelation(pressure, pressure, Optional.empty(), 2).size() > 0);
+
+		final var window = new Range<Float>(timestamps.get(0), timestamps.get(points.size() / 2));
+		final List<CrossCorrelation> correlations = this.manager.getCrossCorrelations(
+			List.of(Map.entry(pressure, pressure), Map.entry(pressure, spirometry)),
+			window,
+			2
+		);
+		assertEquals(2, correlations.size());
+		assertEquals(this.manager.getCrossCorrelation(pressure, pressure, window, 2).size(), correlations.get(0).size());
+		assertTrue(correlations.get(1).size() > 0);
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Cleaning Keeps Loaded Points")
+	void testCleaningKeepsLoadedPoints() throws Exception {
+		final var file = new File("src/test/resources/test_data-with_nans_tags.txt");
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		this.manager.load(file).get();
+
+		final List<DataPoint> loaded = this.manager.getDataPoints(measure);
+		final var timestamps = new ArrayList<Float>();
+		for (final DataPoint point : loaded) {
+			timestamps.add(point.getTimestamp());
+		}
+
+		final ExperimentDataStore cleaned = this.manager.clean(file, measure).get();
+		assertSame(cleaned.getDataPoints(), this.manager.getDataPoints(measure));
+		assertNotSame(loaded, cleaned.getDataPoints());
+		assertTrue(cleaned.getDataPoints().size() < loaded.size());
+
+		// Points handed out before cleaning never change
+		assertEquals(timestamps.size(), loaded.size());
+		for (int i = 0; i < loaded.size(); i++) {
+			assertEquals(timestamps.get(i), loaded.get(i).getTimestamp());
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Query Evicted Decompositions")
+	void testEvictedDecompositions() throws Exception {
+		final var file = new File("src/test/resources/constant.txt");
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		this.manager.load(file).get();
+		this.manager.decompose(file, measure, 4).get();
+		final Summary expected = this.manager.getSummary(measure, 4, DataType.TREND, Optional.empty());
+
+		// Cleaned points of the current file are pinned, decompositions are evicted
+		this.manager.setCacheMemoryBudget(0);
+		assertEquals(0, this.manager.getCleanedPointsCacheStatistics().getEvictionCount());
+		assertEquals(1, this.manager.getDecomposedPointsCacheStatistics().getEvictionCount());
+		assertEquals(0, this.manager.getDecomposedPointsCacheStatistics().size());
+
+		// Evicted decompositions are computed again
+		final Summary summary = this.manager.getSummary(measure, 4, DataType.TREND, Optional.empty());
+		assertEquals(expected.getCount(), summary.getCount());
+		assertEquals(expected.getMean(), summary.getMean());
+		assertEquals(2, this.manager.getDecomposedPointsCacheStatistics().getMissCount());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Power Spectra By Phase")
+	void testPowerSpectra() throws Exception {
+		final var file = new File("src/test/resources/constant.txt");
+		final Measure pressure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+		final Measure spirometry = MEASURE_CONSTRUCTOR.newInstance("Spirometrie");
+		this.manager.load(file).get();
+
+		final var spectra = this.manager.getPowerSpectra(List.of(pressure, spirometry), 4);
+		assertEquals(List.of(pressure, spirometry), new ArrayList<Measure>(spectra.keySet()));
+		for (final var byMeasure : spectra.entrySet()) {
+			assertFalse(byMeasure.getValue().isEmpty());
+			for (final var byTag : byMeasure.getValue().entrySet()) {
+				final var expected = this.manager.getPowerSpectrum(byMeasure.getKey(), Optional.of(byTag.getKey()), 4);
+				assertEquals(expected.size(), byTag.getValue().size());
+				assertEquals(expected.getSegmentCount(), byTag.getValue().getSegmentCount());
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Decompose Other File")
+	void testDecomposeOtherFile() throws Exception {
+		final var constantFile = new File("src/test/resources/constant.txt");
+		final var nansFile = new File("src/test/resources/test_data-with_nans_tags.txt");
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Pression Arterielle");
+
+		this.manager.load(constantFile).get();
+		final int constantCount = this.manager.getDataPoints(measure).size();
+		final Decomposition nansDecomposition = this.manager.decompose(nansFile, measure, 4).get();
+
+		// The other file is loaded on its own, and the current file stays the same
+		assertTrue(nansDecomposition.size() < constantCount);
+		assertEquals(constantCount, this.manager.getDataPoints(measure).size());
+		assertEquals(constantCount, this.manager.decompose(constantFile, measure, 4).get().size());
+	}
+
 	/**
 	 * 
 	 * @throws Exception
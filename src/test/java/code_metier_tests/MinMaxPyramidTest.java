@@ -0,0 +1,93 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Constructor;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.DataPoint;
+import code_metier.ExperimentDataStore;
+import code_metier.Range;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Min/Max Pyramid")
+public class MinMaxPyramidTest {
+
+	static Constructor<DataPoint> DATA_POINT_CONSTRUCTOR;
+
+	/**
+	 * Gets references to package-visible constructors using reflection. For more
+	 * information, see <a href="https://stackoverflow.com/a/14077876/10967642">How
+	 * to test a private constructor in Java application?</a>
+	 * 
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 * @author Rémi BARDON
+	 */
+	@BeforeAll
+	public static void getConstructors() throws Exception {
+		DATA_POINT_CONSTRUCTOR = DataPoint.class.getDeclaredConstructor(float.class, Float.class);
+		DATA_POINT_CONSTRUCTOR.setAccessible(true);
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Query Time Windows")
+	public void testQueryWindows() throws Exception {
+		final var random = new Random(42);
+		final var store = new ExperimentDataStore();
+		final var points = store.getDataPoints();
+		for (int i = 0; i < 20_000; i++) {
+			final float value = i % 100 == 0 ? Float.NaN : random.nextFloat() * 100;
+			points.add(DATA_POINT_CONSTRUCTOR.newInstance(i * 0.5f, value));
+		}
+		store.updatePyramid();
+
+		for (int test = 0; test < 100; test++) {
+			final float start = random.nextInt(10_000);
+			final float end = start + 1 + random.nextInt(10_000);
+			final int pixelWidth = 1 + random.nextInt(800);
+			final var buckets = store.getPyramid().query(new Range<Float>(start, end), pixelWidth);
+
+			assertTrue(buckets.size() <= 2 * pixelWidth + 2, "Too many buckets: " + buckets.size());
+
+			for (int i = 0; i < buckets.size(); i++) {
+				final int from = (int) (buckets.getStartTimestamp(i) * 2);
+				final int to = (int) (buckets.getEndTimestamp(i) * 2);
+				assertEquals(Math.min(1 << buckets.getLevel(), points.size() - from), to - from + 1);
+
+				float minimum = Float.NaN;
+				float maximum = Float.NaN;
+				for (int j = from; j <= to; j++) {
+					final float value = points.get(j).getValue();
+					if (!Float.isNaN(value)) {
+						minimum = Float.isNaN(minimum) ? value : Math.min(minimum, value);
+						maximum = Float.isNaN(maximum) ? value : Math.max(maximum, value);
+					}
+				}
+
+				assertEquals(minimum, buckets.getMinimum(i));
+				assertEquals(maximum, buckets.getMaximum(i));
+				if (buckets.getLevel() > 0) {
+					assertFalse(Float.isNaN(buckets.getFirst(i)));
+				}
+			}
+
+			// Buckets cover the whole window
+			assertTrue(buckets.getStartTimestamp(0) <= start);
+			assertTrue(buckets.getEndTimestamp(buckets.size() - 1) >= Math.min(end, points.get(points.size() - 1).getTimestamp()));
+		}
+	}
+
+}
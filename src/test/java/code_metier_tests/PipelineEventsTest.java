@@ -0,0 +1,87 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import code_metier.ExperimentManager;
+import code_metier.Measure;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ *
+ * @author Rémi BARDON
+ */
+@DisplayName("Pipeline Events")
+public class PipelineEventsTest {
+
+	/**
+	 *
+	 * @param directory
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Record Pipeline Events")
+	public void testRecording(@TempDir final Path directory) throws Exception {
+		final var file = new File("src/test/resources/constant.txt");
+		final var manager = new ExperimentManager();
+		manager.setPreComputingEnabled(false);
+
+		final var recording = new Recording();
+		for (final String name : List.of("Load", "Clean", "Decompose", "CacheLookup")) {
+			recording.enable("code_metier." + name).withoutThreshold();
+		}
+		recording.start();
+		final List<Measure> measures = manager.load(file).get();
+		manager.decompose(file, measures.get(0), 4).get();
+		manager.decompose(file, measures.get(0), 4).get();
+		recording.stop();
+
+		final Path output = directory.resolve("pipeline.jfr");
+		recording.dump(output);
+		recording.close();
+
+		final var events = new HashMap<String, RecordedEvent>();
+		final var lookupHits = new HashMap<Boolean, Integer>();
+		for (final RecordedEvent event : RecordingFile.readAllEvents(output)) {
+			final String name = event.getEventType().getName();
+			events.put(name, event);
+			if (name.equals("code_metier.CacheLookup") && event.getString("cache").equals("decomposedPoints")) {
+				lookupHits.merge(event.getBoolean("hit"), 1, Integer::sum);
+			}
+		}
+
+		final RecordedEvent load = events.get("code_metier.Load");
+		assertEquals(file.getAbsolutePath(), load.getString("file"));
+		assertEquals(file.length(), load.getLong("size"));
+		assertTrue(load.getBoolean("completed"));
+		assertTrue(load.getInt("rowCount") > 0);
+
+		final RecordedEvent decompose = events.get("code_metier.Decompose");
+		assertEquals(file.getAbsolutePath(), decompose.getString("file"));
+		assertEquals(measures.get(0).toString(), decompose.getString("measure"));
+		assertEquals(4, decompose.getInt("period"));
+		assertEquals(load.getInt("rowCount"), decompose.getInt("pointCount"));
+
+		final RecordedEvent clean = events.get("code_metier.Clean");
+		assertEquals(file.getAbsolutePath(), clean.getString("file"));
+		assertEquals(measures.get(0).toString(), clean.getString("measure"));
+		assertTrue(clean.getBoolean("completed"));
+
+		assertEquals(Map.of(false, 1, true, 1), lookupHits);
+	}
+
+}
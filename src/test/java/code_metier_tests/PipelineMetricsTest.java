@@ -0,0 +1,103 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import code_metier.ExperimentManager;
+import code_metier.Measure;
+import code_metier.PipelineMetrics;
+
+/**
+ *
+ * @author Rémi BARDON
+ */
+@DisplayName("Pipeline Metrics")
+public class PipelineMetricsTest {
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Record Stages")
+	public void testRecord() throws Exception {
+		final var metrics = new PipelineMetrics();
+
+		// Disabled by default
+		metrics.start(PipelineMetrics.Stage.CLEAN).stop(10);
+		assertEquals(0, metrics.getSnapshot().getStage(PipelineMetrics.Stage.CLEAN).getCount());
+
+		metrics.setEnabled(true);
+		for (int i = 0; i < 100; i++) {
+			final var sample = metrics.start(PipelineMetrics.Stage.CLEAN);
+			final var values = new float[1_000];
+			sample.stop(values.length);
+		}
+
+		final PipelineMetrics.StageStatistics statistics = metrics.getSnapshot().getStage(PipelineMetrics.Stage.CLEAN);
+		assertEquals(PipelineMetrics.Stage.CLEAN, statistics.getStage());
+		assertEquals(100, statistics.getCount());
+		assertEquals(100_000, statistics.getRows());
+		assertEquals(100, Arrays.stream(statistics.getHistogram()).sum());
+		assertTrue(statistics.getMedianTime() <= statistics.getP99Time());
+		assertTrue(statistics.getP99Time() <= statistics.getMaximumTime());
+		assertTrue(statistics.getRowsPerSecond() > 0);
+		assertEquals(0, metrics.getSnapshot().getStage(PipelineMetrics.Stage.DECOMPOSE).getCount());
+
+		metrics.reset();
+		assertEquals(0, metrics.getSnapshot().getStage(PipelineMetrics.Stage.CLEAN).getCount());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(10)
+	@DisplayName("Manager Metrics Through JMX")
+	public void testManager() throws Exception {
+		final var manager = new ExperimentManager();
+		manager.setPreComputingEnabled(false);
+		final PipelineMetrics metrics = manager.getMetrics();
+		metrics.setEnabled(true);
+
+		final var file = new File("src/test/resources/constant.txt");
+		final List<Measure> measures = manager.load(file).get();
+		manager.decompose(file, measures.get(0), 4).get();
+
+		final PipelineMetrics.Snapshot snapshot = metrics.getSnapshot();
+		assertEquals(1, snapshot.getStage(PipelineMetrics.Stage.LOAD).getCount());
+		assertEquals(1, snapshot.getStage(PipelineMetrics.Stage.PARSE).getCount());
+		assertEquals(1, snapshot.getStage(PipelineMetrics.Stage.CLEAN).getCount());
+		assertEquals(1, snapshot.getStage(PipelineMetrics.Stage.DECOMPOSE).getCount());
+		assertEquals(1, snapshot.getCaches().get("decomposedPoints").getMissCount());
+		assertTrue(snapshot.getQueueDepths().containsKey("compute"));
+
+		final ObjectName name = metrics.registerMBean("test");
+		try {
+			final var server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(true, server.getAttribute(name, "Enabled"));
+			final var data = (CompositeData) server.getAttribute(name, "Snapshot");
+			final var stages = (CompositeData[]) data.get("stages");
+			assertEquals(PipelineMetrics.Stage.values().length, stages.length);
+			assertEquals("LOAD", stages[0].get("stage"));
+			assertEquals(1L, stages[0].get("count"));
+		} finally {
+			PipelineMetrics.unregisterMBean(name);
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.PrefetchQueue;
+
+/**
+ *
+ * @author Rémi BARDON
+ */
+@DisplayName("Prefetch Queue")
+public class PrefetchQueueTest {
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Bounded Running Count")
+	public void testBoundedRunning() throws Exception {
+		final var queue = new PrefetchQueue(2, () -> true);
+		final var started = new ArrayList<CompletableFuture<?>>();
+		final var computations = new ArrayList<Supplier<CompletableFuture<?>>>();
+		for (int i = 0; i < 5; i++) {
+			computations.add(() -> {
+				final var task = new CompletableFuture<Void>();
+				started.add(task);
+				return task;
+			});
+		}
+
+		queue.replace(computations);
+		assertEquals(2, started.size());
+		assertEquals(2, queue.getRunningCount());
+		assertEquals(3, queue.getPendingCount());
+
+		// A finished computation frees a slot
+		started.get(0).complete(null);
+		assertEquals(3, started.size());
+		assertEquals(2, queue.getRunningCount());
+
+		// New predictions replace pending ones, running ones are kept
+		queue.replace(List.of(computations.get(0)));
+		assertEquals(2, queue.getRunningCount());
+		assertEquals(1, queue.getPendingCount());
+
+		// Failures free slots too
+		started.get(1).completeExceptionally(new IllegalStateException());
+		assertEquals(4, started.size());
+		assertEquals(0, queue.getPendingCount());
+
+		queue.replace(computations);
+		queue.cancelPending();
+		started.get(2).complete(null);
+		started.get(3).complete(null);
+		assertEquals(4, started.size());
+		assertEquals(0, queue.getRunningCount());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Budget")
+	public void testBudget() throws Exception {
+		final var canStart = new AtomicBoolean(true);
+		final var queue = new PrefetchQueue(1, canStart::get);
+		final var started = new ArrayList<CompletableFuture<Void>>();
+		final Supplier<CompletableFuture<?>> computation = () -> {
+			final var task = new CompletableFuture<Void>();
+			started.add(task);
+			return task;
+		};
+
+		queue.replace(List.of(computation, computation, computation));
+		assertEquals(1, started.size());
+
+		// Pending computations are dropped when they can't be afforded
+		canStart.set(false);
+		started.get(0).complete(null);
+		assertEquals(1, started.size());
+		assertEquals(0, queue.getPendingCount());
+	}
+
+}
@@ -0,0 +1,104 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.CancellationToken;
+import code_metier.ExperimentDataLoader;
+import code_metier.ProgressReporter;
+
+/**
+ *
+ * @author Rémi BARDON
+ */
+@DisplayName("Progress Reporter")
+public class ProgressReporterTest {
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Throttling")
+	public void testThrottling() throws Exception {
+		final var reports = new ArrayList<Map.Entry<Integer, Integer>>();
+		final var progress = new ProgressReporter(Duration.ofHours(1));
+		progress.addListener((done, total) -> { reports.add(Map.entry(done, total)); });
+
+		// Only the first report goes through within the interval
+		for (int i = 0; i < 100; i++) {
+			progress.report(i, 100);
+		}
+		assertEquals(List.of(Map.entry(0, 100)), reports);
+
+		// The final report is never throttled
+		progress.report(100, 100);
+		assertEquals(List.of(Map.entry(0, 100), Map.entry(100, 100)), reports);
+
+		// New listeners receive the last report
+		final var lateReports = new ArrayList<Map.Entry<Integer, Integer>>();
+		progress.addListener((done, total) -> { lateReports.add(Map.entry(done, total)); });
+		assertEquals(List.of(Map.entry(100, 100)), lateReports);
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Scaling")
+	public void testScaling() throws Exception {
+		final var reports = new ArrayList<Map.Entry<Integer, Integer>>();
+		final var progress = new ProgressReporter(Duration.ZERO);
+		progress.addListener((done, total) -> { reports.add(Map.entry(done, total)); });
+
+		// Totals over Integer.MAX_VALUE are scaled down
+		final long total = 3L * Integer.MAX_VALUE;
+		progress.report(total / 3, total);
+		progress.report(total, total);
+		assertEquals(2, reports.size());
+		assertTrue(reports.get(1).getValue() > 0);
+		assertEquals(reports.get(1).getKey(), reports.get(1).getValue());
+		assertEquals(1.0 / 3.0, (double) reports.get(0).getKey() / reports.get(0).getValue(), 0.001);
+
+		// Stages map into the whole task
+		final var stageReports = new ArrayList<Map.Entry<Integer, Integer>>();
+		final var stage = ProgressReporter.stage((done, stageTotal) -> { stageReports.add(Map.entry(done, stageTotal)); }, 1, 2);
+		stage.accept(50, 100);
+		assertEquals(List.of(Map.entry(ProgressReporter.STAGE_RESOLUTION * 3 / 2, ProgressReporter.STAGE_RESOLUTION * 2)), stageReports);
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Loading Reports Bytes")
+	public void testLoading() throws Exception {
+		final var file = new File("src/test/resources/test_data-with_nans_tags.txt");
+		final var reports = new ArrayList<Map.Entry<Integer, Integer>>();
+		final var progress = new ProgressReporter(Duration.ZERO);
+		progress.addListener((done, total) -> { reports.add(Map.entry(done, total)); });
+
+		new ExperimentDataLoader().load(file, CancellationToken.NONE, progress);
+
+		assertFalse(reports.isEmpty());
+		for (final var report : reports) {
+			assertEquals((int) file.length(), report.getValue());
+			assertTrue(report.getKey() <= report.getValue());
+		}
+		assertEquals(Map.entry((int) file.length(), (int) file.length()), reports.get(reports.size() - 1));
+	}
+
+}
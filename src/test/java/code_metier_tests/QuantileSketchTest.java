@@ -0,0 +1,136 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.ExperimentDataLoader;
+import code_metier.Measure;
+import code_metier.QuantileSketch;
+import code_metier.Tag;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Quantile Sketch")
+public class QuantileSketchTest {
+
+	static Constructor<Measure> MEASURE_CONSTRUCTOR;
+	static Constructor<Tag> TAG_CONSTRUCTOR;
+
+	/**
+	 * Gets references to package-visible constructors using reflection. For more
+	 * information, see <a href="https://stackoverflow.com/a/14077876/10967642">How
+	 * to test a private constructor in Java application?</a>
+	 * 
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 * @author Rémi BARDON
+	 */
+	@BeforeAll
+	public static void getConstructors() throws Exception {
+		MEASURE_CONSTRUCTOR = Measure.class.getDeclaredConstructor(String.class);
+		MEASURE_CONSTRUCTOR.setAccessible(true);
+
+		TAG_CONSTRUCTOR = Tag.class.getDeclaredConstructor(String.class);
+		TAG_CONSTRUCTOR.setAccessible(true);
+	}
+
+	/**
+	 * Asserts that estimated quantiles have a small rank error
+	 * @param sorted
+	 * @param sketch
+	 * @author Rémi BARDON
+	 */
+	private static void assertQuantiles(final float[] sorted, final QuantileSketch sketch) {
+		assertEquals(sorted.length, sketch.getCount());
+		assertEquals(sorted[0], sketch.getMinimum());
+		assertEquals(sorted[sorted.length - 1], sketch.getMaximum());
+
+		for (final double quantile : new double[] { 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999 }) {
+			final float estimate = sketch.getQuantile(quantile);
+			final int rank = Arrays.binarySearch(sorted, estimate);
+			final double estimatedQuantile = (rank >= 0 ? rank : -rank - 1) / (double) sorted.length;
+			final double tolerance = 0.01 * Math.max(0.1, Math.sqrt(quantile * (1 - quantile)) * 2);
+			assertEquals(quantile, estimatedQuantile, tolerance, "Quantile " + quantile);
+		}
+	}
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Estimate Quantiles")
+	public void testEstimateQuantiles() {
+		final var random = new Random(42);
+		final float[] values = new float[100_000];
+		final var sketch = new QuantileSketch();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (float) (random.nextGaussian() * 10 + 80);
+			sketch.add(values[i]);
+		}
+		sketch.add(Float.NaN);
+
+		Arrays.sort(values);
+		assertQuantiles(values, sketch);
+	}
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Merge Sketches")
+	public void testMerge() {
+		final var random = new Random(42);
+		final float[] values = new float[60_000];
+		final var merged = new QuantileSketch();
+		for (int part = 0; part < 3; part++) {
+			// Parts with different distributions, like different sessions
+			final var sketch = new QuantileSketch();
+			for (int i = part * 20_000; i < (part + 1) * 20_000; i++) {
+				values[i] = part == 1 ? random.nextFloat() * 200 : (float) (random.nextGaussian() * (part + 1) + 50 * part);
+				sketch.add(values[i]);
+			}
+			final float median = sketch.getMedian();
+			merged.merge(sketch);
+			// Merging leaves the other sketch untouched
+			assertEquals(median, sketch.getMedian());
+			assertEquals(20_000, sketch.getCount());
+		}
+
+		Arrays.sort(values);
+		assertQuantiles(values, merged);
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Build Sketches While Loading")
+	public void testLoadSketches() throws Exception {
+		final ExperimentDataLoader loader = new ExperimentDataLoader();
+		loader.load(new File("src/test/resources/constant.txt"));
+
+		final Measure measure = MEASURE_CONSTRUCTOR.newInstance("Spirometrie");
+		final var store = loader.getStore(measure);
+
+		assertEquals(30, store.getQuantileSketch(Optional.empty()).getCount());
+		assertEquals(5, store.getQuantileSketch(Optional.of(TAG_CONSTRUCTOR.newInstance("tag1"))).getCount());
+		assertEquals(48f, store.getQuantileSketch(Optional.of(TAG_CONSTRUCTOR.newInstance("tag1"))).getMedian());
+		assertEquals(0, store.getQuantileSketch(Optional.of(TAG_CONSTRUCTOR.newInstance("unknown"))).getCount());
+	}
+
+}
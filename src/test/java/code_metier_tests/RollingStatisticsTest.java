@@ -0,0 +1,130 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.DataPoint;
+import code_metier.RollingStatistics;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Rolling Statistics")
+public class RollingStatisticsTest {
+
+	static Constructor<DataPoint> DATA_POINT_CONSTRUCTOR;
+
+	/**
+	 * Gets references to package-visible constructors using reflection. For more
+	 * information, see <a href="https://stackoverflow.com/a/14077876/10967642">How
+	 * to test a private constructor in Java application?</a>
+	 * 
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 * @author Rémi BARDON
+	 */
+	@BeforeAll
+	public static void getConstructors() throws Exception {
+		DATA_POINT_CONSTRUCTOR = DataPoint.class.getDeclaredConstructor(float.class, Float.class);
+		DATA_POINT_CONSTRUCTOR.setAccessible(true);
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Match Naive Computation")
+	public void testMatchNaiveComputation() throws Exception {
+		final var random = new Random(42);
+		final var points = new ArrayList<DataPoint>();
+		float timestamp = 0;
+		for (int i = 0; i < 3_000; i++) {
+			// Irregular sampling, with a gap
+			timestamp += i == 1_500 ? 30f : 0.1f + random.nextFloat();
+			final float value = i % 50 == 0 ? Float.NaN : 60 + random.nextInt(40);
+			points.add(DATA_POINT_CONSTRUCTOR.newInstance(timestamp, value));
+		}
+
+		final float window = 10f;
+		final double quantile = 0.9;
+		final var columns = RollingStatistics.compute(points, window, quantile);
+		assertEquals(points.size(), columns.size());
+
+		for (int i = 0; i < points.size(); i++) {
+			final float end = points.get(i).getTimestamp();
+			float[] values = new float[0];
+			for (final DataPoint point : points.subList(0, i + 1)) {
+				if (point.getTimestamp() >= end - window && !point.getValue().isNaN()) {
+					values = Arrays.copyOf(values, values.length + 1);
+					values[values.length - 1] = point.getValue();
+				}
+			}
+			if (values.length == 0) {
+				assertTrue(Float.isNaN(columns.getMeans()[i]), "Mean at " + i);
+				continue;
+			}
+			Arrays.sort(values);
+
+			double sum = 0;
+			for (final float value : values) {
+				sum += value;
+			}
+			final double mean = sum / values.length;
+			double squares = 0;
+			for (final float value : values) {
+				squares += (value - mean) * (value - mean);
+			}
+			final int rank = Math.max(1, (int) Math.ceil(quantile * values.length));
+
+			assertEquals(values[0], columns.getMinimums()[i], "Minimum at " + i);
+			assertEquals(values[values.length - 1], columns.getMaximums()[i], "Maximum at " + i);
+			assertEquals(values[rank - 1], columns.getQuantiles()[i], "Quantile at " + i);
+			assertEquals(mean, columns.getMeans()[i], 1e-3, "Mean at " + i);
+			assertEquals(squares / values.length, columns.getVariances()[i], 1e-2, "Variance at " + i);
+		}
+	}
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Append Points")
+	public void testStreamingAppend() {
+		final var statistics = new RollingStatistics(2f, 0.5);
+		assertTrue(Float.isNaN(statistics.getMean()));
+
+		statistics.append(0f, 5f);
+		statistics.append(1f, 1f);
+		statistics.append(2f, 3f);
+		assertEquals(3, statistics.getCount());
+		assertEquals(3f, statistics.getMean());
+		assertEquals(1f, statistics.getMinimum());
+		assertEquals(5f, statistics.getMaximum());
+		assertEquals(3f, statistics.getQuantile());
+
+		// Drops the point at 0
+		statistics.append(3f, 2f);
+		assertEquals(3, statistics.getCount());
+		assertEquals(1f, statistics.getMinimum());
+		assertEquals(3f, statistics.getMaximum());
+		assertEquals(2f, statistics.getQuantile());
+
+		// Drops everything
+		statistics.append(10f, Float.NaN);
+		assertEquals(0, statistics.getCount());
+		assertTrue(Float.isNaN(statistics.getMinimum()));
+	}
+
+}
@@ -0,0 +1,88 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.SpectrumAnalyzer;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Spectrum Analyzer")
+public class SpectrumAnalyzerTest {
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Find Dominant Frequencies")
+	public void testDominantFrequencies() {
+		final var random = new Random(42);
+		final int size = 20_000;
+		final float sampleRate = 100f;
+		final float[] timestamps = new float[size];
+		final float[] values = new float[size];
+		for (int i = 0; i < size; i++) {
+			final double time = i / (double) sampleRate;
+			timestamps[i] = (float) time;
+			// Heart beats (1.2 Hz) and breathing (0.25 Hz, weaker)
+			values[i] = (float) (3 * Math.sin(2 * Math.PI * 1.2 * time) + Math.sin(2 * Math.PI * 0.25 * time) + random.nextGaussian() * 0.5);
+		}
+
+		final var analyzer = new SpectrumAnalyzer(2_048);
+		final var spectrum = analyzer.analyze(FloatBuffer.wrap(timestamps), FloatBuffer.wrap(values));
+
+		final float resolution = sampleRate / 2_048;
+		assertEquals(2_048 / 2 + 1, spectrum.size());
+		assertEquals(sampleRate, spectrum.getSampleRate(), 0.01f);
+		assertTrue(spectrum.getSegmentCount() > 10);
+
+		final float[] dominant = spectrum.getDominantFrequencies(2);
+		assertEquals(1.2f, dominant[0], resolution);
+		assertEquals(0.25f, dominant[1], resolution);
+
+		// Short series are zero-padded
+		final var shortSpectrum = analyzer.analyze(FloatBuffer.wrap(timestamps, 0, 500).slice(), FloatBuffer.wrap(values, 0, 500).slice());
+		assertEquals(1, shortSpectrum.getSegmentCount());
+		assertEquals(1.2f, shortSpectrum.getDominantFrequency(), 2 * sampleRate / 500);
+	}
+
+	/**
+	 * 
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Density Integrates To Variance")
+	public void testDensityMagnitude() {
+		final float sampleRate = 10f;
+		final float amplitude = 2f;
+		final var analyzer = new SpectrumAnalyzer(256);
+
+		// Long series (several segments), then a series shorter than one segment
+		for (final int size : new int[] { 5_000, 100 }) {
+			final float[] timestamps = new float[size];
+			final float[] values = new float[size];
+			for (int i = 0; i < size; i++) {
+				timestamps[i] = i / sampleRate;
+				values[i] = (float) (amplitude * Math.sin(2 * Math.PI * 1.5 * i / sampleRate));
+			}
+
+			final var spectrum = analyzer.analyze(FloatBuffer.wrap(timestamps), FloatBuffer.wrap(values));
+
+			// Parseval: the density integrated over frequencies is the variance of a sine, amplitude² / 2
+			double power = 0;
+			for (final float density : spectrum.getDensities()) {
+				power += density * sampleRate / analyzer.getSegmentLength();
+			}
+			assertEquals(amplitude * amplitude / 2, power, 0.1 * amplitude * amplitude / 2, "size " + size);
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import code_metier.DataPoint;
+import code_metier.ExperimentDataLoader;
+import code_metier.ExperimentDataStore;
+import code_metier.Measure;
+import code_metier.Range;
+import code_metier.Tag;
+
+/**
+ * 
+ * @author Rémi BARDON
+ */
+@DisplayName("Summary Index")
+public class SummaryIndexTest {
+
+	static Constructor<Measure> MEASURE_CONSTRUCTOR;
+	static Constructor<Tag> TAG_CONSTRUCTOR;
+	static Constructor<DataPoint> DATA_POINT_CONSTRUCTOR;
+
+	/**
+	 * Gets references to package-visible constructors using reflection. For more
+	 * information, see <a href="https://stackoverflow.com/a/14077876/10967642">How
+	 * to test a private constructor in Java application?</a>
+	 * 
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 * @author Rémi BARDON
+	 */
+	@BeforeAll
+	public static void getConstructors() throws Exception {
+		MEASURE_CONSTRUCTOR = Measure.class.getDeclaredConstructor(String.class);
+		MEASURE_CONSTRUCTOR.setAccessible(true);
+
+		TAG_CONSTRUCTOR = Tag.class.getDeclaredConstructor(String.class);
+		TAG_CONSTRUCTOR.setAccessible(true);
+
+		DATA_POINT_CONSTRUCTOR = DataPoint.class.getDeclaredConstructor(float.class, Float.class);
+		DATA_POINT_CONSTRUCTOR.setAccessible(true);
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Summarize Time Windows")
+	public void testSummarizeWindows() throws Exception {
+		final var random = new Random(42);
+		final var store = new ExperimentDataStore();
+		final var points = store.getDataPoints();
+		for (int i = 0; i < 5_000; i++) {
+			final float value = i % 100 == 0 ? Float.NaN : random.nextFloat() * 100;
+			points.add(DATA_POINT_CONSTRUCTOR.newInstance(i * 0.5f, value));
+		}
+		store.updateSummaryIndex();
+
+		for (int test = 0; test < 200; test++) {
+			final float start = random.nextInt(2_600) - 50;
+			final float end = start + random.nextInt(test < 100 ? 40 : 2_500);
+			final var summary = store.getSummaryIndex().summarize(new Range<Float>(start, end));
+
+			float minimum = Float.POSITIVE_INFINITY;
+			float maximum = Float.NEGATIVE_INFINITY;
+			double sum = 0;
+			int count = 0;
+			for (final var point : points) {
+				if (point.getTimestamp() >= start && point.getTimestamp() <= end && !point.getValue().isNaN()) {
+					minimum = Math.min(minimum, point.getValue());
+					maximum = Math.max(maximum, point.getValue());
+					sum += point.getValue();
+					count++;
+				}
+			}
+
+			final String window = start + "..." + end;
+			assertEquals(count, summary.getCount(), window);
+			if (count > 0) {
+				assertEquals(minimum, summary.getMinimum(), window);
+				assertEquals(maximum, summary.getMaximum(), window);
+				assertEquals(sum / count, summary.getMean(), 1e-3, window);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@DisplayName("Summarize Tags After Loading")
+	public void testSummarizeTags() throws Exception {
+		final ExperimentDataLoader loader = new ExperimentDataLoader();
+		loader.load(new File("src/test/resources/constant.txt"));
+
+		final var index = loader.getStore(MEASURE_CONSTRUCTOR.newInstance("Spirometrie")).getSummaryIndex();
+
+		final var summary = index.summarize(Optional.of(TAG_CONSTRUCTOR.newInstance("tag1")));
+		assertEquals(5, summary.getCount());
+		assertEquals(48f, summary.getMinimum());
+		assertEquals(48f, summary.getMaximum());
+		assertEquals(30, index.summarize(Optional.empty()).getCount());
+	}
+
+}
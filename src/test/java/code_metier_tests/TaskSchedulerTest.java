@@ -0,0 +1,101 @@
+package code_metier_tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import code_metier.TaskScheduler;
+
+/**
+ *
+ * @author Rémi BARDON
+ */
+@DisplayName("Task Scheduler")
+public class TaskSchedulerTest {
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(5)
+	@DisplayName("Foreground Before Speculative")
+	public void testPriority() throws Exception {
+		final var scheduler = new TaskScheduler(1, Executors.newSingleThreadExecutor());
+		final var started = new CountDownLatch(1);
+		final var release = new CountDownLatch(1);
+		final List<String> order = new CopyOnWriteArrayList<String>();
+
+		// Keep the only thread busy while other tasks are queued
+		scheduler.submit(TaskScheduler.Priority.FOREGROUND, () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		started.await();
+
+		scheduler.submit(TaskScheduler.Priority.SPECULATIVE, () -> { order.add("speculative 1"); });
+		scheduler.submit(TaskScheduler.Priority.SPECULATIVE, () -> { order.add("speculative 2"); });
+		scheduler.submit(TaskScheduler.Priority.FOREGROUND, () -> { order.add("foreground 1"); });
+		final Future<?> last = scheduler.submit(TaskScheduler.Priority.FOREGROUND, () -> { order.add("foreground 2"); });
+		final Future<?> cancelled = scheduler.submit(TaskScheduler.Priority.SPECULATIVE, () -> { order.add("cancelled"); });
+		cancelled.cancel(false);
+
+		release.countDown();
+		last.get();
+		scheduler.submit(TaskScheduler.Priority.SPECULATIVE, () -> {}).get();
+
+		assertEquals(List.of("foreground 1", "foreground 2", "speculative 1", "speculative 2"), order);
+
+		scheduler.shutdown();
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 * @author Rémi BARDON
+	 */
+	@Test
+	@Timeout(5)
+	@DisplayName("Parallel For From Compute Threads")
+	public void testParallelFor() throws Exception {
+		final var scheduler = new TaskScheduler(2, Executors.newSingleThreadExecutor());
+		final var counts = new AtomicIntegerArray(1_000);
+
+		// Both compute threads wait for their own actions, which they run themselves if needed
+		final List<Future<?>> tasks = new ArrayList<Future<?>>();
+		for (int task = 0; task < 2; task++) {
+			tasks.add(scheduler.submit(TaskScheduler.Priority.FOREGROUND, () -> {
+				scheduler.parallelFor(TaskScheduler.Priority.FOREGROUND, counts.length(), counts::incrementAndGet);
+			}));
+		}
+		for (final Future<?> task : tasks) {
+			task.get();
+		}
+		for (int i = 0; i < counts.length(); i++) {
+			assertEquals(2, counts.get(i), "At " + i);
+		}
+
+		// The first failure is thrown to the caller
+		assertThrows(IllegalStateException.class, () -> {
+			scheduler.parallelFor(TaskScheduler.Priority.FOREGROUND, 10, (i) -> { throw new IllegalStateException(); });
+		});
+
+		scheduler.shutdown();
+	}
+
+}